@@ -0,0 +1,187 @@
+/** ********************************************************************
+ * File:           Abbreviations.java
+ * Description:    Abbreviations typed for longer phrases
+ * Created:        Mon Oct 19 06:14:29 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * The abbreviations of the user, each standing for a phrase put in its
+ * place when the abbreviation is followed by a space. They are read from
+ * <em>abbreviations.txt</em> in the current directory, next to
+ * <em>preferences.conf</em>, as UTF-8, one to a line: the keys of the
+ * abbreviation, then a tab or spaces and the phrase, which may itself hold
+ * spaces. Blank lines and lines beginning with "#" are skipped. For
+ * example:
+ *
+ * <pre>
+ * addr	Indian Institute of Science, Bangalore
+ * </pre>
+ *
+ * with the phrase in the script of the layout.
+ * <p>
+ * The abbreviations are kept as a trie of the keys. A session goes one
+ * node down with each key of the word being typed, so when the space comes
+ * the node it has reached tells at once whether the keys typed are an
+ * abbreviation; nothing is looked up. The trie is replaced as a whole when
+ * the abbreviations are read again, and is shared by all threads.
+ */
+public class Abbreviations {
+
+	static final String FILE = "abbreviations.txt";
+
+	/**
+	 * A node of the trie: the keys typed so far of the abbreviations below
+	 * it.
+	 */
+	static final class Node {
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_NODES = new Node[0];
+
+		/**
+		 * The keys of the nodes below, sorted, and the nodes.
+		 */
+		private char[] keys = NO_KEYS;
+		private Node[] next = NO_NODES;
+		/**
+		 * The phrase of the abbreviation ending here, null if none does.
+		 */
+		String phrase;
+
+		/**
+		 * Returns the node after a key, null if no abbreviation goes on with
+		 * it.
+		 */
+		Node next(char key) {
+			int i = Arrays.binarySearch(keys, key);
+			return i < 0 ? null : next[i];
+		}
+
+		/**
+		 * Returns the node after each char of the keys of a pattern, null if
+		 * no abbreviation goes on with them.
+		 */
+		Node next(String pattern) {
+			Node node = this;
+			for (int i = 0; i < pattern.length() && node != null; i++) {
+				node = node.next(pattern.charAt(i));
+			}
+			return node;
+		}
+
+		private Node add(char key) {
+			int i = Arrays.binarySearch(keys, key);
+			if (i >= 0) {
+				return next[i];
+			}
+			i = -i - 1;
+			char[] moreKeys = new char[keys.length + 1];
+			Node[] moreNodes = new Node[keys.length + 1];
+			System.arraycopy(keys, 0, moreKeys, 0, i);
+			System.arraycopy(next, 0, moreNodes, 0, i);
+			System.arraycopy(keys, i, moreKeys, i + 1, keys.length - i);
+			System.arraycopy(next, i, moreNodes, i + 1, keys.length - i);
+			moreKeys[i] = key;
+			moreNodes[i] = new Node();
+			keys = moreKeys;
+			next = moreNodes;
+			return moreNodes[i];
+		}
+	}
+
+	/**
+	 * The root of the trie, null if there are no abbreviations.
+	 */
+	private static volatile Node root;
+
+	/**
+	 * Returns the root of the trie of the abbreviations, null if there are
+	 * none.
+	 */
+	static Node root() {
+		return root;
+	}
+
+	/**
+	 * Adds an abbreviation to a trie. A later phrase of the same
+	 * abbreviation replaces the earlier one.
+	 */
+	static void add(Node root, String keys, String phrase) {
+		Node node = root;
+		for (int i = 0; i < keys.length(); i++) {
+			node = node.add(keys.charAt(i));
+		}
+		node.phrase = phrase;
+	}
+
+	/**
+	 * Reads the abbreviations of a directory, and uses them from the next
+	 * word on. A missing file leaves none.
+	 */
+	public static void load(File directory) {
+		File file = new File(directory, FILE);
+		if (!file.isFile()) {
+			System.out.println("No abbreviations in " + file);
+			root = null;
+			return;
+		}
+		Node trie = new Node();
+		int count = 0;
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), "UTF-8"));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.length() > 0 && line.charAt(0) == '\uFEFF') {
+						line = line.substring(1);
+					}
+					line = line.trim();
+					if (line.length() == 0 || line.startsWith("#")) {
+						continue;
+					}
+					int end = 0;
+					while (end < line.length() && line.charAt(end) > ' ') {
+						end++;
+					}
+					String phrase = line.substring(end).trim();
+					if (phrase.length() == 0) {
+						System.out.println(file + ": no phrase for \"" + line
+								+ "\"");
+						continue;
+					}
+					add(trie, line.substring(0, end), phrase);
+					count++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Could not read " + file + ": "
+					+ e.getMessage());
+			return;
+		}
+		System.out.println(count + " abbreviations read from " + file);
+		root = count > 0 ? trie : null;
+	}
+}
@@ -0,0 +1,95 @@
+/** ********************************************************************
+ * File:           ActiveWindowOutput.java
+ * Description:    Output to the active window
+ * Created:        Mon Oct 19 04:43:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * Puts the output onto the active window, through the native code of the
+ * operating system. The keys reach the active window too, so the English
+ * character echoed for a key is deleted first, unless the input side
+ * suppresses the echo.
+ */
+public class ActiveWindowOutput extends Output {
+
+	/**
+	 * The output used by the sessions of the keyboard.
+	 */
+	public static final ActiveWindowOutput output = new ActiveWindowOutput();
+
+	private static final boolean windows = IndicKeyboards.operatingSystem
+			.contains("Windows");
+
+	/**
+	 * Set when the keys sent to the parsers never reach the active window, as
+	 * with the exclusive keyboard grab on Linux. There is then no echoed
+	 * English character to delete before the Unicode is put. Set by the key
+	 * monitor before it grabs the keyboard, and read with each key.
+	 */
+	private volatile boolean echoSuppressed = false;
+
+	/**
+	 * Sets whether the input side keeps the keys from reaching the active
+	 * window.
+	 */
+	public void setEchoSuppressed(boolean suppressed) {
+		echoSuppressed = suppressed;
+	}
+
+	public void erase(int count) {
+		if (count <= 0) {
+			return;
+		}
+		if (windows) {
+			org.iisc.mile.indickeyboards.windows.OutputCharToActiveWindow.erase(count);
+		} else {
+			org.iisc.mile.indickeyboards.linux.OutputCharToActiveWindow.erase(count);
+		}
+	}
+
+	public void putChar(int codePoint) {
+		if (windows) {
+			org.iisc.mile.indickeyboards.windows.OutputCharToActiveWindow.putChar(codePoint);
+		} else {
+			org.iisc.mile.indickeyboards.linux.OutputCharToActiveWindow.putChar(codePoint);
+		}
+	}
+
+	/**
+	 * Deletes and puts in one batch on Linux, so a phrase goes out with a
+	 * single native call, like the output of a key.
+	 */
+	public void replace(int count, CharSequence text) {
+		if (windows) {
+			super.replace(count, text);
+			return;
+		}
+		org.iisc.mile.indickeyboards.linux.OutputCharToActiveWindow.beginBatch();
+		try {
+			super.replace(count, text);
+		} finally {
+			org.iisc.mile.indickeyboards.linux.OutputCharToActiveWindow.commitBatch();
+		}
+	}
+
+	/**
+	 * Returns one, or none when the echo is suppressed by the input side.
+	 */
+	public int echoLength() {
+		return echoSuppressed ? 0 : 1;
+	}
+}
@@ -0,0 +1,316 @@
+/** ********************************************************************
+ * File:           Aksharas.java
+ * Description:    Splits Indic text into aksharas
+ * Created:        Mon Oct 19 05:42:34 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Splits Indic text into aksharas: a consonant with the consonants joined
+ * to it by a virama, its nukta, its vowel sign and its other signs, or an
+ * independent vowel with its signs. Any other character is an akshara of
+ * its own, except that a mark stays with what it follows and a CR with the
+ * LF after it.
+ * <p>
+ * The classes of the characters are held in bit sets, one bit for each
+ * character of the blocks from Devanagari to Malayalam, made once from the
+ * Unicode data of the JDK:
+ * <ul>
+ * <li>consonants: the letters at the offsets of the consonants of the
+ * blocks, with those with a nukta and those added after the ISCII
+ * ones;</li>
+ * <li>matras: the vowel signs, and the other marks which go with a letter,
+ * like the anusvara and the visarga;</li>
+ * <li>viramas and nuktas, at the same offset in each block;</li>
+ * <li>linkers: the viramas which join a consonant to the next one. The
+ * Tamil pulli is always shown, and ends the akshara.</li>
+ * </ul>
+ * The zero width joiner after a virama keeps the next consonant in the
+ * akshara, as a half form; the non-joiner does not. Whether a position
+ * begins an akshara only depends on the three characters up to it, so the
+ * text can be split from either end, or counted a chunk at a time with a
+ * <code>Counter</code>.
+ */
+public class Aksharas {
+
+	private static final int FIRST = 0x0900;
+	private static final int LAST = 0x0D80;
+	private static final int SIZE = LAST - FIRST;
+
+	static final char ZWNJ = '\u200C';
+	static final char ZWJ = '\u200D';
+
+	private static final long[] CONSONANT = new long[SIZE / 64];
+	private static final long[] MATRA = new long[SIZE / 64];
+	private static final long[] VIRAMA = new long[SIZE / 64];
+	private static final long[] NUKTA = new long[SIZE / 64];
+	private static final long[] LINKER = new long[SIZE / 64];
+	static {
+		for (int c = FIRST; c < LAST; c++) {
+			int offset = c % ScriptConverter.BLOCK;
+			int type = Character.getType(c);
+			boolean mark = type == Character.NON_SPACING_MARK
+					|| type == Character.COMBINING_SPACING_MARK
+					|| type == Character.ENCLOSING_MARK;
+			if (mark && offset == 0x4D) {
+				set(VIRAMA, c);
+				if (c != 0x0BCD) {
+					set(LINKER, c);
+				}
+			} else if (mark && offset == 0x3C) {
+				set(NUKTA, c);
+			} else if (mark) {
+				set(MATRA, c);
+			} else if (type == Character.OTHER_LETTER
+					&& (offset >= 0x15 && offset <= 0x39 || offset >= 0x58
+							&& offset <= 0x5F || c >= 0x0978 && c <= 0x097F
+							|| c == 0x09F0 || c == 0x09F1 || c == 0x0B71)) {
+				set(CONSONANT, c);
+			}
+		}
+	}
+
+	private static void set(long[] set, int c) {
+		int i = c - FIRST;
+		set[i >> 6] |= 1L << i;
+	}
+
+	private static boolean in(long[] set, char c) {
+		int i = c - FIRST;
+		return i >= 0 && i < SIZE && (set[i >> 6] & 1L << i) != 0;
+	}
+
+	public static boolean isConsonant(char c) {
+		return in(CONSONANT, c);
+	}
+
+	public static boolean isMatra(char c) {
+		return in(MATRA, c);
+	}
+
+	public static boolean isVirama(char c) {
+		return in(VIRAMA, c);
+	}
+
+	public static boolean isNukta(char c) {
+		return in(NUKTA, c);
+	}
+
+	/**
+	 * Returns true for the characters which never begin an akshara: the
+	 * marks of the Indic blocks, the joiners, and the marks of other
+	 * scripts.
+	 */
+	private static boolean isExtending(char c) {
+		if (c >= FIRST && c < LAST) {
+			return in(MATRA, c) || in(VIRAMA, c) || in(NUKTA, c);
+		}
+		if (c == ZWJ || c == ZWNJ) {
+			return true;
+		}
+		if (c < 0x0300) {
+			return false;
+		}
+		int type = Character.getType(c);
+		return type == Character.NON_SPACING_MARK
+				|| type == Character.COMBINING_SPACING_MARK
+				|| type == Character.ENCLOSING_MARK;
+	}
+
+	/**
+	 * Returns true if an akshara begins with c, after the characters
+	 * before2 and before.
+	 */
+	static boolean begins(char before2, char before, char c) {
+		if (before == '\r' && c == '\n') {
+			return false;
+		}
+		if (Character.isISOControl(before)) {
+			return true;
+		}
+		if (isExtending(c)) {
+			return false;
+		}
+		if (in(CONSONANT, c)) {
+			return !(in(LINKER, before) || before == ZWJ
+					&& in(LINKER, before2));
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if an akshara begins at the given index of the text, as
+	 * it does at its start and at its end.
+	 */
+	public static boolean begins(CharSequence text, int index) {
+		if (index <= 0 || index >= text.length()) {
+			return true;
+		}
+		return begins(index >= 2 ? text.charAt(index - 2) : 0, text
+				.charAt(index - 1), text.charAt(index));
+	}
+
+	/**
+	 * Returns the end of the akshara which begins at start.
+	 */
+	public static int next(CharSequence text, int start) {
+		int i = start + 1;
+		while (i < text.length() && !begins(text, i)) {
+			i++;
+		}
+		return Math.min(i, text.length());
+	}
+
+	/**
+	 * Returns the start of the akshara which ends at end, as a backspace
+	 * which deletes a whole akshara would go back to.
+	 */
+	public static int previous(CharSequence text, int end) {
+		int i = end - 1;
+		while (i > 0 && !begins(text, i)) {
+			i--;
+		}
+		return Math.max(i, 0);
+	}
+
+	/**
+	 * Returns true for the characters of words: letters, digits and marks,
+	 * and the joiners within a word.
+	 */
+	static boolean isWordChar(char c) {
+		return c >= FIRST && c < LAST ? Character.isDefined(c)
+				&& !(c == '\u0964' || c == '\u0965' || c == '\u0970')
+				: Character.isLetterOrDigit(c) || isExtending(c);
+	}
+
+	/**
+	 * Counts the words of a text and their aksharas, a chunk at a time. An
+	 * akshara is counted if it begins with a character of a word, so the
+	 * spaces and the punctuation are not.
+	 */
+	public static class Counter {
+		private char before2 = 0;
+		private char before = 0;
+		private boolean started = false;
+		private boolean inWord = false;
+		private long aksharas = 0;
+		private long words = 0;
+		private long chars = 0;
+
+		private void add(char c) {
+			if (!started || begins(before2, before, c)) {
+				started = true;
+				boolean wordChar = isWordChar(c);
+				if (wordChar) {
+					aksharas++;
+					if (!inWord) {
+						words++;
+					}
+				}
+				inWord = wordChar;
+			}
+			before2 = before;
+			before = c;
+		}
+
+		public void add(char[] text, int offset, int length) {
+			for (int i = offset; i < offset + length; i++) {
+				add(text[i]);
+			}
+			chars += length;
+		}
+
+		public void add(CharSequence text) {
+			int length = text.length();
+			for (int i = 0; i < length; i++) {
+				add(text.charAt(i));
+			}
+			chars += length;
+		}
+
+		public long getAksharas() {
+			return aksharas;
+		}
+
+		public long getWords() {
+			return words;
+		}
+
+		public long getChars() {
+			return chars;
+		}
+	}
+
+	/**
+	 * Returns the number of aksharas of a text, not counting those of the
+	 * spaces and the punctuation.
+	 */
+	public static long count(CharSequence text) {
+		Counter counter = new Counter();
+		counter.add(text);
+		return counter.getAksharas();
+	}
+
+	private static void usage() {
+		System.out.println("Usage: Aksharas <file>...");
+		System.exit(2);
+	}
+
+	/**
+	 * Prints the words, aksharas and chars of each file, read as UTF-8.
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			usage();
+		}
+		boolean failed = false;
+		char[] buffer = new char[Transliterator.CHUNK];
+		for (String name : args) {
+			File file = new File(name);
+			long start = System.nanoTime();
+			Counter counter = new Counter();
+			try {
+				Reader in = new InputStreamReader(new FileInputStream(file),
+						"UTF-8");
+				try {
+					int n;
+					while ((n = in.read(buffer)) > 0) {
+						counter.add(buffer, 0, n);
+					}
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				System.out.println(file + ": " + e.getMessage());
+				failed = true;
+				continue;
+			}
+			System.out.println(file + ": " + counter.getWords() + " words, "
+					+ counter.getAksharas() + " aksharas, "
+					+ counter.getChars() + " chars in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/** ********************************************************************
+ * File:           BatchTransliterator.java
+ * Description:    Transliterates text files without a display
+ * Created:        Mon Oct 19 04:43:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Transliterates text files with a keyboard layout, as if they had been
+ * typed in with it. The files go through a <code>Transliterator</code>,
+ * whose parsers are the ones used while typing, so the phonetic patterns
+ * and the Tamil99 rules apply just the same; nothing of SWT or of the
+ * native libraries is used.
+ * <p>
+ * The files are converted in parallel on a fork-join pool, each with a
+ * session of its own:
+ * 
+ * <pre>
+ * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.BatchTransliterator
+ *      -layout kan_phonetic.xml [-out dir] [-threads n] [-mmap] [-nocache]
+ *      file...
+ * </pre>
+ * 
+ * With -mmap the files are converted one after another instead, each on
+ * all the threads, through <code>MappedTransliterator</code>. This is the
+ * faster way for a few very large files. The words seen before are put
+ * from the <code>WordCache</code>; -nocache types every word key by key,
+ * which gives the same output, to check that it does.
+ * 
+ * The layout is read from <em>kblayouts</em> in the current directory. The
+ * output of <em>name</em> is written to <em>name.out</em>, or to
+ * <em>dir/name</em> with -out, in UTF-8. The input is read as UTF-8.
+ */
+public class BatchTransliterator {
+
+	/**
+	 * Transliterates the text read from in and writes it to out.
+	 * 
+	 * @return Returns the number of chars read and of chars written.
+	 * @see Transliterator#transliterate(Reader, Writer)
+	 */
+	public static long[] convert(Reader in, Writer out, Layout layout)
+			throws IOException {
+		Transliterator transliterator = new Transliterator(layout);
+		transliterator.transliterate(in, out);
+		return new long[] { transliterator.getCharsIn(),
+				transliterator.getCharsOut() };
+	}
+
+	/**
+	 * Converts one file, or splits a number of them between two tasks.
+	 */
+	static class Convert extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> files;
+		private final File outDir;
+		private final Layout layout;
+		/**
+		 * Chars read and written, and the files which could not be converted.
+		 */
+		final long[] counts = new long[3];
+
+		Convert(List<File> files, File outDir, Layout layout) {
+			this.files = files;
+			this.outDir = outDir;
+			this.layout = layout;
+		}
+
+		protected void compute() {
+			if (files.size() > 1) {
+				int half = files.size() / 2;
+				Convert first = new Convert(files.subList(0, half), outDir,
+						layout);
+				Convert second = new Convert(files.subList(half, files.size()),
+						outDir, layout);
+				invokeAll(first, second);
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] = first.counts[i] + second.counts[i];
+				}
+				return;
+			}
+			File file = files.get(0);
+			File target = target(file, outDir);
+			long start = System.nanoTime();
+			try {
+				Reader in = new InputStreamReader(new FileInputStream(file),
+						"UTF-8");
+				try {
+					Writer out = new OutputStreamWriter(new FileOutputStream(
+							target), "UTF-8");
+					try {
+						long[] converted = convert(in, out, layout);
+						counts[0] = converted[0];
+						counts[1] = converted[1];
+					} finally {
+						out.close();
+					}
+				} finally {
+					in.close();
+				}
+				System.out.println(file + " -> " + target + ", " + counts[0]
+						+ " chars in " + (System.nanoTime() - start) / 1000000
+						+ " ms");
+			} catch (IOException e) {
+				System.out.println(file + ": " + e.getMessage());
+				counts[2] = 1;
+			}
+		}
+	}
+
+	/**
+	 * Converts one file on all the threads of the pool, and adds its chars
+	 * to the counts.
+	 */
+	private static void convertMapped(File file, File outDir, Layout layout,
+			ForkJoinPool pool, long[] counts) {
+		File target = target(file, outDir);
+		long start = System.nanoTime();
+		try {
+			long[] converted = MappedTransliterator.convert(file, target,
+					layout, pool);
+			counts[0] += converted[0];
+			counts[1] += converted[1];
+			System.out.println(file + " -> " + target + ", " + converted[0]
+					+ " chars in " + (System.nanoTime() - start) / 1000000
+					+ " ms");
+		} catch (IOException e) {
+			System.out.println(file + ": " + e.getMessage());
+			counts[2]++;
+		}
+	}
+
+	/**
+	 * Returns the file the output of a file is written to.
+	 */
+	static File target(File file, File outDir) {
+		return outDir == null ? new File(file.getPath() + ".out") : new File(
+				outDir, file.getName());
+	}
+
+	private static void usage() {
+		System.out.println("Usage: BatchTransliterator -layout <layout.xml>"
+				+ " [-out <dir>] [-threads <n>] [-mmap] [-nocache]"
+				+ " <file>...");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) {
+		String layoutName = null;
+		File outDir = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean mapped = false;
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-layout")) {
+					layoutName = args[++i];
+				} else if (args[i].equals("-out")) {
+					outDir = new File(args[++i]);
+				} else if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-mmap")) {
+					mapped = true;
+				} else if (args[i].equals("-nocache")) {
+					WordCache.shared.setEnabled(false);
+				} else {
+					files.add(new File(args[i]));
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (layoutName == null || files.isEmpty() || threads < 1) {
+			usage();
+		}
+		if (outDir != null && !outDir.isDirectory() && !outDir.mkdirs()) {
+			System.out.println("Can not create " + outDir);
+			System.exit(1);
+		}
+
+		Layout layout = Layout.load(layoutName);
+		if (layout.isEmpty()) {
+			System.out.println("Keyboard layout " + layoutName
+					+ " has no patterns");
+			System.exit(1);
+		}
+
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Convert all = new Convert(files, outDir, layout);
+		if (mapped) {
+			for (File file : files) {
+				convertMapped(file, outDir, layout, pool, all.counts);
+			}
+		} else {
+			pool.invoke(all);
+		}
+		long nanos = Math.max(1, System.nanoTime() - start);
+
+		System.out.println((files.size() - all.counts[2]) + " files, "
+				+ all.counts[0] + " chars in, " + all.counts[1]
+				+ " chars out, " + nanos / 1000000 + " ms, "
+				+ (all.counts[0] * 1000000000L / nanos) + " chars/s on "
+				+ threads + " threads");
+		if (WordCache.shared.isEnabled()) {
+			System.out.println("Word cache: "
+					+ WordCache.shared.getWords()
+					+ " words, "
+					+ Math.round(WordCache.shared.getHitRate() * 1000) / 10.0
+					+ "% of the words found");
+		}
+		if (all.counts[2] > 0) {
+			System.exit(1);
+		}
+	}
+}
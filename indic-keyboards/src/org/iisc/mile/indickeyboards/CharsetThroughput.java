@@ -0,0 +1,318 @@
+/** ********************************************************************
+ * File:           CharsetThroughput.java
+ * Description:    Measures the Indic charsets
+ * Created:        Mon Oct 19 05:40:51 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the charsets of <code>IndicCharsets</code> against converters
+ * which do the same with <code>String.replace()</code>, one character of the
+ * table after another, as the scripts for the old documents did; and ISCII
+ * Devanagari against the x-ISCII91 of the JDK, where there is one.
+ * 
+ * <pre>
+ * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.CharsetThroughput
+ *      [-mb n] [-runs n]
+ * </pre>
+ * 
+ * The text is made of random words of the letters of each charset, about n
+ * MB of it (4 by default), and each converter is timed at its best of the
+ * runs (5 by default), in MB of encoded bytes a second. Run from the
+ * directory of <em>kblayouts</em>, for the typewriter codes.
+ */
+public class CharsetThroughput {
+
+	/**
+	 * A table of what each byte, or pair of bytes, decodes to, for the
+	 * converters with <code>String.replace()</code>. The pairs come first,
+	 * and the longest characters first when encoding.
+	 */
+	private static final class Table {
+		final List<String> bytes = new ArrayList<String>();
+		final List<String> chars = new ArrayList<String>();
+
+		/**
+		 * Adds the bytes, held as the chars of ISO-8859-1, unless they
+		 * decode to nothing new.
+		 */
+		void add(String b, String c) {
+			if (c.length() > 0 && !c.equals(b) && c.indexOf('\uFFFD') < 0
+					&& !chars.contains(c)) {
+				bytes.add(b);
+				chars.add(c);
+			}
+		}
+
+		String decode(byte[] encoded) throws Exception {
+			String text = new String(encoded, "ISO-8859-1");
+			for (int i = 0; i < bytes.size(); i++) {
+				text = text.replace(bytes.get(i), chars.get(i));
+			}
+			return text;
+		}
+
+		byte[] encode(String text) throws Exception {
+			for (int length = 3; length > 0; length--) {
+				for (int i = 0; i < chars.size(); i++) {
+					if (chars.get(i).length() == length) {
+						text = text.replace(chars.get(i), bytes.get(i));
+					}
+				}
+			}
+			return text.getBytes("ISO-8859-1");
+		}
+	}
+
+	private static String decodeAll(Charset charset, String bytes) {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		try {
+			return decoder.decode(
+					ByteBuffer.wrap(bytes.getBytes("ISO-8859-1"))).toString();
+		} catch (Exception e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Makes the table of a charset by decoding each byte and each pair of
+	 * bytes of the given ones. A pair is kept where it is not just its two
+	 * bytes, as ISCII's nukta forms.
+	 */
+	private static Table table(Charset charset, String alphabet) {
+		Table table = new Table();
+		List<String> singles = new ArrayList<String>();
+		for (int i = 0; i < alphabet.length(); i++) {
+			singles.add(alphabet.substring(i, i + 1));
+		}
+		for (String first : singles) {
+			for (String second : singles) {
+				String pair = decodeAll(charset, first + second);
+				if (!pair.equals(decodeAll(charset, first)
+						+ decodeAll(charset, second))) {
+					table.add(first + second, pair);
+				}
+			}
+		}
+		for (String single : singles) {
+			table.add(single, decodeAll(charset, single));
+		}
+		return table;
+	}
+
+	/**
+	 * Returns about the given number of bytes of words made of random
+	 * bytes of the alphabet, with spaces and newlines.
+	 */
+	private static byte[] text(String alphabet, int size, Random random) {
+		byte[] text = new byte[size];
+		int word = 0;
+		for (int i = 0; i < size; i++) {
+			if (word > 2 + random.nextInt(6)) {
+				text[i] = (byte) (random.nextInt(12) == 0 ? '\n' : ' ');
+				word = 0;
+			} else {
+				text[i] = (byte) alphabet.charAt(random.nextInt(alphabet
+						.length()));
+				word++;
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Prints the MB a second of a run, at its best of the given runs.
+	 */
+	private static void report(String name, long size, long[] nanos) {
+		long best = Long.MAX_VALUE;
+		for (long n : nanos) {
+			best = Math.min(best, n);
+		}
+		System.out.println(String.format("  %-28s %8.1f MB/s", name, size
+				* 1e9 / Math.max(1, best) / (1 << 20)));
+	}
+
+	private static long[] decode(Charset charset, byte[] bytes, int chars,
+			int runs) {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer out = CharBuffer.allocate(chars + 16);
+		long[] nanos = new long[runs];
+		for (int r = 0; r < runs; r++) {
+			long start = System.nanoTime();
+			decoder.reset();
+			out.clear();
+			ByteBuffer in = ByteBuffer.wrap(bytes);
+			decoder.decode(in, out, true);
+			decoder.flush(out);
+			nanos[r] = System.nanoTime() - start;
+		}
+		return nanos;
+	}
+
+	private static long[] encode(Charset charset, String text, int size,
+			int runs) {
+		CharsetEncoder encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer out = ByteBuffer.allocate(size * 2 + 16);
+		long[] nanos = new long[runs];
+		for (int r = 0; r < runs; r++) {
+			long start = System.nanoTime();
+			encoder.reset();
+			out.clear();
+			encoder.encode(CharBuffer.wrap(text), out, true);
+			encoder.flush(out);
+			nanos[r] = System.nanoTime() - start;
+		}
+		return nanos;
+	}
+
+	/**
+	 * Times one charset and its converters with <code>String.replace()</code>,
+	 * and a charset of the JDK for the same code if there is one.
+	 */
+	private static void measure(Charset charset, String alphabet,
+			Charset jdk, int size, int runs) throws Exception {
+		byte[] bytes = text(alphabet, size, new Random(size));
+		String text = decodeAll(charset, new String(bytes, "ISO-8859-1"));
+		Table table = table(charset, alphabet);
+		System.out.println(charset.name() + ", " + bytes.length + " bytes, "
+				+ text.length() + " chars, " + table.bytes.size()
+				+ " entries in the table");
+
+		report("decoder", bytes.length, decode(charset, bytes, text
+				.length(), runs));
+		if (jdk != null) {
+			report(jdk.name() + " decoder", bytes.length, decode(jdk, bytes,
+					text.length(), runs));
+		}
+		long[] nanos = new long[runs];
+		String replaced = null;
+		for (int r = 0; r < runs; r++) {
+			long start = System.nanoTime();
+			replaced = table.decode(bytes);
+			nanos[r] = System.nanoTime() - start;
+		}
+		report("String.replace() decoding", bytes.length, nanos);
+		if (!replaced.equals(text)) {
+			System.out.println("  (String.replace() decodes differently)");
+		}
+
+		report("encoder", bytes.length, encode(charset, text, bytes.length,
+				runs));
+		if (jdk != null) {
+			report(jdk.name() + " encoder", bytes.length, encode(jdk, text,
+					bytes.length, runs));
+		}
+		byte[] encoded = null;
+		for (int r = 0; r < runs; r++) {
+			long start = System.nanoTime();
+			encoded = table.encode(text);
+			nanos[r] = System.nanoTime() - start;
+		}
+		report("String.replace() encoding", bytes.length, nanos);
+		if (!table.decode(encoded).equals(text)) {
+			System.out.println("  (String.replace() encodes differently)");
+		}
+	}
+
+	/**
+	 * Returns the bytes of a charset which decode to a character, as the
+	 * chars of ISO-8859-1, less those which change the state of the
+	 * decoder.
+	 */
+	private static String alphabet(Charset charset, int from, int to,
+			String left) throws Exception {
+		StringBuilder alphabet = new StringBuilder();
+		for (int b = from; b < to; b++) {
+			String single = String.valueOf((char) b);
+			String decoded = decodeAll(charset, single);
+			if (decoded.length() > 0 && decoded.indexOf('\uFFFD') < 0
+					&& left.indexOf(b) < 0) {
+				alphabet.append(single);
+			}
+		}
+		return alphabet.toString();
+	}
+
+	private static void usage() {
+		System.out.println("Usage: CharsetThroughput [-mb <n>] [-runs <n>]");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int megabytes = 4;
+		int runs = 5;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-mb")) {
+					megabytes = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-runs")) {
+					runs = Integer.parseInt(args[++i]);
+				} else {
+					usage();
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (megabytes < 1 || runs < 1) {
+			usage();
+		}
+		int size = megabytes << 20;
+
+		Charset jdk = Charset.isSupported("x-ISCII91") ? Charset
+				.forName("x-ISCII91") : null;
+		IndicCharsets provider = new IndicCharsets();
+		for (String name : new String[] { "x-iscii-de", "x-iscii-ka" }) {
+			Charset charset = provider.charsetForName(name);
+			/*
+			 * ATR and EXT switch the script, and the halant after a halant
+			 * is a joiner, which String.replace() does not know of.
+			 */
+			measure(charset, alphabet(charset, 0xA0, 0x100, "\u00e8\u00ef\u00f0"),
+					name.equals("x-iscii-de") ? jdk : null, size, runs);
+		}
+		for (String layout : IndicCharsets.TYPEWRITER_LAYOUTS) {
+			String name = "x-"
+					+ layout.substring(0, layout.indexOf("_inscript"))
+							.replace('_', '-');
+			Charset charset = provider.charsetForName(name);
+			if (charset == null) {
+				System.out.println(name + ": no " + layout + " in kblayouts");
+				continue;
+			}
+			measure(charset, alphabet(charset, 0x21, 0x7F, ""), null, size,
+					runs);
+		}
+	}
+}
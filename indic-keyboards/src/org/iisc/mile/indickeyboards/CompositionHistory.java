@@ -0,0 +1,201 @@
+/** ********************************************************************
+ * File:           CompositionHistory.java
+ * Description:    The state of a session before each of its last keys
+ * Created:        Mon Oct 19 05:46:06 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * The state of a session before each of its last keys, so that each
+ * backspace takes the session back to where it was before the key whose
+ * output it deleted. Kept in a ring of fixed size in arrays, one per field
+ * of the state, so a key or a backspace costs a few stores and nothing is
+ * allocated while typing; the oldest keys are forgotten.
+ * <p>
+ * Each key is kept with the number of characters of its output still
+ * there, as counted by the session from what the parsers put and erase. A
+ * key which erases some of the output of the keys before it, like a vowel
+ * sign which replaces a halant, takes those characters off them. A
+ * backspace deletes one character: it is taken off the last key, after
+ * dropping the keys with no output left, and the key is undone when it has
+ * none left either.
+ */
+final class CompositionHistory {
+
+	/**
+	 * Keys kept by a session. At least as many as the keys of a word of
+	 * the <code>WordCache</code>, whose keys are all kept with the word.
+	 */
+	static final int CAPACITY = 64;
+
+	private final int capacity;
+	private final int[] flags;
+	private final int[] flagLogs;
+	private final String[] keys;
+	private final String[] keyLogs;
+	private final int[] counts;
+	/**
+	 * Characters of the output of each key still there.
+	 */
+	private final int[] chars;
+	/**
+	 * Index of the next key, and number of keys held.
+	 */
+	private int next = 0;
+	private int size = 0;
+	/**
+	 * Keys held since the history was made.
+	 */
+	private long pushed = 0;
+
+	CompositionHistory(int capacity) {
+		this.capacity = capacity;
+		flags = new int[capacity];
+		flagLogs = new int[capacity];
+		keys = new String[capacity];
+		keyLogs = new String[capacity];
+		counts = new int[capacity];
+		chars = new int[capacity];
+	}
+
+	private int last() {
+		return (next + capacity - 1) % capacity;
+	}
+
+	/**
+	 * Keeps a key with the state of the session before it, and the number
+	 * of characters it added to the output, less than 0 if it erased more
+	 * than it put.
+	 */
+	void push(int flag, int flagLog, String key, String keyLog, int count,
+			int added) {
+		/*
+		 * What the key erased was output of the keys before it.
+		 */
+		for (int i = 0, at = last(); added < 0 && i < size; i++) {
+			int taken = Math.min(chars[at], -added);
+			chars[at] -= taken;
+			added += taken;
+			at = (at + capacity - 1) % capacity;
+		}
+		flags[next] = flag;
+		flagLogs[next] = flagLog;
+		keys[next] = key;
+		keyLogs[next] = keyLog;
+		counts[next] = count;
+		chars[next] = Math.max(added, 0);
+		next = (next + 1) % capacity;
+		if (size < capacity) {
+			size++;
+		}
+		pushed++;
+	}
+
+	/**
+	 * Undoes the last key, putting back the state of the session before
+	 * it.
+	 */
+	private void pop(Session session) {
+		int at = last();
+		session.previousConsonantFlag = flags[at];
+		session.previousConsonantFlaglog = flagLogs[at];
+		session.previousChar = keys[at];
+		session.previousCharlog = keyLogs[at];
+		session.tamil99count = counts[at];
+		keys[at] = null;
+		keyLogs[at] = null;
+		next = at;
+		size--;
+	}
+
+	/**
+	 * Takes a backspace, which has deleted one character of the output.
+	 * When the key it came from still has output left, what is left no
+	 * longer ends as the parsers left it, so the session is left with no
+	 * previous consonant; so it is when no key is held.
+	 */
+	void backspace(Session session) {
+		while (size > 0 && chars[last()] == 0) {
+			pop(session);
+		}
+		if (size > 0 && --chars[last()] == 0) {
+			pop(session);
+			return;
+		}
+		session.previousConsonantFlag = 0;
+		session.previousChar = "";
+		session.tamil99count = 0;
+	}
+
+	/**
+	 * Forgets the last keys without undoing them.
+	 */
+	void drop(int count) {
+		for (int i = 0; i < count && size > 0; i++) {
+			int at = last();
+			keys[at] = null;
+			keyLogs[at] = null;
+			next = at;
+			size--;
+		}
+	}
+
+	void clear() {
+		drop(size);
+	}
+
+	/**
+	 * @return Returns the number of keys held since the history was made,
+	 *         which tells how many were added since an earlier call.
+	 */
+	long pushed() {
+		return pushed;
+	}
+
+	/**
+	 * Returns a history of its own of the last keys held.
+	 */
+	CompositionHistory last(int count) {
+		count = Math.min(count, size);
+		CompositionHistory copy = new CompositionHistory(Math.max(count, 1));
+		for (int i = count; i > 0; i--) {
+			int at = (next + capacity - i) % capacity;
+			copy.push(flags[at], flagLogs[at], keys[at], keyLogs[at],
+					counts[at], chars[at]);
+		}
+		return copy;
+	}
+
+	/**
+	 * Keeps all the keys of another history, as kept with a word of the
+	 * <code>WordCache</code>, whose state before the word is marked; the
+	 * marks are given the state of the session before the word.
+	 */
+	void pushAll(CompositionHistory word, String beforeChar,
+			String beforeCharlog, int beforeFlaglog) {
+		for (int i = word.size; i > 0; i--) {
+			int at = (word.next + word.capacity - i) % word.capacity;
+			int flagLog = word.flagLogs[at];
+			if (flagLog == WordCache.Word.BEFORE_FLAG) {
+				flagLog = beforeFlaglog;
+			}
+			push(word.flags[at], flagLog, WordCache.Word.unmark(word.keys[at],
+					beforeChar, beforeCharlog), WordCache.Word.unmark(
+					word.keyLogs[at], beforeChar, beforeCharlog),
+					word.counts[at], word.chars[at]);
+		}
+	}
+}
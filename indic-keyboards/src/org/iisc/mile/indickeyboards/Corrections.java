@@ -0,0 +1,140 @@
+/** ********************************************************************
+ * File:           Corrections.java
+ * Description:    Corrections of the words typed, worked out on a thread
+ * Created:        Mon Oct 19 06:04:53 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Looks up the corrections of the words typed, with the
+ * <code>SpellingCorrector</code> of the language of the layout, and tells
+ * the listener of a word which is not in the dictionary but is close to a
+ * word which is. Nothing is replaced in the text.
+ * <p>
+ * The sessions of the active window hand over each word as it ends, and
+ * only add it to a queue; the words are corrected one after another on a
+ * thread of their own, named "Spelling Corrector". A word takes some tens
+ * of microseconds, far less than the time between the words of the
+ * fastest typist. A word the user has typed <code>KNOWN</code> times, as
+ * learned by the <code>UserDictionary</code>, is taken to be right.
+ */
+public class Corrections {
+
+	/**
+	 * Told of the corrections, on the thread of the corrections.
+	 */
+	public interface Listener {
+		void corrected(String word, String correction);
+	}
+
+	/**
+	 * Times a word must have been typed for it not to be corrected.
+	 */
+	static final int KNOWN = 3;
+
+	/**
+	 * A word to correct, and the layout it was typed with.
+	 */
+	private static final class Word {
+		final Layout layout;
+		final String word;
+
+		Word(Layout layout, String word) {
+			this.layout = layout;
+			this.word = word;
+		}
+	}
+
+	private static volatile Listener listener;
+	private static volatile boolean enabled = false;
+	private static final ConcurrentLinkedQueue<Word> words = new ConcurrentLinkedQueue<Word>();
+	private static Thread thread;
+
+	public static void setListener(Listener listener) {
+		Corrections.listener = listener;
+	}
+
+	/**
+	 * Turns the corrections on or off. The thread is started the first time
+	 * they are turned on.
+	 */
+	public static synchronized void setEnabled(boolean enabled) {
+		if (enabled && thread == null) {
+			thread = new Thread(new Runnable() {
+				public void run() {
+					correct();
+				}
+			});
+			thread.setName("Spelling Corrector");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		Corrections.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Queues a word which has ended, for its correction. Called on the
+	 * thread monitoring the keys.
+	 */
+	static void check(Layout layout, CharSequence word) {
+		if (!enabled || listener == null || layout == null) {
+			return;
+		}
+		words.offer(new Word(layout, word.toString()));
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Returns the correction of a word, or null if it is right or there is
+	 * none.
+	 */
+	static String correct(Layout layout, String word) {
+		SpellingCorrector corrector = SpellingCorrector.forLayout(layout);
+		if (corrector == null) {
+			return null;
+		}
+		UserDictionary user = UserDictionary.shared();
+		if (user != null && user.count(word) >= KNOWN) {
+			return null;
+		}
+		return corrector.correct(word);
+	}
+
+	/**
+	 * The thread of the corrections.
+	 */
+	private static void correct() {
+		while (true) {
+			Word next = words.poll();
+			if (next == null) {
+				LockSupport.park(Corrections.class);
+				continue;
+			}
+			String correction = correct(next.layout, next.word);
+			Listener current = listener;
+			if (correction != null && current != null) {
+				current.corrected(next.word, correction);
+			}
+		}
+	}
+}
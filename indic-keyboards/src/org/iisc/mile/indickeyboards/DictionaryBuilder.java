@@ -0,0 +1,660 @@
+/** ********************************************************************
+ * File:           DictionaryBuilder.java
+ * Description:    Compiles word lists into the dictionaries of the suggestions
+ * Created:        Mon Oct 19 05:58:11 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Compiles word lists into a <code>WordDictionary</code>, offline:
+ *
+ * <pre>
+ * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.DictionaryBuilder
+ *      -out dictionaries/kan.dict [-min n] [-spell dictionaries/kan.spell]
+ *      [-model dictionaries/kan.lm] file...
+ * </pre>
+ *
+ * Each line of a list holds a word, optionally followed by a tab or spaces
+ * and the number of times it was seen; a word without a number counts
+ * once, and the counts of a word found more than once are added up. Blank
+ * lines and lines beginning with "#" are skipped. The lists are read as
+ * UTF-8. With -min the words seen fewer than n times are left out. With
+ * -spell the <code>SpellingCorrector</code> index of the words is written
+ * too; it takes about an int for each of the 50 or so deletes of a word,
+ * on disk and, while it is built, twice that on the heap. With -model the
+ * <code>LanguageModel</code> of the chars of the words, weighted by their
+ * counts, is written too.
+ * <p>
+ * The words are sorted and added one after another, and the states of a
+ * word are written as soon as no later word can pass through them. A state
+ * which is the same as one already written, same weight and same arcs to
+ * the same states, is not written again but shared (Daciuk et al.,
+ * incremental construction of minimal acyclic automata). Besides the words
+ * of the lists, only the states of the word added last and what tells the
+ * states written apart are held on the heap.
+ */
+public class DictionaryBuilder {
+
+	/**
+	 * A state of the word being added, not written yet. The target of its
+	 * last arc is the next state of the word; the others are written.
+	 */
+	private static final class State {
+		char[] labels = new char[4];
+		int[] targets = new int[4];
+		int arcs = 0;
+		int weight = 0;
+
+		void add(char label) {
+			if (arcs == labels.length) {
+				labels = Arrays.copyOf(labels, arcs * 2);
+				targets = Arrays.copyOf(targets, arcs * 2);
+			}
+			labels[arcs++] = label;
+		}
+	}
+
+	/**
+	 * What makes a state the same as another: its weight and its arcs.
+	 */
+	private static final class Signature {
+		final int[] values;
+		final int hash;
+
+		Signature(State state) {
+			values = new int[1 + 2 * state.arcs];
+			values[0] = state.weight;
+			for (int i = 0; i < state.arcs; i++) {
+				values[1 + 2 * i] = state.labels[i];
+				values[2 + 2 * i] = state.targets[i];
+			}
+			hash = Arrays.hashCode(values);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Signature
+					&& Arrays.equals(values, ((Signature) o).values);
+		}
+	}
+
+	/**
+	 * The states written, growing as needed.
+	 */
+	private byte[] bytes = new byte[1 << 16];
+	private int length = 0;
+	/**
+	 * The offsets of the states written, by signature.
+	 */
+	private final Map<Signature, Integer> written = new HashMap<Signature, Integer>();
+	/**
+	 * The states of the word added last, from the root.
+	 */
+	private final List<State> path = new ArrayList<State>();
+	private String previous = "";
+	private int words = 0;
+
+	public DictionaryBuilder() {
+		path.add(new State());
+	}
+
+	private void writeByte(int b) {
+		if (length == bytes.length) {
+			bytes = Arrays.copyOf(bytes, length * 2);
+		}
+		bytes[length++] = (byte) b;
+	}
+
+	private void writeVarint(int value) {
+		while ((value & ~0x7f) != 0) {
+			writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		writeByte(value);
+	}
+
+	/**
+	 * Writes a state, unless the same one has been written, and returns its
+	 * offset.
+	 */
+	private int write(State state) {
+		Signature signature = new Signature(state);
+		Integer offset = written.get(signature);
+		if (offset != null) {
+			return offset.intValue();
+		}
+		int highest = state.weight;
+		for (int i = 0; i < state.arcs; i++) {
+			highest = Math.max(highest, bytes[state.targets[i]] & 0xff);
+		}
+		int start = length;
+		writeByte(highest);
+		writeByte(state.weight);
+		writeVarint(state.arcs);
+		int label = 0;
+		for (int i = 0; i < state.arcs; i++) {
+			writeVarint(state.labels[i] - label);
+			label = state.labels[i];
+			writeVarint(start - state.targets[i]);
+		}
+		written.put(signature, Integer.valueOf(start));
+		return start;
+	}
+
+	/**
+	 * Writes the states of the word added last beyond the first depth
+	 * chars, which the next word does not pass through.
+	 */
+	private void writePath(int depth) {
+		for (int i = path.size() - 1; i > depth; i--) {
+			State parent = path.get(i - 1);
+			parent.targets[parent.arcs - 1] = write(path.remove(i));
+		}
+	}
+
+	/**
+	 * Adds a word, which must come after the word added before it in the
+	 * order of <code>String.compareTo()</code>.
+	 *
+	 * @param weight
+	 *            The weight of the word, from 1 to 255
+	 */
+	public void add(String word, int weight) {
+		if (word.compareTo(previous) <= 0 && words > 0) {
+			throw new IllegalArgumentException(word + " is not after "
+					+ previous);
+		}
+		int common = 0;
+		int max = Math.min(word.length(), previous.length());
+		while (common < max && word.charAt(common) == previous.charAt(common)) {
+			common++;
+		}
+		writePath(common);
+		for (int i = common; i < word.length(); i++) {
+			path.get(path.size() - 1).add(word.charAt(i));
+			path.add(new State());
+		}
+		path.get(path.size() - 1).weight = weight;
+		previous = word;
+		words++;
+	}
+
+	/**
+	 * Writes the rest of the states and the dictionary to a stream.
+	 *
+	 * @return Returns the number of bytes written.
+	 */
+	public int finish(OutputStream out) throws IOException {
+		writePath(0);
+		int root = write(path.get(0));
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(WordDictionary.MAGIC);
+		data.writeInt(root);
+		data.writeInt(words);
+		data.writeInt(length);
+		data.write(bytes, 0, length);
+		data.flush();
+		return WordDictionary.HEADER + length;
+	}
+
+	/**
+	 * @return Returns the number of states written so far.
+	 */
+	public int getStates() {
+		return written.size();
+	}
+
+	/**
+	 * Returns the weight of a count, on a logarithmic scale from 1 for a
+	 * word seen once to 255 for the most frequent word.
+	 */
+	static int weight(long count, long highest) {
+		if (highest <= 1) {
+			return 255;
+		}
+		return 1 + (int) Math.round(254 * Math.log(count)
+				/ Math.log(highest));
+	}
+
+	/**
+	 * Adds the counts of the words of a list.
+	 */
+	static void read(File file, Map<String, long[]> counts)
+			throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.length() > 0 && line.charAt(0) == '\uFEFF') {
+					line = line.substring(1);
+				}
+				StringTokenizer tokens = new StringTokenizer(line);
+				if (!tokens.hasMoreTokens()) {
+					continue;
+				}
+				String word = tokens.nextToken();
+				if (word.startsWith("#")) {
+					continue;
+				}
+				long count = 1;
+				if (tokens.hasMoreTokens()) {
+					try {
+						count = Math.max(1, Long.parseLong(tokens.nextToken()));
+					} catch (NumberFormatException e) {
+						System.out.println(file + ": no count in \"" + line
+								+ "\", counted once");
+					}
+				}
+				long[] total = counts.get(word);
+				if (total == null) {
+					counts.put(word, new long[] { count });
+				} else {
+					total[0] += count;
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the spelling index of sorted words and their weights.
+	 *
+	 * @return Returns the number of bytes written.
+	 * @see SpellingCorrector
+	 */
+	static long writeSpelling(String[] sorted, int[] weights, File target)
+			throws IOException {
+		int words = 0;
+		long deletes = 0;
+		int chars = 0;
+		for (String word : sorted) {
+			if (word.length() <= SpellingCorrector.MAX_LENGTH) {
+				int length = word.length();
+				deletes += 1 + length + length * (length - 1) / 2;
+				chars += length;
+				words++;
+			}
+		}
+		int bits = 4;
+		while (bits < 28 && (1L << bits) < deletes / 2) {
+			bits++;
+		}
+		int mask = (1 << bits) - 1;
+		/*
+		 * The bucket of each delete in the high half, the id of its word in
+		 * the low half, so that sorting puts the ids in their buckets.
+		 */
+		long[] entries = new long[(int) Math.min(deletes, Integer.MAX_VALUE - 8)];
+		int[] starts = new int[words + 1];
+		byte[] bytes = new byte[words];
+		char[] text = new char[chars];
+		int n = 0;
+		int id = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			String word = sorted[i];
+			if (word.length() > SpellingCorrector.MAX_LENGTH) {
+				continue;
+			}
+			int[] hashes = SpellingCorrector.deletes(word);
+			for (int h = 0; h < hashes.length; h++) {
+				if (h == 0 || hashes[h] != hashes[h - 1]) {
+					entries[n++] = ((long) (hashes[h] & mask) << 32) | id;
+				}
+			}
+			word.getChars(0, word.length(), text, starts[id]);
+			starts[id + 1] = starts[id] + word.length();
+			bytes[id] = (byte) weights[i];
+			id++;
+		}
+		Arrays.sort(entries, 0, n);
+		int ids = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || entries[i] != entries[i - 1]) {
+				entries[ids++] = entries[i];
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(target), 1 << 16));
+		try {
+			out.writeInt(SpellingCorrector.MAGIC);
+			out.writeInt(words);
+			out.writeInt(bits);
+			out.writeInt(ids);
+			out.writeInt(chars);
+			int e = 0;
+			for (int bucket = 0; bucket <= mask; bucket++) {
+				out.writeInt(e);
+				while (e < ids && (int) (entries[e] >>> 32) == bucket) {
+					e++;
+				}
+			}
+			out.writeInt(ids);
+			for (int i = 0; i < ids; i++) {
+				out.writeInt((int) entries[i]);
+			}
+			for (int i = 0; i <= words; i++) {
+				out.writeInt(starts[i]);
+			}
+			out.write(bytes);
+			for (int i = 0; i < chars; i++) {
+				out.writeChar(text[i]);
+			}
+		} finally {
+			out.close();
+		}
+		return SpellingCorrector.HEADER + 4L * (mask + 2) + 4L * ids + 4L
+				* (words + 1) + words + 2L * chars;
+	}
+
+	/**
+	 * Writes the language model of the chars of sorted words and their
+	 * counts.
+	 *
+	 * @return Returns the number of n-grams written.
+	 * @see LanguageModel
+	 */
+	static int writeModel(String[] sorted, long[] counts, File target)
+			throws IOException {
+		/*
+		 * The times each n-gram is seen, and each context: the two chars
+		 * before for a trigram, the char before for a bigram and all the
+		 * chars for a single char.
+		 */
+		Map<Long, long[]> ngrams = new HashMap<Long, long[]>();
+		Map<Long, long[]> contexts = new HashMap<Long, long[]>();
+		char boundary = LanguageModel.BOUNDARY;
+		for (int i = 0; i < sorted.length; i++) {
+			String padded = "" + boundary + boundary + sorted[i] + boundary;
+			for (int j = 2; j < padded.length(); j++) {
+				char a = padded.charAt(j - 2);
+				char b = padded.charAt(j - 1);
+				char c = padded.charAt(j);
+				for (int order = 1; order <= 3; order++) {
+					count(ngrams, LanguageModel.key(order, a, b, c), counts[i]);
+					count(contexts, LanguageModel.key(order, a, b, '\0'),
+							counts[i]);
+				}
+			}
+		}
+		int n = ngrams.size();
+		long[] keys = new long[n];
+		byte[] costs = new byte[n];
+		int k = 0;
+		for (Map.Entry<Long, long[]> entry : ngrams.entrySet()) {
+			long key = entry.getKey().longValue();
+			long context = contexts.get(key & ~0xffffL)[0];
+			keys[k] = key;
+			costs[k] = (byte) LanguageModel.quantise((double) entry
+					.getValue()[0] / context);
+			k++;
+		}
+		ngrams = contexts = null;
+
+		int buckets = Math.max(1, n / 4);
+		int[] displacements = perfectHash(keys, buckets);
+		short[] fingerprints = new short[n];
+		byte[] placed = new byte[n];
+		for (int i = 0; i < n; i++) {
+			int displacement = displacements[LanguageModel.bucket(keys[i],
+					buckets)];
+			int place = displacement < 0 ? -1 - displacement : LanguageModel
+					.place(keys[i], displacement, n);
+			fingerprints[place] = LanguageModel.fingerprint(keys[i]);
+			placed[place] = costs[i];
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(target), 1 << 16));
+		try {
+			out.writeInt(LanguageModel.MAGIC);
+			out.writeInt(n);
+			out.writeInt(buckets);
+			for (int i = 0; i < buckets; i++) {
+				out.writeInt(displacements[i]);
+			}
+			for (int i = 0; i < n; i++) {
+				out.writeShort(fingerprints[i]);
+			}
+			out.write(placed);
+		} finally {
+			out.close();
+		}
+		return n;
+	}
+
+	private static void count(Map<Long, long[]> counts, long key, long count) {
+		Long boxed = Long.valueOf(key);
+		long[] total = counts.get(boxed);
+		if (total == null) {
+			counts.put(boxed, new long[] { count });
+		} else {
+			total[0] += count;
+		}
+	}
+
+	/**
+	 * Returns the second hash of each bucket of distinct keys, or -1 less
+	 * the place of the key of a bucket of one, such that no two keys have
+	 * the same place. The largest buckets are placed first, while most
+	 * places are free, and the buckets of one last, in the places left.
+	 */
+	static int[] perfectHash(long[] keys, int buckets) throws IOException {
+		int n = keys.length;
+		int[] starts = new int[buckets + 1];
+		for (int i = 0; i < n; i++) {
+			starts[LanguageModel.bucket(keys[i], buckets) + 1]++;
+		}
+		for (int b = 0; b < buckets; b++) {
+			starts[b + 1] += starts[b];
+		}
+		int[] members = new int[n];
+		int[] filled = new int[buckets];
+		for (int i = 0; i < n; i++) {
+			int b = LanguageModel.bucket(keys[i], buckets);
+			members[starts[b] + filled[b]++] = i;
+		}
+		/*
+		 * The size of each bucket in the high half, so that sorting puts
+		 * the largest last.
+		 */
+		long[] order = new long[buckets];
+		for (int b = 0; b < buckets; b++) {
+			order[b] = ((long) (starts[b + 1] - starts[b]) << 32) | b;
+		}
+		Arrays.sort(order);
+
+		int[] displacements = new int[buckets];
+		boolean[] taken = new boolean[n];
+		int[] places = new int[64];
+		int free = 0;
+		for (int o = buckets - 1; o >= 0; o--) {
+			int b = (int) order[o];
+			int size = starts[b + 1] - starts[b];
+			if (size == 0) {
+				break;
+			}
+			if (size == 1) {
+				while (taken[free]) {
+					free++;
+				}
+				taken[free] = true;
+				displacements[b] = -1 - free;
+				continue;
+			}
+			if (places.length < size) {
+				places = new int[size];
+			}
+			for (int d = 0;; d++) {
+				if (d == 1 << 24) {
+					throw new IOException("no perfect hash found");
+				}
+				boolean fits = true;
+				for (int m = 0; m < size && fits; m++) {
+					int place = LanguageModel.place(keys[members[starts[b] + m]],
+							d, n);
+					fits = !taken[place];
+					for (int j = 0; j < m && fits; j++) {
+						fits = places[j] != place;
+					}
+					places[m] = place;
+				}
+				if (fits) {
+					for (int m = 0; m < size; m++) {
+						taken[places[m]] = true;
+					}
+					displacements[b] = d;
+					break;
+				}
+			}
+		}
+		return displacements;
+	}
+
+	private static void usage() {
+		System.out.println("Usage: DictionaryBuilder -out <file.dict>"
+				+ " [-min <n>] [-spell <file.spell>] [-model <file.lm>]"
+				+ " <file>...");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) {
+		File target = null;
+		File spelling = null;
+		File model = null;
+		long min = 1;
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-out")) {
+					target = new File(args[++i]);
+				} else if (args[i].equals("-min")) {
+					min = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-spell")) {
+					spelling = new File(args[++i]);
+				} else if (args[i].equals("-model")) {
+					model = new File(args[++i]);
+				} else {
+					files.add(new File(args[i]));
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (target == null || files.isEmpty()) {
+			usage();
+		}
+
+		long start = System.nanoTime();
+		Map<String, long[]> counts = new HashMap<String, long[]>();
+		for (File file : files) {
+			try {
+				read(file, counts);
+			} catch (IOException e) {
+				System.out.println(file + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+		List<String> words = new ArrayList<String>(counts.size());
+		long highest = 1;
+		for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+			if (entry.getValue()[0] >= min) {
+				words.add(entry.getKey());
+				highest = Math.max(highest, entry.getValue()[0]);
+			}
+		}
+		String[] sorted = words.toArray(new String[words.size()]);
+		words = null;
+		Arrays.sort(sorted);
+
+		DictionaryBuilder builder = new DictionaryBuilder();
+		int[] weights = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			weights[i] = weight(counts.get(sorted[i])[0], highest);
+			builder.add(sorted[i], weights[i]);
+		}
+		File parent = target.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			System.out.println("Can not create " + parent);
+			System.exit(1);
+		}
+		int size = 0;
+		try {
+			OutputStream out = new FileOutputStream(target);
+			try {
+				size = builder.finish(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			System.out.println(target + ": " + e.getMessage());
+			System.exit(1);
+		}
+		System.out.println(sorted.length + " words, " + builder.getStates()
+				+ " states, " + size + " bytes written to " + target + " in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+		if (spelling != null) {
+			start = System.nanoTime();
+			try {
+				long bytes = writeSpelling(sorted, weights, spelling);
+				System.out.println(bytes + " bytes written to " + spelling
+						+ " in " + (System.nanoTime() - start) / 1000000
+						+ " ms");
+			} catch (IOException e) {
+				System.out.println(spelling + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+		if (model != null) {
+			start = System.nanoTime();
+			long[] totals = new long[sorted.length];
+			for (int i = 0; i < sorted.length; i++) {
+				totals[i] = counts.get(sorted[i])[0];
+			}
+			try {
+				int ngrams = writeModel(sorted, totals, model);
+				System.out.println(ngrams + " n-grams written to " + model
+						+ " in " + (System.nanoTime() - start) / 1000000
+						+ " ms");
+			} catch (IOException e) {
+				System.out.println(model + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+	}
+}
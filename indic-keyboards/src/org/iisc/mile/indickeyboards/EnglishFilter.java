@@ -0,0 +1,331 @@
+/** ********************************************************************
+ * File:           EnglishFilter.java
+ * Description:    Tells the English words typed in phonetic mode
+ * Created:        Mon Oct 19 06:16:38 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Bloom filter of English words, for putting the English words typed in
+ * the middle of a Kannada or Hindi sentence as they are typed rather than
+ * transliterated. The filter is a few hundred KB of bits for a few hundred
+ * thousand words, memory-mapped from <em>dictionaries/eng.bloom</em>; a
+ * word sets <code>hashes</code> bits, and a word whose bits are all set is
+ * taken to be English. A word which is not in the list passes for one
+ * about once in a thousand, at the size the builder gives the filter by
+ * default.
+ * <p>
+ * The session hashes the keys of the word as they come, in a
+ * <code>Token</code>, so a key costs the same however long the word, and
+ * the word is looked up with a few reads of the map when it ends. Only
+ * words of the letters a to z are looked up, whatever their case.
+ * <p>
+ * The filter is made from word lists, like those of
+ * <code>DictionaryBuilder</code>, offline:
+ *
+ * <pre>
+ * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.EnglishFilter
+ *      -out dictionaries/eng.bloom [-error 0.001] file...
+ * </pre>
+ *
+ * The file is laid out as follows, all numbers big-endian:
+ *
+ * <pre>
+ * int magic, int hashes, long bits
+ * long[(bits + 63) / 64] the bits, the lowest bit of each long first
+ * </pre>
+ */
+public final class EnglishFilter {
+
+	static final int MAGIC = 0x494b4231;
+	static final int HEADER = 16;
+
+	/**
+	 * The filter of the English words, named like the dictionaries.
+	 */
+	static final String FILE = "eng.bloom";
+
+	/**
+	 * Shortest word looked up, in keys.
+	 */
+	static final int MIN_LENGTH = 2;
+
+	/**
+	 * The keys of a word and their hashes, worked out one key at a time.
+	 */
+	static final class Token {
+		private final StringBuilder keys = new StringBuilder();
+		private long hash1;
+		private long hash2;
+		/**
+		 * Set while all the keys are letters and none has been deleted.
+		 */
+		private boolean letters;
+
+		Token() {
+			clear();
+		}
+
+		/**
+		 * Starts a new word.
+		 */
+		void clear() {
+			keys.setLength(0);
+			hash1 = 0xcbf29ce484222325L;
+			hash2 = 0;
+			letters = true;
+		}
+
+		/**
+		 * Adds the keys of a pattern. A key which is not a letter leaves
+		 * the word out.
+		 */
+		void add(String pattern) {
+			for (int i = 0; i < pattern.length() && letters; i++) {
+				char c = pattern.charAt(i);
+				if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z')) {
+					letters = false;
+					return;
+				}
+				keys.append(c);
+				c |= 0x20;
+				hash1 = (hash1 ^ c) * 0x100000001b3L;
+				hash2 = Long.rotateLeft((hash2 ^ c) * 0x9e3779b97f4a7c15L, 31);
+			}
+		}
+
+		/**
+		 * Leaves the word out, as when a backspace deletes from it.
+		 */
+		void drop() {
+			letters = false;
+		}
+
+		/**
+		 * Returns true if the word may be looked up.
+		 */
+		boolean isWord() {
+			return letters && keys.length() >= MIN_LENGTH;
+		}
+
+		/**
+		 * @return Returns the keys of the word, as typed.
+		 */
+		String text() {
+			return keys.toString();
+		}
+
+		/**
+		 * Returns the bit of the word for the hash numbered i.
+		 */
+		long bit(int i, long bits) {
+			long a = LanguageModel.mix(hash1);
+			long b = LanguageModel.mix(hash2) | 1;
+			return ((a + i * b) >>> 1) % bits;
+		}
+	}
+
+	private static volatile EnglishFilter shared;
+
+	private final ByteBuffer map;
+	private final int hashes;
+	private final long bits;
+
+	private EnglishFilter(ByteBuffer map) throws IOException {
+		this.map = map;
+		this.hashes = map.getInt(4);
+		this.bits = map.getLong(8);
+		if (hashes <= 0 || hashes > 32 || bits <= 0
+				|| HEADER + 8 * ((bits + 63) / 64) > map.limit()) {
+			throw new IOException("Bloom filter is truncated");
+		}
+	}
+
+	/**
+	 * Maps a filter.
+	 */
+	public static EnglishFilter open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (map.limit() < HEADER || map.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not a Bloom filter");
+			}
+			return new EnglishFilter(map);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps the filter of <em>dictionaries</em> in the current directory, and
+	 * looks up the words typed from the next word on. Without the file no
+	 * word is taken to be English.
+	 */
+	public static void load() {
+		File file = new File(System.getProperty("user.dir"),
+				WordDictionary.DIRECTORY + "/" + FILE);
+		try {
+			shared = open(file);
+			System.out.println("English words " + file + ": "
+					+ shared.bits / 8 + " bytes, " + shared.hashes
+					+ " hashes");
+		} catch (IOException e) {
+			System.out.println("Could not read " + file + ": "
+					+ e.getMessage());
+			shared = null;
+		}
+	}
+
+	/**
+	 * Returns the filter loaded, null if there is none.
+	 */
+	static EnglishFilter shared() {
+		return shared;
+	}
+
+	/**
+	 * Returns true if the keys of a word are, most likely, an English word.
+	 */
+	boolean contains(Token token) {
+		if (!token.isWord()) {
+			return false;
+		}
+		for (int i = 0; i < hashes; i++) {
+			long bit = token.bit(i, bits);
+			if ((map.getLong(HEADER + 8 * (int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the filter of some words, and returns the number of words in
+	 * it. Words of other chars than letters are left out.
+	 *
+	 * @param error
+	 *            How often a word which is not in the list is to pass for
+	 *            one
+	 */
+	static int write(List<String> words, double error, File target)
+			throws IOException {
+		List<Token> tokens = new ArrayList<Token>(words.size());
+		for (String word : words) {
+			Token token = new Token();
+			token.add(word);
+			if (token.isWord()) {
+				tokens.add(token);
+			}
+		}
+		int n = Math.max(1, tokens.size());
+		long bits = Math.max(64, (long) Math.ceil(-n * Math.log(error)
+				/ (Math.log(2) * Math.log(2))));
+		int hashes = (int) Math.max(1, Math.min(32, Math.round((double) bits
+				/ n * Math.log(2))));
+		long[] set = new long[(int) ((bits + 63) / 64)];
+		for (Token token : tokens) {
+			for (int i = 0; i < hashes; i++) {
+				long bit = token.bit(i, bits);
+				set[(int) (bit >>> 6)] |= 1L << bit;
+			}
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(target), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(hashes);
+			out.writeLong(bits);
+			for (int i = 0; i < set.length; i++) {
+				out.writeLong(set[i]);
+			}
+		} finally {
+			out.close();
+		}
+		return tokens.size();
+	}
+
+	private static void usage() {
+		System.out.println("Usage: EnglishFilter -out <file.bloom>"
+				+ " [-error <rate>] <file>...");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) {
+		File target = null;
+		double error = 0.001;
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-out")) {
+					target = new File(args[++i]);
+				} else if (args[i].equals("-error")) {
+					error = Double.parseDouble(args[++i]);
+				} else {
+					files.add(new File(args[i]));
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (target == null || files.isEmpty() || error <= 0 || error >= 1) {
+			usage();
+		}
+
+		long start = System.nanoTime();
+		Map<String, long[]> counts = new HashMap<String, long[]>();
+		for (File file : files) {
+			try {
+				DictionaryBuilder.read(file, counts);
+			} catch (IOException e) {
+				System.out.println(file + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+		File parent = target.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			System.out.println("Can not create " + parent);
+			System.exit(1);
+		}
+		try {
+			int words = write(new ArrayList<String>(counts.keySet()), error,
+					target);
+			System.out.println(words + " words, " + target.length()
+					+ " bytes written to " + target + " in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		} catch (IOException e) {
+			System.out.println(target + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/** ********************************************************************
+ * File:           FramedConnection.java
+ * Description:    Binary protocol of the transliteration server
+ * Created:        Mon Oct 19 04:58:09 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Serves a client of the transliteration server which speaks the binary
+ * protocol, for bulk clients which keep many requests in flight on one
+ * connection. The requests are transliterated in parallel and each answer
+ * goes back as soon as it is ready, so the answers may come back in any
+ * order; the client tells them apart by their ID.
+ * <p>
+ * The client starts with the bytes 0xFF and 1, the version of the
+ * protocol, and the server answers with the same two bytes. Then each
+ * request and each answer is a frame, with all numbers big-endian:
+ * 
+ * <pre>
+ * request:  int length, int id, byte type, short layout, byte[] payload
+ * answer:   int length, int id, byte status, byte[] payload
+ * </pre>
+ * 
+ * The length counts the bytes after it. The types of request are:
+ * <ul>
+ * <li><code>OPEN</code>: the payload is the name of a layout of
+ * <em>kblayouts</em> in UTF-8, and the answer is the short by which the
+ * layout is given in the requests which follow. The layout field of the
+ * request is not used.</li>
+ * <li><code>UTF8</code>: the payload is the text in UTF-8, and so is the
+ * answer.</li>
+ * <li><code>CODE_POINTS</code>: the payload is the text as a sequence of
+ * int code points, and so is the answer.</li>
+ * </ul>
+ * The status is <code>OK</code>, or <code>ERROR</code> with the reason in
+ * UTF-8 as the payload. At most <code>MAX_IN_FLIGHT</code> requests of a
+ * connection are transliterated at a time; further requests are not read
+ * until one is answered.
+ */
+class FramedConnection {
+
+	/**
+	 * First byte sent by a client of the binary protocol, which can not
+	 * begin a line of UTF-8.
+	 */
+	static final int PREFACE = 0xff;
+	static final int VERSION = 1;
+
+	static final byte OPEN = 1;
+	static final byte UTF8 = 2;
+	static final byte CODE_POINTS = 3;
+
+	static final byte OK = 0;
+	static final byte ERROR = 1;
+
+	/**
+	 * Longest frame taken, in bytes.
+	 */
+	static final int MAX_FRAME = 4 << 20;
+	/**
+	 * Bytes of a request frame before the payload, after the length.
+	 */
+	static final int HEADER = 7;
+	/**
+	 * Requests of a connection transliterated at a time.
+	 */
+	static final int MAX_IN_FLIGHT = 256;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	/**
+	 * The layouts opened, by their number. Only used by the thread reading
+	 * the requests.
+	 */
+	private final List<Layout> layouts = new ArrayList<Layout>();
+	private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+	/**
+	 * Requests read and not yet answered. The answers are flushed when
+	 * there are none left, so the answers ready together go out together.
+	 * Guarded by <code>out</code>.
+	 */
+	private int pending = 0;
+
+	FramedConnection(InputStream in, OutputStream out) {
+		this.in = new DataInputStream(in);
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	/**
+	 * Serves the requests until the client closes its side, and returns
+	 * when they have all been answered.
+	 */
+	void serve() throws IOException {
+		int version = in.read();
+		synchronized (out) {
+			out.write(PREFACE);
+			out.write(VERSION);
+			out.flush();
+		}
+		if (version != VERSION) {
+			return;
+		}
+		try {
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (length < HEADER || length > MAX_FRAME) {
+					throw new IOException("Bad frame length " + length);
+				}
+				int id = in.readInt();
+				byte type = in.readByte();
+				int layout = in.readUnsignedShort();
+				byte[] payload = new byte[length - HEADER];
+				in.readFully(payload);
+				request(id, type, layout, payload);
+			}
+		} finally {
+			/*
+			 * Wait for the requests in flight to be answered.
+			 */
+			inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+		}
+	}
+
+	private void request(int id, byte type, int number, byte[] payload)
+			throws IOException {
+		if (type == OPEN) {
+			String name = new String(payload, UTF_8);
+			Layout layout = Layouts.get(name);
+			if (layout == null) {
+				answer(id, ERROR, ("no layout " + name).getBytes(UTF_8), false);
+				return;
+			}
+			int index = layouts.indexOf(layout);
+			if (index < 0) {
+				if (layouts.size() > 0xffff) {
+					answer(id, ERROR, "too many layouts".getBytes(UTF_8),
+							false);
+					return;
+				}
+				index = layouts.size();
+				layouts.add(layout);
+			}
+			answer(id, OK, new byte[] { (byte) (index >> 8), (byte) index },
+					false);
+		} else if (type == UTF8 || type == CODE_POINTS) {
+			if (number >= layouts.size()) {
+				answer(id, ERROR, ("layout " + number + " not open")
+						.getBytes(UTF_8), false);
+				return;
+			}
+			inFlight.acquireUninterruptibly();
+			synchronized (out) {
+				pending++;
+			}
+			TransliterationServer.work(new Request(id, type, layouts
+					.get(number), payload));
+		} else {
+			answer(id, ERROR, ("unknown type " + type).getBytes(UTF_8), false);
+		}
+	}
+
+	/**
+	 * Sends an answer. Counted answers are those of the requests in flight.
+	 */
+	private void answer(int id, byte status, byte[] payload, boolean counted)
+			throws IOException {
+		synchronized (out) {
+			try {
+				out.writeInt(5 + payload.length);
+				out.writeInt(id);
+				out.writeByte(status);
+				out.write(payload);
+			} finally {
+				if (counted) {
+					pending--;
+				}
+			}
+			if (pending == 0) {
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Transliterates the text of a request and answers it.
+	 */
+	private class Request implements Runnable {
+		private final int id;
+		private final byte type;
+		private final Layout layout;
+		private final byte[] payload;
+
+		Request(int id, byte type, Layout layout, byte[] payload) {
+			this.id = id;
+			this.type = type;
+			this.layout = layout;
+			this.payload = payload;
+		}
+
+		public void run() {
+			try {
+				byte status = OK;
+				byte[] result;
+				String text = type == UTF8 ? new String(payload, UTF_8)
+						: decode(payload);
+				if (text == null) {
+					status = ERROR;
+					result = "not a sequence of code points".getBytes(UTF_8);
+				} else {
+					Transliterator transliterator = new Transliterator(layout);
+					StringBuilder output = new StringBuilder(text.length() * 2);
+					transliterator.write(text, output);
+					transliterator.finish(output);
+					result = type == UTF8 ? output.toString().getBytes(UTF_8)
+							: encode(output);
+				}
+				answer(id, status, result, true);
+			} catch (IOException e) {
+				// The client has gone; the reading thread finds out.
+			} finally {
+				inFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * Returns the text of a payload of int code points, or null if it is
+	 * not one.
+	 */
+	static String decode(byte[] payload) {
+		if (payload.length % 4 != 0) {
+			return null;
+		}
+		StringBuilder text = new StringBuilder(payload.length / 4);
+		for (int i = 0; i < payload.length; i += 4) {
+			int codePoint = (payload[i] << 24) | (payload[i + 1] & 0xff) << 16
+					| (payload[i + 2] & 0xff) << 8 | (payload[i + 3] & 0xff);
+			if (!Character.isValidCodePoint(codePoint)) {
+				return null;
+			}
+			text.appendCodePoint(codePoint);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the code points of the text as a payload of ints.
+	 */
+	static byte[] encode(CharSequence text) {
+		int count = Character.codePointCount(text, 0, text.length());
+		byte[] payload = new byte[count * 4];
+		int i = 0;
+		for (int j = 0; j < text.length();) {
+			int codePoint = Character.codePointAt(text, j);
+			j += Character.charCount(codePoint);
+			payload[i++] = (byte) (codePoint >> 24);
+			payload[i++] = (byte) (codePoint >> 16);
+			payload[i++] = (byte) (codePoint >> 8);
+			payload[i++] = (byte) codePoint;
+		}
+		return payload;
+	}
+}
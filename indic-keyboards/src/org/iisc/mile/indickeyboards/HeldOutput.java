@@ -0,0 +1,139 @@
+/** ********************************************************************
+ * File:           HeldOutput.java
+ * Description:    Output of the ambiguous keys held by a session
+ * Created:        Mon Oct 19 06:46:10 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * The output of a session, with what the parsers put held back while a
+ * deferral is running. While holding, the Unicode put is kept, and the
+ * characters erased from before it are counted; both are put in one
+ * replacement when the output is committed, by the next key, by the
+ * <code>TimerWheel</code>, or by <code>Sessions</code> when the focus
+ * moves to another window. Used with the output locked, like the session.
+ */
+final class HeldOutput {
+
+	private final Output output;
+	/**
+	 * Set while output is held; the Unicode held, and the characters before
+	 * it which the keys held erased.
+	 */
+	private boolean holding = false;
+	private final StringBuilder held = new StringBuilder();
+	private int heldErased = 0;
+	/**
+	 * Puts the output held when the deferral is over. Made on first use.
+	 */
+	private TimerWheel.Timeout timeout;
+
+	HeldOutput(Output output) {
+		this.output = output;
+	}
+
+	/**
+	 * Holds the output from now on, until it is committed.
+	 */
+	void hold() {
+		holding = true;
+	}
+
+	boolean isHolding() {
+		return holding;
+	}
+
+	/**
+	 * Returns true if nothing is held, as after the keys held have all been
+	 * deleted.
+	 */
+	boolean isEmpty() {
+		return held.length() == 0;
+	}
+
+	/**
+	 * Deletes characters of the output, or of what is held.
+	 */
+	void erase(int count) {
+		if (!holding) {
+			output.erase(count);
+			return;
+		}
+		while (count > 0 && held.length() > 0) {
+			held.setLength(held.offsetByCodePoints(held.length(), -1));
+			count--;
+		}
+		heldErased += count;
+	}
+
+	/**
+	 * Puts a Unicode value, or adds it to what is held.
+	 */
+	void put(Layout.Unicode value) {
+		if (!holding) {
+			output.put(value, false);
+			return;
+		}
+		for (int i = 0; i < value.chars.length; i++) {
+			held.appendCodePoint(value.chars[i]);
+		}
+	}
+
+	/**
+	 * Deletes characters and puts a text in their place, in one batch, or
+	 * does it to what is held.
+	 */
+	void replace(int count, CharSequence text) {
+		if (!holding) {
+			output.replace(count, text);
+			return;
+		}
+		erase(count);
+		held.append(text);
+	}
+
+	/**
+	 * Puts the output held.
+	 */
+	void commit() {
+		if (timeout != null) {
+			TimerWheel.shared.cancel(timeout);
+		}
+		if (!holding) {
+			return;
+		}
+		holding = false;
+		output.replace(heldErased, held);
+		held.setLength(0);
+		heldErased = 0;
+	}
+
+	/**
+	 * Puts the output held if no key comes for some milliseconds.
+	 */
+	void scheduleCommit(long millis) {
+		if (timeout == null) {
+			timeout = new TimerWheel.Timeout() {
+				protected void expire() {
+					synchronized (output) {
+						commit();
+					}
+				}
+			};
+		}
+		TimerWheel.shared.schedule(timeout, millis);
+	}
+}
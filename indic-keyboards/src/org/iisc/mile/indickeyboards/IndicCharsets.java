@@ -0,0 +1,110 @@
+/** ********************************************************************
+ * File:           IndicCharsets.java
+ * Description:    The charsets of ISCII and of the typewriter fonts
+ * Created:        Mon Oct 19 05:40:51 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.spi.CharsetProvider;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Provides the charsets of the older Indic documents: ISCII-91 for each
+ * script, as <em>x-iscii-de</em>, <em>x-iscii-ka</em> and so on, and the
+ * codes of the typewriter fonts of the Remington layouts, as
+ * <em>x-hin-remington</em> and <em>x-tam-remington</em>. A typewriter code
+ * is only there if its layout is found in <em>kblayouts</em>.
+ * <p>
+ * The provider is listed in
+ * <em>META-INF/services/java.nio.charset.spi.CharsetProvider</em> of the
+ * jar, so with the jar on the class path the charsets are found by
+ * <code>Charset.forName()</code>, and so by <code>Files</code>,
+ * <code>Channels</code> and the readers and writers of
+ * <code>java.io</code>:
+ * 
+ * <pre>
+ * BufferedReader in = Files.newBufferedReader(path, Charset
+ * 		.forName(&quot;x-iscii-de&quot;));
+ * </pre>
+ * 
+ * The decoders and the encoders work on the buffers they are given, a
+ * byte or a char at a time through their tables, with no strings in
+ * between. <code>CharsetThroughput</code> measures them.
+ */
+public class IndicCharsets extends CharsetProvider {
+
+	/**
+	 * The Remington layouts, whose typewriter codes are offered.
+	 */
+	static final String[] TYPEWRITER_LAYOUTS = { "hin_remington_inscript.xml",
+			"tam_remington_inscript.xml" };
+
+	private static final List<Charset> iscii = new ArrayList<Charset>();
+	private static final List<Charset> typewriter = new ArrayList<Charset>();
+	static {
+		for (int s = 0; s < IsciiCharset.SCRIPTS.length; s++) {
+			iscii.add(new IsciiCharset(s));
+		}
+		for (String layout : TYPEWRITER_LAYOUTS) {
+			String name = "x-"
+					+ layout.substring(0, layout.indexOf("_inscript"))
+							.replace('_', '-');
+			typewriter.add(new LayoutCharset(name, layout));
+		}
+	}
+
+	/**
+	 * Returns the charsets of which there are tables.
+	 */
+	private static List<Charset> available() {
+		List<Charset> charsets = new ArrayList<Charset>(iscii);
+		File kblayouts = new File(System.getProperty("user.dir"), "kblayouts");
+		for (Charset charset : typewriter) {
+			if (new File(kblayouts, ((LayoutCharset) charset).getLayoutName())
+					.isFile()) {
+				charsets.add(charset);
+			}
+		}
+		return charsets;
+	}
+
+	public Iterator<Charset> charsets() {
+		return available().iterator();
+	}
+
+	public Charset charsetForName(String charsetName) {
+		for (Charset charset : available()) {
+			if (charset.name().equalsIgnoreCase(charsetName)) {
+				return charset;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the charset of a name, whether or not the provider is on the
+	 * class path of the system, as when the classes are not run from the
+	 * jar.
+	 */
+	public static Charset forName(String name) {
+		Charset charset = new IndicCharsets().charsetForName(name);
+		return charset != null ? charset : Charset.forName(name);
+	}
+}
@@ -0,0 +1,339 @@
+/** ********************************************************************
+ * File:           IsciiCharset.java
+ * Description:    ISCII-91, the 8-bit code of the Indic scripts
+ * Created:        Mon Oct 19 05:40:51 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * ISCII-91, the Indian Script Code for Information Interchange, in which
+ * older documents of the Indic scripts are kept. The same 8-bit code is
+ * used for every script; a text is in the script of its charset, like
+ * x-iscii-ka for Kannada, until an ATR byte switches to another. ASCII is
+ * kept as it is.
+ * <p>
+ * The code is table driven. The bytes from 0xA0 on are given as
+ * Devanagari, the same as the x-ISCII91 of the JDK, and the Unicode blocks
+ * of the other scripts were laid out after ISCII, so their tables are
+ * those of Devanagari moved to the block of the script. A nukta byte after
+ * some of the vowels and signs makes another character, as does a halant
+ * or nukta after a halant; the decoder keeps such a byte back until the
+ * next one, or until it is flushed, so the bytes may be given in pieces
+ * of any size. Characters a script does not have decode to U+FFFD.
+ * 
+ * @see IndicCharsets
+ */
+public final class IsciiCharset extends Charset {
+
+	/**
+	 * The scripts, by their ATR code less <code>FIRST_SCRIPT</code>, as they
+	 * end the names of the charsets.
+	 */
+	static final String[] SCRIPTS = { "de", "be", "ta", "te", "as", "or",
+			"ka", "ma", "gu", "pa" };
+	/**
+	 * The first character of the Unicode block of each script.
+	 */
+	private static final int[] BLOCKS = { 0x0900, 0x0980, 0x0B80, 0x0C00,
+			0x0980, 0x0B00, 0x0C80, 0x0D00, 0x0A80, 0x0A00 };
+	static final int FIRST_SCRIPT = 0x42;
+
+	private static final int INV = 0xD9;
+	private static final int HALANT = 0xE8;
+	private static final int NUKTA = 0xE9;
+	private static final int DANDA = 0xEA;
+	private static final int ATR = 0xEF;
+	private static final int EXT = 0xF0;
+
+	/**
+	 * The Devanagari of the bytes from 0xA0 on. U+FFFD stands for the bytes
+	 * which are not used.
+	 */
+	private static final String DEVANAGARI = "\uFFFD\u0901\u0902\u0903\u0905"
+			+ "\u0906\u0907\u0908\u0909\u090A\u090B\u090E\u090F\u0910\u090D"
+			+ "\u0912\u0913\u0914\u0911\u0915\u0916\u0917\u0918\u0919\u091A"
+			+ "\u091B\u091C\u091D\u091E\u091F\u0920\u0921\u0922\u0923\u0924"
+			+ "\u0925\u0926\u0927\u0928\u0929\u092A\u092B\u092C\u092D\u092E"
+			+ "\u092F\u095F\u0930\u0931\u0932\u0933\u0934\u0935\u0936\u0937"
+			+ "\u0938\u0939\u200D\u093E\u093F\u0940\u0941\u0942\u0943\u0946"
+			+ "\u0947\u0948\u0945\u094A\u094B\u094C\u0949\u094D\u093C\u0964"
+			+ "\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD\u0966\u0967\u0968\u0969"
+			+ "\u096A\u096B\u096C\u096D\u096E\u096F\uFFFD\uFFFD\uFFFD\uFFFD"
+			+ "\uFFFD";
+	/**
+	 * The bytes which are another character with a nukta after them, and
+	 * those characters.
+	 */
+	private static final String NUKTA_BYTES = "\u00A1\u00A6\u00A7\u00AA\u00DB"
+			+ "\u00DC\u00DF\u00EA";
+	private static final String NUKTA_CHARS = "\u0950\u090C\u0961\u0960\u0962"
+			+ "\u0963\u0944\u093D";
+	/**
+	 * The letters with a nukta which Unicode has as one character, and the
+	 * bytes of the letters without it.
+	 */
+	private static final String NUKTA_LETTERS = "\u0958\u0959\u095A\u095B"
+			+ "\u095C\u095D\u095E";
+	private static final String NUKTA_BASES = "\u00B3\u00B4\u00B5\u00BA"
+			+ "\u00BF\u00C0\u00C9";
+
+	/**
+	 * For each script, the characters of the bytes from 0xA0 on, and those
+	 * of the same bytes followed by a nukta, 0 if they are not another
+	 * character.
+	 */
+	private static final char[][] SINGLE = new char[SCRIPTS.length][0x60];
+	private static final char[][] COMBINED = new char[SCRIPTS.length][0x60];
+	/**
+	 * The bytes of each character of a block by its offset, the second one
+	 * if any shifted left by 8; 0 for none.
+	 */
+	private static final int[] ENCODE = new int[0x80];
+	static {
+		for (int s = 0; s < SCRIPTS.length; s++) {
+			for (int i = 0; i < 0x60; i++) {
+				SINGLE[s][i] = shift(DEVANAGARI.charAt(i), BLOCKS[s]);
+			}
+			for (int i = 0; i < NUKTA_BYTES.length(); i++) {
+				COMBINED[s][NUKTA_BYTES.charAt(i) - 0xA0] = shift(
+						NUKTA_CHARS.charAt(i), BLOCKS[s]);
+			}
+		}
+		for (int i = 0; i < 0x60; i++) {
+			char c = DEVANAGARI.charAt(i);
+			if (c >= 0x0900 && c < 0x0980 && c != '\u0964') {
+				ENCODE[c - 0x0900] = 0xA0 + i;
+			}
+		}
+		for (int i = 0; i < NUKTA_CHARS.length(); i++) {
+			ENCODE[NUKTA_CHARS.charAt(i) - 0x0900] = NUKTA_BYTES.charAt(i)
+					| NUKTA << 8;
+		}
+		for (int i = 0; i < NUKTA_LETTERS.length(); i++) {
+			ENCODE[NUKTA_LETTERS.charAt(i) - 0x0900] = NUKTA_BASES.charAt(i)
+					| NUKTA << 8;
+		}
+	}
+
+	/**
+	 * Moves a Devanagari character to the block of another script. The
+	 * dandas and the joiners are shared by the scripts and stay.
+	 */
+	private static char shift(char c, int block) {
+		if (c < 0x0900 || c >= 0x0980 || c == '\u0964' || c == '\u0965') {
+			return c;
+		}
+		int shifted = c - 0x0900 + block;
+		return Character.isDefined(shifted) ? (char) shifted : '\uFFFD';
+	}
+
+	private final int script;
+
+	/**
+	 * Creates the charset of a script, by its index in
+	 * <code>SCRIPTS</code>.
+	 */
+	IsciiCharset(int script) {
+		super("x-iscii-" + SCRIPTS[script], null);
+		this.script = script;
+	}
+
+	public boolean contains(Charset cs) {
+		return cs instanceof IsciiCharset || cs.name().equals("US-ASCII");
+	}
+
+	public CharsetDecoder newDecoder() {
+		return new Decoder(this);
+	}
+
+	public CharsetEncoder newEncoder() {
+		return new Encoder(this);
+	}
+
+	private static final class Decoder extends CharsetDecoder {
+		private final int script;
+		/**
+		 * The script the bytes are in, switched by ATR.
+		 */
+		private int current;
+		/**
+		 * The byte kept back until the next one, -1 for none.
+		 */
+		private int pending = -1;
+
+		Decoder(IsciiCharset cs) {
+			super(cs, 1.0f, 2.0f);
+			this.script = cs.script;
+			this.current = script;
+		}
+
+		protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+			while (in.hasRemaining()) {
+				if (out.remaining() < 2) {
+					return CoderResult.OVERFLOW;
+				}
+				int position = in.position();
+				int b = in.get() & 0xFF;
+				if (pending >= 0) {
+					int p = pending;
+					pending = -1;
+					if (p == ATR) {
+						/*
+						 * Only the scripts are taken; the display
+						 * attributes do not change the text.
+						 */
+						if (b >= FIRST_SCRIPT && b < FIRST_SCRIPT + SCRIPTS.length) {
+							current = b - FIRST_SCRIPT;
+						}
+						continue;
+					}
+					if (p == EXT) {
+						out.put('\uFFFD');
+						continue;
+					}
+					if (p == HALANT && (b == HALANT || b == NUKTA)) {
+						out.put(SINGLE[current][HALANT - 0xA0]);
+						out.put(b == HALANT ? '\u200C' : '\u200D');
+						continue;
+					}
+					if (b == NUKTA && COMBINED[current][p - 0xA0] != 0) {
+						out.put(COMBINED[current][p - 0xA0]);
+						continue;
+					}
+					out.put(SINGLE[current][p - 0xA0]);
+				}
+				if (b < 0x80) {
+					out.put((char) b);
+				} else if (b == ATR || b == EXT || b == HALANT
+						|| b >= 0xA0 && COMBINED[current][b - 0xA0] != 0) {
+					pending = b;
+				} else if (b < 0xA0 || DEVANAGARI.charAt(b - 0xA0) == '\uFFFD') {
+					in.position(position);
+					return CoderResult.malformedForLength(1);
+				} else {
+					out.put(SINGLE[current][b - 0xA0]);
+				}
+			}
+			return CoderResult.UNDERFLOW;
+		}
+
+		protected CoderResult implFlush(CharBuffer out) {
+			if (pending >= 0 && pending != ATR && pending != EXT) {
+				if (!out.hasRemaining()) {
+					return CoderResult.OVERFLOW;
+				}
+				out.put(SINGLE[current][pending - 0xA0]);
+			}
+			pending = -1;
+			return CoderResult.UNDERFLOW;
+		}
+
+		protected void implReset() {
+			pending = -1;
+			current = script;
+		}
+	}
+
+	private static final class Encoder extends CharsetEncoder {
+		private final int script;
+		/**
+		 * The script of the bytes written last, switched with ATR.
+		 */
+		private int current;
+		/**
+		 * Set after a halant, after which the joiners are written as a
+		 * second halant or a nukta.
+		 */
+		private boolean afterHalant = false;
+
+		Encoder(IsciiCharset cs) {
+			super(cs, 1.0f, 4.0f);
+			this.script = cs.script;
+			this.current = script;
+		}
+
+		/**
+		 * Returns the script of an Indic character, the one in use if it is
+		 * of its block, or -1 if it is of none.
+		 */
+		private int scriptOf(char c) {
+			if (c - BLOCKS[current] >= 0 && c - BLOCKS[current] < 0x80) {
+				return current;
+			}
+			for (int s = 0; s < BLOCKS.length; s++) {
+				if (c - BLOCKS[s] >= 0 && c - BLOCKS[s] < 0x80) {
+					return s;
+				}
+			}
+			return -1;
+		}
+
+		protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+			while (in.hasRemaining()) {
+				if (out.remaining() < 4) {
+					return CoderResult.OVERFLOW;
+				}
+				int position = in.position();
+				char c = in.get();
+				boolean halant = false;
+				if (c < 0x80) {
+					out.put((byte) c);
+				} else if (c == '\u200C' && afterHalant) {
+					out.put((byte) HALANT);
+				} else if (c == '\u200D') {
+					out.put((byte) (afterHalant ? NUKTA : INV));
+				} else if (c == '\u0964') {
+					out.put((byte) DANDA);
+				} else if (c == '\u0965') {
+					out.put((byte) DANDA);
+					out.put((byte) DANDA);
+				} else {
+					int s = scriptOf(c);
+					int bytes = s < 0 || !Character.isDefined(c) ? 0
+							: ENCODE[c - BLOCKS[s]];
+					if (bytes == 0) {
+						in.position(position);
+						return CoderResult.unmappableForLength(1);
+					}
+					if (s != current) {
+						out.put((byte) ATR);
+						out.put((byte) (FIRST_SCRIPT + s));
+						current = s;
+					}
+					out.put((byte) bytes);
+					if (bytes >> 8 != 0) {
+						out.put((byte) (bytes >> 8));
+					}
+					halant = bytes == HALANT;
+				}
+				afterHalant = halant;
+			}
+			return CoderResult.UNDERFLOW;
+		}
+
+		protected void implReset() {
+			current = script;
+			afterHalant = false;
+		}
+	}
+}
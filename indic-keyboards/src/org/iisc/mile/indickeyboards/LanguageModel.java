@@ -0,0 +1,252 @@
+/** ********************************************************************
+ * File:           LanguageModel.java
+ * Description:    Character n-gram model of a language, memory-mapped
+ * Created:        Mon Oct 19 06:12:13 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How likely each char of a language is after the two chars before it, for
+ * telling the likely renderings of the keys typed from the unlikely ones.
+ * The chars of the words are counted, with a space before and after each
+ * word, by <code>DictionaryBuilder</code> with -model; the cost of a char
+ * is how unlikely it is, in eighths of a bit, quantised to a byte. A char
+ * not seen after the two chars before it costs what it does after the one
+ * char before it, or on its own, plus <code>BACKOFF</code> for each char of
+ * the context dropped ("stupid backoff", Brants et al.).
+ * <p>
+ * The n-grams are not kept, only a 16 bit fingerprint of each, at the
+ * place a minimal perfect hash gives it: the n-grams are split into
+ * buckets by a first hash, and each bucket has the number of a second hash
+ * which puts its n-grams into places no other bucket has taken, or the
+ * place itself if it holds a single n-gram (hash and displace, Belazzougui
+ * et al.). So each n-gram takes 3 bytes, and its cost is read with two
+ * hashes and three reads. An n-gram which is not in the model is told apart
+ * by its fingerprint, but for one in 65536.
+ * <p>
+ * The model is written next to the dictionary as <em>dictionaries/kan.lm</em>
+ * and so on, and memory-mapped. It is laid out as follows, all numbers
+ * big-endian:
+ *
+ * <pre>
+ * int magic, int n-grams, int buckets
+ * int[buckets] second hash of each bucket, or -1 less the place
+ * short[n-grams] fingerprint of the n-gram at each place
+ * byte[n-grams] cost of the n-gram at each place
+ * </pre>
+ *
+ * A model is shared by all threads.
+ */
+public final class LanguageModel {
+
+	static final int MAGIC = 0x494b4d31;
+	static final int HEADER = 12;
+
+	/**
+	 * The char before and after a word.
+	 */
+	static final char BOUNDARY = ' ';
+
+	/**
+	 * Cost of dropping a char of the context, a factor of 0.4.
+	 */
+	static final int BACKOFF = 11;
+
+	/**
+	 * Cost of a char which is not in the model.
+	 */
+	static final int UNSEEN = 255 + 2 * BACKOFF;
+
+	/**
+	 * The models opened, by language, MISSING for none.
+	 */
+	private static final Map<String, LanguageModel> opened = new HashMap<String, LanguageModel>();
+	private static final LanguageModel MISSING = new LanguageModel();
+
+	private final ByteBuffer map;
+	private final int ngrams;
+	private final int buckets;
+	private final int fingerprints;
+	private final int costs;
+
+	private LanguageModel() {
+		map = null;
+		ngrams = buckets = fingerprints = costs = 0;
+	}
+
+	private LanguageModel(ByteBuffer map) throws IOException {
+		this.map = map;
+		this.ngrams = map.getInt(4);
+		this.buckets = map.getInt(8);
+		if (ngrams < 0 || buckets <= 0) {
+			throw new IOException("not a language model");
+		}
+		this.fingerprints = HEADER + 4 * buckets;
+		this.costs = fingerprints + 2 * ngrams;
+		if ((long) costs + ngrams > map.limit()) {
+			throw new IOException("language model is truncated");
+		}
+	}
+
+	/**
+	 * Maps a language model.
+	 */
+	public static LanguageModel open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (map.limit() < HEADER || map.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not a language model");
+			}
+			return new LanguageModel(map);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the model of the language of a layout, from
+	 * <em>dictionaries</em> in the current directory, or null if there is
+	 * none.
+	 */
+	public static synchronized LanguageModel forLayout(Layout layout) {
+		String language = WordDictionary.language(layout);
+		if (language == null) {
+			return null;
+		}
+		LanguageModel model = opened.get(language);
+		if (model == null) {
+			File file = new File(System.getProperty("user.dir"),
+					WordDictionary.DIRECTORY + "/" + language + ".lm");
+			model = MISSING;
+			if (file.isFile()) {
+				try {
+					model = open(file);
+					System.out.println("Language model " + file + ": "
+							+ model.size() + " n-grams");
+				} catch (IOException e) {
+					System.out.println("Could not read " + file + ": "
+							+ e.getMessage());
+				}
+			}
+			opened.put(language, model);
+		}
+		return model == MISSING ? null : model;
+	}
+
+	/**
+	 * @return Returns the number of n-grams of the model.
+	 */
+	public int size() {
+		return ngrams;
+	}
+
+	/**
+	 * Returns the key of an n-gram of one to three chars; a is ignored for
+	 * two chars, and b too for one.
+	 */
+	static long key(int order, char a, char b, char c) {
+		switch (order) {
+		case 3:
+			return (3L << 48) | ((long) a << 32) | ((long) b << 16) | c;
+		case 2:
+			return (2L << 48) | ((long) b << 16) | c;
+		default:
+			return (1L << 48) | c;
+		}
+	}
+
+	/**
+	 * Mixes the bits of a key (the finaliser of MurmurHash3).
+	 */
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	static int bucket(long key, int buckets) {
+		return (int) ((mix(key) >>> 1) % buckets);
+	}
+
+	/**
+	 * Returns the place of a key with the given second hash.
+	 */
+	static int place(long key, int displacement, int size) {
+		return (int) ((mix(key ^ (displacement + 1) * 0x9e3779b97f4a7c15L) >>> 1) % size);
+	}
+
+	static short fingerprint(long key) {
+		return (short) (mix(~key) >>> 48);
+	}
+
+	/**
+	 * Returns the cost of an n-gram, or -1 if it is not in the model.
+	 */
+	private int lookup(long key) {
+		if (ngrams == 0) {
+			return -1;
+		}
+		int displacement = map.getInt(HEADER + 4 * bucket(key, buckets));
+		int place = displacement < 0 ? -1 - displacement : place(key,
+				displacement, ngrams);
+		if (map.getShort(fingerprints + 2 * place) != fingerprint(key)) {
+			return -1;
+		}
+		return map.get(costs + place) & 0xff;
+	}
+
+	/**
+	 * Returns the cost of a char after the two chars before it, in eighths
+	 * of a bit. BOUNDARY stands for the chars before the word.
+	 */
+	public int cost(char a, char b, char c) {
+		int cost = lookup(key(3, a, b, c));
+		if (cost >= 0) {
+			return cost;
+		}
+		cost = lookup(key(2, a, b, c));
+		if (cost >= 0) {
+			return cost + BACKOFF;
+		}
+		cost = lookup(key(1, a, b, c));
+		if (cost >= 0) {
+			return cost + 2 * BACKOFF;
+		}
+		return UNSEEN;
+	}
+
+	/**
+	 * Returns the cost of a probability, in eighths of a bit, from 0 to 255.
+	 */
+	static int quantise(double probability) {
+		long cost = Math.round(-8 * Math.log(probability) / Math.log(2));
+		return (int) Math.max(0, Math.min(255, cost));
+	}
+}
@@ -0,0 +1,311 @@
+/** ********************************************************************
+ * File:           LatticeDecoder.java
+ * Description:    Most likely rendering of the ambiguous phonetic keys
+ * Created:        Mon Oct 19 06:12:13 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Works out the most likely rendering of the word being typed in phonetic
+ * mode, with the <code>LanguageModel</code> of its language. Users type
+ * "n" for both the dental and the retroflex NA, "l" for LA and LLA, and in
+ * Tamil "r" for RA and RRA; the decoder keeps the renderings of the keys
+ * of the word taken as typed or as one of these alternatives, and the
+ * session shows the one whose chars are the most likely.
+ * <p>
+ * The alternatives of a key are worked out from the layout: the keys of a
+ * single consonant whose Unicode name is that of the consonant of the key
+ * with its letter doubled or tripled, like NNA and NNNA for NA or LLA for
+ * LA. A layout without such keys is decoded as typed.
+ * <p>
+ * Each rendering is kept with the state of the parsers after it, and a new
+ * key extends it with a session of the decoder's own, so the keys before
+ * it are not transliterated again. The cost of each char of a rendering is
+ * kept too, and only the chars from the first one the key changed are
+ * costed again. Renderings which come out the same are merged, and the
+ * <code>BEAM</code> cheapest kept, always with the rendering of the keys as
+ * typed. Only renderings as long as that one are kept: the parsers erase
+ * by counting chars, and they go on erasing from the rendering shown as
+ * from the one typed.
+ * <p>
+ * A decoder belongs to a session, and is stopped when its word ends or a
+ * backspace deletes from it; it starts again at the next key, with the
+ * chars of the word left as they are.
+ */
+final class LatticeDecoder {
+
+	/**
+	 * Most renderings kept.
+	 */
+	static final int BEAM = 8;
+
+	/**
+	 * Longest word decoded, in chars. The rest of a longer word is put as
+	 * typed.
+	 */
+	static final int MAX_LENGTH = 32;
+
+	/**
+	 * A rendering of the keys of the word, and the state of the parsers
+	 * after it.
+	 */
+	private static final class Rendering {
+		String text;
+		/**
+		 * The cost of the chars of the text up to each.
+		 */
+		int[] costs;
+		boolean typed;
+		int flag;
+		int flagLog;
+		String key;
+		String keyLog;
+		int count;
+
+		int cost() {
+			return text.length() == 0 ? 0 : costs[text.length() - 1];
+		}
+	}
+
+	private static final Comparator<Rendering> CHEAPEST = new Comparator<Rendering>() {
+		public int compare(Rendering a, Rendering b) {
+			if (a.cost() != b.cost()) {
+				return a.cost() < b.cost() ? -1 : 1;
+			}
+			/*
+			 * The keys as typed win a tie.
+			 */
+			return (a.typed ? 0 : 1) - (b.typed ? 0 : 1);
+		}
+	};
+
+	private static final int[] NO_COSTS = new int[0];
+
+	private final TextOutput text = new TextOutput();
+	private final Session scratch = new Session(text, false);
+	private List<Rendering> renderings = new ArrayList<Rendering>();
+	private List<Rendering> extended = new ArrayList<Rendering>();
+	private LanguageModel model;
+	private Layout layout;
+	/**
+	 * The alternatives of the keys of the layout, by ASCII char.
+	 */
+	private String[][] alternatives;
+	private Layout alternativesOf;
+
+	/**
+	 * Starts decoding the keys typed after a word, with the state of the
+	 * parsers of a session.
+	 */
+	void start(Session session, CharSequence word, Layout layout,
+			LanguageModel model) {
+		this.layout = layout;
+		this.model = model;
+		if (alternativesOf != layout) {
+			alternatives = alternatives(layout);
+			alternativesOf = layout;
+		}
+		Rendering typed = new Rendering();
+		typed.text = word.toString();
+		typed.costs = cost(NO_COSTS, 0, typed.text);
+		typed.typed = true;
+		typed.flag = session.previousConsonantFlag;
+		typed.flagLog = session.previousConsonantFlaglog;
+		typed.key = session.previousChar;
+		typed.keyLog = session.previousCharlog;
+		typed.count = session.tamil99count;
+		renderings.clear();
+		renderings.add(typed);
+	}
+
+	void stop() {
+		renderings.clear();
+	}
+
+	boolean isStarted() {
+		return !renderings.isEmpty();
+	}
+
+	/**
+	 * Extends the renderings with a key which has been put, and returns the
+	 * most likely rendering of the word, or null if the word is too long to
+	 * decode.
+	 */
+	String key(String pattern) {
+		String[] others = null;
+		if (pattern.length() == 1 && pattern.charAt(0) < alternatives.length) {
+			others = alternatives[pattern.charAt(0)];
+		}
+		extended.clear();
+		Rendering typed = null;
+		for (int i = 0; i < renderings.size(); i++) {
+			Rendering rendering = renderings.get(i);
+			Rendering next = extend(rendering, pattern);
+			next.typed = rendering.typed;
+			if (next.typed) {
+				typed = next;
+			}
+			extended.add(next);
+			for (int j = 0; others != null && j < others.length; j++) {
+				extended.add(extend(rendering, others[j]));
+			}
+		}
+		if (typed == null || typed.text.length() > MAX_LENGTH) {
+			stop();
+			return null;
+		}
+		Collections.sort(extended, CHEAPEST);
+		List<Rendering> kept = renderings;
+		kept.clear();
+		for (int i = 0; i < extended.size(); i++) {
+			Rendering next = extended.get(i);
+			if (next.text.length() != typed.text.length()
+					|| (kept.size() >= BEAM && !next.typed)) {
+				continue;
+			}
+			/*
+			 * Of two renderings which came out the same, the one of the keys
+			 * as typed is kept, whichever was sorted first.
+			 */
+			int same = -1;
+			for (int j = 0; j < kept.size() && same < 0; j++) {
+				if (kept.get(j).text.equals(next.text)
+						&& kept.get(j).key.equals(next.key)) {
+					same = j;
+				}
+			}
+			if (same < 0) {
+				kept.add(next);
+			} else if (next.typed) {
+				kept.set(same, next);
+			}
+		}
+		if (kept.size() > BEAM) {
+			kept.remove(BEAM - 1);
+		}
+		renderings = kept;
+		extended.clear();
+		return kept.get(0).text;
+	}
+
+	/**
+	 * Returns a rendering followed by a key.
+	 */
+	private Rendering extend(Rendering rendering, String key) {
+		scratch.attach(layout);
+		scratch.reset();
+		scratch.previousConsonantFlag = rendering.flag;
+		scratch.previousConsonantFlaglog = rendering.flagLog;
+		scratch.previousChar = rendering.key;
+		scratch.previousCharlog = rendering.keyLog;
+		scratch.tamil99count = rendering.count;
+		text.erase(text.length());
+		text.append(rendering.text);
+		scratch.process(key, layout);
+
+		Rendering next = new Rendering();
+		next.text = text.substring(0);
+		int same = 0;
+		int length = Math.min(rendering.text.length(), next.text.length());
+		while (same < length
+				&& rendering.text.charAt(same) == next.text.charAt(same)) {
+			same++;
+		}
+		next.costs = cost(rendering.costs, same, next.text);
+		next.flag = scratch.previousConsonantFlag;
+		next.flagLog = scratch.previousConsonantFlaglog;
+		next.key = scratch.previousChar;
+		next.keyLog = scratch.previousCharlog;
+		next.count = scratch.tamil99count;
+		return next;
+	}
+
+	/**
+	 * Returns the costs of the chars of a text up to each, those of the
+	 * chars before <code>from</code> being as given.
+	 */
+	private int[] cost(int[] costs, int from, String text) {
+		int[] next = Arrays.copyOf(costs, text.length());
+		for (int i = from; i < text.length(); i++) {
+			char a = i >= 2 ? text.charAt(i - 2) : LanguageModel.BOUNDARY;
+			char b = i >= 1 ? text.charAt(i - 1) : LanguageModel.BOUNDARY;
+			next[i] = (i > 0 ? next[i - 1] : 0)
+					+ model.cost(a, b, text.charAt(i));
+		}
+		return next;
+	}
+
+	/**
+	 * Returns the keys which may stand for each ASCII key of a layout, null
+	 * for none.
+	 */
+	static String[][] alternatives(Layout layout) {
+		String[][] keys = new String[128][];
+		String[] letters = new String[128];
+		for (char c = '!'; c < 127; c++) {
+			letters[c] = letter(layout, String.valueOf(c));
+		}
+		for (char c = '!'; c < 127; c++) {
+			if (letters[c] == null) {
+				continue;
+			}
+			List<String> found = new ArrayList<String>();
+			for (char d = '!'; d < 127; d++) {
+				String other = letters[d];
+				if (other != null && other.length() > letters[c].length()
+						&& other.charAt(0) == letters[c].charAt(0)) {
+					found.add(String.valueOf(d));
+				}
+			}
+			if (!found.isEmpty()) {
+				keys[c] = found.toArray(new String[found.size()]);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns the letter of the consonant of a key, repeated as in its
+	 * Unicode name, like "NN" for NNA, or null if the key does not put a
+	 * single consonant so named.
+	 */
+	private static String letter(Layout layout, String key) {
+		Layout.Pattern pattern = layout.lookup(key);
+		if (pattern == null || pattern.consonant != 1 || pattern.value == null
+				|| pattern.value.chars.length != 1) {
+			return null;
+		}
+		String name = Character.getName(pattern.value.chars[0]);
+		int at = name == null ? -1 : name.indexOf(" LETTER ");
+		if (at < 0 || !name.endsWith("A")) {
+			return null;
+		}
+		String letter = name.substring(at + 8, name.length() - 1);
+		for (int i = 0; i < letter.length(); i++) {
+			if (letter.charAt(i) != letter.charAt(0)
+					|| !Character.isLetter(letter.charAt(i))) {
+				return null;
+			}
+		}
+		return letter.length() == 0 ? null : letter;
+	}
+}
@@ -0,0 +1,436 @@
+/** ********************************************************************
+ * File:           Layout.java
+ * Description:    Compiled keyboard layout and the layout in use
+ * Created:        Mon Oct 19 04:38:27 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A keyboard layout read from its XML file once, when it is selected. A
+ * layout never changes after it is built, so it can be handed from the UI
+ * thread to the thread monitoring the keys without any locking.
+ * <p>
+ * The layout in use is held in an atomic reference. Selecting a layout
+ * builds the new one completely and then swaps the reference, so the key
+ * monitor sees either the old layout or the new one, never a mixture of
+ * both, and never waits for the switch.
+ */
+public final class Layout {
+
+	/**
+	 * One &lt;pattern&gt; of the layout XML.
+	 */
+	public static final class Pattern {
+		/**
+		 * The keyed characters, the &lt;char&gt; tag.
+		 */
+		public final String key;
+		/**
+		 * The Unicode to put, the &lt;unicode&gt; tag. Null if missing.
+		 */
+		public final String unicode;
+		/**
+		 * 1 for a consonant, 0 for a vowel, from the &lt;consonant&gt; tag.
+		 * -1 if missing or not a number.
+		 */
+		public final int consonant;
+		/**
+		 * The dependent vowel put after a consonant, the &lt;uni2&gt; tag.
+		 * Null if missing.
+		 */
+		public final String uni2;
+		/**
+		 * The Unicode and the dependent vowel, ready to be put.
+		 */
+		final Unicode value;
+		final Unicode dependent;
+		/**
+		 * The Unicode followed by the halant of the layout, put for a
+		 * consonant of a phonetic layout.
+		 */
+		final Unicode withHalant;
+		/**
+		 * The Unicode after a Tamil halant, put for a repeated Tamil99
+		 * consonant.
+		 */
+		final Unicode afterHalant;
+
+		Pattern(String key, String unicode, int consonant, String uni2) {
+			this(key, unicode, consonant, uni2, "");
+		}
+
+		Pattern(String key, String unicode, int consonant, String uni2,
+				String halant) {
+			this.key = key;
+			this.unicode = unicode;
+			this.consonant = consonant;
+			this.uni2 = uni2;
+			this.value = Unicode.of(unicode);
+			this.dependent = Unicode.of(uni2);
+			this.withHalant = unicode == null ? null : Unicode.of(unicode
+					+ halant);
+			this.afterHalant = unicode == null ? null : Unicode.of("0bcd"
+					+ unicode);
+		}
+	}
+
+	/**
+	 * The value of a &lt;unicode&gt; tag, with its characters worked out
+	 * when the layout is read rather than each time a key is typed. A value
+	 * of more than 4 hex digits holds several characters, 4 digits each;
+	 * groups which are not hex are left out.
+	 */
+	public static final class Unicode {
+		/**
+		 * The value as written in the layout.
+		 */
+		public final String hex;
+		/**
+		 * The characters of the value.
+		 */
+		final int[] chars;
+		/**
+		 * Set for a value of a single character, at most 4 hex digits.
+		 */
+		final boolean single;
+
+		private Unicode(String hex) {
+			this.hex = hex;
+			int length = hex.length();
+			this.single = length <= 4;
+			int[] parsed = new int[single ? 1 : length / 4];
+			int n = 0;
+			if (single) {
+				n = parse(hex, 0, length, parsed, n);
+			} else {
+				for (int j = 0; j + 4 <= length; j += 4) {
+					n = parse(hex, j, j + 4, parsed, n);
+				}
+			}
+			this.chars = n == parsed.length ? parsed : Arrays.copyOf(parsed, n);
+		}
+
+		/**
+		 * Returns the compiled value, or null for a missing one.
+		 */
+		static Unicode of(String hex) {
+			return hex == null ? null : new Unicode(hex);
+		}
+
+		/**
+		 * Stores the character whose hex digits are between start and end,
+		 * unless there are none or they are not hex, and returns the number
+		 * of characters stored.
+		 */
+		private static int parse(String hex, int start, int end, int[] chars,
+				int n) {
+			if (start == end) {
+				return n;
+			}
+			int codePoint = 0;
+			for (int i = start; i < end; i++) {
+				int digit = Character.digit(hex.charAt(i), 16);
+				if (digit < 0) {
+					return n;
+				}
+				codePoint = codePoint * 16 + digit;
+			}
+			chars[n] = codePoint;
+			return n + 1;
+		}
+
+		public String toString() {
+			return hex;
+		}
+	}
+
+	/**
+	 * The first characters of the two character patterns of the phonetic
+	 * layouts, whose second character is "h".
+	 */
+	static final String DIGRAPHS = "tTsSdD";
+
+	/**
+	 * The layout in use. Null until the user selects one.
+	 */
+	private static final AtomicReference<Layout> current = new AtomicReference<Layout>();
+
+	private final String name;
+	private final boolean phonetic;
+	private final boolean inscript;
+	private final boolean tamil99;
+	/**
+	 * The pattern keyed in by each key.
+	 */
+	private final Map<String, Pattern> patterns;
+	/**
+	 * The patterns of the single ASCII keys, by character, to spare the map
+	 * lookup for each key typed.
+	 */
+	private final Pattern[] ascii = new Pattern[128];
+	/**
+	 * The Unicode of th, Th, sh, Sh, dh and Dh with the halant, by their
+	 * first character, for the phonetic layouts.
+	 */
+	private final Unicode[] digraphs = new Unicode[128];
+	private final String halant;
+
+	private Layout(String name, boolean phonetic, Map<String, Pattern> patterns) {
+		this.name = name;
+		this.phonetic = phonetic;
+		this.inscript = name.contains("inscript");
+		this.tamil99 = name.compareTo("tamil99.xml") == 0;
+		this.patterns = Collections.unmodifiableMap(patterns);
+		this.halant = unicodeOf("halant");
+		for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
+			String key = entry.getKey();
+			if (key.length() == 1 && key.charAt(0) < ascii.length) {
+				ascii[key.charAt(0)] = entry.getValue();
+			}
+		}
+		for (char c : DIGRAPHS.toCharArray()) {
+			digraphs[c] = Unicode.of(unicodeOf(c + "h") + halant);
+		}
+	}
+
+	/**
+	 * Returns the layout in use, or null if none has been selected.
+	 */
+	public static Layout current() {
+		return current.get();
+	}
+
+	/**
+	 * Makes the given layout the one in use. Whatever is being processed
+	 * with the previous layout finishes with it; the next key uses the new
+	 * one.
+	 */
+	public static void select(Layout layout) {
+		current.set(layout);
+	}
+
+	/**
+	 * Reads a keyboard layout from the directory <em>kblayouts</em>, as a
+	 * phonetic layout if its name says so, like <em>kan_phonetic.xml</em>.
+	 *
+	 * @param name
+	 *            Name of the layout file, relative to <em>kblayouts</em>
+	 */
+	public static Layout load(String name) {
+		return load(name, name.contains("phonetic"));
+	}
+
+	/**
+	 * Reads a keyboard layout from the directory <em>kblayouts</em>. Errors
+	 * are reported on the console and give an empty layout, with which every
+	 * key reaches the active window unchanged.
+	 * <p>
+	 * A key is given a single pattern. Some layouts list a key more than
+	 * once; the parsers used to put every pattern of the key, each deleting
+	 * the last char of the one before, so the last one was left. The last
+	 * pattern of the key with a &lt;unicode&gt; is kept, unless, outside the
+	 * inscript layouts, it lacks the &lt;consonant&gt; an earlier one has. A
+	 * key without a &lt;unicode&gt; is left out, to be put as typed.
+	 *
+	 * @param name
+	 *            Name of the layout file, relative to <em>kblayouts</em>
+	 * @param phonetic
+	 *            True if the layout is to be processed as a phonetic layout
+	 */
+	public static Layout load(String name, boolean phonetic) {
+		LinkedHashMap<String, Pattern> kept = new LinkedHashMap<String, Pattern>();
+		boolean inscript = name.contains("inscript");
+		try {
+			DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory
+					.newInstance();
+			DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
+			Document doc = docBuilder.parse(new File(System
+					.getProperty("user.dir"), "/kblayouts/" + name));
+
+			// normalize text representation
+			doc.getDocumentElement().normalize();
+			NodeList listOfPatterns = doc.getElementsByTagName("pattern");
+
+			for (int s = 0; s < listOfPatterns.getLength(); s++) {
+				Node patternNode = listOfPatterns.item(s);
+				if (patternNode.getNodeType() != Node.ELEMENT_NODE) {
+					continue;
+				}
+				Element patternElement = (Element) patternNode;
+				String key = text(patternElement, "char");
+				if (key == null) {
+					System.out.println("Pattern " + s + " of " + name
+							+ " has no char, skipped");
+					continue;
+				}
+				int consonant = -1;
+				String flag = text(patternElement, "consonant");
+				if (flag != null) {
+					try {
+						consonant = Integer.parseInt(flag);
+					} catch (NumberFormatException e) {
+						// Left as missing.
+					}
+				}
+				Pattern pattern = new Pattern(key, text(patternElement,
+						"unicode"), consonant, text(patternElement, "uni2"));
+				if (pattern.unicode != null
+						&& (inscript || pattern.consonant >= 0 || !kept
+								.containsKey(key))) {
+					kept.put(key, pattern);
+				}
+			}
+
+		} catch (SAXParseException err) {
+			System.out.println("** Parsing error" + ", line "
+					+ err.getLineNumber() + ", uri " + err.getSystemId());
+			System.out.println(" " + err.getMessage());
+
+		} catch (SAXException e) {
+			Exception x = e.getException();
+			((x == null) ? e : x).printStackTrace();
+
+		} catch (FileNotFoundException fnf) {
+			System.out.println("Keyboard layout " + name + " not found!!");
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+		}
+
+		/*
+		 * The patterns are compiled with the halant of the layout, which may
+		 * come anywhere in the file.
+		 */
+		Pattern halantPattern = kept.get("halant");
+		String halant = "";
+		if (halantPattern != null) {
+			halant = halantPattern.unicode;
+		}
+		HashMap<String, Pattern> patterns = new HashMap<String, Pattern>();
+		for (Pattern p : kept.values()) {
+			patterns.put(p.key, new Pattern(p.key, p.unicode, p.consonant,
+					p.uni2, halant));
+		}
+		return new Layout(name, phonetic, patterns);
+	}
+
+	/**
+	 * Returns the trimmed text of the first element with the given tag
+	 * inside the pattern, or null if there is none.
+	 */
+	private static String text(Element patternElement, String tag) {
+		Element element = (Element) patternElement.getElementsByTagName(tag)
+				.item(0);
+		if (element == null || element.getFirstChild() == null) {
+			return null;
+		}
+		return element.getFirstChild().getNodeValue().trim();
+	}
+
+	/**
+	 * Returns the pattern of the given key, or null if the key is not in
+	 * the layout.
+	 */
+	public Pattern lookup(String key) {
+		if (key.length() == 1 && key.charAt(0) < ascii.length) {
+			return ascii[key.charAt(0)];
+		}
+		return patterns.get(key);
+	}
+
+	/**
+	 * Returns the Unicode of a two character pattern with the halant, like
+	 * that of "th" for 't', or null if c does not begin one.
+	 */
+	Unicode digraph(char c) {
+		return c < digraphs.length ? digraphs[c] : null;
+	}
+
+	/**
+	 * Returns the Unicode of the pattern of the given key, or an empty
+	 * string if the key is not in the layout.
+	 */
+	public String unicodeOf(String key) {
+		Pattern pattern = lookup(key);
+		if (pattern == null || pattern.unicode == null) {
+			return "";
+		}
+		return pattern.unicode;
+	}
+
+	/**
+	 * @return Returns true if the layout has no patterns, as when its file
+	 *         could not be read.
+	 */
+	public boolean isEmpty() {
+		return patterns.isEmpty();
+	}
+
+	/**
+	 * @return Returns the name of the layout file.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Returns true if the layout is processed as a phonetic layout.
+	 */
+	public boolean isPhonetic() {
+		return phonetic;
+	}
+
+	/**
+	 * @return Returns true for the inscript layouts, whose Unicode is put as
+	 *         it is.
+	 */
+	public boolean isInscript() {
+		return inscript;
+	}
+
+	/**
+	 * @return Returns true for the Tamil99 layout, which has rules of its
+	 *         own for the halant.
+	 */
+	public boolean isTamil99() {
+		return tamil99;
+	}
+
+	/**
+	 * @return Returns the Unicode of the halant, the pattern "halant", or an
+	 *         empty string if the layout has none.
+	 */
+	public String getHalant() {
+		return halant;
+	}
+}
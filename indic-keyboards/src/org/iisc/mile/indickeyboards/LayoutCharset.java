@@ -0,0 +1,324 @@
+/** ********************************************************************
+ * File:           LayoutCharset.java
+ * Description:    The 8-bit code of the typewriter fonts, read through a layout
+ * Created:        Mon Oct 19 05:40:51 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * The 8-bit code of the typewriter fonts, in which each byte is the ASCII
+ * of the key that types a letter on a typewriter layout, like the Hindi
+ * and the Tamil Remington. A text in such a font is only readable with the
+ * font; the charset gives its Unicode, as if the bytes were keyed in with
+ * the inscript layout of the same name.
+ * <p>
+ * A byte decodes to what its key puts, found once by typing it through
+ * the parsers; the bytes of the keys the layout does not have are ASCII.
+ * The encoder takes the longest run of characters some key puts, so the
+ * conjuncts and the letters put by one key come out as one byte. It keeps
+ * the characters which may yet be part of a longer run until the next
+ * ones, or until it is flushed.
+ * 
+ * @see IndicCharsets
+ */
+public final class LayoutCharset extends Charset {
+
+	/**
+	 * A node of the trie of what the keys put, and the byte of the key which
+	 * puts the characters up to it, -1 if none does. The nodes after it are
+	 * held by the character from <code>first</code> on, so each character
+	 * is one look; the characters of a layout are ASCII and those of one
+	 * block, so the arrays stay short.
+	 */
+	private static final class Node {
+		char first = 0;
+		Node[] next = new Node[0];
+		int key = -1;
+
+		Node next(char c) {
+			int i = c - first;
+			return i >= 0 && i < next.length ? next[i] : null;
+		}
+
+		Node add(char c) {
+			if (next.length == 0) {
+				first = c;
+			}
+			int low = Math.min(first, c);
+			int high = Math.max(first + next.length, c + 1);
+			if (low != first || high != first + next.length) {
+				Node[] grown = new Node[high - low];
+				System.arraycopy(next, 0, grown, first - low, next.length);
+				first = (char) low;
+				next = grown;
+			}
+			if (next[c - first] == null) {
+				next[c - first] = new Node();
+			}
+			return next[c - first];
+		}
+	}
+
+	private final String layoutName;
+	/**
+	 * What each byte decodes to, and the trie to encode with; made from the
+	 * layout on first use.
+	 */
+	private String[] decode;
+	private Node root;
+	private byte replacement;
+
+	/**
+	 * @param name
+	 *            The name of the charset
+	 * @param layoutName
+	 *            The inscript layout of <em>kblayouts</em> it is read with
+	 */
+	LayoutCharset(String name, String layoutName) {
+		super(name, null);
+		this.layoutName = layoutName;
+	}
+
+	/**
+	 * @return Returns the name of the layout of the charset.
+	 */
+	public String getLayoutName() {
+		return layoutName;
+	}
+
+	/**
+	 * Types each key of the layout on its own to find what it puts, and
+	 * makes the tables of the charset.
+	 */
+	private synchronized void load() {
+		if (decode != null) {
+			return;
+		}
+		Layout layout = Layouts.get(layoutName);
+		if (layout == null) {
+			throw new IllegalStateException("Keyboard layout " + layoutName
+					+ " could not be read");
+		}
+		TextOutput output = new TextOutput();
+		Session session = new Session(output, false);
+		String[] table = new String[128];
+		Node trie = new Node();
+		for (char c = 0; c < table.length; c++) {
+			session.reset();
+			if (layout.lookup(Transliterator.KEYS[c]) != null
+					&& session.process(Transliterator.KEYS[c], layout)) {
+				table[c] = output.take();
+			} else {
+				output.take();
+				table[c] = Transliterator.KEYS[c];
+			}
+		}
+		/*
+		 * The keys the layout has come first, so that an ASCII character is
+		 * only its own byte if no key puts it.
+		 */
+		for (int pass = 0; pass < 2; pass++) {
+			for (char c = 0; c < table.length; c++) {
+				boolean keyed = table[c] != Transliterator.KEYS[c];
+				if (keyed != (pass == 0) || table[c].length() == 0) {
+					continue;
+				}
+				Node node = trie;
+				for (int i = 0; i < table[c].length(); i++) {
+					node = node.add(table[c].charAt(i));
+				}
+				if (node.key < 0) {
+					node.key = c;
+				}
+			}
+		}
+		Node question = trie.next('?');
+		replacement = (byte) (question != null && question.key == '?' ? '?' : 0x1A);
+		root = trie;
+		decode = table;
+	}
+
+	public boolean contains(Charset cs) {
+		return cs == this;
+	}
+
+	public CharsetDecoder newDecoder() {
+		load();
+		return new Decoder();
+	}
+
+	public CharsetEncoder newEncoder() {
+		load();
+		return new Encoder();
+	}
+
+	private final class Decoder extends CharsetDecoder {
+		Decoder() {
+			super(LayoutCharset.this, 1.0f, 3.0f);
+		}
+
+		protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+			while (in.hasRemaining()) {
+				int position = in.position();
+				int b = in.get();
+				if (b < 0) {
+					in.position(position);
+					return CoderResult.malformedForLength(1);
+				}
+				String value = decode[b];
+				if (out.remaining() < value.length()) {
+					in.position(position);
+					return CoderResult.OVERFLOW;
+				}
+				if (value.length() == 1) {
+					out.put(value.charAt(0));
+				} else {
+					out.put(value);
+				}
+			}
+			return CoderResult.UNDERFLOW;
+		}
+	}
+
+	private final class Encoder extends CharsetEncoder {
+		/**
+		 * The characters kept until it is known how long a run they are
+		 * part of, and where they lead in the trie.
+		 */
+		private final StringBuilder pending = new StringBuilder();
+		private Node node = root;
+
+		Encoder() {
+			super(LayoutCharset.this, 1.0f, 1.0f, new byte[] { replacement });
+		}
+
+		/**
+		 * Takes one more character, and writes the byte of the longest run
+		 * held when it is not part of a longer one. Returns false if there
+		 * is no room for that.
+		 */
+		private boolean feed(char c, ByteBuffer out) {
+			while (true) {
+				Node next = node.next(c);
+				if (next != null) {
+					pending.append(c);
+					node = next;
+					return true;
+				}
+				if (pending.length() == 0) {
+					/*
+					 * The character begins no run; the caller reports it
+					 * unmappable.
+					 */
+					return true;
+				}
+				if (!resolve(out, c)) {
+					return false;
+				}
+			}
+		}
+
+		/**
+		 * Writes the byte of a run at the start of the characters held, and
+		 * feeds the rest of them again. The run is the longest one after
+		 * which the next character, the one held or the one which did not
+		 * fit, begins another; like a conjunct and a halant, whose key puts
+		 * the last consonant with its halant. A character which begins no
+		 * run is written as the replacement.
+		 * 
+		 * @param next
+		 *            The character which did not fit, or -1 at the end
+		 */
+		private boolean resolve(ByteBuffer out, int next) {
+			if (out.remaining() < pending.length()) {
+				return false;
+			}
+			int length = 0;
+			int key = -1;
+			Node walk = root;
+			for (int i = 0; i < pending.length(); i++) {
+				walk = walk.next(pending.charAt(i));
+				if (walk.key < 0) {
+					continue;
+				}
+				int after = i + 1 < pending.length() ? pending.charAt(i + 1)
+						: next;
+				if (key < 0 || after < 0 || root.next((char) after) != null) {
+					length = i + 1;
+					key = walk.key;
+				}
+			}
+			if (key < 0) {
+				out.put(replacement()[0]);
+				length = 1;
+			} else {
+				out.put((byte) key);
+			}
+			node = root;
+			if (length == pending.length()) {
+				pending.setLength(0);
+				return true;
+			}
+			String rest = pending.substring(length);
+			pending.setLength(0);
+			for (int i = 0; i < rest.length(); i++) {
+				char c = rest.charAt(i);
+				feed(c, out);
+				if (node == root) {
+					out.put(replacement()[0]);
+				}
+			}
+			return true;
+		}
+
+		protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+			while (in.hasRemaining()) {
+				int position = in.position();
+				char c = in.get();
+				if (!feed(c, out)) {
+					in.position(position);
+					return CoderResult.OVERFLOW;
+				}
+				if (node == root) {
+					in.position(position);
+					return CoderResult.unmappableForLength(1);
+				}
+			}
+			return CoderResult.UNDERFLOW;
+		}
+
+		protected CoderResult implFlush(ByteBuffer out) {
+			while (pending.length() > 0) {
+				if (!resolve(out, -1)) {
+					return CoderResult.OVERFLOW;
+				}
+			}
+			return CoderResult.UNDERFLOW;
+		}
+
+		protected void implReset() {
+			pending.setLength(0);
+			node = root;
+		}
+	}
+}
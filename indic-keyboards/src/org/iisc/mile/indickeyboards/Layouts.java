@@ -0,0 +1,124 @@
+/** ********************************************************************
+ * File:           Layouts.java
+ * Description:    The layouts of kblayouts, each compiled once and shared
+ * Created:        Mon Oct 19 04:55:42 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The layouts of the directory <em>kblayouts</em>, each read the first time
+ * it is asked for and then shared by all who ask for it. A
+ * <code>Layout</code> never changes once read, so any number of threads may
+ * transliterate with the same one.
+ * <p>
+ * A layout whose file has been changed is read again, when it is next asked
+ * for, at most a second after the change; the words of the old one are then
+ * dropped from the <code>WordCache</code>.
+ */
+public class Layouts {
+
+	/**
+	 * Milliseconds between two looks at the file of a layout.
+	 */
+	static final long CHECK_INTERVAL = 1000;
+
+	/**
+	 * A layout and the time its file was last changed.
+	 */
+	private static final class Loaded {
+		final Layout layout;
+		final File file;
+		final long modified;
+		volatile long checked;
+
+		Loaded(Layout layout, File file, long modified, long checked) {
+			this.layout = layout;
+			this.file = file;
+			this.modified = modified;
+			this.checked = checked;
+		}
+	}
+
+	private static final ConcurrentHashMap<String, Loaded> layouts = new ConcurrentHashMap<String, Loaded>();
+
+	/**
+	 * Returns the layout read from a file of <em>kblayouts</em>, like
+	 * <em>kan_phonetic.xml</em>, or null if there is no such layout. Only
+	 * the names of files directly in <em>kblayouts</em> are taken, so a
+	 * name from a client can not be used to read any other file.
+	 */
+	public static Layout get(String name) {
+		Loaded loaded = layouts.get(name);
+		long now = System.currentTimeMillis();
+		if (loaded != null) {
+			if (now - loaded.checked < CHECK_INTERVAL) {
+				return loaded.layout;
+			}
+			loaded.checked = now;
+			if (loaded.file.lastModified() == loaded.modified) {
+				return loaded.layout;
+			}
+		} else if (!isLayoutName(name)) {
+			return null;
+		}
+		File file = new File(new File(System.getProperty("user.dir"),
+				"kblayouts"), name);
+		if (!file.isFile()) {
+			return loaded == null ? null : loaded.layout;
+		}
+		long modified = file.lastModified();
+		Layout layout = Layout.load(name);
+		if (layout.isEmpty()) {
+			if (loaded == null) {
+				return null;
+			}
+			/*
+			 * The file is being edited, or has a mistake; the old layout is
+			 * used until it is fixed.
+			 */
+			layout = loaded.layout;
+		}
+		Loaded fresh = new Loaded(layout, file, modified, now);
+		if (loaded == null) {
+			Loaded previous = layouts.putIfAbsent(name, fresh);
+			return previous == null ? layout : previous.layout;
+		}
+		if (layouts.replace(name, loaded, fresh) && layout != loaded.layout) {
+			WordCache.shared.invalidate(loaded.layout);
+		}
+		return layouts.get(name).layout;
+	}
+
+	/**
+	 * Returns true for the name of an XML file with no directory in it.
+	 */
+	static boolean isLayoutName(String name) {
+		if (!name.endsWith(".xml") || name.startsWith(".")) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-'
+					|| c == '.')) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
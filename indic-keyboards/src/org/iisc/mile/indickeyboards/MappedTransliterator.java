@@ -0,0 +1,227 @@
+/** ********************************************************************
+ * File:           MappedTransliterator.java
+ * Description:    Transliterates a large file in parallel through memory maps
+ * Created:        Mon Oct 19 04:54:02 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Transliterates a single large file, such as a keystroke log, on all the
+ * threads of a pool. The file is memory-mapped and cut into slices of about
+ * <code>SLICE</code> bytes, each ending with a newline. A
+ * <code>Transliterator</code> carries nothing over a newline, so each slice
+ * can be converted on its own and the output is byte for byte that of
+ * converting the whole file in one go.
+ * <p>
+ * The slices are converted into buffers of their own and written out in
+ * the order of the file, as many at a time as are done, with a gathering
+ * write. Only a few slices per thread are in hand at any time. The files
+ * are read and written as UTF-8, whose bytes of a newline never occur
+ * inside another character.
+ */
+public class MappedTransliterator {
+
+	/**
+	 * Bytes of the file converted by one task, up to the end of the line.
+	 */
+	static final int SLICE = 8 << 20;
+	/**
+	 * Bytes read at a time while looking for the end of a line.
+	 */
+	private static final int SCAN = 64 << 10;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Converts the lines between two offsets of the file.
+	 */
+	static class Slice extends RecursiveTask<ByteBuffer> {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long start;
+		private final int length;
+		private final Layout layout;
+		long charsIn = 0;
+		long charsOut = 0;
+		/**
+		 * Set if the slice could not be read.
+		 */
+		IOException failure;
+
+		Slice(FileChannel channel, long start, int length, Layout layout) {
+			this.channel = channel;
+			this.start = start;
+			this.length = length;
+			this.layout = layout;
+		}
+
+		protected ByteBuffer compute() {
+			try {
+				MappedByteBuffer bytes = channel.map(
+						FileChannel.MapMode.READ_ONLY, start, length);
+				/*
+				 * Malformed input is replaced, as InputStreamReader does.
+				 */
+				CharsetDecoder decoder = UTF8.newDecoder().onMalformedInput(
+						CodingErrorAction.REPLACE).onUnmappableCharacter(
+						CodingErrorAction.REPLACE);
+				CharBuffer chars = CharBuffer.allocate(Transliterator.CHUNK);
+				StringBuilder text = new StringBuilder(length + length / 2);
+				Transliterator transliterator = new Transliterator(layout);
+				CoderResult result;
+				do {
+					result = decoder.decode(bytes, chars, true);
+					transliterator.write(chars.array(), 0, chars.position(),
+							text);
+					chars.clear();
+				} while (result.isOverflow());
+				decoder.flush(chars);
+				transliterator.write(chars.array(), 0, chars.position(), text);
+				transliterator.finish(text);
+				charsIn = transliterator.getCharsIn();
+				charsOut = transliterator.getCharsOut();
+				return UTF8.newEncoder().onMalformedInput(
+						CodingErrorAction.REPLACE).onUnmappableCharacter(
+						CodingErrorAction.REPLACE).encode(CharBuffer.wrap(text));
+			} catch (IOException e) {
+				failure = e;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the offset just after the first newline at or after from, or
+	 * the size of the file if there is none.
+	 */
+	private static long lineEnd(FileChannel channel, long from, long size)
+			throws IOException {
+		ByteBuffer window = ByteBuffer.allocate(SCAN);
+		long position = from;
+		while (position < size) {
+			window.clear();
+			int n = channel.read(window, position);
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				if (window.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	/**
+	 * Transliterates a file to another on the threads of a pool.
+	 * 
+	 * @return Returns the number of chars read and of chars written.
+	 * @throws IOException
+	 *             If a file can not be read or written, or if a line is
+	 *             longer than a memory map can be
+	 */
+	public static long[] convert(File file, File target, Layout layout,
+			ForkJoinPool pool) throws IOException {
+		return convert(file, target, layout, pool, SLICE);
+	}
+
+	/**
+	 * Transliterates a file to another in slices of about the given number
+	 * of bytes.
+	 */
+	static long[] convert(File file, File target, Layout layout,
+			ForkJoinPool pool, int sliceBytes) throws IOException {
+		long[] counts = new long[2];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileOutputStream out = new FileOutputStream(target);
+			try {
+				FileChannel input = in.getChannel();
+				FileChannel output = out.getChannel();
+				long size = input.size();
+				int ahead = pool.getParallelism() * 2;
+				ArrayDeque<Slice> inFlight = new ArrayDeque<Slice>(ahead);
+				List<ByteBuffer> done = new ArrayList<ByteBuffer>(ahead);
+				long start = 0;
+				while (start < size || !inFlight.isEmpty()) {
+					while (start < size && inFlight.size() < ahead) {
+						long end = size - start <= sliceBytes ? size
+								: lineEnd(input, start + sliceBytes - 1, size);
+						if (end - start > Integer.MAX_VALUE) {
+							throw new IOException("Line at byte " + start
+									+ " of " + file + " is too long");
+						}
+						Slice slice = new Slice(input, start,
+								(int) (end - start), layout);
+						pool.execute(slice);
+						inFlight.addLast(slice);
+						start = end;
+					}
+					/*
+					 * Wait for the next slice in the order of the file, and
+					 * write it with those after it which are done already.
+					 */
+					done.clear();
+					do {
+						Slice slice = inFlight.removeFirst();
+						ByteBuffer converted = slice.join();
+						if (slice.failure != null) {
+							throw slice.failure;
+						}
+						counts[0] += slice.charsIn;
+						counts[1] += slice.charsOut;
+						done.add(converted);
+					} while (!inFlight.isEmpty()
+							&& inFlight.peekFirst().isDone());
+					ByteBuffer[] buffers = done.toArray(new ByteBuffer[done
+							.size()]);
+					long remaining = 0;
+					for (ByteBuffer buffer : buffers) {
+						remaining += buffer.remaining();
+					}
+					while (remaining > 0) {
+						remaining -= output.write(buffers);
+					}
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,108 @@
+/** ********************************************************************
+ * File:           Output.java
+ * Description:    Where the parsers put their output
+ * Created:        Mon Oct 19 04:43:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * Receives the output of the parsers: characters to delete and Unicode to
+ * put. The active window is one such output; a buffer of text is another,
+ * which lets the layouts be used without a display.
+ */
+public abstract class Output {
+
+	/**
+	 * Deletes the given number of characters before the cursor.
+	 * 
+	 * @param count
+	 *            Number of characters to delete
+	 */
+	public abstract void erase(int count);
+
+	/**
+	 * Puts one Unicode character.
+	 * 
+	 * @param codePoint
+	 *            The character
+	 */
+	public abstract void putChar(int codePoint);
+
+	/**
+	 * Deletes characters before the cursor and puts a text in their place.
+	 * An output which can, like the active window on Linux, does both in
+	 * one batch; by default the characters are deleted and the text put
+	 * one character after another.
+	 * 
+	 * @param count
+	 *            Number of characters to delete
+	 * @param text
+	 *            The text to put
+	 */
+	public void replace(int count, CharSequence text) {
+		if (count > 0) {
+			erase(count);
+		}
+		for (int i = 0; i < text.length();) {
+			int codePoint = Character.codePointAt(text, i);
+			putChar(codePoint);
+			i += Character.charCount(codePoint);
+		}
+	}
+
+	/**
+	 * Returns the number of characters echoed for a key before it reaches
+	 * the parsers, which are deleted before its Unicode is put. None by
+	 * default.
+	 */
+	public int echoLength() {
+		return 0;
+	}
+
+	/**
+	 * Puts the Unicode of a pattern. A value of more than 4 hex digits holds
+	 * several characters, 4 digits each, which are all put. Values which are
+	 * not hex are not put.
+	 * 
+	 * @param ucodeValue
+	 *            Unicode to put, 4 hex digits per character
+	 * @param omitSingle
+	 *            If set, a value of a single character is not put. Used for
+	 *            the vowel "a" after a consonant, which puts nothing.
+	 */
+	public void put(String ucodeValue, boolean omitSingle) {
+		put(Layout.Unicode.of(ucodeValue), omitSingle);
+	}
+
+	/**
+	 * Puts a Unicode value of a layout, whose characters have been worked
+	 * out when the layout was read.
+	 * 
+	 * @param value
+	 *            Unicode to put
+	 * @param omitSingle
+	 *            If set, a value of a single character is not put
+	 */
+	public void put(Layout.Unicode value, boolean omitSingle) {
+		if (value.single && omitSingle) {
+			return;
+		}
+		int[] chars = value.chars;
+		for (int i = 0; i < chars.length; i++) {
+			putChar(chars[i]);
+		}
+	}
+}
@@ -0,0 +1,595 @@
+/** ********************************************************************
+ * File:           ReverseTransliterator.java
+ * Description:    Keys which type a given Unicode text with a keyboard layout
+ * Created:        Mon Oct 19 05:23:45 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Finds the keys which type a given Unicode text with a keyboard layout,
+ * the reverse of <code>Transliterator</code>: for typing tutors, for making
+ * test input out of text in the script and for showing how a passage is
+ * typed. The keys, transliterated with the same layout, give back the
+ * text.
+ * <p>
+ * The Unicode each key may put - its independent and its dependent vowel,
+ * a consonant with the halant of a phonetic layout, a Tamil99 consonant
+ * after the halant, and the two character patterns th, sh and dh - is
+ * gathered into a trie going from the Unicode back to the keys. The trie
+ * only proposes keys. Each is typed through the parsers on the state
+ * reached so far and is kept only if what it puts agrees with the text, so
+ * the rules of the layouts are the ones used while typing and are not
+ * written down a second time here.
+ * <p>
+ * The keys are chosen in one of two ways. By default each step takes the
+ * key which puts most of the text, the longest match; a word on which this
+ * gets stuck, like a Tamil99 consonant repeated without the halant, is
+ * searched instead. The other way always searches, breadth first, for the
+ * fewest keys.
+ * <p>
+ * The text is taken a word at a time. After a space or a newline the
+ * parsers have forgotten the keys before it, so each word is found on its
+ * own and the time taken grows linearly with the text; only the word being
+ * read is held. Characters which no key puts are copied as they are, as a
+ * transliterator copies what is not ASCII, and are counted by
+ * <code>getUnmatched()</code>.
+ * 
+ * <pre>
+ * ReverseTransliterator r = new ReverseTransliterator(Layout.load(&quot;tamil99.xml&quot;), false);
+ * r.write(text, keys);
+ * r.finish(keys);
+ * </pre>
+ */
+public class ReverseTransliterator {
+
+	/**
+	 * Number of characters a key may delete: the consonant and the halant
+	 * replaced by a two character pattern. Output which is not in the text
+	 * has to be deleted by the next key, so no more may be pending, and a
+	 * key may put its Unicode at most this far before the text matched.
+	 */
+	private static final int BACK = 2;
+
+	/**
+	 * A node of the trie. The keys which put the Unicode spelt by the path
+	 * to the node are in <code>keys</code>. The nodes after it are found by
+	 * their char in <code>chars</code>, which is kept sorted.
+	 */
+	private static final class Node {
+		private char[] chars = new char[0];
+		private Node[] next = new Node[0];
+		String keys = "";
+
+		Node next(char c) {
+			int i = Arrays.binarySearch(chars, c);
+			return i < 0 ? null : next[i];
+		}
+
+		Node add(char c) {
+			int i = Arrays.binarySearch(chars, c);
+			if (i >= 0) {
+				return next[i];
+			}
+			i = -i - 1;
+			char[] newChars = new char[chars.length + 1];
+			Node[] newNext = new Node[next.length + 1];
+			System.arraycopy(chars, 0, newChars, 0, i);
+			System.arraycopy(next, 0, newNext, 0, i);
+			System.arraycopy(chars, i, newChars, i + 1, chars.length - i);
+			System.arraycopy(next, i, newNext, i + 1, next.length - i);
+			newChars[i] = c;
+			newNext[i] = new Node();
+			chars = newChars;
+			next = newNext;
+			return newNext[i];
+		}
+	}
+
+	/**
+	 * Where a sequence of keys has got to in a word: how much of the word
+	 * its output agrees with, what it put after that which a later key has
+	 * to delete, and the state of the parsers. Two sequences which get to
+	 * equal states go on alike, so only the first is searched further.
+	 */
+	private static final class State {
+		/**
+		 * Number of chars of the word the output agrees with.
+		 */
+		final int at;
+		/**
+		 * The output after them, which is not in the word.
+		 */
+		final String pending;
+		final int flag;
+		final String previousChar;
+		final int count;
+		/**
+		 * The state the key was typed in, the key and the number of keys
+		 * typed since the word began.
+		 */
+		final State parent;
+		final char key;
+		final int depth;
+
+		State(int at, String pending, Session session, State parent, char key) {
+			this.at = at;
+			this.pending = pending;
+			this.flag = session.previousConsonantFlag;
+			this.previousChar = session.previousChar;
+			this.count = session.tamil99count;
+			this.parent = parent;
+			this.key = key;
+			this.depth = parent == null ? 0 : parent.depth + 1;
+		}
+
+		/**
+		 * Returns true if the whole word has been put and nothing more.
+		 */
+		boolean done(String word) {
+			return at == word.length() && pending.length() == 0;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof State)) {
+				return false;
+			}
+			State s = (State) o;
+			return at == s.at && flag == s.flag && count == s.count
+					&& pending.equals(s.pending)
+					&& previousChar.equals(s.previousChar);
+		}
+
+		public int hashCode() {
+			return ((at * 31 + flag) * 31 + count) * 31 + pending.hashCode()
+					* 17 + previousChar.hashCode();
+		}
+	}
+
+	private final Layout layout;
+	private final boolean fewest;
+	private final Node root = new Node();
+	/**
+	 * The chars some key of the layout puts, which are not copied.
+	 */
+	private final BitSet typed = new BitSet();
+	/**
+	 * Keys which may put nothing and only change the state, like "a" after
+	 * a consonant of a phonetic layout.
+	 */
+	private final String silent;
+	/**
+	 * The chars which end a word: those of space, Enter and return which
+	 * the layout does not key in.
+	 */
+	private final String separators;
+	/**
+	 * The parsers, typing the keys tried into a scratch output.
+	 */
+	private final TextOutput scratch = new TextOutput();
+	private final Session session;
+	private final StringBuilder word = new StringBuilder();
+	private final StringBuilder candidates = new StringBuilder();
+	private long charsIn = 0;
+	private long keysOut = 0;
+	private long unmatched = 0;
+
+	/**
+	 * Creates a reverse transliterator for a layout.
+	 * 
+	 * @param layout
+	 *            The layout, as given by <code>Layout.load()</code>
+	 * @param fewest
+	 *            If set, the fewest keys are searched for rather than the
+	 *            longest match taken at each step
+	 */
+	public ReverseTransliterator(Layout layout, boolean fewest) {
+		this.layout = layout;
+		this.fewest = fewest;
+		this.session = new Session(scratch, false);
+		session.attach(layout);
+		for (char c = 0; c < Transliterator.KEYS.length; c++) {
+			Layout.Pattern p = layout.lookup(Transliterator.KEYS[c]);
+			if (p == null) {
+				continue;
+			}
+			add(p.value, c);
+			add(p.dependent, c);
+			if (layout.isPhonetic()) {
+				add(p.withHalant, c);
+			}
+			if (layout.isTamil99()) {
+				add(p.afterHalant, c);
+			}
+		}
+		if (layout.isPhonetic()) {
+			/*
+			 * The first key of a two character pattern puts a consonant
+			 * which the "h" replaces, so both are proposed for its Unicode.
+			 * The Unicode ends with the halant, which a vowel after it
+			 * takes away, so the consonant without it is proposed too, as
+			 * the value of any other consonant is.
+			 */
+			for (char c : Layout.DIGRAPHS.toCharArray()) {
+				Layout.Unicode digraph = layout.digraph(c);
+				if (digraph == null) {
+					continue;
+				}
+				for (int length = digraph.chars.length - 1; length <= digraph.chars.length; length++) {
+					add(digraph, length, c);
+					add(digraph, length, 'h');
+				}
+			}
+		}
+		this.silent = (layout.isPhonetic() || layout.isTamil99())
+				&& layout.lookup("a") != null ? "a" : "";
+		StringBuilder ends = new StringBuilder();
+		for (char c : " \n\r".toCharArray()) {
+			if (layout.lookup(Transliterator.KEYS[c]) == null) {
+				ends.append(c);
+			}
+		}
+		this.separators = ends.toString();
+	}
+
+	/**
+	 * Adds the Unicode a key puts to the trie.
+	 */
+	private void add(Layout.Unicode value, char key) {
+		if (value != null) {
+			add(value, value.chars.length, key);
+		}
+	}
+
+	/**
+	 * Adds the first chars of the Unicode a key puts to the trie.
+	 */
+	private void add(Layout.Unicode value, int length, char key) {
+		if (value == null || length <= 0) {
+			return;
+		}
+		String s = new String(value.chars, 0, length);
+		Node node = root;
+		for (int i = 0; i < s.length(); i++) {
+			node = node.add(s.charAt(i));
+			typed.set(s.charAt(i));
+		}
+		if (node.keys.indexOf(key) < 0) {
+			node.keys += key;
+		}
+	}
+
+	/**
+	 * @return Returns the layout the keys are found for.
+	 */
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Gathers into <code>candidates</code> the keys which may take a state
+	 * further: those the trie finds for the text at the state or just
+	 * before it, the silent keys, and the next char itself if no key puts
+	 * it.
+	 */
+	private void propose(State s, String w) {
+		candidates.setLength(0);
+		for (int p = s.at; p >= 0 && p >= s.at - BACK; p--) {
+			Node node = root;
+			for (int i = p; i < w.length(); i++) {
+				node = node.next(w.charAt(i));
+				if (node == null) {
+					break;
+				}
+				for (int k = 0; k < node.keys.length(); k++) {
+					propose(node.keys.charAt(k));
+				}
+			}
+		}
+		for (int k = 0; k < silent.length(); k++) {
+			propose(silent.charAt(k));
+		}
+		if (s.at < w.length()) {
+			char c = w.charAt(s.at);
+			if (c >= Transliterator.KEYS.length ? !typed.get(c) : c != '\b'
+					&& layout.lookup(Transliterator.KEYS[c]) == null) {
+				propose(c);
+			}
+		}
+	}
+
+	private void propose(char key) {
+		for (int i = 0; i < candidates.length(); i++) {
+			if (candidates.charAt(i) == key) {
+				return;
+			}
+		}
+		candidates.append(key);
+	}
+
+	/**
+	 * Types a key in the given state, as a transliterator would, and
+	 * returns the state it leads to.
+	 */
+	private State type(State s, char key, String w) {
+		int base = Math.max(0, s.at - TextOutput.KEEP);
+		scratch.take();
+		scratch.append(w.substring(base, s.at));
+		scratch.append(s.pending);
+		session.previousConsonantFlag = s.flag;
+		session.previousConsonantFlaglog = s.flag;
+		session.previousChar = s.previousChar;
+		session.previousCharlog = s.previousChar;
+		session.tamil99count = s.count;
+		if (key >= Transliterator.KEYS.length
+				|| !session.process(Transliterator.KEYS[key], layout)) {
+			scratch.append(key);
+		}
+		String output = scratch.take();
+		int i = 0;
+		while (i < output.length() && base + i < w.length()
+				&& output.charAt(i) == w.charAt(base + i)) {
+			i++;
+		}
+		return new State(base + i, output.substring(i), session, s, key);
+	}
+
+	/**
+	 * Takes at each step the key which puts most of the word. Returns the
+	 * state at the end of the word, or null if no key takes the word
+	 * further.
+	 */
+	private State longest(State start, String w) {
+		State s = start;
+		while (!s.done(w)) {
+			State best = s;
+			propose(s, w);
+			for (int k = 0; k < candidates.length(); k++) {
+				State t = type(s, candidates.charAt(k), w);
+				if (t.at > best.at || t.at == best.at
+						&& t.pending.length() < best.pending.length()) {
+					best = t;
+				}
+			}
+			if (best == s) {
+				return null;
+			}
+			s = best;
+		}
+		return s;
+	}
+
+	/**
+	 * Searches breadth first for the fewest keys which put the word. If
+	 * none do, returns the state which puts most of it, with nothing
+	 * pending.
+	 */
+	private State fewest(State start, String w) {
+		HashSet<State> seen = new HashSet<State>();
+		ArrayDeque<State> queue = new ArrayDeque<State>();
+		seen.add(start);
+		queue.add(start);
+		State best = start;
+		State s;
+		while ((s = queue.poll()) != null) {
+			if (s.done(w)) {
+				return s;
+			}
+			propose(s, w);
+			for (int k = 0; k < candidates.length(); k++) {
+				State t = type(s, candidates.charAt(k), w);
+				if (t.pending.length() > BACK || !seen.add(t)) {
+					continue;
+				}
+				queue.add(t);
+				if (t.pending.length() == 0 && t.at > best.at) {
+					best = t;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the keys of the word read and appends them to out. A char which
+	 * no key puts is copied, and the search goes on after it.
+	 */
+	private void endWord(Appendable out) throws IOException {
+		if (word.length() == 0) {
+			return;
+		}
+		String w = word.toString();
+		word.setLength(0);
+		session.reset();
+		State start = new State(0, "", session, null, '\0');
+		while (true) {
+			State end = fewest ? null : longest(start, w);
+			if (end == null) {
+				end = fewest(start, w);
+			}
+			char[] keys = new char[end.depth - start.depth];
+			for (State s = end; s != start; s = s.parent) {
+				keys[s.depth - start.depth - 1] = s.key;
+			}
+			out.append(new String(keys));
+			keysOut += keys.length;
+			if (end.done(w)) {
+				return;
+			}
+			char c = w.charAt(end.at);
+			out.append(c);
+			keysOut++;
+			unmatched++;
+			type(end, c, w);
+			start = new State(end.at + 1, "", session, null, '\0');
+		}
+	}
+
+	/**
+	 * Finds the keys of a chunk of text. The keys are appended to out a
+	 * word at a time; those of the last word follow with later chunks or
+	 * with <code>finish()</code>.
+	 */
+	public void write(CharSequence text, Appendable out) throws IOException {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (separators.indexOf(c) >= 0) {
+				endWord(out);
+				out.append(c);
+				keysOut++;
+			} else {
+				word.append(c);
+			}
+		}
+		charsIn += length;
+	}
+
+	/**
+	 * Ends the text: appends the keys of the last word to out.
+	 */
+	public void finish(Appendable out) throws IOException {
+		endWord(out);
+	}
+
+	/**
+	 * Finds the keys of all the text of a reader, writes them to a writer
+	 * and finishes. Neither is closed.
+	 */
+	public void transliterate(Reader in, Writer out) throws IOException {
+		char[] buffer = new char[Transliterator.CHUNK];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			write(new String(buffer, 0, n), out);
+		}
+		finish(out);
+		out.flush();
+	}
+
+	/**
+	 * @return Returns the number of chars of text read so far.
+	 */
+	public long getCharsIn() {
+		return charsIn;
+	}
+
+	/**
+	 * @return Returns the number of keys found so far.
+	 */
+	public long getKeysOut() {
+		return keysOut;
+	}
+
+	/**
+	 * @return Returns the number of chars no key puts, which have been
+	 *         copied as they are.
+	 */
+	public long getUnmatched() {
+		return unmatched;
+	}
+
+	private static void usage() {
+		System.out.println("Usage: ReverseTransliterator -layout <layout.xml>"
+				+ " [-fewest] <file>...");
+		System.exit(2);
+	}
+
+	/**
+	 * Writes the keys of each file given, read as UTF-8, to
+	 * <em>name.keys</em>. The layout is read from <em>kblayouts</em> in the
+	 * current directory.
+	 * 
+	 * <pre>
+	 * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.ReverseTransliterator
+	 *      -layout tamil99.xml [-fewest] file...
+	 * </pre>
+	 */
+	public static void main(String[] args) {
+		String layoutName = null;
+		boolean fewest = false;
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-layout")) {
+					layoutName = args[++i];
+				} else if (args[i].equals("-fewest")) {
+					fewest = true;
+				} else {
+					files.add(new File(args[i]));
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		}
+		if (layoutName == null || files.isEmpty()) {
+			usage();
+		}
+		Layout layout = Layout.load(layoutName);
+		if (layout.isEmpty()) {
+			System.out.println("Keyboard layout " + layoutName
+					+ " has no patterns");
+			System.exit(1);
+		}
+
+		int failed = 0;
+		for (File file : files) {
+			File target = new File(file.getPath() + ".keys");
+			long start = System.nanoTime();
+			ReverseTransliterator reverse = new ReverseTransliterator(layout,
+					fewest);
+			try {
+				Reader in = new InputStreamReader(new FileInputStream(file),
+						"UTF-8");
+				try {
+					Writer out = new OutputStreamWriter(new FileOutputStream(
+							target), "UTF-8");
+					try {
+						reverse.transliterate(in, out);
+					} finally {
+						out.close();
+					}
+				} finally {
+					in.close();
+				}
+				System.out.println(file + " -> " + target + ", "
+						+ reverse.getCharsIn() + " chars, "
+						+ reverse.getKeysOut() + " keys, "
+						+ reverse.getUnmatched() + " chars not typed, "
+						+ (System.nanoTime() - start) / 1000000 + " ms");
+			} catch (IOException e) {
+				System.out.println(file + ": " + e.getMessage());
+				failed++;
+			}
+		}
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+}
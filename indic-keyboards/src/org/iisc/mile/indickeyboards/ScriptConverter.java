@@ -0,0 +1,498 @@
+/** ********************************************************************
+ * File:           ScriptConverter.java
+ * Description:    Conversion of text between the Brahmic scripts
+ * Created:        Mon Oct 19 05:26:57 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts text from one Brahmic script to another: Devanagari, Bengali,
+ * Gurmukhi, Gujarati, Oriya, Tamil, Telugu, Kannada and Malayalam. Unicode
+ * gives these scripts blocks of 128 characters in which a letter sits at
+ * the same offset in each, so most characters are converted by moving
+ * them from one block to the other. The inscript layouts put the letters
+ * on the same keys in every script, and are what the blocks of the
+ * scripts are found from.
+ * <p>
+ * The exceptions go through the table of the converter:
+ * <ul>
+ * <li>a character whose offset is not a character of the other script is
+ * given what the same key of the inscript layouts puts, like a Tamil
+ * letter for a Devanagari aspirate, if that is a character of the same
+ * kind not put for another one;</li>
+ * <li>a letter still without one falls back on the nearest letter the
+ * other script has, as in <code>NEAREST</code>;</li>
+ * <li>the danda and the double danda, which all the scripts use, are left
+ * as they are;</li>
+ * <li>anything else with no counterpart is left as it is.</li>
+ * </ul>
+ * Every character of these blocks is three bytes long in UTF-8 and stays
+ * so, which lets files be converted on their bytes, in place and on all
+ * the threads of a pool, without decoding them.
+ * 
+ * <pre>
+ * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.ScriptConverter
+ *      -from hin -to kan [-out dir] [-threads n] file...
+ * </pre>
+ */
+public class ScriptConverter {
+
+	/**
+	 * Number of characters in the Unicode block of a script.
+	 */
+	static final int BLOCK = 0x80;
+	/**
+	 * The first and the last of the blocks.
+	 */
+	private static final int FIRST = 0x0900;
+	private static final int LAST = 0x0D00;
+	/**
+	 * Characters used by all the scripts, which are never converted.
+	 */
+	private static final String SHARED = "\u0964\u0965";
+	/**
+	 * Offsets of letters which some scripts do not have, each with the
+	 * offset of the letter to put instead: the aspirated and the voiced
+	 * stops become the plain stop, as Tamil writes them, the letters with a
+	 * nukta lose it and the candrabindu becomes the anusvara.
+	 */
+	private static final int[][] NEAREST = { { 0x01, 0x02 }, { 0x16, 0x15 },
+			{ 0x17, 0x15 }, { 0x18, 0x15 }, { 0x1B, 0x1A }, { 0x1D, 0x1C },
+			{ 0x20, 0x1F }, { 0x21, 0x1F }, { 0x22, 0x1F }, { 0x25, 0x24 },
+			{ 0x26, 0x24 }, { 0x27, 0x24 }, { 0x2B, 0x2A }, { 0x2C, 0x2A },
+			{ 0x2D, 0x2A }, { 0x58, 0x15 }, { 0x59, 0x16 }, { 0x5A, 0x17 },
+			{ 0x5B, 0x1C }, { 0x5C, 0x21 }, { 0x5D, 0x22 }, { 0x5E, 0x2B },
+			{ 0x5F, 0x2F } };
+	/**
+	 * Bytes converted at a time by a thread converting a file.
+	 */
+	private static final int BUFFER = 64 << 10;
+
+	private final int from;
+	private final int to;
+	/**
+	 * What each character of the block converted from becomes.
+	 */
+	private final char[] table = new char[BLOCK];
+	/**
+	 * The second and the third UTF-8 byte of the same, whose first byte is
+	 * always 0xE0.
+	 */
+	private final byte[] second = new byte[BLOCK];
+	private final byte[] third = new byte[BLOCK];
+	/**
+	 * The second UTF-8 byte of the first character of the block converted
+	 * from. Its characters have that or the next one.
+	 */
+	private final int lead;
+	private int overrides = 0;
+
+	/**
+	 * Creates a converter between the scripts of two inscript layouts.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If a layout puts no characters of these scripts
+	 */
+	public ScriptConverter(Layout fromLayout, Layout toLayout) {
+		this.from = block(fromLayout);
+		this.to = block(toLayout);
+		if (from < 0 || to < 0) {
+			throw new IllegalArgumentException("No Indic script in "
+					+ (from < 0 ? fromLayout : toLayout).getName());
+		}
+		/*
+		 * The characters given a counterpart, and the characters of the
+		 * other script given to one.
+		 */
+		boolean[] converted = new boolean[BLOCK];
+		boolean[] used = new boolean[BLOCK];
+		for (int i = 0; i < BLOCK; i++) {
+			char c = (char) (from + i);
+			char shifted = (char) (to + i);
+			table[i] = c;
+			if (SHARED.indexOf(c) >= 0) {
+				converted[i] = true;
+			} else if (Character.isDefined(c) && Character.isDefined(shifted)) {
+				table[i] = shifted;
+				converted[i] = true;
+				used[i] = true;
+			}
+		}
+		for (char key = 0; key < Transliterator.KEYS.length; key++) {
+			int a = single(fromLayout, key);
+			int b = single(toLayout, key);
+			if (a - from < 0 || a - from >= BLOCK || b - to < 0
+					|| b - to >= BLOCK) {
+				continue;
+			}
+			if (converted[a - from] || used[b - to] || !Character.isDefined(b)
+					|| Character.getType(a) != Character.getType(b)) {
+				continue;
+			}
+			table[a - from] = (char) b;
+			converted[a - from] = true;
+			used[b - to] = true;
+			overrides++;
+		}
+		int[] nearest = new int[BLOCK];
+		for (int[] pair : NEAREST) {
+			nearest[pair[0]] = pair[1];
+		}
+		for (int i = 0; i < BLOCK; i++) {
+			if (converted[i] || !Character.isDefined(from + i)) {
+				continue;
+			}
+			int j = nearest[i];
+			while (j != 0 && !Character.isDefined(to + j)) {
+				j = nearest[j];
+			}
+			if (j != 0) {
+				table[i] = (char) (to + j);
+				overrides++;
+			}
+		}
+		this.lead = 0x80 | (from >> 6);
+		for (int i = 0; i < BLOCK; i++) {
+			second[i] = (byte) (0x80 | (table[i] >> 6) & 0x3F);
+			third[i] = (byte) (0x80 | table[i] & 0x3F);
+		}
+	}
+
+	/**
+	 * Returns a converter between two scripts named like the layouts of
+	 * <em>kblayouts</em>, <em>kan</em> for <em>kan_inscript.xml</em>, or
+	 * null if there is no inscript layout of either.
+	 */
+	public static ScriptConverter get(String from, String to) {
+		Layout fromLayout = Layouts.get(from + "_inscript.xml");
+		Layout toLayout = Layouts.get(to + "_inscript.xml");
+		if (fromLayout == null || toLayout == null) {
+			return null;
+		}
+		return new ScriptConverter(fromLayout, toLayout);
+	}
+
+	/**
+	 * Returns the first character of the Unicode block most of the
+	 * characters of a layout are in, or -1 if none are in these blocks.
+	 */
+	static int block(Layout layout) {
+		int[] counts = new int[(LAST - FIRST) / BLOCK + 1];
+		for (char key = 0; key < Transliterator.KEYS.length; key++) {
+			int c = single(layout, key);
+			if (c >= FIRST && c < LAST + BLOCK) {
+				counts[(c - FIRST) / BLOCK]++;
+			}
+		}
+		int best = -1;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0 && (best < 0 || counts[i] > counts[best])) {
+				best = i;
+			}
+		}
+		return best < 0 ? -1 : FIRST + best * BLOCK;
+	}
+
+	/**
+	 * Returns the character the pattern of a key puts, or -1 if it puts
+	 * none or more than one.
+	 */
+	private static int single(Layout layout, char key) {
+		Layout.Pattern pattern = layout.lookup(Transliterator.KEYS[key]);
+		if (pattern == null || pattern.value == null
+				|| pattern.value.chars.length != 1) {
+			return -1;
+		}
+		return pattern.value.chars[0];
+	}
+
+	/**
+	 * @return Returns the number of characters converted by the table of
+	 *         exceptions rather than by their offset.
+	 */
+	public int getOverrides() {
+		return overrides;
+	}
+
+	/**
+	 * Converts the characters of an array in place.
+	 */
+	public void convert(char[] text, int offset, int length) {
+		char[] table = this.table;
+		int from = this.from;
+		for (int i = offset; i < offset + length; i++) {
+			int j = text[i] - from;
+			if (j >= 0 && j < BLOCK) {
+				text[i] = table[j];
+			}
+		}
+	}
+
+	/**
+	 * Returns a text converted.
+	 */
+	public String convert(String text) {
+		char[] chars = text.toCharArray();
+		convert(chars, 0, chars.length);
+		return new String(chars);
+	}
+
+	/**
+	 * Converts UTF-8 in place. A character cut off at the end of the bytes
+	 * given is not converted.
+	 * 
+	 * @return Returns the number of bytes from offset on which are
+	 *         converted, leaving out such a character.
+	 */
+	public int convert(byte[] utf8, int offset, int length) {
+		byte[] second = this.second;
+		byte[] third = this.third;
+		int lead = this.lead;
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			if (utf8[i] != (byte) 0xE0) {
+				i++;
+				continue;
+			}
+			if (i + 2 >= end) {
+				return i - offset;
+			}
+			int j = (utf8[i + 1] & 0xFF) - lead;
+			if (j >= 0 && j < 2 && (utf8[i + 2] & 0xC0) == 0x80) {
+				j = j << 6 | utf8[i + 2] & 0x3F;
+				utf8[i + 1] = second[j];
+				utf8[i + 2] = third[j];
+			}
+			i += 3;
+		}
+		return length;
+	}
+
+	/**
+	 * Converts all the text of a reader to a writer. Neither is closed.
+	 */
+	public void convert(Reader in, Writer out) throws IOException {
+		char[] buffer = new char[Transliterator.CHUNK];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			convert(buffer, 0, n);
+			out.write(buffer, 0, n);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Converts the bytes between two offsets of a file into the same
+	 * offsets of another.
+	 */
+	class Slice extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel input;
+		private final FileChannel output;
+		private final long start;
+		private final int length;
+		/**
+		 * Set if the slice could not be read or written.
+		 */
+		IOException failure;
+
+		Slice(FileChannel input, FileChannel output, long start, int length) {
+			this.input = input;
+			this.output = output;
+			this.start = start;
+			this.length = length;
+		}
+
+		protected void compute() {
+			try {
+				MappedByteBuffer in = input.map(FileChannel.MapMode.READ_ONLY,
+						start, length);
+				MappedByteBuffer out = output.map(
+						FileChannel.MapMode.READ_WRITE, start, length);
+				byte[] buffer = new byte[BUFFER];
+				while (in.hasRemaining()) {
+					int n = Math.min(buffer.length, in.remaining());
+					in.get(buffer, 0, n);
+					int done = convert(buffer, 0, n);
+					/*
+					 * A character cut off by the end of the buffer is read
+					 * again with the next bytes. The slices end where a
+					 * character begins, so one cut off by the end of the
+					 * slice is malformed and copied as it is.
+					 */
+					if (!in.hasRemaining()) {
+						done = n;
+					}
+					in.position(in.position() - (n - done));
+					out.put(buffer, 0, done);
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Returns the offset of the first character which begins at or after
+	 * the given one, skipping the continuation bytes of UTF-8.
+	 */
+	private static long characterStart(FileChannel channel, long offset,
+			long size) throws IOException {
+		ByteBuffer one = ByteBuffer.allocate(1);
+		while (offset < size) {
+			one.clear();
+			if (channel.read(one, offset) <= 0 || (one.get(0) & 0xC0) != 0x80) {
+				break;
+			}
+			offset++;
+		}
+		return offset;
+	}
+
+	/**
+	 * Converts a UTF-8 file to another on the threads of a pool. The file
+	 * is cut into slices of <code>MappedTransliterator.SLICE</code> bytes,
+	 * each memory-mapped and converted into the same offsets of the target.
+	 * 
+	 * @return Returns the number of bytes converted.
+	 */
+	public long convert(File file, File target, ForkJoinPool pool)
+			throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			RandomAccessFile out = new RandomAccessFile(target, "rw");
+			try {
+				FileChannel input = in.getChannel();
+				FileChannel output = out.getChannel();
+				long size = input.size();
+				out.setLength(size);
+				List<Slice> slices = new ArrayList<Slice>();
+				long start = 0;
+				while (start < size) {
+					long end = characterStart(input, Math.min(size, start
+							+ MappedTransliterator.SLICE), size);
+					Slice slice = new Slice(input, output, start,
+							(int) (end - start));
+					pool.execute(slice);
+					slices.add(slice);
+					start = end;
+				}
+				for (Slice slice : slices) {
+					slice.join();
+					if (slice.failure != null) {
+						throw slice.failure;
+					}
+				}
+				return size;
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void usage() {
+		System.out.println("Usage: ScriptConverter -from <script> -to <script>"
+				+ " [-out <dir>] [-threads <n>] <file>...");
+		System.out.println("The scripts are named like the inscript layouts,"
+				+ " hin for hin_inscript.xml");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) {
+		String from = null;
+		String to = null;
+		File outDir = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<File> files = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-from")) {
+					from = args[++i];
+				} else if (args[i].equals("-to")) {
+					to = args[++i];
+				} else if (args[i].equals("-out")) {
+					outDir = new File(args[++i]);
+				} else if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else {
+					files.add(new File(args[i]));
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (from == null || to == null || files.isEmpty() || threads < 1) {
+			usage();
+		}
+		if (outDir != null && !outDir.isDirectory() && !outDir.mkdirs()) {
+			System.out.println("Can not create " + outDir);
+			System.exit(1);
+		}
+
+		ScriptConverter converter = null;
+		try {
+			converter = get(from, to);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+		if (converter == null) {
+			System.out.println("No inscript layout of " + from + " or " + to);
+			System.exit(1);
+		}
+		System.out.println(converter.getOverrides()
+				+ " characters converted by the table of exceptions");
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		int failed = 0;
+		for (File file : files) {
+			File target = BatchTransliterator.target(file, outDir);
+			long start = System.nanoTime();
+			try {
+				long bytes = converter.convert(file, target, pool);
+				long nanos = Math.max(1, System.nanoTime() - start);
+				System.out.println(file + " -> " + target + ", " + bytes
+						+ " bytes in " + nanos / 1000000 + " ms, "
+						+ (bytes * 1000 / nanos) + " MB/s");
+			} catch (IOException e) {
+				System.out.println(file + ": " + e.getMessage());
+				failed++;
+			}
+		}
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+}
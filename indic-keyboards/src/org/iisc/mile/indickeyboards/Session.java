@@ -0,0 +1,566 @@
+/** ********************************************************************
+ * File:           Session.java
+ * Description:    State of the input typed with a keyboard layout
+ * Created:        Mon Oct 19 04:38:27 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * What the parsers remember of the keys typed so far: whether the previous
+ * character was a consonant, the previous key and the Tamil99 repeat count.
+ * A session is used by the thread monitoring the keys, by the thread of
+ * the <code>TimerWheel</code> and by the UI thread, each with the output
+ * locked; the layout, which the UI thread changes, is read once per key.
+ * Each session has the layout selected while its window had the focus, or
+ * the one in use when it was made; the shared session follows
+ * <code>Layout.current()</code> until a layout is selected for it.
+ * <p>
+ * When the layout changes between two keys the session starts afresh, so
+ * a consonant typed with one layout never turns the first vowel of another
+ * into a dependent vowel.
+ * <p>
+ * The output of a session goes to the active window, or to any other
+ * <code>Output</code> given when it is created.
+ * <p>
+ * With a deferral set, a phonetic key which may begin a two character
+ * pattern, like the "s" of "sh", is not put at once. Its output is held,
+ * with that of the keys after it, until a key comes which can not extend
+ * it, or until no key has come for the deferral; so "sh" puts its letter
+ * without the "s" being put and erased first. The held output is put on
+ * the thread of the <code>TimerWheel</code> when it times out, so a key
+ * and a timeout are processed under the lock of the output. Only an
+ * output which echoes nothing can be deferred to.
+ * <p>
+ * The sessions of the active window also keep the Unicode of the word being
+ * typed, and offer its completions to the <code>Suggestions</code> after
+ * each key of a phonetic layout. With decoding set, the word is put as the
+ * <code>LatticeDecoder</code> finds it most likely, which may put a
+ * retroflex NNA for an "n" typed and change it back after the keys which
+ * follow it.
+ * <p>
+ * A session also goes down the trie of the <code>Abbreviations</code> with
+ * the keys of the word, and puts the phrase of an abbreviation in its place
+ * when a space follows it. With the <code>EnglishFilter</code> loaded, a
+ * word of a phonetic layout whose keys are an English word is put as the
+ * keys typed once it ends, unless its Unicode is a word of the language.
+ * <p>
+ * The word is kept by a <code>TypedWord</code>, the output held by a
+ * <code>HeldOutput</code> and the state before each key by a
+ * <code>CompositionHistory</code>.
+ */
+public class Session {
+
+	/**
+	 * The session of the keys typed on the keyboard.
+	 */
+	public static final Session shared = new Session();
+
+	/**
+	 * Flag variable used to keep track of the type of character keyed in -
+	 * consonant or vowel. This is for the 2rd previous character.
+	 */
+	int previousConsonantFlaglog = 0;
+	/**
+	 * Flag variable used to keep track of the type of character keyed in -
+	 * consonant or vowel. This is for the previous character.
+	 */
+	int previousConsonantFlag = 0;
+	/**
+	 * The character keyed in previously.
+	 */
+	String previousChar = "";
+	/**
+	 * The 2nd previous keystroke. This is only to facilitate the processing
+	 * of Tamil99 Keyboard Layout for backspace
+	 */
+	String previousCharlog = "";
+	/**
+	 * Number of times the same consonant has been typed continuously, for
+	 * the Tamil99 halant rule.
+	 */
+	int tamil99count = 0;
+	/**
+	 * The state before each of the last keys, for the backspaces.
+	 */
+	final CompositionHistory history = new CompositionHistory(
+			CompositionHistory.CAPACITY);
+	/**
+	 * Characters put less characters erased by the parsers, for the key
+	 * being processed.
+	 */
+	private int added;
+	/**
+	 * The word being typed, for the abbreviations, the suggestions and the
+	 * decoding.
+	 */
+	private final TypedWord word;
+	/**
+	 * Milliseconds the output of an ambiguous key is held, 0 to put every
+	 * key at once.
+	 */
+	private volatile long deferral = 0;
+	/**
+	 * The layout the state belongs to.
+	 */
+	private Layout layout;
+	/**
+	 * The layout selected for the session, null to use the one in use.
+	 */
+	private volatile Layout selected;
+	/**
+	 * The parsers of the session, made when first needed.
+	 */
+	private ParseXML parser;
+	private PhoneticParseXML phoneticParser;
+	/**
+	 * Where the output of the parsers goes, and the output held.
+	 */
+	final Output output;
+	private final HeldOutput held;
+	/**
+	 * Whether the parsers describe each key on the console.
+	 */
+	private final boolean verbose;
+
+	/**
+	 * Creates a session which puts its output onto the active window.
+	 */
+	public Session() {
+		this(ActiveWindowOutput.output, true, true);
+	}
+
+	/**
+	 * Creates a session of the active window with the deferral and decoding
+	 * of the other sessions, and the layout in use. Nothing is held nor decoded yet, so the output
+	 * need not be locked.
+	 */
+	Session(long deferral, boolean decoding) {
+		this(ActiveWindowOutput.output, true, true);
+		this.selected = Layout.current();
+		this.deferral = Math.max(0, deferral);
+		word.setDecoding(decoding);
+	}
+
+	/**
+	 * Creates a session with its own output.
+	 *
+	 * @param output
+	 *            Where the output goes
+	 * @param verbose
+	 *            If set, each key is described on the console
+	 */
+	public Session(Output output, boolean verbose) {
+		this(output, verbose, false);
+	}
+
+	private Session(Output output, boolean verbose, boolean suggesting) {
+		this.output = output;
+		this.verbose = verbose;
+		this.held = new HeldOutput(output);
+		this.word = new TypedWord(suggesting);
+	}
+
+	/**
+	 * Prints a message of the parsers on the console, if the session is
+	 * verbose.
+	 */
+	void log(String message) {
+		if (verbose) {
+			System.out.println(message);
+		}
+	}
+
+	/**
+	 * Prints a message followed by a value, if the session is verbose. The
+	 * message is only put together when it is printed, which keeps the
+	 * quiet sessions fast.
+	 */
+	void log(String message, Object value) {
+		if (verbose) {
+			System.out.println(message + value);
+		}
+	}
+
+	/**
+	 * Transliterates a key with the layout of the session, phonetic or not.
+	 *
+	 * @param pattern
+	 *            Has the ASCII character which has been pressed
+	 * @return Returns true if the key has been transliterated.
+	 */
+	public boolean process(String pattern) {
+		return process(pattern, getLayout());
+	}
+
+	/**
+	 * Selects the layout the keys of the session are transliterated with
+	 * from the next key on.
+	 */
+	public void selectLayout(Layout layout) {
+		selected = layout;
+	}
+
+	/**
+	 * Returns the layout selected for the session, or the one in use if
+	 * none has been. Null if there is neither.
+	 */
+	public Layout getLayout() {
+		Layout layout = selected;
+		return layout != null ? layout : Layout.current();
+	}
+
+	/**
+	 * Transliterates a key with the given layout, phonetic or not, instead
+	 * of the layout in use.
+	 *
+	 * @param pattern
+	 *            Has the ASCII character which has been pressed
+	 * @param layout
+	 *            The layout to use, null for none
+	 * @return Returns true if the key has been transliterated.
+	 */
+	public boolean process(String pattern, Layout layout) {
+		if (!isTyped(pattern)) {
+			return false;
+		}
+		synchronized (output) {
+			attach(layout);
+			boolean ambiguous = deferral > 0 && layout != null
+					&& layout.isPhonetic() && output.echoLength() == 0
+					&& pattern.length() == 1
+					&& Layout.DIGRAPHS.indexOf(pattern.charAt(0)) >= 0;
+			if (held.isHolding() && pattern.equals("\b")) {
+				/*
+				 * The backspace deletes from the output held, and does not
+				 * reach the output.
+				 */
+				type(pattern, layout);
+				erase(1);
+				suggest(layout);
+				if (held.isEmpty()) {
+					held.commit();
+				}
+				return true;
+			}
+			if (ambiguous) {
+				held.hold();
+			}
+			boolean matched = type(pattern, layout);
+			if (held.isHolding()) {
+				if (ambiguous) {
+					held.scheduleCommit(deferral);
+				} else {
+					held.commit();
+				}
+			}
+			return matched;
+		}
+	}
+
+	/**
+	 * Returns true for the keys which put a char: a single char, printable
+	 * or a backspace, tab or Enter. Shift, Ctrl, Esc and the other keys
+	 * which put nothing come from the key monitor as their names, like
+	 * " Left Shift ", or as "", and from Windows as control chars; they are
+	 * not typed, so they neither go through the parsers nor end the word.
+	 */
+	static boolean isTyped(String pattern) {
+		if (pattern.length() != 1) {
+			return false;
+		}
+		char c = pattern.charAt(0);
+		return c >= ' ' || c == '\b' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Runs a key through the parsers, and keeps the state before it in the
+	 * history.
+	 */
+	private boolean type(String pattern, Layout layout) {
+		attach(layout);
+		int flag = previousConsonantFlag;
+		int flagLog = previousConsonantFlaglog;
+		String key = previousChar;
+		String keyLog = previousCharlog;
+		int count = tamil99count;
+		added = 0;
+		boolean starting = word.isEmpty();
+		String phrase = word.phrase();
+		if (pattern.equals(" ") && phrase != null && output.echoLength() == 0) {
+			/*
+			 * The keys of the word are an abbreviation; its phrase takes the
+			 * place of the word, before the space. The keys of the word can
+			 * no longer be gone back to.
+			 */
+			replace(word.codePoints(), phrase);
+			word.clear();
+			history.clear();
+		}
+		if (pattern.equals("\b")) {
+			word.stopDecoding();
+		} else if (layout != null && layout.isPhonetic()) {
+			word.startDecoding(this, layout);
+		}
+		if (output.echoLength() > 0 && !pattern.equals("\b")) {
+			/*
+			 * The echoed key is in the word until the parsers delete it.
+			 */
+			word.text.append(pattern);
+		}
+		boolean matched;
+		if (layout != null && layout.isPhonetic()) {
+			if (phoneticParser == null) {
+				phoneticParser = new PhoneticParseXML(this);
+			}
+			matched = phoneticParser.getPhoneticPattern(pattern, layout);
+		} else {
+			if (parser == null) {
+				parser = new ParseXML(this);
+			}
+			matched = parser.getPattern(pattern, layout);
+		}
+		if (matched && !pattern.equals("\b")) {
+			word.addKeys(pattern, starting);
+		} else if (pattern.equals("\b")) {
+			word.dropKeys();
+		}
+		if (!matched) {
+			/*
+			 * A backspace which reaches the output deletes the last char of
+			 * the word; any other key which is not transliterated ends it.
+			 * While output is held the backspace is erased from what is
+			 * held instead.
+			 */
+			if (!pattern.equals("\b")) {
+				if (output.echoLength() > 0) {
+					word.unput(1);
+				}
+				putEnglish(layout);
+				word.end(layout);
+				suggest(layout);
+			} else if (!held.isHolding()) {
+				word.unput(1);
+				suggest(layout);
+			}
+		}
+		if (!pattern.equals("\b")) {
+			/*
+			 * A key which is not transliterated is put as it is, whether it
+			 * has been echoed or is put by the caller.
+			 */
+			if (matched) {
+				added += output.echoLength();
+			} else {
+				added = pattern.length() == 1 && pattern.charAt(0) >= ' ' ? 1
+						: 0;
+			}
+			history.push(flag, flagLog, key, keyLog, count, added);
+		}
+		return matched;
+	}
+
+	/**
+	 * Deletes characters of the output for the parsers, counting them for
+	 * the history. While output is held it is deleted from what is held.
+	 */
+	void erase(int count) {
+		added -= count;
+		word.unput(count);
+		held.erase(count);
+	}
+
+	/**
+	 * Puts a Unicode value for the parsers, counting its characters for the
+	 * history. While output is held it is added to what is held.
+	 */
+	void put(Layout.Unicode value, boolean omitSingle) {
+		if (value.single && omitSingle) {
+			return;
+		}
+		added += value.chars.length;
+		for (int i = 0; i < value.chars.length; i++) {
+			word.text.appendCodePoint(value.chars[i]);
+		}
+		held.put(value);
+	}
+
+	/**
+	 * Deletes characters of the output and puts a text in their place, in
+	 * one batch, counting them for the history. While output is held it is
+	 * done to what is held.
+	 */
+	private void replace(int count, CharSequence text) {
+		added -= count;
+		word.unput(count);
+		held.replace(count, text);
+		added += Character.codePointCount(text, 0, text.length());
+		word.text.append(text);
+	}
+
+	/**
+	 * Puts the keys typed in place of the word which has ended, if they are
+	 * an English word and the word is not one of the language. Only done
+	 * when the key which ends the word has not reached the output yet.
+	 */
+	private void putEnglish(Layout layout) {
+		if (output.echoLength() > 0) {
+			return;
+		}
+		String keys = word.english(layout);
+		if (keys != null) {
+			replace(word.codePoints(), keys);
+			word.clear();
+			history.clear();
+		}
+	}
+
+	/**
+	 * Puts the most likely rendering of the word after a key of a phonetic
+	 * layout has been put, replacing the chars from the first one which is
+	 * not the same.
+	 */
+	void decode(String pattern) {
+		String best = word.decode(pattern);
+		if (best == null) {
+			return;
+		}
+		StringBuilder text = word.text;
+		int same = 0;
+		while (same < best.length() && best.charAt(same) == text.charAt(same)) {
+			same++;
+		}
+		if (same < best.length()) {
+			replace(text.codePointCount(same, text.length()),
+					best.substring(same));
+		}
+	}
+
+	/**
+	 * Offers the completions of the word being typed, after a key of a
+	 * phonetic layout. Only the sessions of the active window suggest
+	 * words.
+	 */
+	void suggest(Layout layout) {
+		word.suggest(layout);
+	}
+
+	/**
+	 * Sets the milliseconds the output of an ambiguous phonetic key is
+	 * held, 0 to put every key at once.
+	 */
+	public void setDeferral(long millis) {
+		synchronized (output) {
+			deferral = Math.max(0, millis);
+			if (deferral == 0) {
+				held.commit();
+			}
+		}
+	}
+
+	public long getDeferral() {
+		return deferral;
+	}
+
+	/**
+	 * Sets whether the words typed in phonetic mode are put as the language
+	 * model of their language finds them most likely. Only the sessions of
+	 * the active window decode.
+	 */
+	public void setDecoding(boolean decoding) {
+		synchronized (output) {
+			word.setDecoding(decoding);
+		}
+	}
+
+	public boolean isDecoding() {
+		return word.isDecoding();
+	}
+
+	/**
+	 * Puts the output held at once, as before a key which is not processed
+	 * by the session reaches the output.
+	 */
+	public void flush() {
+		synchronized (output) {
+			held.commit();
+		}
+	}
+
+	/**
+	 * Records a character put as it is without going through the parsers,
+	 * which a backspace deletes before the output of the keys.
+	 */
+	void putAsIs() {
+		synchronized (output) {
+			history.push(previousConsonantFlag, previousConsonantFlaglog,
+					previousChar, previousCharlog, tamil99count, 1);
+		}
+	}
+
+	/**
+	 * Goes back to the state before the key whose output a backspace has
+	 * deleted, as kept in the history.
+	 */
+	void backspace() {
+		synchronized (output) {
+			history.backspace(this);
+		}
+	}
+
+	/**
+	 * Forgets the previous consonant, so that the next vowel is put as an
+	 * independent vowel. Used when a word ends without a space, e.g. on
+	 * Enter or when the software is enabled again. Taken under the lock of
+	 * the output, as the UI thread resets the sessions of the key thread.
+	 */
+	public void resetConsonantFlags() {
+		synchronized (output) {
+			held.commit();
+			previousConsonantFlag = 0;
+			tamil99count = 0;
+			history.clear();
+			word.end(layout);
+		}
+	}
+
+	/**
+	 * Starts the session afresh if the layout is not the one its state
+	 * belongs to.
+	 */
+	void attach(Layout layout) {
+		if (layout != this.layout) {
+			this.layout = layout;
+			reset();
+		}
+	}
+
+	/**
+	 * Forgets all the keys typed so far, including what a backspace would
+	 * go back to.
+	 */
+	void reset() {
+		synchronized (output) {
+			held.commit();
+			previousConsonantFlaglog = 0;
+			previousConsonantFlag = 0;
+			previousChar = "";
+			previousCharlog = "";
+			tamil99count = 0;
+			history.clear();
+			word.clear();
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/** ********************************************************************
+ * File:           Sessions.java
+ * Description:    The sessions of the windows typed into
+ * Created:        Mon Oct 19 04:39:58 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One session per window, so that a syllable half typed into one window is
+ * not carried into another when the focus moves. Only the windows typed
+ * into most recently are remembered; a window coming back after its
+ * session has been dropped starts afresh, as after a space.
+ * <p>
+ * The output a session holds goes to the active window when it is put, so
+ * it is put as soon as the focus leaves the window, and before any key
+ * goes to another session.
+ */
+public class Sessions {
+
+	/**
+	 * Number of windows whose sessions are remembered.
+	 */
+	static final int MAX_SESSIONS = 32;
+
+	/**
+	 * Milliseconds the sessions hold the output of an ambiguous key.
+	 */
+	private static long deferral = 0;
+
+	/**
+	 * Whether the sessions decode the words typed in phonetic mode.
+	 */
+	private static boolean decoding = false;
+
+	/**
+	 * Sessions by window ID, least recently used first.
+	 */
+	private static final LinkedHashMap<Long, Session> sessions = new LinkedHashMap<Long, Session>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Long, Session> eldest) {
+			return size() > MAX_SESSIONS;
+		}
+	};
+
+	/**
+	 * The session the last key went to, and the ID of its window. Null
+	 * after the focus has moved to a window no key has gone to yet.
+	 */
+	private static Session active = null;
+	private static long activeWindow = 0;
+
+	/**
+	 * Returns the session of a window, creating it if needed, and makes it
+	 * the active one. The output held by the session which was active is
+	 * put first.
+	 * 
+	 * @param window
+	 *            ID of the window, as given by the operating system. 0 if it
+	 *            is not known, which gives <code>Session.shared</code>.
+	 */
+	public static Session forWindow(long window) {
+		Session session;
+		synchronized (Sessions.class) {
+			if (window == 0) {
+				session = Session.shared;
+			} else {
+				Long key = Long.valueOf(window);
+				session = sessions.get(key);
+				if (session == null) {
+					session = new Session(deferral, decoding);
+					sessions.put(key, session);
+				}
+			}
+		}
+		activate(session, window);
+		return session;
+	}
+
+	/**
+	 * Selects the layout of the window with the focus, and makes it the
+	 * layout in use, which the windows not typed into yet start with. Called
+	 * when the user picks a layout.
+	 */
+	public static void selectLayout(Layout layout) {
+		Session session;
+		synchronized (Sessions.class) {
+			Layout.select(layout);
+			session = active;
+			if (session == null) {
+				session = activeWindow == 0 ? Session.shared : sessions
+						.get(Long.valueOf(activeWindow));
+			}
+		}
+		if (session != null) {
+			session.selectLayout(layout);
+		}
+	}
+
+	/**
+	 * Puts the output held by the active session if the focus has moved to
+	 * another window. Called when the active window changes.
+	 * 
+	 * @param window
+	 *            ID of the window with the focus, 0 if it is not known
+	 */
+	public static void focusChanged(long window) {
+		activate(null, window);
+	}
+
+	/**
+	 * Makes a session the active one, or none, and puts the output held by
+	 * the one it replaces. The held output is put after the lock of the
+	 * sessions has been let go, as in <code>all()</code>.
+	 * 
+	 * @param session
+	 *            The session keys go to next, null if no key has gone to
+	 *            the window yet
+	 * @param window
+	 *            ID of the window of the session
+	 */
+	static void activate(Session session, long window) {
+		Session previous;
+		synchronized (Sessions.class) {
+			previous = active;
+			if (session == null && window == activeWindow) {
+				return;
+			}
+			active = session;
+			activeWindow = window;
+		}
+		if (previous != null && previous != session) {
+			previous.flush();
+		}
+	}
+
+	/**
+	 * Returns every session, <code>Session.shared</code> first. The sessions
+	 * are changed after the lock of the sessions has been let go: a session
+	 * is changed with its output locked, and the key thread looks up the
+	 * session of a window with the output locked.
+	 */
+	private static synchronized Session[] all() {
+		Session[] all = new Session[sessions.size() + 1];
+		all[0] = Session.shared;
+		Iterator<Session> i = sessions.values().iterator();
+		for (int j = 1; i.hasNext(); j++) {
+			all[j] = i.next();
+		}
+		return all;
+	}
+
+	/**
+	 * Forgets the previous consonant in every session. Used when the
+	 * software is enabled again, since the windows may have been typed into
+	 * meanwhile.
+	 */
+	public static void resetConsonantFlags() {
+		for (Session session : all()) {
+			session.resetConsonantFlags();
+		}
+	}
+
+	/**
+	 * Sets the milliseconds every session holds the output of an ambiguous
+	 * phonetic key, 0 to put every key at once.
+	 * 
+	 * @see Session#setDeferral(long)
+	 */
+	public static void setDeferral(long millis) {
+		synchronized (Sessions.class) {
+			deferral = millis;
+		}
+		for (Session session : all()) {
+			session.setDeferral(millis);
+		}
+	}
+
+	/**
+	 * Sets whether every session decodes the words typed in phonetic mode
+	 * with the language model of their language.
+	 * 
+	 * @see Session#setDecoding(boolean)
+	 */
+	public static void setDecoding(boolean decoding) {
+		synchronized (Sessions.class) {
+			Sessions.decoding = decoding;
+		}
+		for (Session session : all()) {
+			session.setDecoding(decoding);
+		}
+	}
+}
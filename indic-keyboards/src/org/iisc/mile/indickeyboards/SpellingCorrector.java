@@ -0,0 +1,340 @@
+/** ********************************************************************
+ * File:           SpellingCorrector.java
+ * Description:    Finds the dictionary word closest to a word typed
+ * Created:        Mon Oct 19 06:04:53 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The words of a language indexed by what is left of them with one or two
+ * chars deleted, to find the words within two edits of a word typed
+ * without looking at the others (symmetric delete). The deletes of the word
+ * typed are looked up, and the words which share one with it are the only
+ * ones whose distance is worked out.
+ * <p>
+ * The index is written by <code>DictionaryBuilder</code> with -spell, next
+ * to the dictionary as <em>dictionaries/kan.spell</em> and so on, and
+ * memory-mapped; the deletes are not kept, only the hash of each, so the
+ * index holds one int per delete of a word. Words longer than
+ * <code>MAX_LENGTH</code> chars are not indexed. The file is laid out as
+ * follows, all numbers big-endian:
+ *
+ * <pre>
+ * int magic, int words, int bits of the number of buckets, int ids, int chars
+ * int[buckets + 1] first id of each bucket
+ * int[ids] the words whose deletes hash to each bucket
+ * int[words + 1] first char of each word
+ * byte[words] weight of each word, as in the WordDictionary
+ * char[chars] the words
+ * </pre>
+ *
+ * A corrector is shared by all threads.
+ */
+public final class SpellingCorrector {
+
+	static final int MAGIC = 0x494b5331;
+	static final int HEADER = 20;
+
+	/**
+	 * Longest word indexed, in chars.
+	 */
+	public static final int MAX_LENGTH = 24;
+
+	/**
+	 * Most edits between a word and its correction.
+	 */
+	public static final int MAX_DISTANCE = 2;
+
+	/**
+	 * The correctors opened, by language, MISSING for none.
+	 */
+	private static final Map<String, SpellingCorrector> opened = new HashMap<String, SpellingCorrector>();
+	private static final SpellingCorrector MISSING = new SpellingCorrector();
+
+	private final ByteBuffer index;
+	private final int words;
+	private final int mask;
+	private final int buckets;
+	private final int ids;
+	private final int starts;
+	private final int weights;
+	private final int chars;
+
+	private SpellingCorrector() {
+		index = null;
+		words = mask = buckets = ids = starts = weights = chars = 0;
+	}
+
+	private SpellingCorrector(ByteBuffer index) throws IOException {
+		this.index = index;
+		this.words = index.getInt(4);
+		int bits = index.getInt(8);
+		int idCount = index.getInt(12);
+		int charCount = index.getInt(16);
+		if (words < 0 || bits < 0 || bits > 28 || idCount < 0 || charCount < 0) {
+			throw new IOException("not a spelling index");
+		}
+		this.mask = (1 << bits) - 1;
+		this.buckets = HEADER;
+		this.ids = buckets + 4 * ((1 << bits) + 1);
+		this.starts = ids + 4 * idCount;
+		this.weights = starts + 4 * (words + 1);
+		this.chars = weights + words;
+		if ((long) chars + 2L * charCount > index.limit()) {
+			throw new IOException("spelling index is truncated");
+		}
+	}
+
+	/**
+	 * Maps a spelling index.
+	 */
+	public static SpellingCorrector open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (map.limit() < HEADER || map.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not a spelling index");
+			}
+			return new SpellingCorrector(map);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the corrector of the language of a layout, from
+	 * <em>dictionaries</em> in the current directory, or null if there is
+	 * none.
+	 */
+	public static synchronized SpellingCorrector forLayout(Layout layout) {
+		String language = WordDictionary.language(layout);
+		if (language == null) {
+			return null;
+		}
+		SpellingCorrector corrector = opened.get(language);
+		if (corrector == null) {
+			File file = new File(System.getProperty("user.dir"),
+					WordDictionary.DIRECTORY + "/" + language + ".spell");
+			corrector = MISSING;
+			if (file.isFile()) {
+				try {
+					corrector = open(file);
+					System.out.println("Spelling index " + file + ": "
+							+ corrector.size() + " words");
+				} catch (IOException e) {
+					System.out.println("Could not read " + file + ": "
+							+ e.getMessage());
+				}
+			}
+			opened.put(language, corrector);
+		}
+		return corrector == MISSING ? null : corrector;
+	}
+
+	/**
+	 * @return Returns the number of words indexed.
+	 */
+	public int size() {
+		return words;
+	}
+
+	/**
+	 * Returns the hash of the chars of a word left with the chars at two
+	 * places deleted; -1 deletes none, and the same place twice deletes one
+	 * char. The builder and the lookups both use it.
+	 */
+	static int hash(char[] word, int length, int skip1, int skip2) {
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			if (i != skip1 && i != skip2) {
+				h = 31 * h + word[i];
+			}
+		}
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Returns the edits, insertions, deletions, substitutions or swaps of
+	 * two chars side by side, which turn one word into the other, or
+	 * MAX_DISTANCE + 1 if there are more.
+	 */
+	static int distance(char[] a, int la, char[] b, int lb) {
+		if (Math.abs(la - lb) > MAX_DISTANCE) {
+			return MAX_DISTANCE + 1;
+		}
+		int[] before = new int[lb + 1];
+		int[] previous = new int[lb + 1];
+		int[] row = new int[lb + 1];
+		for (int j = 0; j <= lb; j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= la; i++) {
+			row[0] = i;
+			int least = i;
+			for (int j = 1; j <= lb; j++) {
+				int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+				int d = Math.min(Math.min(previous[j] + 1, row[j - 1] + 1),
+						previous[j - 1] + cost);
+				if (i > 1 && j > 1 && a[i - 1] == b[j - 2]
+						&& a[i - 2] == b[j - 1]) {
+					d = Math.min(d, before[j - 2] + 1);
+				}
+				row[j] = d;
+				least = Math.min(least, d);
+			}
+			if (least > MAX_DISTANCE) {
+				return MAX_DISTANCE + 1;
+			}
+			int[] spare = before;
+			before = previous;
+			previous = row;
+			row = spare;
+		}
+		return Math.min(previous[lb], MAX_DISTANCE + 1);
+	}
+
+	/**
+	 * Returns the closest word to a word typed, the most frequent of the
+	 * closest if there are more than one, or null if the word is in the
+	 * dictionary or none is within MAX_DISTANCE edits.
+	 */
+	public String correct(String typed) {
+		int length = typed.length();
+		if (length == 0 || length > MAX_LENGTH + MAX_DISTANCE) {
+			return null;
+		}
+		char[] word = typed.toCharArray();
+		char[] candidate = new char[MAX_LENGTH];
+		int[] seen = new int[64];
+		int seenCount = 0;
+		int best = -1;
+		int bestDistance = MAX_DISTANCE + 1;
+		int bestWeight = 0;
+		/*
+		 * The word itself, then each char deleted on its own (skip2 equal to
+		 * skip1) and with each char after it.
+		 */
+		for (int skip1 = -1; skip1 < length; skip1++) {
+			for (int skip2 = skip1; skip2 < (skip1 < 0 ? 0 : length); skip2++) {
+				int bucket = hash(word, length, skip1, skip2) & mask;
+				int end = index.getInt(buckets + 4 * (bucket + 1));
+				for (int i = index.getInt(buckets + 4 * bucket); i < end; i++) {
+					int id = index.getInt(ids + 4 * i);
+					/*
+					 * A word is in the buckets of many deletes; its distance
+					 * is only worked out once.
+					 */
+					if (seenCount * 2 >= seen.length) {
+						seen = rehash(seen);
+					}
+					int slot = (id * 0x9e3779b9) & (seen.length - 1);
+					while (seen[slot] != 0 && seen[slot] != id + 1) {
+						slot = (slot + 1) & (seen.length - 1);
+					}
+					if (seen[slot] != 0) {
+						continue;
+					}
+					seen[slot] = id + 1;
+					seenCount++;
+					int from = index.getInt(starts + 4 * id);
+					int to = index.getInt(starts + 4 * id + 4);
+					if (Math.abs(to - from - length) > MAX_DISTANCE) {
+						continue;
+					}
+					for (int c = from; c < to; c++) {
+						candidate[c - from] = index.getChar(chars + 2 * c);
+					}
+					int d = distance(word, length, candidate, to - from);
+					if (d == 0) {
+						return null;
+					}
+					if (d > MAX_DISTANCE) {
+						continue;
+					}
+					int weight = index.get(weights + id) & 0xff;
+					if (d < bestDistance
+							|| (d == bestDistance && weight > bestWeight)) {
+						best = id;
+						bestDistance = d;
+						bestWeight = weight;
+					}
+				}
+			}
+		}
+		if (best < 0) {
+			return null;
+		}
+		int from = index.getInt(starts + 4 * best);
+		int to = index.getInt(starts + 4 * best + 4);
+		char[] correction = new char[to - from];
+		for (int c = from; c < to; c++) {
+			correction[c - from] = index.getChar(chars + 2 * c);
+		}
+		return new String(correction);
+	}
+
+	/**
+	 * Returns a set of ids twice as large with the same ids.
+	 */
+	private static int[] rehash(int[] seen) {
+		int[] larger = new int[seen.length * 2];
+		for (int i = 0; i < seen.length; i++) {
+			if (seen[i] != 0) {
+				int slot = ((seen[i] - 1) * 0x9e3779b9) & (larger.length - 1);
+				while (larger[slot] != 0) {
+					slot = (slot + 1) & (larger.length - 1);
+				}
+				larger[slot] = seen[i];
+			}
+		}
+		return larger;
+	}
+
+	/**
+	 * Returns the hashes of all the deletes of up to MAX_DISTANCE chars of a
+	 * word, the word itself included, some perhaps more than once.
+	 */
+	static int[] deletes(String word) {
+		char[] chars = word.toCharArray();
+		int length = chars.length;
+		int[] hashes = new int[1 + length + length * (length - 1) / 2];
+		int n = 0;
+		hashes[n++] = hash(chars, length, -1, -1);
+		for (int skip1 = 0; skip1 < length; skip1++) {
+			for (int skip2 = skip1; skip2 < length; skip2++) {
+				hashes[n++] = hash(chars, length, skip1, skip2);
+			}
+		}
+		Arrays.sort(hashes);
+		return hashes;
+	}
+}
@@ -0,0 +1,136 @@
+/** ********************************************************************
+ * File:           Suggestions.java
+ * Description:    Completions of the word being typed
+ * Created:        Mon Oct 19 05:58:11 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * Suggests the most frequent words beginning with the word being typed in
+ * phonetic mode, from the <code>WordDictionary</code> of the language of the
+ * layout. The words are looked up on the thread monitoring the keys, after
+ * each key, and handed to the listener, which is to show them without
+ * holding up that thread.
+ * <p>
+ * The words the user has typed before, as learned by the
+ * <code>UserDictionary</code>, come first, most often typed first; the
+ * words of the dictionary fill the rest.
+ * <p>
+ * There are no suggestions until a listener is set and the number of words
+ * to suggest is more than 0.
+ */
+public class Suggestions {
+
+	/**
+	 * Told of the completions of the word being typed.
+	 */
+	public interface Listener {
+		/**
+		 * Called after each key which changes the word being typed. The
+		 * completions are empty when the word has ended.
+		 *
+		 * @param word
+		 *            The Unicode of the word typed so far
+		 * @param completions
+		 *            The words beginning with it, most frequent first
+		 */
+		void suggested(String word, String[] completions);
+	}
+
+	private static final String[] NONE = new String[0];
+
+	private static volatile Listener listener;
+	private static volatile int count = 0;
+
+	public static void setListener(Listener listener) {
+		Suggestions.listener = listener;
+	}
+
+	/**
+	 * Sets the number of words suggested, 0 for none.
+	 */
+	public static void setCount(int count) {
+		Suggestions.count = Math.max(0, count);
+	}
+
+	public static int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns true if the words typed are to be looked up.
+	 */
+	static boolean isEnabled() {
+		return listener != null && count > 0;
+	}
+
+	/**
+	 * Hands the completions of the word typed with a layout to the listener.
+	 */
+	static void offer(Layout layout, CharSequence word) {
+		Listener current = listener;
+		int k = count;
+		if (current == null || k == 0) {
+			return;
+		}
+		String prefix = word.toString();
+		if (prefix.length() == 0) {
+			current.suggested(prefix, NONE);
+			return;
+		}
+		String[] learned = NONE;
+		UserDictionary user = UserDictionary.shared();
+		if (user != null) {
+			learned = user.complete(prefix, k);
+		}
+		String[] known = NONE;
+		WordDictionary dictionary = WordDictionary.forLayout(layout);
+		if (dictionary != null && learned.length < k) {
+			known = dictionary.complete(prefix, k);
+		}
+		current.suggested(prefix, merge(learned, known, k));
+	}
+
+	/**
+	 * Returns the first words, then those of the second which are not among
+	 * them, k words at most.
+	 */
+	static String[] merge(String[] first, String[] second, int k) {
+		if (second.length == 0) {
+			return first;
+		}
+		String[] merged = new String[Math.min(k, first.length + second.length)];
+		int n = 0;
+		for (int i = 0; i < first.length && n < merged.length; i++) {
+			merged[n++] = first[i];
+		}
+		for (int i = 0; i < second.length && n < merged.length; i++) {
+			boolean seen = false;
+			for (int j = 0; j < first.length && !seen; j++) {
+				seen = first[j].equals(second[i]);
+			}
+			if (!seen) {
+				merged[n++] = second[i];
+			}
+		}
+		if (n < merged.length) {
+			String[] fewer = new String[n];
+			System.arraycopy(merged, 0, fewer, 0, n);
+			return fewer;
+		}
+		return merged;
+	}
+}
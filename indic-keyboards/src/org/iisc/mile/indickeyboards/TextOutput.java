@@ -0,0 +1,148 @@
+/** ********************************************************************
+ * File:           TextOutput.java
+ * Description:    Output to a buffer of text
+ * Created:        Mon Oct 19 04:43:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.IOException;
+
+/**
+ * Collects the output as text, applying the deletions to what has been put
+ * before. Nothing is echoed. The text is written out with
+ * <code>drain()</code>, keeping back the few characters a later key may
+ * still delete.
+ */
+public class TextOutput extends Output {
+
+	/**
+	 * Number of characters kept back by <code>drain()</code>. The parsers
+	 * delete at most a consonant, its halant and a character of a pattern.
+	 */
+	public static final int KEEP = 8;
+
+	private final StringBuilder text = new StringBuilder();
+	/**
+	 * The shortest the text has been since <code>mark()</code>.
+	 */
+	private int lowest = 0;
+
+	public void erase(int count) {
+		int length = text.length();
+		while (count-- > 0 && length > 0) {
+			length = text.offsetByCodePoints(length, -1);
+		}
+		text.setLength(length);
+		if (length < lowest) {
+			lowest = length;
+		}
+	}
+
+	public void putChar(int codePoint) {
+		text.appendCodePoint(codePoint);
+	}
+
+	/**
+	 * Deletes the last akshara of the text held, the way a backspace which
+	 * takes a whole syllable would, and returns the number of characters
+	 * deleted.
+	 * 
+	 * @see Aksharas#previous(CharSequence, int)
+	 */
+	public int eraseAkshara() {
+		int length = text.length();
+		int count = text.codePointCount(Aksharas.previous(text, length),
+				length);
+		erase(count);
+		return count;
+	}
+
+	/**
+	 * Puts a character which has not been transliterated, as it is.
+	 */
+	public void append(char c) {
+		text.append(c);
+	}
+
+	/**
+	 * Puts text which has been transliterated before.
+	 */
+	public void append(CharSequence s) {
+		text.append(s);
+	}
+
+	/**
+	 * Starts watching how much of the text held is deleted, and returns its
+	 * length.
+	 * 
+	 * @see #lowest()
+	 */
+	int mark() {
+		lowest = text.length();
+		return lowest;
+	}
+
+	/**
+	 * Returns the shortest the text has been since <code>mark()</code>,
+	 * which is the length at the mark if nothing held then was deleted.
+	 * Not to be used across <code>drain()</code>.
+	 */
+	int lowest() {
+		return lowest;
+	}
+
+	/**
+	 * Returns the text held from the given index on.
+	 */
+	String substring(int start) {
+		return text.substring(start);
+	}
+
+	/**
+	 * @return Returns the number of chars held.
+	 */
+	public int length() {
+		return text.length();
+	}
+
+	/**
+	 * Writes out the text held, except for the last <code>keep</code>
+	 * characters.
+	 */
+	public void drain(Appendable out, int keep) throws IOException {
+		int end = text.length() - keep;
+		if (end <= 0) {
+			return;
+		}
+		/*
+		 * Never split a surrogate pair.
+		 */
+		if (Character.isHighSurrogate(text.charAt(end - 1))) {
+			end--;
+		}
+		out.append(text, 0, end);
+		text.delete(0, end);
+	}
+
+	/**
+	 * Returns the text held and empties the buffer.
+	 */
+	public String take() {
+		String s = text.toString();
+		text.setLength(0);
+		return s;
+	}
+}
@@ -0,0 +1,235 @@
+/** ********************************************************************
+ * File:           TimerWheel.java
+ * Description:    Runs the timeouts of the sessions on one thread
+ * Created:        Mon Oct 19 05:48:49 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * Runs timeouts for any number of sessions on one thread. The timeouts are
+ * hung in a wheel of buckets, one bucket per tick, by the tick they are due
+ * at; a timeout further away than a turn of the wheel waits out the turns
+ * in its bucket. Each tick only the timeouts of one bucket are looked at.
+ * <p>
+ * A timeout is an object made once by whoever uses it and scheduled again
+ * and again, linked into its bucket through fields of its own: scheduling
+ * and cancelling take a few stores under the lock of the wheel and
+ * allocate nothing, which suits a timeout pushed back on every key. The
+ * thread of the wheel is started with the first timeout, waits without
+ * ticking while no timeout is scheduled, and does not keep the program
+ * running.
+ */
+public class TimerWheel implements Runnable {
+
+	/**
+	 * The wheel of the sessions of the keyboard, ticking every 10 ms.
+	 */
+	public static final TimerWheel shared = new TimerWheel(10, 256);
+
+	/**
+	 * Something to be done after a delay. <code>expire()</code> is called on
+	 * the thread of the wheel, with no lock held.
+	 */
+	public abstract static class Timeout {
+		/**
+		 * Links of the bucket the timeout is in, and the bucket, -1 if
+		 * none.
+		 */
+		private Timeout previous;
+		private Timeout next;
+		private int bucket = -1;
+		/**
+		 * Link of the timeouts due on a tick.
+		 */
+		private Timeout nextDue;
+		/**
+		 * Turns of the wheel left before the timeout is due.
+		 */
+		private long rounds;
+
+		protected abstract void expire();
+	}
+
+	private final long tickMillis;
+	private final int mask;
+	/**
+	 * The first timeout of each bucket.
+	 */
+	private final Timeout[] buckets;
+	/**
+	 * The tick the wheel is at.
+	 */
+	private long tick = 0;
+	/**
+	 * Number of timeouts in the buckets.
+	 */
+	private int scheduled = 0;
+	private Thread thread;
+
+	/**
+	 * @param tickMillis
+	 *            Milliseconds between two ticks, the precision of the
+	 *            timeouts
+	 * @param size
+	 *            Number of buckets, a power of two
+	 */
+	public TimerWheel(long tickMillis, int size) {
+		if (Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("Not a power of two: " + size);
+		}
+		this.tickMillis = tickMillis;
+		this.mask = size - 1;
+		this.buckets = new Timeout[size];
+	}
+
+	/**
+	 * Schedules a timeout to expire after the given delay, from now. A
+	 * timeout already scheduled is moved.
+	 */
+	public synchronized void schedule(Timeout timeout, long delayMillis) {
+		unlink(timeout);
+		long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+		int bucket = (int) ((tick + ticks) & mask);
+		timeout.rounds = (ticks - 1) / buckets.length;
+		timeout.bucket = bucket;
+		timeout.previous = null;
+		timeout.next = buckets[bucket];
+		if (timeout.next != null) {
+			timeout.next.previous = timeout;
+		}
+		buckets[bucket] = timeout;
+		if (scheduled++ == 0) {
+			notify();
+		}
+		if (thread == null) {
+			thread = new Thread(this);
+			thread.setName("Timer Wheel");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Cancels a timeout, if it is scheduled.
+	 */
+	public synchronized void cancel(Timeout timeout) {
+		unlink(timeout);
+	}
+
+	/**
+	 * Returns true if the timeout is scheduled and has not expired.
+	 */
+	public synchronized boolean isScheduled(Timeout timeout) {
+		return timeout.bucket >= 0;
+	}
+
+	/**
+	 * Returns true if the thread of the wheel is waiting for a timeout to
+	 * be scheduled, or has not been started.
+	 */
+	synchronized boolean isIdle() {
+		return thread == null || (scheduled == 0
+				&& thread.getState() == Thread.State.WAITING);
+	}
+
+	private void unlink(Timeout timeout) {
+		if (timeout.bucket < 0) {
+			return;
+		}
+		if (timeout.previous != null) {
+			timeout.previous.next = timeout.next;
+		} else {
+			buckets[timeout.bucket] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.previous = timeout.previous;
+		}
+		timeout.previous = null;
+		timeout.next = null;
+		timeout.bucket = -1;
+		scheduled--;
+	}
+
+	/**
+	 * Moves the wheel on by one tick, and returns the timeouts due, linked
+	 * through <code>nextDue</code>.
+	 */
+	private synchronized Timeout advance() {
+		tick++;
+		int bucket = (int) (tick & mask);
+		Timeout due = null;
+		Timeout timeout = buckets[bucket];
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.rounds > 0) {
+				timeout.rounds--;
+			} else {
+				unlink(timeout);
+				timeout.nextDue = due;
+				due = timeout;
+			}
+			timeout = next;
+		}
+		return due;
+	}
+
+	/**
+	 * Waits while no timeout is scheduled. Returns true if it has waited,
+	 * false if there are timeouts.
+	 */
+	private synchronized boolean park() throws InterruptedException {
+		if (scheduled > 0) {
+			return false;
+		}
+		while (scheduled == 0) {
+			wait();
+		}
+		return true;
+	}
+
+	public void run() {
+		long next = System.nanoTime();
+		while (true) {
+			try {
+				if (park()) {
+					next = System.nanoTime();
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			next += tickMillis * 1000000L;
+			long sleep = next - System.nanoTime();
+			if (sleep > 0) {
+				try {
+					Thread.sleep(sleep / 1000000L, (int) (sleep % 1000000L));
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			Timeout due = advance();
+			while (due != null) {
+				Timeout timeout = due;
+				due = timeout.nextDue;
+				timeout.nextDue = null;
+				try {
+					timeout.expire();
+				} catch (RuntimeException e) {
+					System.out.println("Timeout failed: " + e);
+				}
+			}
+		}
+	}
+}
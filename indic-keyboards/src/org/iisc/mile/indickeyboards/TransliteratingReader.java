@@ -0,0 +1,91 @@
+/** ********************************************************************
+ * File:           TransliteratingReader.java
+ * Description:    Reader of transliterated text
+ * Created:        Mon Oct 19 04:49:05 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads text from another reader and gives it out transliterated. The other
+ * reader is read a chunk at a time, only when the transliterated text of the
+ * previous chunk has been read, so a slow consumer holds the producer back.
+ */
+public class TransliteratingReader extends Reader {
+
+	private final Reader in;
+	private final Transliterator transliterator;
+	private final char[] chunk = new char[Transliterator.CHUNK];
+	/**
+	 * Transliterated text not yet read.
+	 */
+	private final StringBuilder ready = new StringBuilder();
+	private int position = 0;
+	private boolean ended = false;
+
+	/**
+	 * @param in
+	 *            The text to transliterate
+	 * @param layout
+	 *            The layout to transliterate it with
+	 */
+	public TransliteratingReader(Reader in, Layout layout) {
+		this.in = in;
+		this.transliterator = new Transliterator(layout);
+	}
+
+	/**
+	 * Fills <code>ready</code> from the next chunk. Returns false at the end
+	 * of the text.
+	 */
+	private boolean fill() throws IOException {
+		ready.setLength(0);
+		position = 0;
+		while (ready.length() == 0 && !ended) {
+			int n = in.read(chunk);
+			if (n < 0) {
+				transliterator.finish(ready);
+				ended = true;
+			} else {
+				transliterator.write(chunk, 0, n, ready);
+			}
+		}
+		return ready.length() > 0;
+	}
+
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (position == ready.length() && !fill()) {
+			return -1;
+		}
+		int n = Math.min(len, ready.length() - position);
+		ready.getChars(position, position + n, cbuf, off);
+		position += n;
+		return n;
+	}
+
+	public boolean ready() throws IOException {
+		return position < ready.length() || (!ended && in.ready());
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
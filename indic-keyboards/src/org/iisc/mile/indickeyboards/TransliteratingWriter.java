@@ -0,0 +1,79 @@
+/** ********************************************************************
+ * File:           TransliteratingWriter.java
+ * Description:    Writer of transliterated text
+ * Created:        Mon Oct 19 04:49:05 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Transliterates the text written to it and writes it on to another writer.
+ * The output goes on a line at a time, or in chunks of a long line; what
+ * the next text written may still change follows on <code>close()</code>.
+ */
+public class TransliteratingWriter extends Writer {
+
+	private final Writer out;
+	private final Transliterator transliterator;
+	private boolean closed = false;
+
+	/**
+	 * @param out
+	 *            Where the transliterated text goes
+	 * @param layout
+	 *            The layout to transliterate with
+	 */
+	public TransliteratingWriter(Writer out, Layout layout) {
+		this.out = out;
+		this.transliterator = new Transliterator(layout);
+	}
+
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		transliterator.write(cbuf, off, len, out);
+	}
+
+	public void write(String str, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		transliterator.write(str.subSequence(off, off + len), out);
+	}
+
+	/**
+	 * Flushes the other writer. What is held back for the syllable being
+	 * typed is not written.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes out what is held back and closes the other writer.
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		transliterator.finish(out);
+		out.close();
+	}
+}
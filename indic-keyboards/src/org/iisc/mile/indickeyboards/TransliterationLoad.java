@@ -0,0 +1,273 @@
+/** ********************************************************************
+ * File:           TransliterationLoad.java
+ * Description:    Load generator for the transliteration server
+ * Created:        Mon Oct 19 04:58:09 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Puts load on a transliteration server of this machine through the binary
+ * protocol of <code>FramedConnection</code>, and reports the latency of the
+ * requests against their throughput.
+ * 
+ * <pre>
+ * java -cp indic-keyboards.jar org.iisc.mile.indickeyboards.TransliterationLoad
+ *      [-port 65530] [-layout kan_phonetic.xml] [-connections 4]
+ *      [-seconds 5] [-text text]
+ * </pre>
+ * 
+ * The load is put in steps. In each step every connection keeps the same
+ * number of requests in flight, 1 in the first step and twice as many in
+ * each step after, up to <code>FramedConnection.MAX_IN_FLIGHT</code>. A
+ * line is printed per step with the requests answered per second and the
+ * median and 99th percentile of their latency.
+ */
+public class TransliterationLoad {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	/**
+	 * Send times kept per connection, by request ID. More than the
+	 * requests in flight.
+	 */
+	private static final int SLOTS = 1024;
+
+	/**
+	 * One connection to the server, with a thread sending requests and one
+	 * reading the answers.
+	 */
+	static class Connection {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final int layout;
+		private final byte[] text;
+		private final Semaphore window;
+		private final AtomicLongArray sent = new AtomicLongArray(SLOTS);
+		private volatile boolean stopped = false;
+		/**
+		 * Latencies of the answers, in nanoseconds. Only the receiving thread
+		 * writes them.
+		 */
+		private long[] latencies = new long[1 << 12];
+		private int count = 0;
+		private int errors = 0;
+		private IOException failure;
+		private Thread sender;
+		private Thread receiver;
+
+		Connection(int port, String layoutName, byte[] text, int depth)
+				throws IOException {
+			this.text = text;
+			this.window = new Semaphore(depth);
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket
+					.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket
+					.getOutputStream()));
+			out.write(FramedConnection.PREFACE);
+			out.write(FramedConnection.VERSION);
+			send(0, FramedConnection.OPEN, 0, layoutName.getBytes(UTF_8));
+			out.flush();
+			if (in.read() != FramedConnection.PREFACE
+					|| in.read() != FramedConnection.VERSION) {
+				throw new IOException("Not a transliteration server");
+			}
+			in.readInt();
+			in.readInt();
+			byte status = in.readByte();
+			if (status != FramedConnection.OK) {
+				throw new IOException("Layout " + layoutName + " not opened");
+			}
+			layout = in.readUnsignedShort();
+		}
+
+		private void send(int id, byte type, int layout, byte[] payload)
+				throws IOException {
+			out.writeInt(FramedConnection.HEADER + payload.length);
+			out.writeInt(id);
+			out.writeByte(type);
+			out.writeShort(layout);
+			out.write(payload);
+		}
+
+		void start() {
+			sender = new Thread() {
+				public void run() {
+					try {
+						for (int id = 1; !stopped; id++) {
+							window.acquireUninterruptibly();
+							sent.set(id & (SLOTS - 1), System.nanoTime());
+							send(id, FramedConnection.UTF8, layout, text);
+							/*
+							 * Requests sent while the window is open go in one
+							 * write.
+							 */
+							if (window.availablePermits() == 0 || stopped) {
+								out.flush();
+							}
+						}
+						out.flush();
+						socket.shutdownOutput();
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+			};
+			receiver = new Thread() {
+				public void run() {
+					try {
+						while (true) {
+							int length;
+							try {
+								length = in.readInt();
+							} catch (EOFException e) {
+								break;
+							}
+							int id = in.readInt();
+							byte status = in.readByte();
+							in.skipBytes(length - 5);
+							long latency = System.nanoTime()
+									- sent.get(id & (SLOTS - 1));
+							window.release();
+							if (status != FramedConnection.OK) {
+								errors++;
+							} else if (!stopped) {
+								if (count == latencies.length) {
+									latencies = Arrays.copyOf(latencies,
+											count * 2);
+								}
+								latencies[count++] = latency;
+							}
+						}
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+			};
+			sender.start();
+			receiver.start();
+		}
+
+		/**
+		 * Stops sending and waits for the answers of the requests in flight.
+		 */
+		void stop() throws InterruptedException, IOException {
+			stopped = true;
+			sender.join();
+			receiver.join();
+			socket.close();
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	private static void usage() {
+		System.out.println("Usage: TransliterationLoad [-port <port>]"
+				+ " [-layout <layout.xml>] [-connections <n>]"
+				+ " [-seconds <s>] [-text <text>]");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = 65530;
+		String layoutName = "kan_phonetic.xml";
+		int connections = 4;
+		int seconds = 5;
+		String text = "kamala nanna hesaru bhaarata shaalege namaskaara";
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-port")) {
+					port = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-layout")) {
+					layoutName = args[++i];
+				} else if (args[i].equals("-connections")) {
+					connections = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-seconds")) {
+					seconds = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-text")) {
+					text = args[++i];
+				} else {
+					usage();
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			usage();
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (connections < 1 || seconds < 1) {
+			usage();
+		}
+
+		System.out.println(connections + " connections, " + layoutName
+				+ ", " + text.length() + " chars per request");
+		System.out.println("in flight  requests/s    p50 us    p99 us  errors");
+		byte[] payload = text.getBytes(UTF_8);
+		for (int depth = 1; depth <= FramedConnection.MAX_IN_FLIGHT; depth *= 2) {
+			List<Connection> clients = new ArrayList<Connection>();
+			for (int i = 0; i < connections; i++) {
+				clients.add(new Connection(port, layoutName, payload, depth));
+			}
+			long start = System.nanoTime();
+			for (Connection client : clients) {
+				client.start();
+			}
+			Thread.sleep(seconds * 1000L);
+			long nanos = System.nanoTime() - start;
+			long[] all = new long[0];
+			int errors = 0;
+			for (Connection client : clients) {
+				client.stop();
+				all = Arrays.copyOf(all, all.length + client.count);
+				System.arraycopy(client.latencies, 0, all, all.length
+						- client.count, client.count);
+				errors += client.errors;
+			}
+			Arrays.sort(all);
+			System.out.println(String.format("%9d %11.0f %9d %9d %7d", depth
+					* connections, all.length * 1e9 / nanos, percentile(all,
+					50) / 1000, percentile(all, 99) / 1000, errors));
+		}
+	}
+
+	/**
+	 * Returns the given percentile of the sorted latencies.
+	 */
+	private static long percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[(int) Math.min(sorted.length - 1,
+				(long) sorted.length * percent / 100)];
+	}
+}
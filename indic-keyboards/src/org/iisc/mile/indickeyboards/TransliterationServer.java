@@ -0,0 +1,348 @@
+/** ********************************************************************
+ * File:           TransliterationServer.java
+ * Description:    Transliterates text for local programs over a socket
+ * Created:        Mon Oct 19 04:55:42 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transliterates text for other programs on the same machine, so editors
+ * and scripts can use the layouts without keys being typed. It serves the
+ * socket which also keeps a second instance of indic-keyboards from
+ * running.
+ * <p>
+ * A client sends requests of one line each, in UTF-8: the name of a layout
+ * of <em>kblayouts</em>, a space and the text, as if typed in. Each request
+ * is answered with one line, "OK " and the Unicode, or "ERR " and the
+ * reason. A client may send any number of requests without waiting for
+ * the answers, which come back in order. A client which sends the byte
+ * 0xFF first speaks the binary protocol of <code>FramedConnection</code>
+ * instead, where the answers come back as they are ready.
+ * 
+ * <pre>
+ * $ printf 'kan_phonetic.xml namaskaara\n' | nc localhost 65530
+ * OK &#x0ca8;&#x0cae;&#x0cb8;&#x0ccd;&#x0c95;&#x0cbe;&#x0cb0;
+ * </pre>
+ * 
+ * Each connection has a thread of its own, a virtual thread where the Java
+ * runtime has them, else a thread of a pool of at most MAX_CONNECTIONS,
+ * beyond which connections are refused. A connection which sends nothing
+ * within FIRST_TIMEOUT is closed, so idle clients can not hold the threads.
+ * The layouts are read once and shared by all the connections.
+ */
+public class TransliterationServer implements Runnable {
+
+	/**
+	 * Longest request taken, in chars.
+	 */
+	public static final int MAX_REQUEST = 1 << 20;
+	/**
+	 * Connections waiting to be accepted.
+	 */
+	public static final int BACKLOG = 1024;
+	/**
+	 * Milliseconds after which an idle connection is closed.
+	 */
+	static final int IDLE_TIMEOUT = 5 * 60 * 1000;
+	/**
+	 * Milliseconds a new connection has to send its first byte.
+	 */
+	static final int FIRST_TIMEOUT = 10 * 1000;
+	/**
+	 * Connections served at once by the pool, without virtual threads.
+	 */
+	static final int MAX_CONNECTIONS = 64;
+
+	/**
+	 * Thread.startVirtualThread, or null if the Java runtime has no virtual
+	 * threads. Looked up at run time, as it came with Java 21.
+	 */
+	private static volatile Method startVirtualThread = virtualThreads();
+	private static ExecutorService pool;
+	private static ExecutorService workers;
+
+	private final ServerSocket socket;
+
+	private TransliterationServer(ServerSocket socket) {
+		this.socket = socket;
+	}
+
+	/**
+	 * Starts serving the connections to the socket, on a thread named
+	 * "Transliteration Server".
+	 */
+	public static void start(ServerSocket socket) {
+		Thread t = new Thread(new TransliterationServer(socket));
+		t.setName("Transliteration Server");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private static Method virtualThreads() {
+		try {
+			return Thread.class.getMethod("startVirtualThread",
+					Runnable.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Runs a task on a virtual thread. Returns false if there are none.
+	 */
+	private static boolean startVirtual(Runnable task) {
+		Method start = startVirtualThread;
+		if (start != null) {
+			try {
+				start.invoke(null, task);
+				return true;
+			} catch (IllegalAccessException e) {
+				startVirtualThread = null;
+			} catch (InvocationTargetException e) {
+				// A preview feature of Java 19 and 20, not enabled.
+				startVirtualThread = null;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs a connection on a virtual thread, or on a thread of the pool if
+	 * there are none. Throws RejectedExecutionException if the threads of
+	 * the pool are all busy.
+	 */
+	static void spawn(Runnable task) {
+		if (!startVirtual(task)) {
+			pool().execute(task);
+		}
+	}
+
+	/**
+	 * Runs a request on a virtual thread, or on the threads of the workers
+	 * if there are none; there is one worker per processor, however many
+	 * requests are in flight.
+	 */
+	static void work(Runnable task) {
+		if (!startVirtual(task)) {
+			workers().execute(task);
+		}
+	}
+
+	private static synchronized ExecutorService pool() {
+		if (pool == null) {
+			pool = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60,
+					TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+					new Daemons("Transliteration Connection"));
+		}
+		return pool;
+	}
+
+	private static synchronized ExecutorService workers() {
+		if (workers == null) {
+			workers = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), new Daemons(
+					"Transliteration Worker"));
+		}
+		return workers;
+	}
+
+	/**
+	 * Makes the daemon threads of the pools.
+	 */
+	private static class Daemons implements ThreadFactory {
+		private final String name;
+
+		Daemons(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r);
+			t.setName(name);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	public void run() {
+		System.out.println("Transliteration server on port "
+				+ socket.getLocalPort()
+				+ (startVirtualThread != null ? ", virtual threads" : ""));
+		while (!socket.isClosed()) {
+			try {
+				Connection connection = new Connection(socket.accept());
+				try {
+					spawn(connection);
+				} catch (RejectedExecutionException e) {
+					connection.refuse();
+				}
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					System.out.println("Transliteration server: "
+							+ e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Serves the requests of one client.
+	 */
+	static class Connection implements Runnable {
+
+		private final Socket client;
+		/**
+		 * The transliterators of the layouts the client has used. Every
+		 * request starts afresh, as a newline does.
+		 */
+		private final HashMap<Layout, Transliterator> transliterators = new HashMap<Layout, Transliterator>();
+		private final StringBuilder request = new StringBuilder();
+		private final StringBuilder response = new StringBuilder();
+
+		Connection(Socket client) {
+			this.client = client;
+		}
+
+		/**
+		 * Tells the client the server is busy and closes the connection.
+		 */
+		void refuse() {
+			try {
+				client.getOutputStream().write(
+						"ERR too many connections\n".getBytes("UTF-8"));
+			} catch (IOException e) {
+				// The client has gone already.
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// Closed already.
+				}
+			}
+		}
+
+		public void run() {
+			try {
+				client.setSoTimeout(FIRST_TIMEOUT);
+				client.setTcpNoDelay(true);
+				InputStream input = new BufferedInputStream(client
+						.getInputStream());
+				input.mark(1);
+				int first = input.read();
+				client.setSoTimeout(IDLE_TIMEOUT);
+				if (first == FramedConnection.PREFACE) {
+					new FramedConnection(input, client.getOutputStream())
+							.serve();
+					return;
+				}
+				input.reset();
+				Reader in = new BufferedReader(new InputStreamReader(input,
+						"UTF-8"));
+				Writer out = new BufferedWriter(new OutputStreamWriter(client
+						.getOutputStream(), "UTF-8"));
+				while (readRequest(in)) {
+					respond(out);
+					/*
+					 * The answers to requests sent together go back together.
+					 */
+					if (!in.ready()) {
+						out.flush();
+					}
+				}
+				out.flush();
+			} catch (IOException e) {
+				// The client has gone, or has been idle too long.
+			} finally {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// Closed already.
+				}
+			}
+		}
+
+		/**
+		 * Reads a request into <code>request</code>, without the line end.
+		 * Returns false at the end of the input.
+		 */
+		private boolean readRequest(Reader in) throws IOException {
+			request.setLength(0);
+			int c;
+			while ((c = in.read()) >= 0 && c != '\n') {
+				if (request.length() == MAX_REQUEST) {
+					throw new IOException("Request too long");
+				}
+				request.append((char) c);
+			}
+			if (c < 0 && request.length() == 0) {
+				return false;
+			}
+			if (request.length() > 0
+					&& request.charAt(request.length() - 1) == '\r') {
+				request.setLength(request.length() - 1);
+			}
+			return true;
+		}
+
+		private void respond(Writer out) throws IOException {
+			int space = request.indexOf(" ");
+			if (space < 0) {
+				out.write("ERR expected a layout and the text\n");
+				return;
+			}
+			String name = request.substring(0, space);
+			Layout layout = Layouts.get(name);
+			if (layout == null) {
+				out.write("ERR no layout " + name + "\n");
+				return;
+			}
+			Transliterator transliterator = transliterators.get(layout);
+			if (transliterator == null) {
+				transliterator = new Transliterator(layout);
+				transliterators.put(layout, transliterator);
+			}
+			response.setLength(0);
+			transliterator.write(request.subSequence(space + 1, request
+					.length()), response);
+			transliterator.finish(response);
+			out.write("OK ");
+			out.append(response);
+			out.write('\n');
+		}
+	}
+}
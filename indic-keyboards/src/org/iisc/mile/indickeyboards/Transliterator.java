@@ -0,0 +1,359 @@
+/** ********************************************************************
+ * File:           Transliterator.java
+ * Description:    Streams text through a keyboard layout
+ * Created:        Mon Oct 19 04:49:05 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Transliterates a stream of text as if it were typed in with a keyboard
+ * layout, for use from other programs. The text is given in chunks of any
+ * size, and a chunk may end in the middle of a syllable. The Unicode comes
+ * out at the end of each line, and within a long line whenever more than
+ * <code>CHUNK</code> chars are held, keeping back what a later key may still
+ * change; so only a chunk's worth of text is held at a time, and the output
+ * is the same however the input is split.
+ * <p>
+ * A line is transliterated on its own: a backspace at the start of a line
+ * does not go back into the line before, and no state is carried over the
+ * newline. Lines can thus be converted in any order, or in parallel.
+ * <p>
+ * The parsers and the compiled layout are the ones used while typing. A
+ * transliterator keeps the state of one stream and is not to be shared
+ * between threads; a layout may be shared by any number of them.
+ * 
+ * <pre>
+ * Transliterator t = new Transliterator(Layout.load(&quot;kan_phonetic.xml&quot;));
+ * t.write(&quot;namaskaara&quot;, out);
+ * t.finish(out);
+ * </pre>
+ * 
+ * See also <code>TransliteratingReader</code> and
+ * <code>TransliteratingWriter</code>, which wrap a transliterator around a
+ * <code>Reader</code> or a <code>Writer</code>.
+ */
+public class Transliterator {
+
+	/**
+	 * Number of chars processed before the output is handed on.
+	 */
+	public static final int CHUNK = 8192;
+
+	/**
+	 * The keys of the ASCII characters, made once.
+	 */
+	static final String[] KEYS = new String[128];
+	static {
+		for (char c = 0; c < KEYS.length; c++) {
+			KEYS[c] = String.valueOf(c);
+		}
+	}
+
+	private final Layout layout;
+	private final TextOutput output = new TextOutput();
+	private final Session session;
+	/**
+	 * The cache of the words, null if the layout keys in the chars which end
+	 * a word.
+	 */
+	private final WordCache cache;
+	/**
+	 * The keys of the word being typed, while it may still be found in the
+	 * cache. They have not been given to the parsers yet.
+	 */
+	private final StringBuilder word = new StringBuilder();
+	/**
+	 * Set while the keys of the word are collected in <code>word</code>.
+	 */
+	private boolean collecting = true;
+	/**
+	 * Number of chars since the last char which ends a word.
+	 */
+	private int wordLength = 0;
+	/**
+	 * Words looked up in the cache, and found, since it was last judged
+	 * worth looking words up in.
+	 */
+	private int lookups = 0;
+	private int found = 0;
+	/**
+	 * Words still to be typed without the cache, after too few were found
+	 * in it; text which seldom repeats a word is typed faster without it.
+	 */
+	private int bypass = 0;
+	private long charsIn = 0;
+	private long charsOut = 0;
+
+	/**
+	 * Creates a transliterator for a layout, which puts the words already
+	 * seen from the shared cache.
+	 * 
+	 * @param layout
+	 *            The layout, as given by <code>Layout.load()</code>
+	 */
+	public Transliterator(Layout layout) {
+		this(layout, WordCache.shared);
+	}
+
+	/**
+	 * Creates a transliterator for a layout with a cache of its own, or none
+	 * if cache is null.
+	 */
+	public Transliterator(Layout layout, WordCache cache) {
+		this.layout = layout;
+		this.session = new Session(output, false);
+		boolean keyed = layout.lookup(" ") != null
+				|| layout.lookup("\n") != null || layout.lookup("\r") != null;
+		this.cache = keyed ? null : cache;
+	}
+
+	/**
+	 * @return Returns the layout the text is transliterated with.
+	 */
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Returns true for the chars after which the state of the session is
+	 * known: the parsers forget the previous consonant on a space, and so
+	 * does Enter.
+	 */
+	private static boolean endsWord(char c) {
+		return c == ' ' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Transliterates one character and hands on the output which is ready.
+	 * <p>
+	 * The keys of a word are collected until the word ends, and the word is
+	 * then put from the cache if it is there. A word with a backspace, or
+	 * longer than <code>WordCache.MAX_WORD</code>, is typed key by key from
+	 * where it stops being collected. Output is only handed on where the
+	 * keys would be typed one by one either way, so it does not matter to
+	 * the output whether the cache is used.
+	 */
+	private void type(char c, Appendable out) throws IOException {
+		if (endsWord(c)) {
+			endWord();
+			if (bypass > 0) {
+				bypass--;
+			}
+			key(c);
+			collecting = true;
+			wordLength = 0;
+			if (c == '\n') {
+				session.reset();
+				drain(out, true);
+				return;
+			}
+		} else {
+			wordLength++;
+			if (collecting && c != '\b' && wordLength <= WordCache.MAX_WORD
+					&& bypass == 0 && cache != null && cache.isEnabled()) {
+				word.append(c);
+				return;
+			}
+			if (collecting) {
+				replay();
+				collecting = false;
+			}
+			key(c);
+			if (wordLength <= WordCache.MAX_WORD) {
+				return;
+			}
+		}
+		if (output.length() > CHUNK) {
+			drain(out, false);
+		}
+	}
+
+	/**
+	 * Types one key. A newline ends a word, like Enter does while typing,
+	 * and a backspace deletes the character before it. Characters outside
+	 * ASCII can not be keyed in and are put as they are.
+	 */
+	private void key(char c) {
+		if (c >= KEYS.length) {
+			output.append(c);
+			session.putAsIs();
+			return;
+		}
+		if (c == '\n' || c == '\r') {
+			session.resetConsonantFlags();
+		}
+		if (!session.process(KEYS[c], layout)) {
+			if (c == '\b') {
+				output.erase(1);
+			} else {
+				output.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Types the keys of the word collected so far.
+	 */
+	private void replay() {
+		for (int i = 0; i < word.length(); i++) {
+			key(word.charAt(i));
+		}
+		word.setLength(0);
+	}
+
+	/**
+	 * Puts the word collected, from the cache if it is there. Otherwise it
+	 * is typed, and kept if it deleted nothing put before it.
+	 * <p>
+	 * The session is known to have no previous consonant at the start of a
+	 * word, and then the previous keys are only looked at by a backspace,
+	 * which a word kept does not have; so its Unicode is the same wherever
+	 * it is typed. What it leaves of the keys before it is found out by
+	 * typing it with markers in their place.
+	 */
+	private void endWord() {
+		if (word.length() == 0) {
+			return;
+		}
+		if (cache == null || !cache.isEnabled()) {
+			replay();
+			return;
+		}
+		String keys = word.toString();
+		word.setLength(0);
+		WordCache.Word cached = cache.get(layout, keys);
+		lookups++;
+		if (cached != null) {
+			found++;
+		}
+		if (lookups == WordCache.JUDGE) {
+			if (found < WordCache.JUDGE / 2) {
+				bypass = WordCache.BYPASS;
+			}
+			lookups = 0;
+			found = 0;
+		}
+		if (cached != null) {
+			output.append(cached.unicode);
+			cached.restore(session);
+			return;
+		}
+		String previousChar = session.previousChar;
+		String previousCharlog = session.previousCharlog;
+		int previousConsonantFlaglog = session.previousConsonantFlaglog;
+		session.previousChar = WordCache.Word.BEFORE_CHAR;
+		session.previousCharlog = WordCache.Word.BEFORE_CHARLOG;
+		session.previousConsonantFlaglog = WordCache.Word.BEFORE_FLAG;
+		int start = output.mark();
+		long pushed = session.history.pushed();
+		for (int i = 0; i < keys.length(); i++) {
+			key(keys.charAt(i));
+		}
+		int typedKeys = (int) (session.history.pushed() - pushed);
+		WordCache.Word typed = new WordCache.Word(output.substring(start),
+				session, typedKeys);
+		/*
+		 * The history of the word is kept with its markers, and is put back
+		 * with the keys before it by restore().
+		 */
+		session.history.drop(typedKeys);
+		session.previousChar = previousChar;
+		session.previousCharlog = previousCharlog;
+		session.previousConsonantFlaglog = previousConsonantFlaglog;
+		typed.restore(session);
+		if (output.lowest() >= start) {
+			cache.put(layout, keys, typed);
+		}
+	}
+
+	/**
+	 * Hands on the output which later input can no longer change, or all of
+	 * it.
+	 */
+	private void drain(Appendable out, boolean all) throws IOException {
+		int length = output.length();
+		output.drain(out, all ? 0 : TextOutput.KEEP);
+		charsOut += length - output.length();
+	}
+
+	/**
+	 * Transliterates a chunk of text. Output is appended to out as it is
+	 * ready; the rest follows with later chunks or with
+	 * <code>finish()</code>.
+	 */
+	public void write(CharSequence text, Appendable out) throws IOException {
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			type(text.charAt(i), out);
+		}
+		charsIn += length;
+	}
+
+	/**
+	 * Transliterates a chunk of text held in an array.
+	 */
+	public void write(char[] text, int offset, int length, Appendable out)
+			throws IOException {
+		for (int i = 0; i < length; i++) {
+			type(text[offset + i], out);
+		}
+		charsIn += length;
+	}
+
+	/**
+	 * Ends the stream: appends all the output held back to out and starts
+	 * afresh, as after a newline.
+	 */
+	public void finish(Appendable out) throws IOException {
+		endWord();
+		drain(out, true);
+		session.reset();
+		collecting = true;
+		wordLength = 0;
+	}
+
+	/**
+	 * Transliterates all the text of a reader to a writer, a chunk at a
+	 * time, and finishes. Neither is closed.
+	 */
+	public void transliterate(Reader in, Writer out) throws IOException {
+		char[] buffer = new char[CHUNK];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			write(buffer, 0, n, out);
+		}
+		finish(out);
+		out.flush();
+	}
+
+	/**
+	 * @return Returns the number of chars transliterated so far.
+	 */
+	public long getCharsIn() {
+		return charsIn;
+	}
+
+	/**
+	 * @return Returns the number of chars handed on so far.
+	 */
+	public long getCharsOut() {
+		return charsOut;
+	}
+}
@@ -0,0 +1,215 @@
+/** ********************************************************************
+ * File:           TypedWord.java
+ * Description:    The word being typed in a session
+ * Created:        Mon Oct 19 06:46:10 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * What a session knows of the word being typed: its Unicode, the keys
+ * typed for it and the node of the <code>Abbreviations</code> they have
+ * reached. The word is offered to the <code>Suggestions</code>, decoded
+ * with the <code>LatticeDecoder</code>, told to be English by the
+ * <code>EnglishFilter</code>, and learned by the <code>UserDictionary</code>
+ * when it ends. Used with the output of the session locked, like the
+ * session.
+ */
+final class TypedWord {
+
+	/**
+	 * The Unicode of the word.
+	 */
+	final StringBuilder text = new StringBuilder();
+	/**
+	 * Set for the words typed into the active window, which are suggested,
+	 * decoded and learned.
+	 */
+	private final boolean suggesting;
+	/**
+	 * Whether the words typed in phonetic mode are decoded with the
+	 * language model, and the decoder, made when first needed.
+	 */
+	private volatile boolean decoding = false;
+	private LatticeDecoder decoder;
+	/**
+	 * The node of the abbreviations the keys of the word have reached, null
+	 * if they are not the beginning of any.
+	 */
+	private Abbreviations.Node abbreviation;
+	/**
+	 * The keys of the word, for telling an English word.
+	 */
+	private final EnglishFilter.Token token = new EnglishFilter.Token();
+
+	TypedWord(boolean suggesting) {
+		this.suggesting = suggesting;
+	}
+
+	boolean isEmpty() {
+		return text.length() == 0;
+	}
+
+	/**
+	 * Returns the number of Unicode characters of the word, which the
+	 * parsers erase to replace it.
+	 */
+	int codePoints() {
+		return text.codePointCount(0, text.length());
+	}
+
+	/**
+	 * Deletes characters from the end of the word.
+	 */
+	void unput(int count) {
+		int length = text.length();
+		while (count > 0 && length > 0) {
+			length = text.offsetByCodePoints(length, -1);
+			count--;
+		}
+		text.setLength(length);
+	}
+
+	/**
+	 * Goes on with the keys of a pattern which the parsers have matched,
+	 * from the first key of the word if it is starting.
+	 */
+	void addKeys(String pattern, boolean starting) {
+		Abbreviations.Node from = starting ? Abbreviations.root()
+				: abbreviation;
+		abbreviation = from == null ? null : from.next(pattern);
+		if (starting) {
+			token.clear();
+		}
+		token.add(pattern);
+	}
+
+	/**
+	 * Forgets the keys of the word. A backspace deletes a char, not a key,
+	 * so after one the keys of the word are no longer known.
+	 */
+	void dropKeys() {
+		abbreviation = null;
+		token.drop();
+	}
+
+	/**
+	 * Returns the phrase of the abbreviation the keys of the word are, null
+	 * if they are none.
+	 */
+	String phrase() {
+		return abbreviation == null || isEmpty() ? null : abbreviation.phrase;
+	}
+
+	/**
+	 * Returns the keys of the word if they are an English word and the word
+	 * is not one of the language of a phonetic layout, else null.
+	 */
+	String english(Layout layout) {
+		EnglishFilter filter = EnglishFilter.shared();
+		if (filter == null || isEmpty() || layout == null
+				|| !layout.isPhonetic() || !filter.contains(token)) {
+			return null;
+		}
+		WordDictionary dictionary = WordDictionary.forLayout(layout);
+		if (dictionary != null && dictionary.contains(text)) {
+			return null;
+		}
+		UserDictionary user = UserDictionary.shared();
+		if (user != null && user.count(text.toString()) > 0) {
+			return null;
+		}
+		return token.text();
+	}
+
+	/**
+	 * Offers the completions of the word, after a key of a phonetic layout.
+	 */
+	void suggest(Layout layout) {
+		if (suggesting && layout != null && layout.isPhonetic()
+				&& Suggestions.isEnabled()) {
+			Suggestions.offer(layout, text);
+		}
+	}
+
+	/**
+	 * Forgets the word, which has ended, after the user dictionary has
+	 * learned it and it has been queued for its correction.
+	 */
+	void end(Layout layout) {
+		if (suggesting && !isEmpty()) {
+			UserDictionary user = UserDictionary.shared();
+			if (user != null) {
+				user.learn(text);
+			}
+			Corrections.check(layout, text);
+		}
+		clear();
+	}
+
+	/**
+	 * Forgets the word without learning it.
+	 */
+	void clear() {
+		text.setLength(0);
+		stopDecoding();
+	}
+
+	void setDecoding(boolean decoding) {
+		this.decoding = decoding;
+		stopDecoding();
+	}
+
+	boolean isDecoding() {
+		return decoding;
+	}
+
+	/**
+	 * Starts decoding the keys of the word, with the word so far as it is,
+	 * if the word is decoded and the language has a model.
+	 */
+	void startDecoding(Session session, Layout layout) {
+		if (!decoding || !suggesting
+				|| (decoder != null && decoder.isStarted())) {
+			return;
+		}
+		LanguageModel model = LanguageModel.forLayout(layout);
+		if (model == null) {
+			return;
+		}
+		if (decoder == null) {
+			decoder = new LatticeDecoder();
+		}
+		decoder.start(session, text, layout, model);
+	}
+
+	void stopDecoding() {
+		if (decoder != null) {
+			decoder.stop();
+		}
+	}
+
+	/**
+	 * Returns the most likely rendering of the word after a key which has
+	 * been put, or null if the word is not decoded.
+	 */
+	String decode(String pattern) {
+		if (decoder == null || !decoder.isStarted()) {
+			return null;
+		}
+		String best = decoder.key(pattern);
+		return best == null || best.length() != text.length() ? null : best;
+	}
+}
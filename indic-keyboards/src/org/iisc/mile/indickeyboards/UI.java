@@ -21,6 +21,7 @@ package org.iisc.mile.indickeyboards;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Image;
@@ -70,6 +71,12 @@ public class UI {
 	 */
 	public static String layoutImg;
 
+	/**
+	 * Set while the tool tip shows the completions of the word being typed,
+	 * or the correction of the word before it, which the next key hides.
+	 */
+	private static boolean showingWords = false;
+
 	/**
 	 * MenuItem for the Enable/Disable functionality.
 	 */
@@ -144,6 +151,40 @@ public class UI {
 			item.setToolTip(tip);
 			tip.setVisible(true);
 
+			/*
+			 * The completions of the word being typed are shown in the tool
+			 * tip. They come from the thread monitoring the keys; when they
+			 * come faster than the display can show them, only the latest
+			 * are shown.
+			 */
+			final AtomicReference<String[]> suggested = new AtomicReference<String[]>();
+			Suggestions.setListener(new Suggestions.Listener() {
+				public void suggested(String word, String[] completions) {
+					if (suggested.getAndSet(completions) == null) {
+						display.asyncExec(new Runnable() {
+							public void run() {
+								showSuggestions(suggested.getAndSet(null));
+							}
+						});
+					}
+				}
+			});
+
+			/*
+			 * The corrections of the words typed are shown the same way, as
+			 * they come from their thread.
+			 */
+			Corrections.setListener(new Corrections.Listener() {
+				public void corrected(final String word,
+						final String correction) {
+					display.asyncExec(new Runnable() {
+						public void run() {
+							showCorrection(word, correction);
+						}
+					});
+				}
+			});
+
 			/* DefaultSelection is Double-click */
 			item.addListener(SWT.DefaultSelection, new Listener() {
 				/**
@@ -334,7 +375,6 @@ public class UI {
 												.length() - 4));
 								tip.setVisible(true);
 								ParseXML.setlang("userdefined/" + filename);
-								PhoneticParseXML.PhoneticFlag = 0;
 								item
 										.setToolTipText("indic-keyboards - User Defined - "
 												+ filename.substring(0,
@@ -497,7 +537,6 @@ public class UI {
 							tip.setVisible(true);
 							// Set the selected language to be kan_kagapa.xml.
 							ParseXML.setlang("kan_kagapa.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/kannada.ico");
@@ -517,7 +556,6 @@ public class UI {
 							tip.setMessage("Kannada Inscript");
 							tip.setVisible(true);
 							ParseXML.setlang("kan_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/kannada.ico");
@@ -536,7 +574,6 @@ public class UI {
 							tip.setMessage("Kannada Phonetic");
 							tip.setVisible(true);
 							PhoneticParseXML.setlang("kan_phonetic.xml");
-							PhoneticParseXML.PhoneticFlag = 1;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/kannada.ico");
@@ -560,7 +597,6 @@ public class UI {
 							tip.setMessage("Tamil99");
 							tip.setVisible(true);
 							ParseXML.setlang("tamil99.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/tamil.ico");
@@ -582,7 +618,6 @@ public class UI {
 							tip.setMessage("Tamil Inscript");
 							tip.setVisible(true);
 							ParseXML.setlang("tam_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/tamil.ico");
@@ -604,7 +639,6 @@ public class UI {
 							tip.setMessage("Tamil Bamini");
 							tip.setVisible(true);
 							ParseXML.setlang("tam_bamini_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/tamil.ico");
@@ -625,7 +659,6 @@ public class UI {
 							tip.setMessage("Tamil Remington");
 							tip.setVisible(true);
 							ParseXML.setlang("tam_remington_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/tamil.ico");
@@ -646,7 +679,6 @@ public class UI {
 							tip.setMessage("Tamil Phonetic");
 							tip.setVisible(true);
 							PhoneticParseXML.setlang("tam_phonetic.xml");
-							PhoneticParseXML.PhoneticFlag = 1;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/tamil.ico");
@@ -671,7 +703,6 @@ public class UI {
 							tip.setMessage("Telugu Inscript");
 							tip.setVisible(true);
 							ParseXML.setlang("tel_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/telugu.ico");
@@ -692,7 +723,6 @@ public class UI {
 							currentLayout.setEnabled(false);
 							tip.setVisible(true);
 							PhoneticParseXML.setlang("tel_phonetic.xml");
-							PhoneticParseXML.PhoneticFlag = 1;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/telugu.ico");
@@ -718,7 +748,6 @@ public class UI {
 							tip.setMessage("Gujrathi Inscript");
 							tip.setVisible(true);
 							ParseXML.setlang("guj_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/gujarati.ico");
@@ -740,7 +769,6 @@ public class UI {
 							currentLayout.setEnabled(false);
 							tip.setVisible(true);
 							PhoneticParseXML.setlang("guj_phonetic.xml");
-							PhoneticParseXML.PhoneticFlag = 1;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/gujarati.ico");
@@ -766,7 +794,6 @@ public class UI {
 							tip.setMessage("Hindi Remington");
 							tip.setVisible(true);
 							ParseXML.setlang("hin_remington_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/hindi.ico");
@@ -791,7 +818,6 @@ public class UI {
 							tip.setVisible(true);
 
 							ParseXML.setlang("hin_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/hindi.ico");
@@ -813,7 +839,6 @@ public class UI {
 							currentLayout.setEnabled(false);
 							tip.setVisible(true);
 							PhoneticParseXML.setlang("hin_phonetic.xml");
-							PhoneticParseXML.PhoneticFlag = 1;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/hindi.ico");
@@ -839,7 +864,6 @@ public class UI {
 							tip.setMessage("Marathi Remington");
 							tip.setVisible(true);
 							ParseXML.setlang("hin_remington_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/hindi.ico");
@@ -861,7 +885,6 @@ public class UI {
 							tip.setMessage("Marathi Inscript");
 							tip.setVisible(true);
 							ParseXML.setlang("mar_inscript.xml");
-							PhoneticParseXML.PhoneticFlag = 0;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/hindi.ico");
@@ -883,7 +906,6 @@ public class UI {
 							currentLayout.setEnabled(false);
 							tip.setVisible(true);
 							PhoneticParseXML.setlang("hin_phonetic.xml");
-							PhoneticParseXML.PhoneticFlag = 1;
 							Image image1 = new Image(display,
 									IndicKeyboards.workingDirectory
 											+ "/resources/hindi.ico");
@@ -908,7 +930,6 @@ public class UI {
 						tip.setMessage("Bengali Inscript");
 						tip.setVisible(true);
 						ParseXML.setlang("ben_inscript.xml");
-						PhoneticParseXML.PhoneticFlag = 0;
 						Image image1 = new Image(display,
 								IndicKeyboards.workingDirectory
 										+ "/resources/bengali.ico");
@@ -932,7 +953,6 @@ public class UI {
 						tip.setMessage("Gurmukhi Inscript");
 						tip.setVisible(true);
 						ParseXML.setlang("gur_inscript.xml");
-						PhoneticParseXML.PhoneticFlag = 0;
 						Image image1 = new Image(display,
 								IndicKeyboards.workingDirectory
 										+ "/resources/gurmukhi.ico");
@@ -956,7 +976,6 @@ public class UI {
 						tip.setMessage("Malayalam Inscript");
 						tip.setVisible(true);
 						ParseXML.setlang("mal_inscript.xml");
-						PhoneticParseXML.PhoneticFlag = 0;
 						Image image1 = new Image(display,
 								IndicKeyboards.workingDirectory
 										+ "/resources/malayalam.ico");
@@ -980,7 +999,6 @@ public class UI {
 						tip.setMessage("Oriya Inscript");
 						tip.setVisible(true);
 						ParseXML.setlang("ori_inscript.xml");
-						PhoneticParseXML.PhoneticFlag = 0;
 						Image image1 = new Image(display,
 								IndicKeyboards.workingDirectory
 										+ "/resources/oriya.ico");
@@ -1219,6 +1237,40 @@ public class UI {
 		display.dispose();
 	}
 
+	/**
+	 * Shows the completions of the word being typed in the tool tip, or hides
+	 * the completions shown when there are none. Called on the UI thread.
+	 */
+	static void showSuggestions(String[] completions) {
+		if (completions.length == 0) {
+			if (showingWords) {
+				tip.setVisible(false);
+				showingWords = false;
+			}
+			return;
+		}
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < completions.length; i++) {
+			if (i > 0) {
+				message.append("   ");
+			}
+			message.append(completions[i]);
+		}
+		tip.setMessage(message.toString());
+		tip.setVisible(true);
+		showingWords = true;
+	}
+
+	/**
+	 * Shows the correction of a word typed in the tool tip. Called on the UI
+	 * thread.
+	 */
+	static void showCorrection(String word, String correction) {
+		tip.setMessage(word + " \u2192 " + correction + " ?");
+		tip.setVisible(true);
+		showingWords = true;
+	}
+
 	public static void showCurrentLayout(String text, String imagePath) {
 		final Shell currentLayout = new Shell(Display.getCurrent(),
 				SWT.DIALOG_TRIM | SWT.ON_TOP);
@@ -0,0 +1,522 @@
+/** ********************************************************************
+ * File:           UserDictionary.java
+ * Description:    The words the user has typed, learned for the suggestions
+ * Created:        Mon Oct 19 06:00:54 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The words the user has typed, and how often, kept in the current
+ * directory next to <em>preferences.conf</em> so the suggestions learn them.
+ * <p>
+ * A word typed is handed to a thread of the dictionary; the thread monitoring
+ * the keys only adds it to a queue. The thread appends the word to a log,
+ * <em>userwords.log</em>, without waiting for it to reach the disk, and
+ * adds it to the words learned since the table was written. Once the log
+ * holds <code>COMPACT_AFTER</code> words, the thread merges them into a new
+ * sorted table, <em>userwords-n.dat</em>, which is memory-mapped, and starts
+ * a new log. So at start-up only the table is mapped and at most that many
+ * words are read back from the log, however long the dictionary has been
+ * learning.
+ * <p>
+ * The first line of the log names the generation n of the table it goes
+ * with; a log older than the table has been merged into it and is dropped.
+ * A new table is written under a new name, so a table is never replaced
+ * while it is mapped, and the old one is deleted once it is no longer
+ * used.
+ * <p>
+ * Lookups read the table and the words learned since, which the thread of
+ * the dictionary replaces as a whole when it writes a table. They take no
+ * lock and never wait for the thread.
+ */
+public class UserDictionary {
+
+	static final int MAGIC = 0x494b5531;
+	/**
+	 * Bytes of the header of a table: magic, generation, entries.
+	 */
+	static final int HEADER = 16;
+
+	/**
+	 * Words logged before the log is merged into a new table.
+	 */
+	static final int COMPACT_AFTER = 4096;
+
+	/**
+	 * Most words of the table looked at for the completions of a prefix.
+	 */
+	static final int SCAN = 4096;
+
+	public static final String LOG = "userwords.log";
+	static final String TABLE = "userwords-";
+
+	private static final String[] NONE = new String[0];
+
+	/**
+	 * The dictionary being learned, null until it is started.
+	 */
+	private static volatile UserDictionary shared;
+
+	/**
+	 * A table and the words learned after it was written, as looked up.
+	 */
+	private static final class Snapshot {
+		final long generation;
+		final File file;
+		/**
+		 * The entries, each an int count, a short length and the chars;
+		 * then the offsets of the entries in the order of their words.
+		 */
+		final ByteBuffer table;
+		final int entries;
+		final int index;
+		/**
+		 * The words learned since, only changed by the thread of the
+		 * dictionary.
+		 */
+		final ConcurrentSkipListMap<String, Integer> recent = new ConcurrentSkipListMap<String, Integer>();
+
+		Snapshot(long generation, File file, ByteBuffer table) {
+			this.generation = generation;
+			this.file = file;
+			this.table = table;
+			this.entries = table == null ? 0 : table.getInt(12);
+			this.index = table == null ? 0 : table.limit() - 4 * entries;
+		}
+
+		int offset(int i) {
+			return table.getInt(index + 4 * i);
+		}
+
+		String word(int i) {
+			int offset = offset(i);
+			char[] chars = new char[table.getShort(offset + 4)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = table.getChar(offset + 6 + 2 * j);
+			}
+			return new String(chars);
+		}
+
+		int count(int i) {
+			return table.getInt(offset(i));
+		}
+
+		/**
+		 * Returns the first entry whose word is not before the given one.
+		 */
+		int lowerBound(String word) {
+			int low = 0;
+			int high = entries;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (word(middle).compareTo(word) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	private final File directory;
+	private volatile Snapshot snapshot;
+	private final ConcurrentLinkedQueue<String> learned = new ConcurrentLinkedQueue<String>();
+	private final Thread thread;
+	/**
+	 * The log being appended to, and the words in it. Only used by the
+	 * thread of the dictionary.
+	 */
+	private Writer log;
+	private int logged = 0;
+
+	private UserDictionary(File directory) {
+		this.directory = directory;
+		this.snapshot = openTable();
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				learn();
+			}
+		});
+		thread.setName("User Dictionary");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts learning the words typed, kept in the given directory. Only the
+	 * table is mapped here; the log is read back on the thread of the
+	 * dictionary.
+	 */
+	public static synchronized UserDictionary start(File directory) {
+		if (shared == null) {
+			shared = open(directory);
+		}
+		return shared;
+	}
+
+	/**
+	 * Starts learning the words kept in a directory, apart from the
+	 * dictionary of the words typed.
+	 */
+	static UserDictionary open(File directory) {
+		UserDictionary dictionary = new UserDictionary(directory);
+		dictionary.thread.start();
+		return dictionary;
+	}
+
+	/**
+	 * Returns the dictionary being learned, or null if it has not been
+	 * started.
+	 */
+	public static UserDictionary shared() {
+		return shared;
+	}
+
+	/**
+	 * Returns the generation of a table file, or -1 if it is not one.
+	 */
+	private static long generation(String name) {
+		if (!name.startsWith(TABLE) || !name.endsWith(".dat")) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(TABLE.length(), name
+					.length() - 4));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Maps the newest table which can be read, and deletes the others.
+	 */
+	private Snapshot openTable() {
+		List<Long> generations = new ArrayList<Long>();
+		String[] names = directory.list();
+		for (int i = 0; names != null && i < names.length; i++) {
+			if (names[i].startsWith(TABLE) && names[i].endsWith(".tmp")) {
+				/*
+				 * A table whose writing did not finish.
+				 */
+				new File(directory, names[i]).delete();
+				continue;
+			}
+			long generation = generation(names[i]);
+			if (generation >= 0) {
+				generations.add(Long.valueOf(generation));
+			}
+		}
+		Collections.sort(generations, Collections.reverseOrder());
+		Snapshot found = null;
+		for (Long generation : generations) {
+			File file = table(generation.longValue());
+			if (found != null) {
+				file.delete();
+				continue;
+			}
+			try {
+				found = new Snapshot(generation.longValue(), file, map(file));
+			} catch (IOException e) {
+				System.out.println("Could not read " + file + ": "
+						+ e.getMessage());
+			}
+		}
+		return found != null ? found : new Snapshot(0, null, null);
+	}
+
+	private File table(long generation) {
+		return new File(directory, TABLE + generation + ".dat");
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (map.limit() < HEADER || map.getInt(0) != MAGIC
+					|| map.getInt(12) < 0
+					|| map.getInt(12) > (map.limit() - HEADER) / 4) {
+				throw new IOException("not a table of user words");
+			}
+			return map;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Learns a word typed, if it is made of letters only. Called on the
+	 * thread monitoring the keys; the word is only queued.
+	 */
+	public void learn(CharSequence word) {
+		int length = word.length();
+		if (length < 2 || length > WordCache.MAX_WORD) {
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = word.charAt(i);
+			int type = Character.getType(c);
+			if (!Character.isLetter(c) && type != Character.NON_SPACING_MARK
+					&& type != Character.COMBINING_SPACING_MARK
+					&& c != '\u200C' && c != '\u200D') {
+				return;
+			}
+		}
+		learned.offer(word.toString());
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Returns the number of times a word has been typed.
+	 */
+	public int count(String word) {
+		Snapshot current = snapshot;
+		int count = 0;
+		if (current.entries > 0) {
+			int i = current.lowerBound(word);
+			if (i < current.entries && current.word(i).equals(word)) {
+				count = current.count(i);
+			}
+		}
+		Integer recent = current.recent.get(word);
+		return recent == null ? count : count + recent.intValue();
+	}
+
+	/**
+	 * Returns the words typed most often which begin with a prefix, the
+	 * prefix included, most often typed first. Only the first
+	 * <code>SCAN</code> words of the table with the prefix are looked at.
+	 *
+	 * @param k
+	 *            Most words returned
+	 */
+	public String[] complete(String prefix, int k) {
+		Snapshot current = snapshot;
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		if (current.entries > 0) {
+			for (int i = current.lowerBound(prefix), n = 0; i < current.entries
+					&& n < SCAN; i++, n++) {
+				String word = current.word(i);
+				if (!word.startsWith(prefix)) {
+					break;
+				}
+				counts.put(word, Integer.valueOf(current.count(i)));
+			}
+		}
+		for (Map.Entry<String, Integer> entry : current.recent.subMap(prefix,
+				prefix + '\uFFFF').entrySet()) {
+			Integer count = counts.get(entry.getKey());
+			counts.put(entry.getKey(), Integer.valueOf(entry.getValue()
+					.intValue()
+					+ (count == null ? 0 : count.intValue())));
+		}
+		if (counts.isEmpty()) {
+			return NONE;
+		}
+		List<String> words = new ArrayList<String>(counts.keySet());
+		Collections.sort(words, new Comparator<String>() {
+			public int compare(String a, String b) {
+				int difference = counts.get(b).intValue()
+						- counts.get(a).intValue();
+				return difference != 0 ? difference : a.compareTo(b);
+			}
+		});
+		return words.subList(0, Math.min(k, words.size())).toArray(NONE);
+	}
+
+	/**
+	 * The thread of the dictionary: reads back the log, then logs the words
+	 * learned as they come, and merges the log into a new table when it is
+	 * long enough.
+	 */
+	private void learn() {
+		try {
+			replay();
+			while (true) {
+				String word = learned.poll();
+				if (word == null) {
+					if (log != null) {
+						log.flush();
+					}
+					if (logged >= COMPACT_AFTER) {
+						compact();
+					}
+					LockSupport.park(this);
+					continue;
+				}
+				if (log == null) {
+					newLog(snapshot.generation);
+				}
+				log.write(word);
+				log.write('\n');
+				logged++;
+				Integer count = snapshot.recent.get(word);
+				snapshot.recent.put(word, Integer.valueOf(count == null ? 1
+						: count.intValue() + 1));
+			}
+		} catch (IOException e) {
+			System.out.println("User dictionary stopped: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads back the words of the log which are not in the table yet.
+	 */
+	private void replay() throws IOException {
+		File file = new File(directory, LOG);
+		if (!file.isFile()) {
+			return;
+		}
+		Snapshot current = snapshot;
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line = in.readLine();
+			if (line == null || !line.equals(header(current.generation))) {
+				/*
+				 * Merged into the table already, or unreadable.
+				 */
+				return;
+			}
+			while ((line = in.readLine()) != null) {
+				if (line.length() == 0) {
+					continue;
+				}
+				Integer count = current.recent.get(line);
+				current.recent.put(line, Integer.valueOf(count == null ? 1
+						: count.intValue() + 1));
+				logged++;
+			}
+		} finally {
+			in.close();
+		}
+		log = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+	}
+
+	private static String header(long generation) {
+		return "# " + TABLE + generation + ".dat";
+	}
+
+	/**
+	 * Starts a new log, for the words after the table of a generation.
+	 */
+	private void newLog(long generation) throws IOException {
+		if (log != null) {
+			log.close();
+		}
+		File file = new File(directory, LOG);
+		log = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		log.write(header(generation));
+		log.write('\n');
+		log.flush();
+		logged = 0;
+	}
+
+	/**
+	 * Writes the table and the words learned since into a new table, maps
+	 * it, and starts a new log. The new table reaches the disk before the
+	 * log is dropped.
+	 */
+	private void compact() throws IOException {
+		Snapshot current = snapshot;
+		long generation = current.generation + 1;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(MAGIC);
+		data.writeLong(generation);
+		data.writeInt(0);
+		List<Integer> offsets = new ArrayList<Integer>();
+		Iterator<Map.Entry<String, Integer>> recent = current.recent
+				.entrySet().iterator();
+		Map.Entry<String, Integer> next = recent.hasNext() ? recent.next()
+				: null;
+		int i = 0;
+		while (i < current.entries || next != null) {
+			String word;
+			int count;
+			int order = next == null ? -1 : i == current.entries ? 1
+					: current.word(i).compareTo(next.getKey());
+			if (order <= 0) {
+				word = current.word(i);
+				count = current.count(i);
+				i++;
+			} else {
+				word = next.getKey();
+				count = 0;
+			}
+			if (order >= 0) {
+				count += next.getValue().intValue();
+				next = recent.hasNext() ? recent.next() : null;
+			}
+			offsets.add(Integer.valueOf(data.size()));
+			data.writeInt(count);
+			data.writeShort(word.length());
+			data.writeChars(word);
+		}
+		for (Integer offset : offsets) {
+			data.writeInt(offset.intValue());
+		}
+		data.flush();
+		byte[] table = bytes.toByteArray();
+		ByteBuffer.wrap(table).putInt(12, offsets.size());
+
+		File file = table(generation);
+		File written = new File(directory, TABLE + generation + ".tmp");
+		FileOutputStream out = new FileOutputStream(written);
+		try {
+			out.write(table);
+			out.getChannel().force(true);
+		} finally {
+			out.close();
+		}
+		if (!written.renameTo(file)) {
+			throw new IOException("Can not rename " + written + " to " + file);
+		}
+		snapshot = new Snapshot(generation, file, map(file));
+		newLog(generation);
+		if (current.file != null && !current.file.delete()) {
+			/*
+			 * Still mapped on some systems; deleted at the next start.
+			 */
+			current.file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/** ********************************************************************
+ * File:           WordCache.java
+ * Description:    Transliterated words, kept for the text which repeats them
+ * Created:        Mon Oct 19 05:11:00 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The words already transliterated with each layout, so the words which
+ * text repeats over and over are put in one step instead of key by key.
+ * Used by the <code>Transliterator</code>, for text which is not typed;
+ * the keys typed always go through the parsers.
+ * <p>
+ * A word is kept with its Unicode and with the state of the session after
+ * it, so the keys after a word find the session just as if the word had
+ * been typed. The <code>Transliterator</code> only keeps a word whose
+ * Unicode depends on nothing before it.
+ * <p>
+ * The cache is shared by all threads. It is split into segments, each
+ * locked on its own and holding its least recently used words, and holds
+ * at most <code>getMaxBytes()</code> bytes, as estimated from the length
+ * of the words. The words of a layout are dropped when the layout is read
+ * again; in any case a word is only found with the very layout it was
+ * kept for.
+ */
+public class WordCache implements WordCacheMBean {
+
+	/**
+	 * The cache of the transliterators, of up to 16 MB.
+	 */
+	public static final WordCache shared = new WordCache(16 << 20);
+
+	/**
+	 * Longest word kept, in chars.
+	 */
+	public static final int MAX_WORD = 64;
+
+	/**
+	 * Words a transliterator looks up before it judges whether the cache is
+	 * worth it, and the words it then types without it if fewer than half
+	 * were found. A word missed costs about as much as one found saves.
+	 */
+	static final int JUDGE = 4096;
+	static final int BYPASS = 65536;
+
+	/**
+	 * The cache is split into 2^SEGMENT_BITS parts, each with its own lock.
+	 */
+	private static final int SEGMENT_BITS = 4;
+	private static final int SEGMENTS = 1 << SEGMENT_BITS;
+	/**
+	 * Estimated bytes of a word held, besides its chars, and of the history
+	 * of each of its keys.
+	 */
+	private static final int OVERHEAD = 128;
+	private static final int KEY_HISTORY = 32;
+
+	/**
+	 * A word transliterated, and the state of the session after it.
+	 * <p>
+	 * What the word leaves of the state of the session before it, which
+	 * differs from one place of the word to another, is kept as a marker:
+	 * <code>BEFORE_CHAR</code> for the previous key before the word,
+	 * <code>BEFORE_CHARLOG</code> for the key a backspace would have gone
+	 * back to, and <code>BEFORE_FLAG</code> for the consonant flag it would
+	 * have brought back. The state before each key of the word is kept too,
+	 * for the backspaces after it, with the same markers.
+	 */
+	static final class Word {
+		static final String BEFORE_CHAR = new String();
+		static final String BEFORE_CHARLOG = new String();
+		static final int BEFORE_FLAG = -1;
+
+		final String unicode;
+		final int previousConsonantFlag;
+		final int previousConsonantFlaglog;
+		final String previousChar;
+		final String previousCharlog;
+		final int tamil99count;
+		final CompositionHistory history;
+
+		/**
+		 * Keeps the word from the session it was just typed with, and the
+		 * given number of keys of its history.
+		 */
+		Word(String unicode, Session session, int keys) {
+			this.unicode = unicode;
+			this.previousConsonantFlag = session.previousConsonantFlag;
+			this.previousConsonantFlaglog = session.previousConsonantFlaglog;
+			this.previousChar = session.previousChar;
+			this.previousCharlog = session.previousCharlog;
+			this.tamil99count = session.tamil99count;
+			this.history = session.history.last(keys);
+		}
+
+		/**
+		 * Leaves the session as the word did, from the state of the session
+		 * before the word.
+		 */
+		void restore(Session session) {
+			String beforeChar = session.previousChar;
+			String beforeCharlog = session.previousCharlog;
+			int beforeFlaglog = session.previousConsonantFlaglog;
+			session.previousConsonantFlag = previousConsonantFlag;
+			if (previousConsonantFlaglog != BEFORE_FLAG) {
+				session.previousConsonantFlaglog = previousConsonantFlaglog;
+			}
+			session.previousChar = unmark(previousChar, beforeChar,
+					beforeCharlog);
+			session.previousCharlog = unmark(previousCharlog, beforeChar,
+					beforeCharlog);
+			session.tamil99count = tamil99count;
+			session.history.pushAll(history, beforeChar, beforeCharlog,
+					beforeFlaglog);
+		}
+
+		/**
+		 * Returns the key a marker stands for, or the key itself.
+		 */
+		static String unmark(String key, String beforeChar,
+				String beforeCharlog) {
+			if (key == BEFORE_CHAR) {
+				return beforeChar;
+			}
+			return key == BEFORE_CHARLOG ? beforeCharlog : key;
+		}
+	}
+
+	/**
+	 * A word and the layout it was typed with.
+	 */
+	private static final class Key {
+		final Layout layout;
+		final String word;
+
+		Key(Layout layout, String word) {
+			this.layout = layout;
+			this.word = word;
+		}
+
+		public int hashCode() {
+			return word.hashCode() * 31 + System.identityHashCode(layout);
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return layout == other.layout && word.equals(other.word);
+		}
+	}
+
+	/**
+	 * Words in the order they were last used, and the counters of their
+	 * lookups, which are kept here so that threads looking up words of
+	 * different segments share nothing. Guarded by itself.
+	 */
+	private static final class Segment extends LinkedHashMap<Key, Word> {
+		private static final long serialVersionUID = 1L;
+
+		long bytes = 0;
+		long hits = 0;
+		long misses = 0;
+		long evictions = 0;
+
+		Segment() {
+			super(256, 0.75f, true);
+		}
+	}
+
+	private final long maxBytes;
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private volatile boolean enabled = true;
+
+	/**
+	 * @param maxBytes
+	 *            The most bytes the cache may hold
+	 */
+	public WordCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	private static int size(Key key, Word word) {
+		return OVERHEAD + 2 * (key.word.length() + word.unicode.length())
+				+ KEY_HISTORY * key.word.length();
+	}
+
+	/**
+	 * Picks the segment by the high bits of the scrambled hash, leaving the
+	 * low bits, which the maps go by, to tell apart the words of a segment.
+	 */
+	private Segment segment(Key key) {
+		return segments[(key.hashCode() * 0x9e3779b9) >>> (32 - SEGMENT_BITS)];
+	}
+
+	/**
+	 * Returns the word as transliterated with the layout, or null if it is
+	 * not held.
+	 */
+	Word get(Layout layout, String word) {
+		Key key = new Key(layout, word);
+		Segment segment = segment(key);
+		Word found;
+		synchronized (segment) {
+			found = segment.get(key);
+			if (found == null) {
+				segment.misses++;
+			} else {
+				segment.hits++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Keeps a word, dropping the least recently used words of its segment
+	 * if there is no room for it.
+	 */
+	void put(Layout layout, String word, Word transliterated) {
+		Key key = new Key(layout, word);
+		int size = size(key, transliterated);
+		long room = maxBytes / SEGMENTS;
+		if (size > room) {
+			return;
+		}
+		Segment segment = segment(key);
+		synchronized (segment) {
+			Word previous = segment.put(key, transliterated);
+			segment.bytes += size;
+			if (previous != null) {
+				segment.bytes -= size(key, previous);
+			}
+			Iterator<Map.Entry<Key, Word>> eldest = segment.entrySet()
+					.iterator();
+			while (segment.bytes > room) {
+				Map.Entry<Key, Word> entry = eldest.next();
+				segment.bytes -= size(entry.getKey(), entry.getValue());
+				eldest.remove();
+				segment.evictions++;
+			}
+		}
+	}
+
+	/**
+	 * Drops the words of a layout, as when it has been read again.
+	 */
+	public void invalidate(Layout layout) {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				Iterator<Map.Entry<Key, Word>> i = segment.entrySet()
+						.iterator();
+				while (i.hasNext()) {
+					Map.Entry<Key, Word> entry = i.next();
+					if (entry.getKey().layout == layout) {
+						segment.bytes -= size(entry.getKey(), entry.getValue());
+						i.remove();
+					}
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+				segment.bytes = 0;
+				segment.hits = 0;
+				segment.misses = 0;
+				segment.evictions = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the bytes, words, hits, misses and evictions of all the
+	 * segments.
+	 */
+	private long[] totals() {
+		long[] totals = new long[5];
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				totals[0] += segment.bytes;
+				totals[1] += segment.size();
+				totals[2] += segment.hits;
+				totals[3] += segment.misses;
+				totals[4] += segment.evictions;
+			}
+		}
+		return totals;
+	}
+
+	public long getHits() {
+		return totals()[2];
+	}
+
+	public long getMisses() {
+		return totals()[3];
+	}
+
+	public double getHitRate() {
+		long[] totals = totals();
+		long lookups = totals[2] + totals[3];
+		return lookups == 0 ? 0 : (double) totals[2] / lookups;
+	}
+
+	public long getEvictions() {
+		return totals()[4];
+	}
+
+	public int getWords() {
+		return (int) totals()[1];
+	}
+
+	public long getBytes() {
+		return totals()[0];
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+}
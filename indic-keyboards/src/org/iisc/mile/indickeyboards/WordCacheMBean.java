@@ -0,0 +1,77 @@
+/** ********************************************************************
+ * File:           WordCacheMBean.java
+ * Description:    Management interface of the word cache
+ * Created:        Mon Oct 19 05:11:00 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * The counters and the switch of the <code>WordCache</code>, as seen
+ * through JMX (e.g. in jconsole).
+ */
+public interface WordCacheMBean {
+
+	/**
+	 * @return Returns the number of words found in the cache.
+	 */
+	public long getHits();
+
+	/**
+	 * @return Returns the number of words transliterated key by key.
+	 */
+	public long getMisses();
+
+	/**
+	 * @return Returns the hits as a fraction of the words looked up.
+	 */
+	public double getHitRate();
+
+	/**
+	 * @return Returns the number of words dropped to stay within the size.
+	 */
+	public long getEvictions();
+
+	/**
+	 * @return Returns the number of words held.
+	 */
+	public int getWords();
+
+	/**
+	 * @return Returns the estimated bytes held.
+	 */
+	public long getBytes();
+
+	/**
+	 * @return Returns the most bytes the cache may hold.
+	 */
+	public long getMaxBytes();
+
+	/**
+	 * @return Returns true if words are looked up in the cache.
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Turns the cache on or off. When off, every word is transliterated key
+	 * by key, as while typing.
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Drops all the words held and zeroes the counters.
+	 */
+	public void clear();
+}
@@ -0,0 +1,349 @@
+/** ********************************************************************
+ * File:           WordDictionary.java
+ * Description:    Words of a language and their frequency, as a mapped automaton
+ * Created:        Mon Oct 19 05:58:11 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The words of a language with their frequency, for completing the word
+ * being typed. A dictionary is written by <code>DictionaryBuilder</code> as
+ * a minimised automaton: the words which end alike share their endings as
+ * well as their beginnings, so a million words take a few MB. The file is
+ * memory-mapped and read in place; nothing of it is copied onto the heap.
+ * <p>
+ * The frequency of a word is kept as a weight of one byte, from 1 for the
+ * rarest words to 255 for the most frequent, on a logarithmic scale. Each
+ * state also holds the highest weight of the words below it, so the most
+ * frequent completions of a prefix are found best first, without looking
+ * at the words which are not among them.
+ * <p>
+ * The file is laid out as follows, all numbers big-endian:
+ *
+ * <pre>
+ * int magic, int root, int words, int bytes of the states
+ * state: byte highest weight, byte weight (0 if no word ends here),
+ *        varint arcs, then for each arc in the order of the chars:
+ *        varint char less the char of the arc before,
+ *        varint offset of the state less the offset of its target
+ * </pre>
+ *
+ * The states are written after the states they lead to, so the offsets of
+ * the arcs are positive and mostly small. A dictionary is shared by all
+ * threads.
+ */
+public final class WordDictionary {
+
+	static final int MAGIC = 0x494b4431;
+	static final int HEADER = 16;
+
+	/**
+	 * Directory of the dictionaries, in the current directory. The
+	 * dictionary of a layout is named after the language of its file name,
+	 * like <em>kan.dict</em> for <em>kan_phonetic.xml</em>.
+	 */
+	public static final String DIRECTORY = "dictionaries";
+
+	private static final String[] NONE = new String[0];
+
+	/**
+	 * The dictionaries opened, by language. A language without a dictionary
+	 * is kept as MISSING, so its file is only looked for once.
+	 */
+	private static final Map<String, WordDictionary> opened = new HashMap<String, WordDictionary>();
+	private static final WordDictionary MISSING = new WordDictionary();
+
+	private final ByteBuffer states;
+	private final int root;
+	private final int words;
+
+	private WordDictionary() {
+		this.states = null;
+		this.root = 0;
+		this.words = 0;
+	}
+
+	private WordDictionary(ByteBuffer states, int root, int words) {
+		this.states = states;
+		this.root = root;
+		this.words = words;
+	}
+
+	/**
+	 * Maps a dictionary file.
+	 *
+	 * @throws IOException
+	 *             If the file can not be read or is not a dictionary
+	 */
+	public static WordDictionary open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			if (map.limit() < HEADER || map.getInt(0) != MAGIC) {
+				throw new IOException(file + " is not a dictionary");
+			}
+			int root = map.getInt(4);
+			int words = map.getInt(8);
+			int bytes = map.getInt(12);
+			if (bytes < 0 || bytes > map.limit() - HEADER || root < 0
+					|| root >= bytes) {
+				throw new IOException(file + " is truncated");
+			}
+			map.position(HEADER);
+			map.limit(HEADER + bytes);
+			return new WordDictionary(map.slice(), root, words);
+		} finally {
+			/*
+			 * The mapping stays valid after the file is closed.
+			 */
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the language of a layout, the code of up to three letters its
+	 * file name begins with, or null.
+	 */
+	static String language(Layout layout) {
+		if (layout == null) {
+			return null;
+		}
+		String name = layout.getName();
+		int end = 0;
+		while (end < name.length() && Character.isLetter(name.charAt(end))
+				&& end < 3) {
+			end++;
+		}
+		return end == 0 ? null : name.substring(0, end);
+	}
+
+	/**
+	 * Returns the dictionary of the language of a layout, from
+	 * <em>dictionaries</em> in the current directory, or null if there is
+	 * none. It is mapped the first time it is asked for.
+	 */
+	public static synchronized WordDictionary forLayout(Layout layout) {
+		String language = language(layout);
+		if (language == null) {
+			return null;
+		}
+		WordDictionary dictionary = opened.get(language);
+		if (dictionary == null) {
+			File file = new File(System.getProperty("user.dir"), DIRECTORY
+					+ "/" + language + ".dict");
+			dictionary = MISSING;
+			if (file.isFile()) {
+				try {
+					dictionary = open(file);
+					System.out.println("Dictionary " + file + ": "
+							+ dictionary.size() + " words");
+				} catch (IOException e) {
+					System.out.println("Could not read " + file + ": "
+							+ e.getMessage());
+				}
+			}
+			opened.put(language, dictionary);
+		}
+		return dictionary == MISSING ? null : dictionary;
+	}
+
+	/**
+	 * @return Returns the number of words.
+	 */
+	public int size() {
+		return words;
+	}
+
+	/**
+	 * Reads a varint at an offset. Returns the value in the high half and the
+	 * offset after it in the low half, so nothing is allocated per arc.
+	 */
+	private long varint(int offset) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = states.get(offset++);
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return ((long) value << 32) | offset;
+	}
+
+	/**
+	 * Returns the state the arc of a char leads to from a state, or -1.
+	 */
+	private int next(int state, char c) {
+		long count = varint(state + 2);
+		int arcs = (int) (count >>> 32);
+		int offset = (int) count;
+		int label = 0;
+		for (int i = 0; i < arcs; i++) {
+			long read = varint(offset);
+			label += (int) (read >>> 32);
+			read = varint((int) read);
+			offset = (int) read;
+			if (label == c) {
+				return state - (int) (read >>> 32);
+			}
+			if (label > c) {
+				break;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the state reached by the chars of a prefix, or -1.
+	 */
+	private int walk(CharSequence prefix) {
+		int state = root;
+		for (int i = 0; i < prefix.length() && state >= 0; i++) {
+			state = next(state, prefix.charAt(i));
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the weight of a word, from 1 to 255, or 0 if it is not in the
+	 * dictionary.
+	 */
+	public int weight(CharSequence word) {
+		int state = walk(word);
+		return state < 0 ? 0 : states.get(state + 1) & 0xff;
+	}
+
+	public boolean contains(CharSequence word) {
+		return weight(word) > 0;
+	}
+
+	/**
+	 * A state still to be looked into, or a word found, in the search for
+	 * the completions. The chars are kept as a chain back to the prefix.
+	 */
+	private static final class Candidate {
+		final Candidate parent;
+		final char c;
+		final int state;
+		final int weight;
+		final int order;
+
+		Candidate(Candidate parent, char c, int state, int weight, int order) {
+			this.parent = parent;
+			this.c = c;
+			this.state = state;
+			this.weight = weight;
+			this.order = order;
+		}
+
+		/**
+		 * Returns true for a word found, as opposed to a state.
+		 */
+		boolean isWord() {
+			return state < 0;
+		}
+	}
+
+	/**
+	 * The candidates by weight, the words before the states of the same
+	 * weight, and otherwise in the order they were found.
+	 */
+	private static final Comparator<Candidate> BEST_FIRST = new Comparator<Candidate>() {
+		public int compare(Candidate a, Candidate b) {
+			if (a.weight != b.weight) {
+				return b.weight - a.weight;
+			}
+			if (a.isWord() != b.isWord()) {
+				return a.isWord() ? -1 : 1;
+			}
+			return a.order - b.order;
+		}
+	};
+
+	/**
+	 * Returns the most frequent words beginning with a prefix, the prefix
+	 * itself included if it is a word, most frequent first.
+	 * <p>
+	 * The states are looked into in the order of the highest weight below
+	 * them. A word comes out once no state left can hold a more frequent
+	 * one, so the search stops after the k-th word, having only looked at
+	 * the states on the way to the words found and at their neighbours.
+	 *
+	 * @param k
+	 *            Most words returned
+	 */
+	public String[] complete(CharSequence prefix, int k) {
+		int start = walk(prefix);
+		if (start < 0 || k <= 0) {
+			return NONE;
+		}
+		String[] found = new String[k];
+		int n = 0;
+		int order = 0;
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(64,
+				BEST_FIRST);
+		queue.add(new Candidate(null, '\0', start, states.get(start) & 0xff,
+				order++));
+		StringBuilder word = new StringBuilder();
+		while (n < k && !queue.isEmpty()) {
+			Candidate best = queue.poll();
+			if (best.isWord()) {
+				word.setLength(0);
+				for (Candidate c = best.parent; c.parent != null; c = c.parent) {
+					word.append(c.c);
+				}
+				found[n++] = prefix + word.reverse().toString();
+				continue;
+			}
+			int state = best.state;
+			int weight = states.get(state + 1) & 0xff;
+			if (weight > 0) {
+				queue.add(new Candidate(best, '\0', -1, weight, order++));
+			}
+			long count = varint(state + 2);
+			int arcs = (int) (count >>> 32);
+			int offset = (int) count;
+			int label = 0;
+			for (int i = 0; i < arcs; i++) {
+				long read = varint(offset);
+				label += (int) (read >>> 32);
+				read = varint((int) read);
+				offset = (int) read;
+				int target = state - (int) (read >>> 32);
+				queue.add(new Candidate(best, (char) label, target, states
+						.get(target) & 0xff, order++));
+			}
+		}
+		if (n < k) {
+			String[] fewer = new String[n];
+			System.arraycopy(found, 0, fewer, 0, n);
+			return fewer;
+		}
+		return found;
+	}
+}
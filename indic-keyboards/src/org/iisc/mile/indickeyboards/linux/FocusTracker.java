@@ -0,0 +1,199 @@
+/**********************************************************************
+ * File:           FocusTracker.java 
+ * Description:    Keeps track of the window which has the focus.
+ * Created:        Mon Oct 19 04:39:58 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+package org.iisc.mile.indickeyboards.linux;
+
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.iisc.mile.indickeyboards.Sessions;
+
+/**
+ * Keeps the active window and its class at hand, so that the keys and the
+ * output do not have to ask the X server for them. A thread named "Focus
+ * Monitor" waits in the native code for the window manager to change the
+ * active window and records each change here.
+ * <p>
+ * The <code>WindowRules</code> are matched here too, when a window gets
+ * the focus or its title changes, so the key monitor finds the layout of
+ * the window ready before the first key typed into it. When the focus
+ * moves, the output held by the session of the window left is put.
+ * <p>
+ * With window managers which do not name the active window, the window is
+ * reported as 0 and the class is asked for on every call.
+ */
+public class FocusTracker implements Runnable {
+
+	/**
+	 * The active window, its class and the rule which matches it, changed
+	 * together.
+	 */
+	public static class Focus {
+		/**
+		 * ID of the window, 0 if it is not known.
+		 */
+		public final long window;
+		final String windowClass;
+		/**
+		 * The rule which matches the window, null if none does.
+		 */
+		public final WindowRules.Rule rule;
+
+		Focus(long window, String windowClass, WindowRules.Rule rule) {
+			this.window = window;
+			this.windowClass = windowClass;
+			this.rule = rule;
+		}
+	}
+
+	/**
+	 * Used while no active window has been reported.
+	 */
+	private static final Focus UNKNOWN = new Focus(0, null, null);
+
+	/**
+	 * The last active window reported.
+	 */
+	private static volatile Focus focus = UNKNOWN;
+
+	/**
+	 * Number of windows whose matching rule is remembered.
+	 */
+	static final int MAX_CACHED = 32;
+
+	/**
+	 * Marks the windows no rule matches in <code>rules</code>.
+	 */
+	private static final WindowRules.Rule NO_RULE = new WindowRules.Rule(
+			false, null, null, "none");
+
+	/**
+	 * The rule which matched a window, and the title it matched. The rules
+	 * may match the title, which changes while the window is active, as
+	 * with the tabs of a browser.
+	 */
+	private static final class Match {
+		final String title;
+		final WindowRules.Rule rule;
+
+		Match(String title, WindowRules.Rule rule) {
+			this.title = title;
+			this.rule = rule;
+		}
+	}
+
+	/**
+	 * The rule matching each window recently active, least recently used
+	 * first. Only used by the "Focus Monitor" thread.
+	 */
+	private static final LinkedHashMap<Long, Match> rules = new LinkedHashMap<Long, Match>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Long, Match> eldest) {
+			return size() > MAX_CACHED;
+		}
+	};
+
+	/**
+	 * Starts the thread which watches the active window.
+	 */
+	public static void start() {
+		Thread t = new Thread(new FocusTracker());
+		t.setName("Focus Monitor");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	public void run() {
+		if (!LinuxLibraries.watchFocus()) {
+			focus = UNKNOWN;
+			System.out.println("The active window can not be watched,"
+					+ " one session is used for all the windows");
+		}
+	}
+
+	/**
+	 * Called from the native code when the active window changes, or its
+	 * title does.
+	 * 
+	 * @param window
+	 *            ID of the active window, 0 if there is none
+	 * @param windowClass
+	 *            Class of the active window, empty if it has none
+	 * @param title
+	 *            Title of the active window
+	 * @param utf8
+	 *            True if the title is UTF-8, false if it is Latin-1
+	 */
+	static void focusChanged(long window, String windowClass, byte[] title,
+			boolean utf8) {
+		WindowRules.Rule rule = null;
+		if (window != 0 && !WindowRules.isEmpty()) {
+			String name = "";
+			try {
+				name = new String(title, utf8 ? "UTF-8" : "ISO-8859-1");
+			} catch (UnsupportedEncodingException e) {
+				// Both are always supported.
+			}
+			Long key = Long.valueOf(window);
+			Match match = rules.get(key);
+			if (match == null || !match.title.equals(name)) {
+				rule = WindowRules.match(windowClass, name);
+				match = new Match(name, rule == null ? NO_RULE : rule);
+				rules.put(key, match);
+			}
+			rule = match.rule == NO_RULE ? null : match.rule;
+		}
+		Focus previous = focus;
+		focus = new Focus(window, windowClass, rule);
+		if (window != previous.window) {
+			Sessions.focusChanged(window);
+		}
+		if (window != previous.window || rule != previous.rule) {
+			System.out.println("Active window 0x" + Long.toHexString(window)
+					+ " \"" + windowClass + "\""
+					+ (rule == null ? "" : ", rule " + rule));
+		}
+	}
+
+	/**
+	 * @return Returns the active window, as last reported. Its ID is 0 if it
+	 *         is not known.
+	 */
+	public static Focus focus() {
+		return focus;
+	}
+
+	/**
+	 * @return Returns the ID of the active window, 0 if it is not known.
+	 */
+	public static long window() {
+		return focus.window;
+	}
+
+	/**
+	 * @return Returns the class of the active window, or an empty string if
+	 *         it has none.
+	 */
+	public static String windowClass() {
+		Focus f = focus;
+		return f.windowClass == null ? LinuxLibraries.FocusedWindowClass()
+				: f.windowClass;
+	}
+}
@@ -25,9 +25,20 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.BindException;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.iisc.mile.indickeyboards.Abbreviations;
+import org.iisc.mile.indickeyboards.Corrections;
+import org.iisc.mile.indickeyboards.EnglishFilter;
+import org.iisc.mile.indickeyboards.Sessions;
+import org.iisc.mile.indickeyboards.Suggestions;
+import org.iisc.mile.indickeyboards.TransliterationServer;
+import org.iisc.mile.indickeyboards.UserDictionary;
+import org.iisc.mile.indickeyboards.WordCache;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.MessageBox;
@@ -44,9 +55,19 @@ public class InitLinux {
 	 * Contains the port number on which indic-keyboards will listen. The port
 	 * number will be taken from the file <strong>preferences.conf</strong>. The
 	 * default port number is 65530. <strong>The socket is used to prevent
-	 * multiple instances of indic-keyboards from running.</strong>
+	 * multiple instances of indic-keyboards from running.</strong> It only
+	 * listens on the loopback interface, where it also serves the
+	 * transliteration requests of local programs.
+	 * 
+	 * @see org.iisc.mile.indickeyboards.TransliterationServer
 	 */
 	public static int portNumber;
+	/**
+	 * This boolean variable gets it's value from the file
+	 * <strong>preferences.conf</strong>. When set, local programs can have
+	 * text transliterated through the socket. Default value is <em>OFF</em>.
+	 */
+	public static boolean Server = false;
 	/**
 	 * This boolean variable gets it's value from the file
 	 * <strong>preferences.conf</strong>. It regulates the keyboard
@@ -56,6 +77,22 @@ public class InitLinux {
 	 * @see core.KeyMonitorMethods#keyrepeat(int) Key repeat control
 	 */
 	public static boolean AutoRepeat;
+	/**
+	 * This boolean variable gets it's value from the file
+	 * <strong>preferences.conf</strong>. When set, the keyboard is grabbed
+	 * exclusively and only the keys which are not transliterated reach the
+	 * active window, through a uinput virtual keyboard. Default value is
+	 * <em>OFF</em>.
+	 * 
+	 * @see LinuxLibraries#grabExclusive(String, String) Exclusive grab
+	 */
+	public static boolean ExclusiveGrab;
+	/**
+	 * Path to the keyboard's event interface, taken from the file
+	 * <strong>preferences.conf</strong>. When not set, the keyboard is
+	 * identified by scanning <em>/dev/input/eventX</em>.
+	 */
+	public static String keyboardDevice;
 
 	public void InitLinuxStart() throws IOException {
 
@@ -101,36 +138,80 @@ public class InitLinux {
 			String str = prefer.readLine();
 			token = new StringTokenizer(str, ":");
 			try {
-				token.nextToken();
+				String name = token.nextToken().trim();
 				String port = token.nextToken().trim();
 				/*
 				 * portNumber is initialized here
 				 */
-				portNumber = Integer.parseInt(port);
+				portNumber = (int) number(name, port, 65530);
 			} catch (NoSuchElementException e) {
 				portNumber = 65530;
 			}
 			str = prefer.readLine();
 			token = new StringTokenizer(str, ":");
 			try {
-				token.nextToken();
+				String name = token.nextToken().trim();
 				String autoRep = token.nextToken().trim();
 
 				/*
-				 * The boolean variable AutoRepeat is initialized in the
-				 * following lines.
+				 * The boolean variable AutoRepeat is initialized here. It is
+				 * only off for 0.
 				 */
-				if (Integer.parseInt(autoRep) == 1) {
-					AutoRepeat = true;
-				} else if (Integer.parseInt(autoRep) == 0) {
-					AutoRepeat = false;
-				} else {
-					AutoRepeat = true;
-				}
+				AutoRepeat = number(name, autoRep, 1) != 0;
 			} catch (NoSuchElementException e) {
 				AutoRepeat = true;
 			}
 
+			/*
+			 * The optional settings follow as "Name:value" lines, up to the
+			 * first blank line.
+			 */
+			while ((str = prefer.readLine()) != null && str.trim().length() > 0) {
+				token = new StringTokenizer(str, ":");
+				try {
+					String name = token.nextToken().trim();
+					if (name.equals("Rule")) {
+						/*
+						 * A rule may itself contain ':', so it is the whole
+						 * rest of the line.
+						 */
+						WindowRules.add(str.substring(str.indexOf(':') + 1));
+						continue;
+					}
+					String value = token.nextToken().trim();
+					if (name.equals("ExclusiveGrab")) {
+						ExclusiveGrab = number(name, value, 0) == 1;
+					} else if (name.equals("Keyboard")) {
+						keyboardDevice = value;
+					} else if (name.equals("Server")) {
+						Server = number(name, value, Server ? 1 : 0) != 0;
+					} else if (name.equals("Defer")) {
+						Sessions.setDeferral(number(name, value, 0));
+					} else if (name.equals("Suggest")) {
+						Suggestions.setCount((int) number(name, value, 0));
+					} else if (name.equals("Expand")) {
+						if (number(name, value, 0) == 1) {
+							Abbreviations.load(new File(preferencesPath));
+						}
+					} else if (name.equals("English")) {
+						if (number(name, value, 0) == 1) {
+							EnglishFilter.load();
+						}
+					} else if (name.equals("Decode")) {
+						Sessions.setDecoding(number(name, value, 0) == 1);
+					} else if (name.equals("Correct")) {
+						Corrections.setEnabled(number(name, value, 0) == 1);
+					} else if (name.equals("Learn")) {
+						if (number(name, value, 0) == 1) {
+							UserDictionary.start(new File(preferencesPath));
+						}
+					}
+				} catch (NoSuchElementException e) {
+					// No value given, keep the default.
+				}
+			}
+			prefer.close();
+
 			/*
 			 * If the file preferences.conf is not present, initialize it to
 			 * default values.
@@ -144,7 +225,9 @@ public class InitLinux {
 		 * Initialize the socket variable here.
 		 */
 		try {
-			socket = new ServerSocket(portNumber);
+			socket = new ServerSocket(portNumber,
+					TransliterationServer.BACKLOG, InetAddress
+							.getLoopbackAddress());
 		} catch (BindException e) {
 
 			/*
@@ -188,12 +271,47 @@ public class InitLinux {
 		if (AutoRepeat == true) {
 			System.out.println("Auto Repeat is turned ON");
 		}
+		if (ExclusiveGrab == true) {
+			System.out.println("Keyboard will be grabbed exclusively");
+		}
 
 		/*
 		 * Get the name of the main thread.
 		 */
 		System.out.println(Thread.currentThread().getName());
 
+		/*
+		 * The counters of the output pacer and of the word cache can be
+		 * watched through JMX.
+		 */
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					OutputPacer.pacer,
+					new ObjectName("org.iisc.mile.indickeyboards:type=OutputPacer"));
+		} catch (JMException e) {
+			System.out.println("Could not register the output pacer: " + e);
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					WordCache.shared,
+					new ObjectName("org.iisc.mile.indickeyboards:type=WordCache"));
+		} catch (JMException e) {
+			System.out.println("Could not register the word cache: " + e);
+		}
+
+		/*
+		 * Local programs can have text transliterated through the socket.
+		 */
+		if (Server == true) {
+			TransliterationServer.start(socket);
+		}
+
+		/*
+		 * The active window is watched on a thread of its own, so that the
+		 * key monitor knows which window's session a key belongs to.
+		 */
+		FocusTracker.start();
+
 		/*
 		 * The following lines creates a new thread which will run the key
 		 * logger. The key presses are monitored by this thread. The thread is
@@ -205,19 +323,36 @@ public class InitLinux {
 		t.start();
 	}// end of InitLinuxStart
 
+	/**
+	 * Reads the number of a setting of preferences.conf. A value which is
+	 * not a number is reported and the default is kept, so a typo does not
+	 * stop the keyboard from starting.
+	 * 
+	 * @param name
+	 *            Name of the setting
+	 * @param value
+	 *            Value given to it
+	 * @param byDefault
+	 *            The value of the setting when none is given
+	 */
+	private static long number(String name, String value, long byDefault) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Could not read preferences.conf: " + name
+					+ ":" + value + " is not a number, " + byDefault
+					+ " is used");
+			return byDefault;
+		}
+	}
+
 	 /**
 	 * Static block which loads the libIndicKeyboards.so.1.0/libIndicKeyboards-x64.so.1.0 library.
 	 */
 	static {
 		System.out.println(System.getProperty("user.dir"));
 		String path = System.getProperty("user.dir");
-		String arch = System.getProperty("os.arch");
-		String linuxLibraryName = "libIndicKeyboards-x86.so.1.0";
-		if (arch.contains("86")) {
-			linuxLibraryName = "libIndicKeyboards-x86.so.1.0";
-		} else if (arch.contains("64")) {
-			linuxLibraryName = "libIndicKeyboards-x86_64.so.1.0";
-		}
+		String linuxLibraryName = LinuxLibraries.libraryName();
 		try {
 			System.load(path + "/" + linuxLibraryName);
 			System.out.println(path + "/" + linuxLibraryName);
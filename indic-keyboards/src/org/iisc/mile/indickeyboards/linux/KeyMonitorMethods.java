@@ -24,9 +24,10 @@ package org.iisc.mile.indickeyboards.linux;
 import java.io.File;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
+import org.iisc.mile.indickeyboards.ActiveWindowOutput;
 import org.iisc.mile.indickeyboards.IndicKeyboards;
-import org.iisc.mile.indickeyboards.ParseXML;
-import org.iisc.mile.indickeyboards.PhoneticParseXML;
+import org.iisc.mile.indickeyboards.Session;
+import org.iisc.mile.indickeyboards.Sessions;
 import org.iisc.mile.indickeyboards.UI;
 
 /**
@@ -189,9 +190,12 @@ public class KeyMonitorMethods {
 	 * @param code
 	 *            This is sent by the native method <code>grab()</code>. For
 	 *            Shift+ keypresses, a value of 200 is added to every keycode.
+	 * @return Returns true if the key was transliterated. The native method
+	 *         <code>grabExclusive()</code> then swallows the key instead of
+	 *         passing it on to the active window.
 	 */
 
-	public void printKeys(int code) {
+	public boolean printKeys(int code) {
 		/*
 		 * Controls the enabling and disabling of the keylogging. Can be done
 		 * using "Alt+F12" or by selecting the option from the menu
@@ -220,7 +224,7 @@ public class KeyMonitorMethods {
 			} else if (loggingEnabled == false) {
 				loggingEnabled = true;
 				System.out.println("Key Logging Enabled");
-				ParseXML.previousConsonantFlag = 0;
+				Sessions.resetConsonantFlags();
 				if (InitLinux.AutoRepeat == false) {
 					nativeMethodAccessObject.keyrepeat(0);
 				}
@@ -658,21 +662,64 @@ public class KeyMonitorMethods {
 				break;
 			}
 			/**
-			 * See if the layout selected is Phonetic or Non-Phonetic. If it is
-			 * phonetic, send the pattern to PhoneticParseXML. Else, send it to
-			 * ParseXML.
+			 * The session of the active window sends the pattern to
+			 * PhoneticParseXML or to ParseXML, depending on whether the layout
+			 * is Phonetic or Non-Phonetic. The layout is the one of the rule
+			 * matching the window, if any, else the one selected. The output
+			 * of the key goes onto the active window in one batch.
 			 */
-			if (PhoneticParseXML.PhoneticFlag == 0) {
-				System.out.println(pattern);
-				ParseXML xmlobj = new ParseXML();
-				xmlobj.getPattern(pattern);
+			System.out.println(pattern);
+			FocusTracker.Focus focus = FocusTracker.focus();
+			if (focus.rule != null && focus.rule.isOff()) {
+				return false;
+			}
+			Session session = Sessions.forWindow(focus.window);
+			/*
+			 * The output held by a session may be put by the timer wheel,
+			 * which takes the same lock.
+			 */
+			synchronized (ActiveWindowOutput.output) {
+				OutputCharToActiveWindow.beginBatch();
+				try {
+					if (focus.rule != null) {
+						return session.process(pattern, focus.rule.layout);
+					}
+					return session.process(pattern);
+				} finally {
+					OutputCharToActiveWindow.commitBatch();
+				}
+			}
+		}
+		return false;
+	}
 
-			} else if (PhoneticParseXML.PhoneticFlag == 1) {
-				PhoneticParseXML pxmlobj = new PhoneticParseXML();
-				System.out.println(pattern);
-				pxmlobj.getPhoneticPattern(pattern);
+	/**
+	 * Method which is called by the native methods <code>grab()</code> and
+	 * <code>grabExclusive()</code> for a held key. The auto repeats of the
+	 * key which queued up while the previous output was being put are handed
+	 * over together. Each of them is processed exactly as by
+	 * <code>printKeys()</code>, but their output goes onto the active window
+	 * in one batch, paced by the <code>OutputPacer</code>.
+	 * 
+	 * @param code
+	 *            Keycode, with 200 added for Shift+ keypresses.
+	 * @param count
+	 *            Number of auto repeats of the key.
+	 * @return Returns true if the key was transliterated.
+	 */
+	public boolean printRepeats(int code, int count) {
+		boolean transliterated = false;
+		synchronized (ActiveWindowOutput.output) {
+			OutputCharToActiveWindow.beginBatch();
+			try {
+				for (int i = 0; i < count; i++) {
+					transliterated = printKeys(code);
+				}
+			} finally {
+				OutputCharToActiveWindow.commitBatch();
 			}
 		}
+		return transliterated;
 	}
 
 	/**
@@ -682,13 +729,19 @@ public class KeyMonitorMethods {
 	void identifyKeyBoard() {
 		String deadPathToKeyBoard = "/dev/input/event";
 		boolean found = false;
+		if (InitLinux.keyboardDevice != null) {
+			absolutePathToKeyBoard = InitLinux.keyboardDevice;
+			System.out.println("The keyboard set in preferences.conf : " + absolutePathToKeyBoard);
+			return;
+		}
 		File keyBoardDirectory = new File ("/dev/input/");
 		String []eventHandlers = keyBoardDirectory.list();
 		for (int i = 0; i < eventHandlers.length; i++) {
 			String temp = "" + i;
 			keyboardName = nativeMethodAccessObject.identify(deadPathToKeyBoard + temp);
 			keyboardName = keyboardName.toLowerCase();
-			if (keyboardName.contains("keyboard")) {
+			if (keyboardName.contains("keyboard")
+					&& !keyboardName.equals(LinuxLibraries.PASSTHROUGH_NAME)) {
 				System.out.println("The keyboard present is : " + keyboardName);
 				absolutePathToKeyBoard = deadPathToKeyBoard + temp;
 				found = true;
@@ -708,6 +761,20 @@ public class KeyMonitorMethods {
 	 */
 	void grabKeyBoard() {
 		System.out.println("The path to keyboard's input interface : " + absolutePathToKeyBoard);
+		if (InitLinux.ExclusiveGrab) {
+			/*
+			 * The keys which are transliterated never reach the active window,
+			 * so there is no echoed character to delete.
+			 */
+			ActiveWindowOutput.output.setEchoSuppressed(true);
+			if (nativeMethodAccessObject.grabExclusive(absolutePathToKeyBoard,
+					LinuxLibraries.PASSTHROUGH_NAME)) {
+				return;
+			}
+			System.out.println("Exclusive grab failed, falling back to the shared grab."
+					+ " Check the permissions on /dev/uinput and that the uinput module is loaded.");
+			ActiveWindowOutput.output.setEchoSuppressed(false);
+		}
 		nativeMethodAccessObject.grab(absolutePathToKeyBoard);
 	}
 }
@@ -21,6 +21,29 @@ package org.iisc.mile.indickeyboards.linux;
 
 public class LinuxLibraries {
 
+	/**
+	 * Name of the uinput virtual keyboard through which the exclusive grab
+	 * re-emits the keys that are not transliterated. It contains the word
+	 * "keyboard", so <code>identifyKeyBoard()</code> has to skip it.
+	 */
+	public static final String PASSTHROUGH_NAME = "indic-keyboards passthrough";
+
+	/**
+	 * Returns the file name of the native library built for the architecture
+	 * of the running JVM.
+	 * @return libIndicKeyboards-x86.so.1.0 or libIndicKeyboards-x86_64.so.1.0
+	 */
+	public static String libraryName() {
+		String arch = System.getProperty("os.arch");
+		String linuxLibraryName = "libIndicKeyboards-x86.so.1.0";
+		if (arch.contains("86")) {
+			linuxLibraryName = "libIndicKeyboards-x86.so.1.0";
+		} else if (arch.contains("64")) {
+			linuxLibraryName = "libIndicKeyboards-x86_64.so.1.0";
+		}
+		return linuxLibraryName;
+	}
+
 	/**
      * This native method identifies the interface to the keyboard. Generally,
      * the path to the interface would be in the form <em>/dev/input/eventX</em>
@@ -33,11 +56,54 @@ public class LinuxLibraries {
     /**
      * Once the event interface to the keyboard is obtained, grab the keyboard and
      * start monitoring all the key presses. This is a native method.
+     * A key is handed to <code>KeyMonitorMethods.printKeys()</code> on its
+     * release, once its char has reached the active window, whereas
+     * <code>grabExclusive()</code> hands it over on its press.
      * @param KB The correct path to the keyboard's event interface obtained from
      * the native method <code>identify()</code>
      */
 	public native void grab(String KB);
 
+    /**
+     * Grabs the keyboard exclusively (<em>EVIOCGRAB</em>) so that the key
+     * presses no longer reach the active window on their own. Every key press
+     * is offered to <code>KeyMonitorMethods.printKeys()</code>; the keys it
+     * transliterates are swallowed and all the others, along with the
+     * modifiers and the Ctrl/Alt shortcuts, are re-emitted through a
+     * <em>/dev/uinput</em> virtual keyboard. This is a native method.
+     * @param KB The path to the keyboard's event interface
+     * @param passthroughName Name given to the uinput virtual keyboard
+     * @return Returns false straight away if the keyboard could not be grabbed
+     * or the virtual keyboard could not be created, otherwise only returns once
+     * the keyboard goes away.
+     */
+	public native boolean grabExclusive(String KB, String passthroughName);
+
+    /**
+     * Creates a uinput virtual keyboard which can send every key code below
+     * 256. This is a native method.
+     * @param name Name of the virtual keyboard as reported by <em>EVIOCGNAME</em>
+     * @return The file descriptor of the virtual keyboard, or -1 if
+     * <em>/dev/uinput</em> could not be opened.
+     */
+	public native int openVirtualKeyboard(String name);
+
+    /**
+     * Sends one key event followed by a SYN_REPORT through a virtual keyboard
+     * created by <code>openVirtualKeyboard()</code>. This is a native method.
+     * @param fd File descriptor returned by <code>openVirtualKeyboard()</code>
+     * @param code Linux key code
+     * @param value 1 for a press, 0 for a release and 2 for an auto repeat
+     */
+	public native void emitKey(int fd, int code, int value);
+
+    /**
+     * Destroys a virtual keyboard created by <code>openVirtualKeyboard()</code>.
+     * This is a native method.
+     * @param fd File descriptor returned by <code>openVirtualKeyboard()</code>
+     */
+	public native void closeVirtualKeyboard(int fd);
+
     /**
      * Native method which controls the AutoRepeat property of the keyboard.
      * This is checked using the AutoRepeat boolean variable in the
@@ -54,4 +120,54 @@ public class LinuxLibraries {
     * @param ucode Contains the Unicode code point value which will be put onto the active window.
     */
 	public native static void OutputActiveWindow(String ucode);
+
+   /**
+    * Calls the native method which deletes characters from the active window
+    * by sending backspaces through the XTest extension. All the backspaces
+    * go to the X server in a single flush.
+    * @param count Number of backspaces to send.
+    */
+	public native static void EraseActiveWindow(int count);
+
+   /**
+    * Calls the native method which puts a batch of output onto the active
+    * window over a single X connection, in order. The key events are sent
+    * in chunks; after each chunk the active window is pinged
+    * (<em>_NET_WM_PING</em>), which it answers once it has read them, and
+    * the round trip is timed. A window which does not take part in the
+    * protocol, or has once failed to answer within 200 ms, is synced with
+    * (<em>XSync</em>) instead, which only waits for the X server. Only
+    * whole chunks are synced; the events after the last sync are left for
+    * the next call to count.
+    * @param ops Negative entries are the number of backspaces to send, the
+    * others are Unicode code points to put.
+    * @param length Number of entries of ops to put.
+    * @param chunk Number of key events to send between two syncs.
+    * @param unsynced Number of key events sent by earlier calls since the
+    * last sync, less than chunk.
+    * @param pauseMicros Time to sleep after each synced chunk but the last.
+    * @param roundTrips Receives the round trip time of each sync, in
+    * nanoseconds, as far as it has room.
+    * @return Returns the number of syncs done.
+    */
+	public native static int OutputPaced(int[] ops, int length, int chunk,
+			int unsynced, int pauseMicros, long[] roundTrips);
+
+   /**
+    * Calls the native method which returns the class (the res_class part of
+    * <em>WM_CLASS</em>) of the window which has the input focus, or of its
+    * nearest ancestor which has one.
+    * @return Returns the window class, or an empty string if there is none.
+    */
+	public native static String FocusedWindowClass();
+
+   /**
+    * Calls the native method which watches the active window, as named by
+    * the window manager in <em>_NET_ACTIVE_WINDOW</em>, and its title, and
+    * reports each change of either to
+    * <code>FocusTracker.focusChanged()</code>. It does not return
+    * while the window manager maintains the property.
+    * @return Returns false if the active window can not be watched.
+    */
+	public native static boolean watchFocus();
 }
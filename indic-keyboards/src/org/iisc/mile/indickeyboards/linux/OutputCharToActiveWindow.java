@@ -19,9 +19,6 @@
  **********************************************************************/
 package org.iisc.mile.indickeyboards.linux;
 
-import org.iisc.mile.indickeyboards.ParseXML;
-import org.iisc.mile.indickeyboards.PhoneticParseXML;
-
 public class OutputCharToActiveWindow {
 
 	/**
@@ -31,52 +28,82 @@ public class OutputCharToActiveWindow {
 	 */
 	LinuxLibraries nativeMethodAccess = new LinuxLibraries();
 
-	public static void outputToActiveWindowNonPhonetic(String ucodeValue) {
-		StringBuilder temp = new StringBuilder(4);
-		if (ucodeValue.length() > 4) {
-			for (int j = 0; j < ucodeValue.length(); j++) {
-				temp.append(ucodeValue.charAt(j));
-				if (temp.length() == 4) {
-					System.out.println(temp.toString());
-					LinuxLibraries.OutputActiveWindow("U" + temp.toString());
-					temp.delete(0, 4);
-				}
-			}
+	/**
+	 * Number of <code>beginBatch()</code> calls not yet matched by a
+	 * <code>commitBatch()</code>. While it is above zero the output is queued
+	 * up in <code>batch</code> instead of being put onto the active window
+	 * straight away.
+	 */
+	private static int batchDepth = 0;
+	/**
+	 * Output queued up while batching, in the form taken by
+	 * <code>LinuxLibraries.OutputPaced()</code>: backspace counts negated,
+	 * Unicode code points as they are.
+	 */
+	private static int[] batch = new int[64];
+	private static int batchLength = 0;
 
-		} else {
+	/**
+	 * Starts queueing up the output. The key monitor batches the output of
+	 * every key, and of a number of auto repeats of a held key, so that it
+	 * goes out through the <code>OutputPacer</code> with a single native
+	 * call. Batches nest; only the outermost commit puts the output.
+	 */
+	public static void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Puts the output queued up since the outermost <code>beginBatch()</code>
+	 * onto the active window, in the order it was queued.
+	 */
+	public static void commitBatch() {
+		if (--batchDepth > 0) {
+			return;
+		}
+		batchDepth = 0;
+		if (batchLength > 0) {
+			OutputPacer.pacer.commit(batch, batchLength);
+			batchLength = 0;
+		}
+	}
 
-			/*
-			 * Tamil99 works as a part Phonetic layout. If vowel "a" is pressed
-			 * after a consonant then nothing is to be printed.
-			 */
-			if (ParseXML.keyboardlayoutname.compareTo("tamil99.xml") == 0
-					&& ParseXML.pattern.compareTo("a") == 0
-					&& ParseXML.previousConsonantFlag != 0) {
-				// Print nothing
-			} else {
-				// Call native method with the unicode
-				LinuxLibraries.OutputActiveWindow("U" + ucodeValue);
-			}
+	private static void queue(int op) {
+		if (batchLength == batch.length) {
+			int[] larger = new int[batch.length * 2];
+			System.arraycopy(batch, 0, larger, 0, batchLength);
+			batch = larger;
 		}
+		batch[batchLength++] = op;
 	}
 
-	public static void outputToActiveWindowPhonetic(String ucodeValue) {
-		StringBuilder temp = new StringBuilder(4);
-		if (ucodeValue.length() > 4) {
-			for (int j = 0; j < ucodeValue.length(); j++) {
-				temp.append(ucodeValue.charAt(j));
-				if (temp.length() == 4) {
-					System.out.println(temp.toString());
-					LinuxLibraries.OutputActiveWindow("U" + temp.toString());
-					temp.delete(0, 4);
-				}
-			}
+	/**
+	 * Puts one Unicode character onto the active window, or queues it up when
+	 * batching.
+	 * 
+	 * @param codePoint
+	 *            The character to put
+	 */
+	public static void putChar(int codePoint) {
+		if (batchDepth == 0) {
+			LinuxLibraries.OutputActiveWindow(String.format("U%04x", codePoint));
+		} else {
+			queue(codePoint);
+		}
+	}
 
+	/**
+	 * Deletes characters from the active window by sending the given number
+	 * of backspaces in one batch.
+	 * 
+	 * @param count
+	 *            Number of backspaces to send
+	 */
+	public static void erase(int count) {
+		if (batchDepth > 0) {
+			queue(-count);
 		} else {
-			if (PhoneticParseXML.aflag == 0) {
-				LinuxLibraries.OutputActiveWindow("U" + ucodeValue);
-			} else
-				PhoneticParseXML.aflag = 0;
+			LinuxLibraries.EraseActiveWindow(count);
 		}
 	}
 }
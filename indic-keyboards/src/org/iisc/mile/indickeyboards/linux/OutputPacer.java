@@ -0,0 +1,264 @@
+/**********************************************************************
+ * File:           OutputPacer.java 
+ * Description:    Paces the output put onto the active window.
+ * Created:        Mon Oct 19 04:34:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+package org.iisc.mile.indickeyboards.linux;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Puts batches of output onto the active window without outrunning the
+ * application which owns it. Some applications drop synthetic key events
+ * when they arrive faster than they can handle them, so the events are sent
+ * in chunks and the window is pinged after each chunk, however many
+ * commits it takes to fill, or the X server
+ * synced with if the window does not answer pings. The time this takes is
+ * the feedback: when it grows well beyond what the window class normally
+ * shows for a chunk of the same size, the chunks are made smaller and a
+ * pause is put between them; while it stays low, the chunks grow back and
+ * the pause shrinks. The pacing is learnt separately for each window
+ * class. The changes are counted, and the pacing of each class shown,
+ * through JMX.
+ */
+public class OutputPacer implements OutputPacerMBean {
+
+	/**
+	 * The pacer used for all the output on Linux.
+	 */
+	public static final OutputPacer pacer = new OutputPacer();
+
+	/**
+	 * Number of key events sent between two syncs, to start with.
+	 */
+	static final int INITIAL_CHUNK = 16;
+	/**
+	 * Upper limit of the chunk size.
+	 */
+	static final int MAX_CHUNK = 64;
+	/**
+	 * Smallest non-zero pause between two chunks, in microseconds.
+	 */
+	static final int MIN_PAUSE = 500;
+	/**
+	 * Upper limit of the pause between two chunks, in microseconds.
+	 */
+	static final int MAX_PAUSE = 20000;
+	/**
+	 * A sync taking this many times the baseline round trip of its number
+	 * of events means the application is falling behind.
+	 */
+	static final int CONGESTION_FACTOR = 4;
+	/**
+	 * Number of clean commits after which the pacing is relaxed.
+	 */
+	static final int CLEAN_COMMITS = 8;
+	/**
+	 * Number of window classes whose pacing is remembered.
+	 */
+	static final int MAX_PROFILES = 64;
+
+	/**
+	 * Pacing and round trip statistics of one window class.
+	 */
+	static class Profile {
+		int chunk = INITIAL_CHUNK;
+		int pauseMicros = 0;
+		int cleanCommits = 0;
+		/**
+		 * Key events sent since the last sync, which count towards the
+		 * next chunk.
+		 */
+		int unsynced = 0;
+		/**
+		 * Lowest round trip seen after each number of events, in
+		 * nanoseconds. 0 until the first sync of that many.
+		 */
+		final long[] baselines = new long[MAX_CHUNK + 1];
+		/**
+		 * Exponentially weighted moving average of the round trips.
+		 */
+		long average = 0;
+		long max = 0;
+	}
+
+	/**
+	 * Profiles of the window classes seen, least recently used first.
+	 */
+	private final LinkedHashMap<String, Profile> profiles = new LinkedHashMap<String, Profile>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Profile> eldest) {
+			return size() > MAX_PROFILES;
+		}
+	};
+
+	private long commits = 0;
+	private long events = 0;
+	private long syncs = 0;
+	private long adjustments = 0;
+	/**
+	 * When the last commit finished and the pause due after it, used to
+	 * pace commits which follow each other closely.
+	 */
+	private long lastCommitEnd = 0;
+	private int lastPauseMicros = 0;
+
+	private long[] roundTrips = new long[16];
+
+	/**
+	 * Puts a batch of output onto the active window.
+	 * 
+	 * @param ops
+	 *            Negative entries are the number of backspaces to send, the
+	 *            others are Unicode code points to put.
+	 * @param length
+	 *            Number of entries of ops to put.
+	 */
+	public synchronized void commit(int[] ops, int length) {
+		String windowClass = FocusTracker.windowClass();
+		Profile profile = profiles.get(windowClass);
+		if (profile == null) {
+			profile = new Profile();
+			profiles.put(windowClass, profile);
+		}
+
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			count += ops[i] < 0 ? -ops[i] : 1;
+		}
+		int chunk = profile.chunk;
+		int unsynced = Math.min(profile.unsynced, chunk - 1);
+		int expectedSyncs = (unsynced + count) / chunk;
+		if (roundTrips.length < expectedSyncs) {
+			roundTrips = new long[expectedSyncs];
+		}
+
+		/*
+		 * The previous commit's last chunk has not had its pause yet.
+		 */
+		if (lastPauseMicros > 0) {
+			long wait = lastCommitEnd + lastPauseMicros * 1000L - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		int synced = LinuxLibraries.OutputPaced(ops, length, chunk, unsynced,
+				profile.pauseMicros, roundTrips);
+		profile.unsynced = unsynced + count - synced * chunk;
+		lastCommitEnd = System.nanoTime();
+		lastPauseMicros = profile.pauseMicros;
+
+		commits++;
+		events += count;
+		syncs += synced;
+		adapt(profile, chunk, Math.min(synced, roundTrips.length));
+	}
+
+	/**
+	 * Adjusts the pacing of a window class from the round trips of its last
+	 * commit. The chunk is halved and the pause doubled as soon as a sync
+	 * shows congestion; they are relaxed a step at a time after a run of
+	 * clean commits. Each sync follows size events; a round trip is only
+	 * compared with those of syncs after as many events. A commit which did
+	 * not fill a chunk has no round trips, and leaves the pacing alone.
+	 */
+	private void adapt(Profile profile, int size, int synced) {
+		if (synced == 0) {
+			return;
+		}
+		boolean congested = false;
+		int events = Math.min(MAX_CHUNK, size);
+		for (int i = 0; i < synced; i++) {
+			long rtt = roundTrips[i];
+			long baseline = profile.baselines[events];
+			if (baseline == 0 || rtt < baseline) {
+				profile.baselines[events] = rtt;
+			}
+			profile.average = profile.average == 0 ? rtt
+					: (profile.average * 7 + rtt) / 8;
+			if (rtt > profile.max) {
+				profile.max = rtt;
+			}
+			if (baseline > 0 && rtt > baseline * CONGESTION_FACTOR) {
+				congested = true;
+			}
+		}
+
+		if (congested) {
+			profile.cleanCommits = 0;
+			int chunk = Math.max(1, profile.chunk / 2);
+			int pause = Math.min(MAX_PAUSE, Math.max(MIN_PAUSE,
+					profile.pauseMicros * 2));
+			if (chunk != profile.chunk || pause != profile.pauseMicros) {
+				profile.chunk = chunk;
+				profile.pauseMicros = pause;
+				adjustments++;
+			}
+		} else if (++profile.cleanCommits >= CLEAN_COMMITS) {
+			profile.cleanCommits = 0;
+			int chunk = Math.min(MAX_CHUNK, profile.chunk + 1);
+			int pause = profile.pauseMicros / 2;
+			if (pause < MIN_PAUSE) {
+				pause = 0;
+			}
+			if (chunk != profile.chunk || pause != profile.pauseMicros) {
+				profile.chunk = chunk;
+				profile.pauseMicros = pause;
+				adjustments++;
+			}
+		}
+	}
+
+	public synchronized long getCommits() {
+		return commits;
+	}
+
+	public synchronized long getEvents() {
+		return events;
+	}
+
+	public synchronized long getSyncs() {
+		return syncs;
+	}
+
+	public synchronized long getAdjustments() {
+		return adjustments;
+	}
+
+	public synchronized String[] getProfiles() {
+		ArrayList<String> lines = new ArrayList<String>();
+		Iterator<Map.Entry<String, Profile>> i = profiles.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<String, Profile> entry = i.next();
+			Profile p = entry.getValue();
+			lines.add("\"" + entry.getKey() + "\" chunk " + p.chunk
+					+ ", pause " + p.pauseMicros + "us, rtt avg "
+					+ p.average / 1000 + "us, base "
+					+ p.baselines[Math.min(MAX_CHUNK, p.chunk)] / 1000
+					+ "us, max " + p.max / 1000 + "us");
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+}
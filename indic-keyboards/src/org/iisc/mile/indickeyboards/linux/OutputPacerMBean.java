@@ -0,0 +1,51 @@
+/**********************************************************************
+ * File:           OutputPacerMBean.java 
+ * Description:    Management interface of the output pacer.
+ * Created:        Mon Oct 19 04:34:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+package org.iisc.mile.indickeyboards.linux;
+
+/**
+ * The counters of the <code>OutputPacer</code>, as seen through JMX (e.g.
+ * in jconsole).
+ */
+public interface OutputPacerMBean {
+
+	/**
+	 * @return Returns the number of batches put onto the active window.
+	 */
+	public long getCommits();
+
+	/**
+	 * @return Returns the number of key events sent.
+	 */
+	public long getEvents();
+
+	/**
+	 * @return Returns the number of times the X server was synced with.
+	 */
+	public long getSyncs();
+
+	/**
+	 * @return Returns the number of times a window class' pacing was changed.
+	 */
+	public long getAdjustments();
+
+	/**
+	 * @return Returns the current pacing of each window class seen, one
+	 *         line per class.
+	 */
+	public String[] getProfiles();
+}
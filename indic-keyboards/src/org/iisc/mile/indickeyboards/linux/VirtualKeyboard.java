@@ -0,0 +1,158 @@
+/**********************************************************************
+ * File:           VirtualKeyboard.java
+ * Description:    Types text through a uinput virtual keyboard.
+ * Created:        Mon Oct 19 04:30:02 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+package org.iisc.mile.indickeyboards.linux;
+
+/**
+ * Types the text given on the command line through a uinput virtual
+ * keyboard. This allows the exclusive grab to be tried out on a machine which
+ * has the uinput module but no physical keyboard: point the
+ * <strong>Keyboard</strong> entry of <strong>preferences.conf</strong> at the
+ * event interface of the virtual keyboard (or leave it to be identified, the
+ * name contains "keyboard") and run
+ * <p>
+ * <code>java org.iisc.mile.indickeyboards.linux.VirtualKeyboard --enable namaskara</code>
+ * <p>
+ * <code>--enable</code> presses Alt + F12 before typing, to turn on key
+ * logging.
+ */
+public class VirtualKeyboard {
+
+	/**
+	 * Name of the virtual keyboard created by this class.
+	 */
+	public static final String NAME = "indic-keyboards virtual test keyboard";
+
+	/*
+	 * The keyboard rows, with the keycode of the first key in each row. Shifted
+	 * characters are in the same position on the second set of rows.
+	 */
+	private static final String[] ROWS = { "1234567890-=", "qwertyuiop[]",
+			"asdfghjkl;'`", "\\zxcvbnm,./" };
+	private static final String[] SHIFTED_ROWS = { "!@#$%^&*()_+",
+			"QWERTYUIOP{}", "ASDFGHJKL:\"~", "|ZXCVBNM<>?" };
+	private static final int[] ROW_START = { 2, 16, 30, 43 };
+
+	private static final int KEY_LEFT_SHIFT = 42;
+	private static final int KEY_LEFT_ALT = 56;
+	private static final int KEY_F12 = 88;
+	private static final int KEY_SPACE = 57;
+	private static final int KEY_ENTER = 28;
+	private static final int KEY_BACK_SPACE = 14;
+
+	private final LinuxLibraries nativeMethodAccessObject = new LinuxLibraries();
+	private final int fd;
+
+	/**
+	 * Creates the virtual keyboard.
+	 * 
+	 * @throws IllegalStateException
+	 *             if <em>/dev/uinput</em> could not be opened
+	 */
+	public VirtualKeyboard() {
+		fd = nativeMethodAccessObject.openVirtualKeyboard(NAME);
+		if (fd < 0) {
+			throw new IllegalStateException(
+					"Could not create the virtual keyboard. Is the uinput module loaded?");
+		}
+	}
+
+	/**
+	 * Presses and releases a key, holding Shift down if required.
+	 */
+	public void tap(int code, boolean shift) {
+		if (shift) {
+			nativeMethodAccessObject.emitKey(fd, KEY_LEFT_SHIFT, 1);
+		}
+		nativeMethodAccessObject.emitKey(fd, code, 1);
+		nativeMethodAccessObject.emitKey(fd, code, 0);
+		if (shift) {
+			nativeMethodAccessObject.emitKey(fd, KEY_LEFT_SHIFT, 0);
+		}
+	}
+
+	/**
+	 * Presses Alt + F12, which toggles the key logging.
+	 */
+	public void toggleLogging() {
+		nativeMethodAccessObject.emitKey(fd, KEY_LEFT_ALT, 1);
+		tap(KEY_F12, false);
+		nativeMethodAccessObject.emitKey(fd, KEY_LEFT_ALT, 0);
+	}
+
+	/**
+	 * Types the text one key at a time. Characters which are not on the
+	 * keyboard are skipped.
+	 */
+	public void type(String text, long delay) throws InterruptedException {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == ' ') {
+				tap(KEY_SPACE, false);
+			} else if (c == '\n') {
+				tap(KEY_ENTER, false);
+			} else if (c == '\b') {
+				tap(KEY_BACK_SPACE, false);
+			} else {
+				for (int row = 0; row < ROWS.length; row++) {
+					int column = ROWS[row].indexOf(c);
+					if (column >= 0) {
+						tap(ROW_START[row] + column, false);
+						break;
+					}
+					column = SHIFTED_ROWS[row].indexOf(c);
+					if (column >= 0) {
+						tap(ROW_START[row] + column, true);
+						break;
+					}
+				}
+			}
+			Thread.sleep(delay);
+		}
+	}
+
+	/**
+	 * Destroys the virtual keyboard.
+	 */
+	public void close() {
+		nativeMethodAccessObject.closeVirtualKeyboard(fd);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		System.load(System.getProperty("user.dir") + "/"
+				+ LinuxLibraries.libraryName());
+		VirtualKeyboard keyboard = new VirtualKeyboard();
+		System.out.println("Created the virtual keyboard \"" + NAME + "\"");
+		/*
+		 * Give indic-keyboards and the X server time to pick up the new
+		 * device before typing.
+		 */
+		Thread.sleep(2000);
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--enable")) {
+				keyboard.toggleLogging();
+			} else {
+				if (i > 0 && !args[i - 1].equals("--enable")) {
+					keyboard.type(" ", 50);
+				}
+				keyboard.type(args[i], 50);
+			}
+		}
+		Thread.sleep(500);
+		keyboard.close();
+	}
+}
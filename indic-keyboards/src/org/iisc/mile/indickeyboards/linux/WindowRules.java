@@ -0,0 +1,139 @@
+/**********************************************************************
+ * File:           WindowRules.java 
+ * Description:    Layouts chosen by the application being typed into.
+ * Created:        Mon Oct 19 04:41:28 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+package org.iisc.mile.indickeyboards.linux;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import org.iisc.mile.indickeyboards.Layout;
+
+/**
+ * The <em>Rule</em> lines of <strong>preferences.conf</strong>, which pick
+ * the layout, or no transliteration at all, by the window typed into:
+ * 
+ * <pre>
+ * Rule:class Gnome-terminal = off
+ * Rule:title *Kannada* = kan_kagapa.xml
+ * </pre>
+ * 
+ * The pattern is matched against the window class or title, ignoring case,
+ * with * standing for any text. The first rule that matches wins; windows
+ * no rule matches use the layout selected from the tray. The layouts are
+ * read once, when the rules are.
+ */
+public class WindowRules {
+
+	/**
+	 * What to do in the windows a rule matches.
+	 */
+	public static class Rule {
+		final boolean byTitle;
+		final Pattern pattern;
+		/**
+		 * The layout to use, null if the keys are not to be transliterated.
+		 */
+		public final Layout layout;
+		final String text;
+
+		Rule(boolean byTitle, Pattern pattern, Layout layout, String text) {
+			this.byTitle = byTitle;
+			this.pattern = pattern;
+			this.layout = layout;
+			this.text = text;
+		}
+
+		/**
+		 * @return Returns true if the keys are not to be transliterated.
+		 */
+		public boolean isOff() {
+			return layout == null;
+		}
+
+		public String toString() {
+			return text;
+		}
+	}
+
+	private static final ArrayList<Rule> rules = new ArrayList<Rule>();
+
+	/**
+	 * Adds the rule of a <em>Rule</em> line. Malformed rules are reported on
+	 * the console and skipped.
+	 * 
+	 * @param rule
+	 *            The line after "Rule:"
+	 */
+	public static synchronized void add(String rule) {
+		int equals = rule.lastIndexOf('=');
+		String match = equals < 0 ? "" : rule.substring(0, equals).trim();
+		int space = match.indexOf(' ');
+		String what = space < 0 ? match : match.substring(0, space);
+		if (equals < 0 || space < 0
+				|| !(what.equals("class") || what.equals("title"))) {
+			System.out.println("Rule \"" + rule
+					+ "\" ignored, use Rule:class|title <pattern> = <layout>|off");
+			return;
+		}
+		String target = rule.substring(equals + 1).trim();
+		Layout layout = null;
+		if (!target.equals("off")) {
+			layout = Layout.load(target);
+		}
+		rules.add(new Rule(what.equals("title"), glob(match.substring(space)
+				.trim()), layout, rule.trim()));
+	}
+
+	/**
+	 * Turns a pattern with * wildcards into a case insensitive regular
+	 * expression.
+	 */
+	private static Pattern glob(String pattern) {
+		StringBuilder regex = new StringBuilder();
+		int start = 0;
+		int star;
+		while ((star = pattern.indexOf('*', start)) >= 0) {
+			regex.append(Pattern.quote(pattern.substring(start, star)));
+			regex.append(".*");
+			start = star + 1;
+		}
+		regex.append(Pattern.quote(pattern.substring(start)));
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE
+				| Pattern.UNICODE_CASE);
+	}
+
+	/**
+	 * Returns the first rule which matches the window, or null if there is
+	 * none.
+	 */
+	public static synchronized Rule match(String windowClass, String title) {
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = rules.get(i);
+			if (rule.pattern.matcher(rule.byTitle ? title : windowClass)
+					.matches()) {
+				return rule;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Returns true if there are rules to match.
+	 */
+	public static synchronized boolean isEmpty() {
+		return rules.isEmpty();
+	}
+}
@@ -19,15 +19,23 @@
  **********************************************************************/
 
 #include <X11/Xlib.h>
+#include <X11/Xatom.h>
+#include <X11/keysym.h>
+#include <X11/extensions/XTest.h>
 #include <stdlib.h>
 #include <unistd.h>
 #include <stdio.h>
 #include <stdbool.h>
 #include <string.h>
 #include <linux/input.h>
+#include <linux/uinput.h>
+#include <sys/ioctl.h>
 #include <sys/stat.h>
 #include <fcntl.h>
+#include <poll.h>
 #include <math.h>
+#include <time.h>
+#include <pthread.h>
 #include "org_iisc_mile_indickeyboards_linux_LinuxLibraries.h"
 
 JNIEXPORT jstring JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_identify(JNIEnv *env,
@@ -41,8 +49,10 @@ JNIEXPORT jstring JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries
 	char name[256] = "Unknown";
 
 	str = (*env)->GetStringUTFChars(env, id, NULL);
+	fd = open(str, O_RDONLY);
+	(*env)->ReleaseStringUTFChars(env, id, str);
 
-	if ((fd = open(str, O_RDONLY)) < 0) {
+	if (fd < 0) {
 		perror("evdev open");
 		exit(1);
 	}
@@ -57,6 +67,60 @@ JNIEXPORT jstring JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries
 	return (*env)->NewStringUTF(env, buf);
 }
 
+/*
+ * Upper bound on the number of auto repeats handed to Java in one call.
+ */
+#define MAX_COALESCED_REPEATS 64
+
+/*
+ * Reads the next event from the device, or returns the event handed back by
+ * coalesce_repeats(). Returns False on a short read.
+ */
+static int next_event(int fd, struct input_event *event,
+		struct input_event *pending, int *havePending) {
+	if (*havePending) {
+		*event = *pending;
+		*havePending = False;
+		return True;
+	}
+	return read(fd, event, sizeof(struct input_event)) == sizeof(struct input_event);
+}
+
+/*
+ * Counts the auto repeats of a key which are already queued up on the device
+ * behind the one just read, and consumes them. This never waits: repeats only
+ * pile up when the output of the previous ones took longer than the repeat
+ * interval, and they are then all committed in one batch. Synchronisation
+ * events in between are read too; a caller which passes the repeats on sends
+ * its own after each. The first other event is handed back through pending. Returns the number of repeats, including the one just read.
+ */
+static int coalesce_repeats(int fd, int code, struct input_event *pending,
+		int *havePending) {
+	const int KEY_AUTOREPEAT = 2;
+	struct pollfd pfd;
+	struct input_event next;
+	int count = 1;
+
+	pfd.fd = fd;
+	pfd.events = POLLIN;
+	while (count < MAX_COALESCED_REPEATS && poll(&pfd, 1, 0) > 0) {
+		if (read(fd, &next, sizeof(next)) != sizeof(next)) {
+			break;
+		}
+		if (next.type == EV_SYN || next.type == EV_MSC) {
+			continue;
+		}
+		if (next.type == EV_KEY && next.code == code && next.value == KEY_AUTOREPEAT) {
+			count++;
+			continue;
+		}
+		*pending = next;
+		*havePending = True;
+		break;
+	}
+	return count;
+}
+
 JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_grab(JNIEnv *env, jobject obj, jstring kb) {
 
 	const int LEFT_SHIFT = 42;
@@ -78,7 +142,8 @@ JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_gr
 	jint index;
 
 	jclass class = (*env)->FindClass(env,"org/iisc/mile/indickeyboards/linux/KeyMonitorMethods");
-	jmethodID mid = (*env)->GetMethodID(env, class, "printKeys", "(I)V");
+	jmethodID mid = (*env)->GetMethodID(env, class, "printKeys", "(I)Z");
+	jmethodID repeatMid = (*env)->GetMethodID(env, class, "printRepeats", "(II)Z");
 
 	jmethodID constructor = (*env)->GetMethodID(env, class, "<init>", "()V");
 	jobject object = (*env)->NewObject(env,class,constructor);
@@ -86,11 +151,14 @@ JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_gr
 	jint shiftFlag = False;
 	jint altFlag = False;
 	jint ctrlFlag = False;
+	jint repeats;
 
 	const jbyte *str;
 	str = (*env)->GetStringUTFChars(env, kb, NULL);
+	fd = open(str, O_RDONLY);
+	(*env)->ReleaseStringUTFChars(env, kb, str);
 
-	if ((fd = open(str, O_RDONLY)) < 0) {
+	if (fd < 0) {
 		perror("evdev open");
 		exit(1);
 	}
@@ -102,9 +170,11 @@ JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_gr
 	 * View the file <linux/input.h> for more info.
 	 */
 	struct input_event event[1];
+	struct input_event pending;
+	int havePending = False;
 
 	while (1) {
-		rd = read(fd, event, sizeof (struct input_event) *1);
+		rd = next_event(fd, event, &pending, &havePending) ? sizeof (struct input_event) : 0;
 
 		if (rd < (int) sizeof (struct input_event)) {
 			perror("evtest: short read");
@@ -140,21 +210,35 @@ JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_gr
 					}
 				}
 
+				/*
+				 * A key is handed to Java on its release, not its press: the
+				 * keyboard is shared, so the char of the key reaches the
+				 * window on the press, and the parsers, which delete it, must
+				 * come after it. grabExclusive() hands keys over on the press
+				 * instead, as the char only reaches the window if it passes
+				 * the key on.
+				 */
 				else if (event[index].value == KEY_RELEASE || event[index].value == KEY_AUTOREPEAT) {
 					if(ctrlFlag) {
 						//When Ctrl is pressed, don't process the key presses.
 					}
+					else if(event[index].value == KEY_AUTOREPEAT) {
+						// Held key, commit the repeats queued up so far together.
+						repeats = coalesce_repeats(fd, event[index].code, &pending, &havePending);
+						(*env)->CallBooleanMethod(env, object, repeatMid,
+								shiftFlag ? event[index].code + 200 : event[index].code, repeats);
+					}
 					else if(shiftFlag) {
 						// If Shift is pressed, add 200 to the keycodes
-						(*env)->CallVoidMethod(env, object, mid, event[index].code + 200);
+						(*env)->CallBooleanMethod(env, object, mid, event[index].code + 200);
 					}
 					else if(!shiftFlag) {
 						// The normal key presses without any modifiers.
-						(*env)->CallVoidMethod(env, object, mid, event[index].code);
+						(*env)->CallBooleanMethod(env, object, mid, event[index].code);
 					}
 					if(altFlag) {
 						if (event[index].code == F12) {
-							(*env)->CallVoidMethod(env, object, mid, 666);
+							(*env)->CallBooleanMethod(env, object, mid, 666);
 						}
 					}
 				}
@@ -164,6 +248,251 @@ JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_gr
 	close(fd);
 }
 
+/*
+ * Creates a uinput virtual keyboard which can send every key code below 256.
+ * Returns the file descriptor of the device, or -1 on failure.
+ */
+static int create_virtual_keyboard(const char *name) {
+	struct uinput_user_dev dev;
+	int fd, code;
+
+	if ((fd = open("/dev/uinput", O_WRONLY | O_NONBLOCK)) < 0) {
+		perror("uinput open");
+		return -1;
+	}
+
+	ioctl(fd, UI_SET_EVBIT, EV_KEY);
+	ioctl(fd, UI_SET_EVBIT, EV_SYN);
+	for (code = 1; code < 256; code++) {
+		ioctl(fd, UI_SET_KEYBIT, code);
+	}
+
+	memset(&dev, 0, sizeof(dev));
+	strncpy(dev.name, name, UINPUT_MAX_NAME_SIZE - 1);
+	dev.id.bustype = BUS_VIRTUAL;
+	dev.id.vendor = 0x1;
+	dev.id.product = 0x1;
+	dev.id.version = 1;
+
+	if (write(fd, &dev, sizeof(dev)) < 0 || ioctl(fd, UI_DEV_CREATE) < 0) {
+		perror("uinput create");
+		close(fd);
+		return -1;
+	}
+	return fd;
+}
+
+/*
+ * Writes one event to a uinput device.
+ */
+static void emit_event(int fd, int type, int code, int value) {
+	struct input_event event;
+
+	memset(&event, 0, sizeof(event));
+	event.type = type;
+	event.code = code;
+	event.value = value;
+	if (write(fd, &event, sizeof(event)) < 0) {
+		perror("uinput write");
+	}
+}
+
+JNIEXPORT jboolean JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_grabExclusive(JNIEnv *env,
+		jobject obj, jstring kb, jstring passthroughName) {
+
+	const int LEFT_SHIFT = 42;
+	const int RIGHT_SHIFT = 54;
+
+	const int ALT = 56;
+	const int ALT_GRAPH = 100;
+
+	const int LEFT_CTRL = 29;
+	const int RIGHT_CTRL = 97;
+
+	const int LEFT_META = 125;
+	const int RIGHT_META = 126;
+
+	const int F12 = 88;
+
+	const int KEY_PRESS = 1;
+	const int KEY_RELEASE = 0;
+
+	/*
+	 * Per key state, so that the release of a key goes the same way as its
+	 * press: either re-emitted through the virtual keyboard or swallowed.
+	 */
+	const char FORWARDED = 1;
+	const char SWALLOWED = 2;
+	char keyState[KEY_CNT];
+
+	jint fd = -1;
+	jint out = -1;
+	jint code;
+
+	jclass class = (*env)->FindClass(env,"org/iisc/mile/indickeyboards/linux/KeyMonitorMethods");
+	jmethodID mid = (*env)->GetMethodID(env, class, "printKeys", "(I)Z");
+	jmethodID repeatMid = (*env)->GetMethodID(env, class, "printRepeats", "(II)Z");
+
+	jmethodID constructor = (*env)->GetMethodID(env, class, "<init>", "()V");
+	jobject object = (*env)->NewObject(env,class,constructor);
+
+	jint shiftFlag = False;
+	jint altFlag = False;
+	jint ctrlFlag = False;
+	jint metaFlag = False;
+	jboolean consumed;
+	jboolean coalesced;
+	jint repeats;
+
+	const char *str;
+	const char *name;
+	str = (*env)->GetStringUTFChars(env, kb, NULL);
+	fd = open(str, O_RDONLY);
+	if (fd < 0) {
+		perror("evdev open");
+	}
+	(*env)->ReleaseStringUTFChars(env, kb, str);
+	if (fd < 0) {
+		return JNI_FALSE;
+	}
+
+	/*
+	 * From here on the key presses reach nobody but us.
+	 */
+	if (ioctl(fd, EVIOCGRAB, 1) < 0) {
+		perror("evdev grab");
+		close(fd);
+		return JNI_FALSE;
+	}
+
+	name = (*env)->GetStringUTFChars(env, passthroughName, NULL);
+	out = create_virtual_keyboard(name);
+	(*env)->ReleaseStringUTFChars(env, passthroughName, name);
+	if (out < 0) {
+		ioctl(fd, EVIOCGRAB, 0);
+		close(fd);
+		return JNI_FALSE;
+	}
+
+	memset(keyState, 0, sizeof(keyState));
+
+	struct input_event event;
+	struct input_event pending;
+	int havePending = False;
+
+	while (next_event(fd, &event, &pending, &havePending)) {
+		if (EV_SYN == event.type) {
+			emit_event(out, EV_SYN, SYN_REPORT, 0);
+			continue;
+		}
+		if (EV_KEY != event.type || event.code >= KEY_CNT) {
+			continue;
+		}
+		code = event.code;
+
+		/*
+		 * Modifiers are always passed on, so that shortcuts work in the
+		 * active window.
+		 */
+		if (code == LEFT_SHIFT || code == RIGHT_SHIFT) {
+			shiftFlag = event.value != KEY_RELEASE;
+		} else if (code == ALT || code == ALT_GRAPH) {
+			altFlag = event.value != KEY_RELEASE;
+		} else if (code == LEFT_CTRL || code == RIGHT_CTRL) {
+			ctrlFlag = event.value != KEY_RELEASE;
+		} else if (code == LEFT_META || code == RIGHT_META) {
+			metaFlag = event.value != KEY_RELEASE;
+		} else if (event.value == KEY_RELEASE) {
+			if (keyState[code] == FORWARDED) {
+				emit_event(out, EV_KEY, code, KEY_RELEASE);
+			}
+			keyState[code] = 0;
+			continue;
+		} else if (altFlag && code == F12) {
+			// Alt + F12 toggles the key logging and is not passed on.
+			if (event.value == KEY_PRESS) {
+				(*env)->CallBooleanMethod(env, object, mid, 666);
+			}
+			if (keyState[code] == 0) {
+				keyState[code] = SWALLOWED;
+			}
+			continue;
+		} else {
+			/*
+			 * Unlike grab(), keys are handed to Java on their press: whether
+			 * the press is swallowed or passed on has to be known before
+			 * the window gets it, and nothing has been echoed for the
+			 * parsers to wait for. The release follows the press.
+			 */
+			consumed = JNI_FALSE;
+			coalesced = JNI_FALSE;
+			repeats = 1;
+			if (!ctrlFlag && !altFlag && !metaFlag) {
+				// If Shift is pressed, add 200 to the keycodes
+				if (event.value == KEY_PRESS) {
+					consumed = (*env)->CallBooleanMethod(env, object, mid,
+							shiftFlag ? code + 200 : code);
+				} else {
+					// Held key, commit the repeats queued up so far together.
+					repeats = coalesce_repeats(fd, code, &pending, &havePending);
+					coalesced = JNI_TRUE;
+					consumed = (*env)->CallBooleanMethod(env, object, repeatMid,
+							shiftFlag ? code + 200 : code, repeats);
+				}
+			}
+			if (keyState[code] == 0) {
+				keyState[code] = consumed ? SWALLOWED : FORWARDED;
+			}
+			if (consumed || keyState[code] == SWALLOWED) {
+				continue;
+			}
+			if (coalesced) {
+				/*
+				 * coalesce_repeats() has read the synchronisation event
+				 * after each repeat, so each repeat passed on is followed
+				 * by one of ours.
+				 */
+				while (repeats-- > 0) {
+					emit_event(out, EV_KEY, code, event.value);
+					emit_event(out, EV_SYN, SYN_REPORT, 0);
+				}
+				continue;
+			}
+		}
+		emit_event(out, EV_KEY, code, event.value);
+	}
+
+	perror("evtest: short read");
+	ioctl(out, UI_DEV_DESTROY);
+	close(out);
+	ioctl(fd, EVIOCGRAB, 0);
+	close(fd);
+	return JNI_TRUE;
+}
+
+JNIEXPORT jint JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_openVirtualKeyboard(JNIEnv *env,
+		jobject obj, jstring name) {
+	const char *str;
+	jint fd;
+
+	str = (*env)->GetStringUTFChars(env, name, NULL);
+	fd = create_virtual_keyboard(str);
+	(*env)->ReleaseStringUTFChars(env, name, str);
+	return fd;
+}
+
+JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_emitKey(JNIEnv *env,
+		jobject obj, jint fd, jint code, jint value) {
+	emit_event(fd, EV_KEY, code, value);
+	emit_event(fd, EV_SYN, SYN_REPORT, 0);
+}
+
+JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_closeVirtualKeyboard(JNIEnv *env,
+		jobject obj, jint fd) {
+	ioctl(fd, UI_DEV_DESTROY);
+	close(fd);
+}
+
 JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_keyrepeat(JNIEnv *env, jobject obj, jint flag) {
 	Display *display = XOpenDisplay(NULL);
 	if(flag==1)
@@ -173,28 +502,117 @@ JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_ke
 	XCloseDisplay(display);
 }
 
-JNIEXPORT void JNICALL JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_OutputActiveWindow(JNIEnv *env, jobject obj, jstring unicode)
-{
-	Display *display = XOpenDisplay(NULL);
-	KeySym k;
-	const jbyte *str;
-	str = (*env)->GetStringUTFChars(env, unicode, NULL);
+/*
+ * Most keycodes the chars of a batch are mapped onto.
+ */
+#define MAX_SPARE_KEYCODES 32
 
-	jint revert_to=0;
-	XEvent event;
-	Window focus_return;
-	XGetInputFocus(display, &focus_return, &revert_to);
-	XSelectInput(display, focus_return, KeyPressMask);
+/*
+ * How long to let the focused window catch up, in microseconds, before a
+ * spare keycode is mapped onto another keysym.
+ */
+#define SPARE_WAIT_MICROS 20000
 
-	KeySym sym = XStringToKeysym(str);
-	int min, max, numcodes;
-	XDisplayKeycodes(display,&min,&max);
+/*
+ * The keycodes which have no keysym, onto which the chars put are mapped
+ * one after another. A window works out the keysym of a key event from the
+ * keycode when it reads the event, with the mapping it then has, so a
+ * keycode is not mapped again until the window has had the time to read
+ * the events sent with it: each char of a batch is given a keycode of its
+ * own, going round all of them, and once the batch has used them all the
+ * server is synced with and the window given SPARE_WAIT_MICROS. The
+ * keycodes are found once; the calls come one at a time, from the thread
+ * monitoring the keys.
+ */
+static KeyCode spareKeycodes[MAX_SPARE_KEYCODES];
+static KeySym spareKeysyms[MAX_SPARE_KEYCODES];
+static unsigned long spareBatches[MAX_SPARE_KEYCODES];
+static int spares = -1;
+static int nextSpare = 0;
+/*
+ * The number of the batch being sent, and the keycodes it has mapped.
+ */
+static unsigned long batch = 0;
+static int used = 0;
+
+static void find_spare_keycodes(Display *display)
+{
+	int min, max, numcodes, code, i;
 	KeySym *keysym;
-	keysym = XGetKeyboardMapping(display,min,max-min+1,&numcodes);
-	keysym[(max-min-1)*numcodes]=sym;
-	XChangeKeyboardMapping(display,min,numcodes,keysym,(max-min));
+
+	XDisplayKeycodes(display, &min, &max);
+	keysym = XGetKeyboardMapping(display, min, max - min + 1, &numcodes);
+	spares = 0;
+	for (code = max; code >= min && spares < MAX_SPARE_KEYCODES; code--) {
+		for (i = 0; i < numcodes; i++) {
+			if (keysym[(code - min) * numcodes + i] != NoSymbol) {
+				break;
+			}
+		}
+		if (i == numcodes) {
+			spareKeycodes[spares++] = code;
+		}
+	}
 	XFree(keysym);
-	KeyCode code = XKeysymToKeycode(display,sym);
+	if (spares == 0) {
+		// All the keycodes have keysyms; take over the one before the last.
+		spareKeycodes[spares++] = max - 1;
+	}
+}
+
+/*
+ * Starts a batch of chars. The mapping may have been changed by others
+ * since the last one, so the keysyms are mapped afresh.
+ */
+static void begin_keysyms(Display *display)
+{
+	if (spares < 0) {
+		find_spare_keycodes(display);
+	}
+	batch++;
+	used = 0;
+}
+
+/*
+ * Returns a keycode with the keysym mapped onto it. A keysym mapped in the
+ * batch already keeps its keycode.
+ */
+static KeyCode map_keysym(Display *display, KeySym sym)
+{
+	KeySym syms[2];
+	int i;
+
+	for (i = 0; i < spares; i++) {
+		if (spareBatches[i] == batch && spareKeysyms[i] == sym) {
+			return spareKeycodes[i];
+		}
+	}
+	if (used == spares) {
+		XSync(display, False);
+		usleep(SPARE_WAIT_MICROS);
+		used = 0;
+		batch++;
+	}
+	used++;
+	i = nextSpare;
+	nextSpare = (nextSpare + 1) % spares;
+	spareKeysyms[i] = sym;
+	spareBatches[i] = batch;
+	// The same keysym with and without Shift.
+	syms[0] = syms[1] = sym;
+	XChangeKeyboardMapping(display, spareKeycodes[i], 2, syms, 1);
+	return spareKeycodes[i];
+}
+
+/*
+ * Maps the keysym onto a spare keycode and sends a key press with that
+ * keycode to the window which has the focus.
+ */
+static void send_keysym(Display *display, Window focus_return, KeySym sym)
+{
+	XEvent event;
+
+	KeyCode code = map_keysym(display, sym);
 
 	event.xkey.display = display;
 	event.xkey.window = focus_return;
@@ -211,7 +629,494 @@ JNIEXPORT void JNICALL JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibr
 	event.xkey.keycode = code;
 	event.xkey.state = 0;
 	XSendEvent( event.xkey.display, focus_return, True, KeyPressMask, &event);
+}
+
+JNIEXPORT void JNICALL JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_OutputActiveWindow(JNIEnv *env, jobject obj, jstring unicode)
+{
+	Display *display = XOpenDisplay(NULL);
+	const jbyte *str;
+	str = (*env)->GetStringUTFChars(env, unicode, NULL);
+
+	jint revert_to=0;
+	Window focus_return;
+	XGetInputFocus(display, &focus_return, &revert_to);
+	XSelectInput(display, focus_return, KeyPressMask);
+
+	begin_keysyms(display);
+	send_keysym(display, focus_return, XStringToKeysym(str));
+	(*env)->ReleaseStringUTFChars(env, unicode, str);
+
+	XCloseDisplay(display);
+}
+
+static void begin_ignoring_errors(void);
+static void end_ignoring_errors(void);
+static Window active_window(Display *display, Window root, Atom active);
+
+/*
+ * Longest wait for a window to answer a ping, in nanoseconds.
+ */
+#define PING_TIMEOUT_NANOS 200000000L
+
+/*
+ * The atoms of the _NET_WM_PING protocol, and the top level window with the
+ * focus, if it takes part in the protocol.
+ */
+typedef struct {
+	Window root;
+	Window window;
+	Atom protocols;
+	Atom ping;
+	unsigned long stamp;
+} Ping;
+
+/*
+ * The last windows which did not answer a ping in time. They are synced
+ * with instead of pinged from then on, or every commit to them would wait
+ * PING_TIMEOUT_NANOS. The key monitor puts all output from one thread.
+ */
+#define MAX_SILENT_WINDOWS 16
+static Window silentWindows[MAX_SILENT_WINDOWS];
+static int nextSilentWindow = 0;
+
+static int is_silent(Window window)
+{
+	int i;
+
+	for (i = 0; i < MAX_SILENT_WINDOWS; i++) {
+		if (silentWindows[i] == window) {
+			return True;
+		}
+	}
+	return False;
+}
+
+/*
+ * Finds out whether the active window answers pings, unless it has failed
+ * to once already. Events of the root window are selected, since the
+ * answer is sent to it.
+ */
+static void find_ping_window(Display *display, Ping *ping)
+{
+	Atom active = XInternAtom(display, "_NET_ACTIVE_WINDOW", True);
+	Atom *list;
+	int count, i;
+
+	ping->root = DefaultRootWindow(display);
+	ping->window = None;
+	ping->protocols = XInternAtom(display, "WM_PROTOCOLS", False);
+	ping->ping = XInternAtom(display, "_NET_WM_PING", False);
+	ping->stamp = 0;
+	if (active == None) {
+		return;
+	}
+	ping->window = active_window(display, ping->root, active);
+	if (ping->window == None || is_silent(ping->window)
+			|| !XGetWMProtocols(display, ping->window, &list, &count)) {
+		ping->window = None;
+		return;
+	}
+	for (i = 0; i < count && list[i] != ping->ping; i++) {
+	}
+	XFree(list);
+	if (i == count) {
+		ping->window = None;
+		return;
+	}
+	XSelectInput(display, ping->root, SubstructureNotifyMask);
+}
+
+static jlong elapsed(struct timespec *start)
+{
+	struct timespec end;
+
+	clock_gettime(CLOCK_MONOTONIC, &end);
+	return (jlong) (end.tv_sec - start->tv_sec) * 1000000000L + (end.tv_nsec - start->tv_nsec);
+}
+
+/*
+ * Waits for everything sent so far to be handled and returns how long that
+ * took, in nanoseconds. A sync only tells that the X server has handled it;
+ * an application which reads its events late is measured by pinging its
+ * window, which answers once it has read the key events sent before the
+ * ping. A window which does not answer in time is remembered as silent, so
+ * that it is not pinged again in this or any later call, and the time
+ * waited is returned.
+ */
+static jlong timed_round_trip(Display *display, Ping *ping)
+{
+	struct timespec start;
+	struct pollfd pfd;
+	XEvent event;
+	jlong waited;
+	int answered = False;
+
+	clock_gettime(CLOCK_MONOTONIC, &start);
+	if (ping->window == None) {
+		XSync(display, False);
+		return elapsed(&start);
+	}
+	memset(&event, 0, sizeof(event));
+	event.xclient.type = ClientMessage;
+	event.xclient.window = ping->window;
+	event.xclient.message_type = ping->protocols;
+	event.xclient.format = 32;
+	event.xclient.data.l[0] = ping->ping;
+	event.xclient.data.l[1] = ++ping->stamp;
+	event.xclient.data.l[2] = ping->window;
+	XSendEvent(display, ping->window, False, NoEventMask, &event);
+	XFlush(display);
+
+	pfd.fd = ConnectionNumber(display);
+	pfd.events = POLLIN;
+	while (!answered) {
+		while (!answered && XPending(display) > 0) {
+			XNextEvent(display, &event);
+			answered = event.type == ClientMessage
+					&& event.xclient.message_type == ping->protocols
+					&& (Atom) event.xclient.data.l[0] == ping->ping
+					&& (unsigned long) event.xclient.data.l[1] == ping->stamp;
+		}
+		waited = elapsed(&start);
+		if (!answered && waited >= PING_TIMEOUT_NANOS) {
+			silentWindows[nextSilentWindow] = ping->window;
+			nextSilentWindow = (nextSilentWindow + 1) % MAX_SILENT_WINDOWS;
+			ping->window = None;
+			return waited;
+		}
+		if (!answered) {
+			poll(&pfd, 1, (int) ((PING_TIMEOUT_NANOS - waited) / 1000000) + 1);
+		}
+	}
+	return elapsed(&start);
+}
+
+JNIEXPORT jint JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_OutputPaced(JNIEnv *env, jclass cls,
+		jintArray ops, jint length, jint chunk, jint unsynced, jint pauseMicros, jlongArray roundTrips)
+{
+	Display *display = XOpenDisplay(NULL);
+	KeyCode backspace = XKeysymToKeycode(display, XK_BackSpace);
+	jint *op = (*env)->GetIntArrayElements(env, ops, NULL);
+	jsize maxTimings = (*env)->GetArrayLength(env, roundTrips);
+	jlong *timing = (*env)->GetLongArrayElements(env, roundTrips, NULL);
+	jint i, j, events;
+	jint sent = unsynced;
+	jint syncs = 0;
+	Ping ping;
+
+	jint revert_to=0;
+	Window focus_return;
+	XGetInputFocus(display, &focus_return, &revert_to);
+	XSelectInput(display, focus_return, KeyPressMask);
+	begin_keysyms(display);
+	/*
+	 * The active window may go away while it is pinged. Errors are ignored
+	 * until the display is closed, which is when the last of them come.
+	 */
+	begin_ignoring_errors();
+	find_ping_window(display, &ping);
+
+	/*
+	 * Negative entries are backspace counts, the others Unicode code points.
+	 * Unicode keysyms are the code point with 0x1000000 set, except for
+	 * Latin-1. The window is synced with only when a whole chunk has been
+	 * sent since the last sync, counting the events of earlier calls which
+	 * came after it; what is left over goes with the next call.
+	 */
+	for (i = 0; i < length; i++) {
+		events = op[i] < 0 ? -op[i] : 1;
+		for (j = 0; j < events; j++) {
+			if (op[i] < 0) {
+				XTestFakeKeyEvent(display, backspace, True, CurrentTime);
+				XTestFakeKeyEvent(display, backspace, False, CurrentTime);
+			} else {
+				send_keysym(display, focus_return, op[i] < 0x100 ? op[i] : 0x1000000 | op[i]);
+			}
+			if (++sent >= chunk) {
+				jlong rtt = timed_round_trip(display, &ping);
+				if (syncs < maxTimings) {
+					timing[syncs] = rtt;
+				}
+				syncs++;
+				sent = 0;
+				if (pauseMicros > 0 && (i < length - 1 || j < events - 1)) {
+					usleep(pauseMicros);
+				}
+			}
+		}
+	}
+
+	(*env)->ReleaseLongArrayElements(env, roundTrips, timing, 0);
+	(*env)->ReleaseIntArrayElements(env, ops, op, JNI_ABORT);
+	XCloseDisplay(display);
+	end_ignoring_errors();
+	return syncs;
+}
+
+/*
+ * Windows may be destroyed while they are looked at. The default handler
+ * would then end the process, so errors are ignored here.
+ */
+static int ignore_errors(Display *display, XErrorEvent *error)
+{
+	return 0;
+}
+
+/*
+ * The error handler is the same for all the displays of the process, and
+ * SWT has one of its own. Ours is only put in place while windows are
+ * looked at, and the one before it put back after; the calls of the key
+ * thread and of the focus tracker may overlap, so they are counted.
+ */
+static pthread_mutex_t errorsLock = PTHREAD_MUTEX_INITIALIZER;
+static int ignoringErrors = 0;
+static XErrorHandler previousHandler;
+
+static void begin_ignoring_errors(void)
+{
+	pthread_mutex_lock(&errorsLock);
+	if (ignoringErrors++ == 0) {
+		previousHandler = XSetErrorHandler(ignore_errors);
+	}
+	pthread_mutex_unlock(&errorsLock);
+}
+
+/*
+ * Puts the handler back. The errors of the requests made before must have
+ * been received, by XSync() or XCloseDisplay().
+ */
+static void end_ignoring_errors(void)
+{
+	pthread_mutex_lock(&errorsLock);
+	if (--ignoringErrors == 0) {
+		XSetErrorHandler(previousHandler);
+	}
+	pthread_mutex_unlock(&errorsLock);
+}
+
+/*
+ * Copies the class (res_class of WM_CLASS) of the window, or of its nearest
+ * ancestor which has one, to name. name is left empty if there is none.
+ */
+static void window_class(Display *display, Window window, char *name, size_t size)
+{
+	Window root, parent, *children;
+	unsigned int count;
+	XClassHint hint;
+
+	name[0] = '\0';
+	/*
+	 * The focus is often on a child of the top level window, which is the
+	 * one that carries WM_CLASS.
+	 */
+	while (window != None && window != (Window) 1 /* PointerRoot */) {
+		if (XGetClassHint(display, window, &hint)) {
+			if (hint.res_class != NULL) {
+				strncpy(name, hint.res_class, size - 1);
+				name[size - 1] = '\0';
+			}
+			XFree(hint.res_name);
+			XFree(hint.res_class);
+			break;
+		}
+		if (!XQueryTree(display, window, &root, &parent, &children, &count)) {
+			break;
+		}
+		if (children != NULL) {
+			XFree(children);
+		}
+		if (parent == root) {
+			break;
+		}
+		window = parent;
+	}
+}
+
+JNIEXPORT jstring JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_FocusedWindowClass(JNIEnv *env, jclass cls)
+{
+	Display *display = XOpenDisplay(NULL);
+	Window window;
+	char name[256];
+	jint revert_to=0;
+
+	begin_ignoring_errors();
+	XGetInputFocus(display, &window, &revert_to);
+	window_class(display, window, name, sizeof(name));
+
+	XCloseDisplay(display);
+	end_ignoring_errors();
+	return (*env)->NewStringUTF(env, name);
+}
+
+/*
+ * Returns the window named by _NET_ACTIVE_WINDOW on the root window, or None
+ * if the window manager does not set it.
+ */
+static Window active_window(Display *display, Window root, Atom active)
+{
+	Atom type;
+	int format;
+	unsigned long items, after;
+	unsigned char *data = NULL;
+	Window window = None;
+
+	if (XGetWindowProperty(display, root, active, 0, 1, False, XA_WINDOW,
+			&type, &format, &items, &after, &data) == Success) {
+		if (data != NULL) {
+			if (items == 1 && format == 32) {
+				window = *(Window *) data;
+			}
+			XFree(data);
+		}
+	}
+	return window;
+}
+
+/*
+ * Returns the title of the window as a byte array: _NET_WM_NAME, which is
+ * UTF-8, or else WM_NAME, which is Latin-1. *utf8 tells which one it is.
+ */
+static jbyteArray window_title(JNIEnv *env, Display *display, Window window,
+		Atom net_wm_name, Atom utf8_string, jboolean *utf8)
+{
+	Atom type;
+	int format;
+	unsigned long items, after;
+	unsigned char *data = NULL;
+	char *name = NULL;
+	jsize length = 0;
+	jbyteArray title;
+
+	*utf8 = JNI_FALSE;
+	if (window != None && XGetWindowProperty(display, window, net_wm_name, 0, 256,
+			False, utf8_string, &type, &format, &items, &after, &data) == Success
+			&& data != NULL && format != 8) {
+		/* Not UTF-8 text: drop it before falling back to WM_NAME. */
+		XFree(data);
+		data = NULL;
+	}
+	if (data != NULL) {
+		*utf8 = JNI_TRUE;
+		length = items;
+		name = (char *) data;
+	} else if (window != None && XFetchName(display, window, &name) && name != NULL) {
+		length = strlen(name);
+	} else {
+		name = NULL;
+	}
+	title = (*env)->NewByteArray(env, length);
+	if (length > 0) {
+		(*env)->SetByteArrayRegion(env, title, 0, length, (jbyte *) name);
+	}
+	/* name is data, or the string of XFetchName; either is freed once. */
+	if (name != NULL) {
+		XFree(name);
+	}
+	return title;
+}
+
+/*
+ * Watches the root window for changes of _NET_ACTIVE_WINDOW, and the active
+ * window for changes of its title, and reports every change to
+ * FocusTracker.focusChanged(long, String, byte[], boolean). Returns only if
+ * the window manager does not maintain the property, or on an exception in
+ * the callback.
+ */
+JNIEXPORT jboolean JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_watchFocus(JNIEnv *env, jclass cls)
+{
+	Display *display = XOpenDisplay(NULL);
+	Window root, window;
+	Window watched = None;
+	Atom active, net_wm_name, utf8_string;
+	XEvent event;
+	char name[256];
+	jstring class_name;
+	jbyteArray title;
+	jboolean utf8;
+	jclass tracker;
+	jmethodID changed;
+
+	if (display == NULL) {
+		return JNI_FALSE;
+	}
+	tracker = (*env)->FindClass(env, "org/iisc/mile/indickeyboards/linux/FocusTracker");
+	changed = (*env)->GetStaticMethodID(env, tracker, "focusChanged", "(JLjava/lang/String;[BZ)V");
+	if (changed == NULL) {
+		XCloseDisplay(display);
+		return JNI_FALSE;
+	}
+
+	root = DefaultRootWindow(display);
+	active = XInternAtom(display, "_NET_ACTIVE_WINDOW", True);
+	if (active == None) {
+		XCloseDisplay(display);
+		return JNI_FALSE;
+	}
+	net_wm_name = XInternAtom(display, "_NET_WM_NAME", False);
+	utf8_string = XInternAtom(display, "UTF8_STRING", False);
+	XSelectInput(display, root, PropertyChangeMask);
+
+	window = active_window(display, root, active);
+	for (;;) {
+		begin_ignoring_errors();
+		if (window != watched) {
+			if (watched != None) {
+				XSelectInput(display, watched, NoEventMask);
+			}
+			if (window != None) {
+				XSelectInput(display, window, PropertyChangeMask);
+			}
+			watched = window;
+		}
+		window_class(display, window, name, sizeof(name));
+		class_name = (*env)->NewStringUTF(env, name);
+		title = window_title(env, display, window, net_wm_name, utf8_string, &utf8);
+		XSync(display, False);
+		end_ignoring_errors();
+		(*env)->CallStaticVoidMethod(env, tracker, changed, (jlong) window,
+				class_name, title, utf8);
+		/*
+		 * The method never returns to Java, so the local references have to
+		 * be freed here.
+		 */
+		(*env)->DeleteLocalRef(env, class_name);
+		(*env)->DeleteLocalRef(env, title);
+		if ((*env)->ExceptionCheck(env)) {
+			break;
+		}
+
+		/*
+		 * Wait for the next change of the active window or of its title.
+		 * The other properties are not of interest.
+		 */
+		do {
+			XNextEvent(display, &event);
+		} while (event.type != PropertyNotify
+				|| (event.xproperty.window == root ? event.xproperty.atom != active
+						: event.xproperty.window != watched
+								|| (event.xproperty.atom != net_wm_name
+										&& event.xproperty.atom != XA_WM_NAME)));
+		window = active_window(display, root, active);
+	}
 
 	XCloseDisplay(display);
+	return JNI_FALSE;
 }
 
+JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_linux_LinuxLibraries_EraseActiveWindow(JNIEnv *env, jclass cls, jint count)
+{
+	Display *display = XOpenDisplay(NULL);
+	KeyCode code = XKeysymToKeycode(display, XK_BackSpace);
+	jint i;
+
+	/*
+	 * All the backspaces are queued up and go to the X server in one flush.
+	 */
+	for (i = 0; i < count; i++) {
+		XTestFakeKeyEvent(display, code, True, CurrentTime);
+		XTestFakeKeyEvent(display, code, False, CurrentTime);
+	}
+	XFlush(display);
+
+	XCloseDisplay(display);
+}
@@ -36,8 +36,8 @@ import java.io.FileNotFoundException;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
 import org.iisc.mile.indickeyboards.IndicKeyboards;
-import org.iisc.mile.indickeyboards.ParseXML;
-import org.iisc.mile.indickeyboards.PhoneticParseXML;
+import org.iisc.mile.indickeyboards.Layout;
+import org.iisc.mile.indickeyboards.Sessions;
 import org.iisc.mile.indickeyboards.UI;
 
 public class InitWin implements KeyboardEventListener {
@@ -131,8 +131,8 @@ public class InitWin implements KeyboardEventListener {
 						}
 					});
 					System.out.println("Software enabled");
-					// Reset the consonant flags present in ParseXML.java
-					ParseXML.previousConsonantFlag = 0;
+					// Reset the consonant flags of the sessions
+					Sessions.resetConsonantFlags();
 				} else if (!enable) {
 					Display.getDefault().syncExec(new Runnable() {
 						public void run() {
@@ -272,8 +272,9 @@ public class InitWin implements KeyboardEventListener {
 				if (withShiftPressed == SHIFTKEY) {
 					// do not print shift while it is pressed
 				} else {
-					if (PhoneticParseXML.PhoneticFlag == 0) {
-						ParseXML test = new ParseXML();
+					Layout layout = Sessions.forWindow(
+							OutputCharToActiveWindow.activeWindow()).getLayout();
+					if (layout == null || !layout.isPhonetic()) {
 
 						/*
 						 * If the key pressed is a character, send uppercase
@@ -287,7 +288,8 @@ public class InitWin implements KeyboardEventListener {
 							inputChar = new Character((char) withShiftPressed)
 									.toString();
 						}
-						test.getPattern(inputChar);
+						Sessions.forWindow(OutputCharToActiveWindow.activeWindow())
+								.process(inputChar);
 						System.out.println("Key Pressed with shift: "
 								+ withShiftPressed);
 
@@ -296,7 +298,6 @@ public class InitWin implements KeyboardEventListener {
 						 * phonetic No manipulations required.
 						 */
 					} else {
-						PhoneticParseXML test1 = new PhoneticParseXML();
 						if (withShiftPressed >= 97 && withShiftPressed <= 122) {
 							inputChar = new Character((char) withShiftPressed)
 									.toString().toUpperCase();
@@ -304,21 +305,22 @@ public class InitWin implements KeyboardEventListener {
 							inputChar = new Character((char) withShiftPressed)
 									.toString();
 						}
-						test1.getPhoneticPattern(inputChar);
+						Sessions.forWindow(OutputCharToActiveWindow.activeWindow())
+								.process(inputChar);
 						System.out.println("Key Pressed with shift: "
 								+ withShiftPressed);
 					}
 				}
 			} else {
-				// Added flag reset in PhoneticParseXML
+				// Added flag reset in the session
 				if (event.getVirtualKeyCode() == ENTERKEY) {
-					PhoneticParseXML.previousConsonantFlag = 0;
-					ParseXML.previousConsonantFlag = 0;
-					ParseXML.tamil99count = 0;
+					Sessions.forWindow(OutputCharToActiveWindow.activeWindow())
+							.resetConsonantFlags();
 				}
 				int tempKeyCode = 0;
-				if (PhoneticParseXML.PhoneticFlag == 0) {
-					ParseXML test = new ParseXML();
+				Layout layout = Sessions.forWindow(
+						OutputCharToActiveWindow.activeWindow()).getLayout();
+				if (layout == null || !layout.isPhonetic()) {
 
 					if (event.getVirtualKeyCode() <= 185) {
 						inputChar = new Character((char) event
@@ -376,14 +378,15 @@ public class InitWin implements KeyboardEventListener {
 								.toString();
 					}
 
-					test.getPattern(inputChar);
+					Sessions.forWindow(OutputCharToActiveWindow.activeWindow())
+							.process(inputChar);
 					System.out.println("Key Pressed: "
 							+ event.getVirtualKeyCode());
 				} else {
-					PhoneticParseXML test1 = new PhoneticParseXML();
 					inputChar = new Character((char) event.getVirtualKeyCode())
 							.toString().toLowerCase();
-					test1.getPhoneticPattern(inputChar);
+					Sessions.forWindow(OutputCharToActiveWindow.activeWindow())
+							.process(inputChar);
 					System.out.println("Key Pressed: "
 							+ event.getVirtualKeyCode());
 				}
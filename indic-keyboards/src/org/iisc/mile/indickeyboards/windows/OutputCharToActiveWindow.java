@@ -19,9 +19,6 @@
  **********************************************************************/
 package org.iisc.mile.indickeyboards.windows;
 
-import org.iisc.mile.indickeyboards.ParseXML;
-import org.iisc.mile.indickeyboards.PhoneticParseXML;
-
 public class OutputCharToActiveWindow {
 	/**
 	 * Native method opChars is used to output the Unicodes to the current
@@ -33,6 +30,23 @@ public class OutputCharToActiveWindow {
 	 */
 	public native void opChars(int opchar);
 
+	/**
+	 * Native method eraseChars is used to delete characters from the current
+	 * active window. All the backspaces are sent with a single SendInput call.
+	 * 
+	 * @param count
+	 *            the number of backspaces to send
+	 */
+	public native void eraseChars(int count);
+
+	/**
+	 * Native method foregroundWindow returns the handle of the window the
+	 * user is working with, as given by GetForegroundWindow.
+	 * 
+	 * @return the window handle, 0 if there is none
+	 */
+	public native long foregroundWindow();
+
 	static OutputCharToActiveWindow ob = new OutputCharToActiveWindow();
 
 	// Static block to load the Library file
@@ -46,61 +60,33 @@ public class OutputCharToActiveWindow {
 
 	}
 
-	public static void getcharforop_nonPhonetic(String ucodeValue) {
-		//OutputCharToActiveWindow ob = new OutputCharToActiveWindow();
-		StringBuilder temp = new StringBuilder(4);
-		int i;
-		if (ucodeValue.length() > 4) {
-			for (int j = 0; j < ucodeValue.length(); j++) {
-				temp.append(ucodeValue.charAt(j));
-				if (temp.length() == 4) {
-					System.out.println(temp.toString());
-					i = Integer.valueOf(temp.toString(), 16).intValue();
-					ob.opChars(i);
-					temp.delete(0, 4);
-				}
-			}
-
-		} else {
-
-			/*
-			 * Tamil99 works as a part Phonetic layout. If vowel "a" is pressed
-			 * after a consonant then nothing is to be printed.
-			 */
-			if (ParseXML.keyboardlayoutname.compareTo("tamil99.xml") == 0
-					&& ParseXML.pattern.compareTo("a") == 0
-					&& ParseXML.previousConsonantFlag != 0) {
-				// Print nothing
-			} else {
-				// Call native method with the unicode
-				i = Integer.valueOf(ucodeValue, 16).intValue();
-				ob.opChars(i);
-			}
-		}
+	/**
+	 * Puts one Unicode character onto the active window.
+	 * 
+	 * @param codePoint
+	 *            The character to put
+	 */
+	public static void putChar(int codePoint) {
+		ob.opChars(codePoint);
 	}
 
-	public static void getcharforop_phonetic(String ucodeValue) {
-		StringBuilder temp = new StringBuilder(4);
-		int i;
-		if (ucodeValue.length() > 4) {
-			for (int j = 0; j < ucodeValue.length(); j++) {
-				temp.append(ucodeValue.charAt(j));
-				if (temp.length() == 4) {
-					System.out.println(temp.toString());
-					i = Integer.valueOf(temp.toString(), 16).intValue();
-					ob.opChars(i);
-					temp.delete(0, 4);
-				}
-			}
+	/**
+	 * Deletes characters from the active window by sending the given number
+	 * of backspaces in one batch.
+	 * 
+	 * @param count
+	 *            Number of backspaces to send
+	 */
+	public static void erase(int count) {
+		ob.eraseChars(count);
+	}
 
-		} else {
-			// Call native method with the unicode
-			if (PhoneticParseXML.aflag == 0) {
-				i = Integer.valueOf(ucodeValue, 16).intValue();
-				ob.opChars(i);
-			} else
-				PhoneticParseXML.aflag = 0;
-		}
+	/**
+	 * Returns the handle of the foreground window, which identifies the
+	 * session a key belongs to.
+	 */
+	public static long activeWindow() {
+		return ob.foregroundWindow();
 	}
 
 }
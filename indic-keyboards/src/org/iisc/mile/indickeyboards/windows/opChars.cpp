@@ -48,3 +48,35 @@ Input.ki = kb;
 ::SendInput(1,&Input,sizeof(Input));
 
 }
+
+JNIEXPORT void JNICALL Java_org_iisc_mile_indickeyboards_windows_OutputCharToActiveWindow_eraseChars(JNIEnv *env, jobject obj, jint count)
+{
+
+if (count <= 0)
+	return;
+
+// A down and an up for every backspace, sent in one go.
+INPUT *Inputs = new INPUT[2 * count];
+ZeroMemory(Inputs, 2 * count * sizeof(INPUT));
+
+for (int i = 0; i < count; i++) {
+	Inputs[2 * i].type = INPUT_KEYBOARD;
+	Inputs[2 * i].ki.wVk = VK_BACK;
+
+	Inputs[2 * i + 1].type = INPUT_KEYBOARD;
+	Inputs[2 * i + 1].ki.wVk = VK_BACK;
+	Inputs[2 * i + 1].ki.dwFlags = KEYEVENTF_KEYUP;
+}
+
+::SendInput(2 * count, Inputs, sizeof(INPUT));
+
+delete[] Inputs;
+
+}
+
+JNIEXPORT jlong JNICALL Java_org_iisc_mile_indickeyboards_windows_OutputCharToActiveWindow_foregroundWindow(JNIEnv *env, jobject obj)
+{
+
+return (jlong) (INT_PTR) ::GetForegroundWindow();
+
+}
@@ -0,0 +1,182 @@
+/** ********************************************************************
+ * File:           AbbreviationsTest.java
+ * Description:    Checks the trie of the abbreviations and their expansion
+ * Created:        Mon Oct 19 08:37:03 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that the trie of the <code>Abbreviations</code> finds the phrase
+ * of every abbreviation added to it and of nothing else, that the file is
+ * read as documented, and that a session puts the phrase of the keys of a
+ * word followed by a space, and only then.
+ */
+final class AbbreviationsTest {
+
+	/**
+	 * Random abbreviations added to a trie.
+	 */
+	static final int RANDOM = 2000;
+
+	private AbbreviationsTest() {
+	}
+
+	static void run() throws IOException {
+		trie();
+		File directory = Files.temporaryDirectory();
+		try {
+			load(directory);
+			expand(directory);
+		} finally {
+			Abbreviations.load(new File(directory, "none"));
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Random keys, added in any order, each lead to their phrase; the keys
+	 * on the way to them and the keys going on after them lead to none.
+	 */
+	static void trie() {
+		Random random = new Random(49);
+		Abbreviations.Node root = new Abbreviations.Node();
+		Map<String, String> added = new HashMap<String, String>();
+		for (int i = 0; i < RANDOM; i++) {
+			StringBuilder keys = new StringBuilder();
+			int length = 1 + random.nextInt(6);
+			for (int j = 0; j < length; j++) {
+				keys.append((char) ('!' + random.nextInt(94)));
+			}
+			String phrase = "phrase " + i;
+			Abbreviations.add(root, keys.toString(), phrase);
+			added.put(keys.toString(), phrase);
+		}
+		for (Map.Entry<String, String> entry : added.entrySet()) {
+			String keys = entry.getKey();
+			Abbreviations.Node node = root.next(keys);
+			Check.isTrue("node of " + Check.describe(keys), node != null);
+			if (node == null) {
+				continue;
+			}
+			Check.equal("phrase of " + Check.describe(keys), entry.getValue(),
+					node.phrase);
+			Abbreviations.Node byKey = root;
+			for (int i = 0; i < keys.length(); i++) {
+				Check.isTrue("node of " + Check.describe(keys) + " by key "
+						+ i, byKey != null);
+				String prefix = keys.substring(0, i);
+				if (byKey != null && !added.containsKey(prefix)) {
+					Check.equal("phrase of " + Check.describe(prefix), null,
+							byKey.phrase);
+				}
+				byKey = byKey == null ? null : byKey.next(keys.charAt(i));
+			}
+			Check.isTrue("same node by key", byKey == node);
+			Check.isTrue("no node after " + Check.describe(keys), node
+					.next(' ') == null);
+		}
+		Check.isTrue("no node of a space", root.next(" ") == null);
+	}
+
+	static void write(File directory, String text) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(new File(
+				directory, Abbreviations.FILE)), "UTF-8");
+		try {
+			out.write(text);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Comments, blank lines and lines without a phrase are skipped, a
+	 * phrase may hold spaces, and a later phrase of an abbreviation replaces
+	 * an earlier one. A missing file, or one with no abbreviations, leaves
+	 * none.
+	 */
+	static void load(File directory) throws IOException {
+		write(directory, "\uFEFFaddr\tIndian Institute of Science, Bangalore\n"
+				+ "# ty comment\n\n  \t\nnophrase\n   iisc    IISc  \n"
+				+ "ty first\r\nty\t\u0C95\u0CA8\u0CCD\u0CA8\u0CA1\n");
+		Abbreviations.load(directory);
+		Abbreviations.Node root = Abbreviations.root();
+		Check.isTrue("abbreviations read", root != null);
+		if (root == null) {
+			return;
+		}
+		Check.equal("phrase with spaces after a byte order mark",
+				"Indian Institute of Science, Bangalore", root.next("addr").phrase);
+		Check.equal("phrase trimmed", "IISc", root.next("iisc").phrase);
+		Check.equal("later phrase", "\u0C95\u0CA8\u0CCD\u0CA8\u0CA1", root
+				.next("ty").phrase);
+		Check.isTrue("no phrase", root.next("nophrase") == null
+				|| root.next("nophrase").phrase == null);
+		Check.isTrue("comment", root.next("#") == null);
+
+		write(directory, "# nothing\n\nnophrase\n");
+		Abbreviations.load(directory);
+		Check.isTrue("none in the file", Abbreviations.root() == null);
+		Abbreviations.load(new File(directory, "none"));
+		Check.isTrue("no file", Abbreviations.root() == null);
+	}
+
+	/**
+	 * A session puts the phrase in place of the keys of an abbreviation
+	 * when a space follows them, in a phonetic layout as in an Inscript
+	 * one; not for a part of the keys, or more keys, or keys a backspace
+	 * has gone back into, nor when the key has already been echoed.
+	 */
+	static void expand(File directory) throws IOException {
+		write(directory, "addr\tIISc\nka\t\u0C95\u0CA8\u0CCD\u0CA8\u0CA1\n");
+		Abbreviations.load(directory);
+		Layout phonetic = Layout.load("kan_phonetic.xml");
+		Layout inscript = Layout.load("kan_inscript.xml");
+		Check.equal("phonetic", "IISc ", SessionTest.type(phonetic, "a", "d",
+				"d", "r", " "));
+		Check.equal("in the script", "\u0C95\u0CA8\u0CCD\u0CA8\u0CA1 ",
+				SessionTest.type(phonetic, "k", "a", " "));
+		Check.equal("inscript", "IISc ", SessionTest.type(inscript, "a", "d",
+				"d", "r", " "));
+		Check.equal("after a word", SessionTest.type(phonetic, "k", "a", " ")
+				+ "IISc ", SessionTest.type(phonetic, "k", "a", " ", "a",
+				"d", "d", "r", " "));
+		String[][] notExpanded = { { "a", "d", "d", " " },
+				{ "a", "d", "d", "r", "r", " " },
+				{ "a", "d", "d", "x", "\b", "r", " " },
+				{ "x", "a", "d", "d", "r", " " } };
+		for (String[] keys : notExpanded) {
+			Check.isTrue("not expanded " + Arrays.toString(keys), SessionTest
+					.type(phonetic, keys).indexOf("IISc") < 0);
+		}
+		BatchTransliteratorTest.EchoOutput echo = new BatchTransliteratorTest.EchoOutput();
+		Session session = new Session(echo, false);
+		for (String key : new String[] { "a", "d", "d", "r", " " }) {
+			echo.append(key.charAt(0));
+			session.process(key, phonetic);
+		}
+		Check.isTrue("not expanded when echoed", echo.take().indexOf("IISc") < 0);
+	}
+}
@@ -0,0 +1,184 @@
+/** ********************************************************************
+ * File:           AksharasTest.java
+ * Description:    Checks the aksharas split, counted and erased
+ * Created:        Mon Oct 19 09:41:57 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the aksharas of a few words, with and without the joiners; that a
+ * random text is split the same from either end, and counted the same
+ * however it is cut into chunks; and that <code>TextOutput</code> erases
+ * exactly the last akshara of what it holds.
+ */
+final class AksharasTest {
+
+	/**
+	 * Random texts, and their length.
+	 */
+	static final int TEXTS = 200;
+	static final int LENGTH = 300;
+
+	/**
+	 * Characters of the random texts: consonants, vowels, signs, viramas and
+	 * nuktas of Kannada, Devanagari and Tamil, the joiners, and some of
+	 * other scripts, spaces, punctuation and line ends.
+	 */
+	static final String CHARS = "\u0C95\u0CB7\u0CA8\u0CB0\u0C85\u0CBE\u0CBF"
+			+ "\u0C82\u0CCD\u0CCD\u0CBC\u0915\u0937\u0930\u0906\u093E\u0901"
+			+ "\u094D\u094D\u093C\u0B95\u0BB7\u0BBE\u0BCD\u200D\u200D\u200C"
+			+ "ab1 ,.\r\n\u0964\u0301";
+
+	private AksharasTest() {
+	}
+
+	static void run() {
+		words();
+		Random random = new Random(42);
+		for (int i = 0; i < TEXTS; i++) {
+			String text = random(random);
+			split(text);
+			chunks(text, random);
+		}
+		erase();
+	}
+
+	static String random(Random random) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < LENGTH; i++) {
+			text.append(CHARS.charAt(random.nextInt(CHARS.length())));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the aksharas of a text, split from its start.
+	 */
+	static List<String> aksharas(String text) {
+		List<String> aksharas = new ArrayList<String>();
+		for (int start = 0; start < text.length();) {
+			int end = Aksharas.next(text, start);
+			aksharas.add(text.substring(start, end));
+			start = end;
+		}
+		return aksharas;
+	}
+
+	/**
+	 * A conjunct is one akshara, joined by a virama, or by a virama and a
+	 * ZWJ as a half form; a ZWNJ after the virama, or the Tamil pulli, ends
+	 * it. Spaces and punctuation are not counted.
+	 */
+	static void words() {
+		String[][] words = {
+				{ "\u0CA8\u0CAE\u0CB8\u0CCD\u0C95\u0CBE\u0CB0",
+						"[\u0CA8, \u0CAE, \u0CB8\u0CCD\u0C95\u0CBE, \u0CB0]" },
+				{ "\u0CB8\u0CCD\u200C\u0C95\u0CBE",
+						"[\u0CB8\u0CCD\u200C, \u0C95\u0CBE]" },
+				{ "\u0915\u094D\u200D\u0937", "[\u0915\u094D\u200D\u0937]" },
+				{ "\u0915\u093C\u094D\u0937\u093F",
+						"[\u0915\u093C\u094D\u0937\u093F]" },
+				{ "\u0B95\u0BCD\u0BB7", "[\u0B95\u0BCD, \u0BB7]" },
+				{ "\u0906\u0901 \u0964", "[\u0906\u0901,  , \u0964]" },
+				{ "a\u0301\r\n", "[a\u0301, \r\n]" } };
+		long[] counts = { 4, 2, 1, 1, 2, 1, 1 };
+		for (int i = 0; i < words.length; i++) {
+			String word = words[i][0];
+			Check.equal("aksharas of " + Check.describe(word), words[i][1],
+					aksharas(word).toString());
+			Check.equal("count of " + Check.describe(word), counts[i],
+					Aksharas.count(word));
+		}
+	}
+
+	/**
+	 * The aksharas found going back from the end are those found going on
+	 * from the start.
+	 */
+	static void split(String text) {
+		List<String> forwards = aksharas(text);
+		List<String> backwards = new ArrayList<String>();
+		for (int end = text.length(); end > 0;) {
+			int start = Aksharas.previous(text, end);
+			backwards.add(0, text.substring(start, end));
+			end = start;
+		}
+		Check.equal("split backwards " + Check.describe(text), forwards,
+				backwards);
+	}
+
+	/**
+	 * The text counted in random chunks, as arrays and as sequences, has the
+	 * words, aksharas and chars of the text counted at once.
+	 */
+	static void chunks(String text, Random random) {
+		Aksharas.Counter whole = new Aksharas.Counter();
+		whole.add(text);
+		Check.equal("aksharas " + Check.describe(text), Aksharas.count(text),
+				whole.getAksharas());
+		Aksharas.Counter chunked = new Aksharas.Counter();
+		char[] chars = text.toCharArray();
+		for (int start = 0; start < chars.length;) {
+			int length = Math.min(chars.length - start, random.nextInt(5));
+			if (random.nextBoolean()) {
+				chunked.add(chars, start, length);
+			} else {
+				chunked.add(text.substring(start, start + length));
+			}
+			start += length;
+		}
+		String split = "in chunks " + Check.describe(text);
+		Check.equal("aksharas " + split, whole.getAksharas(), chunked
+				.getAksharas());
+		Check.equal("words " + split, whole.getWords(), chunked.getWords());
+		Check.equal("chars " + split, (long) text.length(), chunked
+				.getChars());
+	}
+
+	/**
+	 * Erasing an akshara leaves what was before the last one, and returns
+	 * the code points erased.
+	 */
+	static void erase() {
+		String[][] erased = {
+				{ "\u0C95", "\u0CA8\u0CCD\u0CA8" },
+				{ "\u0C95", "\u0C95\u0CCD\u200D\u0CB7" },
+				{ "\u0C95\u0CCD\u200C", "\u0CB7" },
+				{ "\u0C95", "\u0C95\u0CCD\u200C" },
+				{ "\u0C95", "\u0C95\u0CCD\u200D" },
+				{ "\u0905", "\u0915\u093C\u094D" },
+				{ "\u0B95\u0BCD", "\u0BB7" },
+				{ "\u0C95 ", "\u0C86\u0C82" },
+				{ "a", "\uD83D\uDE00" },
+				{ "ab", "\r\n" },
+				{ "", "\u0C95\u0CBF" } };
+		TextOutput output = new TextOutput();
+		for (String[] text : erased) {
+			String all = text[0] + text[1];
+			output.append(all);
+			int count = output.eraseAkshara();
+			Check.equal("erased from " + Check.describe(all), text[0], output
+					.take());
+			Check.equal("code points erased from " + Check.describe(all),
+					text[1].codePointCount(0, text[1].length()), count);
+		}
+		Check.equal("nothing to erase", 0, output.eraseAkshara());
+	}
+}
@@ -0,0 +1,127 @@
+/** ********************************************************************
+ * File:           AllTests.java
+ * Description:    Runs the tests
+ * Created:        Mon Oct 19 06:36:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * Runs the tests, from the directory of the build file so that the layouts
+ * are found in <em>kblayouts</em>, and exits with 1 if any check failed:
+ *
+ * <pre>
+ * ant -f build-linux-x86.xml test
+ * </pre>
+ */
+public class AllTests {
+
+	public static void main(String[] args) {
+		run("BatchTransliteratorTest", new Test() {
+			public void run() throws Exception {
+				BatchTransliteratorTest.run();
+			}
+		});
+		run("SessionTest", new Test() {
+			public void run() throws Exception {
+				SessionTest.run();
+			}
+		});
+		run("IndicCharsetsTest", new Test() {
+			public void run() throws Exception {
+				IndicCharsetsTest.run();
+			}
+		});
+		run("ReverseTransliteratorTest", new Test() {
+			public void run() throws Exception {
+				ReverseTransliteratorTest.run();
+			}
+		});
+		run("UserDictionaryTest", new Test() {
+			public void run() throws Exception {
+				UserDictionaryTest.run();
+			}
+		});
+		run("WordCacheTest", new Test() {
+			public void run() throws Exception {
+				WordCacheTest.run();
+			}
+		});
+		run("DictionaryBuilderTest", new Test() {
+			public void run() throws Exception {
+				DictionaryBuilderTest.run();
+			}
+		});
+		run("SpellingCorrectorTest", new Test() {
+			public void run() throws Exception {
+				SpellingCorrectorTest.run();
+			}
+		});
+		run("LatticeDecoderTest", new Test() {
+			public void run() throws Exception {
+				LatticeDecoderTest.run();
+			}
+		});
+		run("AbbreviationsTest", new Test() {
+			public void run() throws Exception {
+				AbbreviationsTest.run();
+			}
+		});
+		run("EnglishFilterTest", new Test() {
+			public void run() throws Exception {
+				EnglishFilterTest.run();
+			}
+		});
+		run("TimerWheelTest", new Test() {
+			public void run() throws Exception {
+				TimerWheelTest.run();
+			}
+		});
+		run("TransliterationServerTest", new Test() {
+			public void run() throws Exception {
+				TransliterationServerTest.run();
+			}
+		});
+		run("ScriptConverterTest", new Test() {
+			public void run() throws Exception {
+				ScriptConverterTest.run();
+			}
+		});
+		run("AksharasTest", new Test() {
+			public void run() throws Exception {
+				AksharasTest.run();
+			}
+		});
+		System.out.println(Check.checks() + " checks, " + Check.failures()
+				+ " failed");
+		System.exit(Check.failures() == 0 ? 0 : 1);
+	}
+
+	/**
+	 * A test class, run by its static run().
+	 */
+	interface Test {
+		void run() throws Exception;
+	}
+
+	private static void run(String name, Test test) {
+		System.out.println("Running " + name);
+		try {
+			test.run();
+		} catch (Throwable t) {
+			Check.thrown(name, t);
+		}
+	}
+}
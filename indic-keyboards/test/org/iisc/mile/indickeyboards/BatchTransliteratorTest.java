@@ -0,0 +1,238 @@
+/** ********************************************************************
+ * File:           BatchTransliteratorTest.java
+ * Description:    Checks that batch output is that of typing
+ * Created:        Mon Oct 19 06:36:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Types the same keys with every layout of <em>kblayouts</em> the way the
+ * key monitor does, with each key echoed to the window before the parsers
+ * see it, and through the <code>Transliterator</code> of the batch
+ * converter and the server, with and without its word cache, and checks
+ * that the text comes out the same. Then checks that the
+ * <code>MappedTransliterator</code> puts out a file as one
+ * <code>Transliterator</code> does, whether it is in one slice or many.
+ */
+final class BatchTransliteratorTest {
+
+	/**
+	 * Lines of keys typed with each layout.
+	 */
+	static final int LINES = 400;
+
+	/**
+	 * The output of the key monitor in the shared mode: the key typed has
+	 * reached the window before the parsers delete it.
+	 */
+	static final class EchoOutput extends TextOutput {
+		public int echoLength() {
+			return 1;
+		}
+	}
+
+	private BatchTransliteratorTest() {
+	}
+
+	static void run() throws IOException {
+		String[] names = new File(System.getProperty("user.dir"), "kblayouts")
+				.list();
+		Check.isTrue("kblayouts found", names != null && names.length > 0);
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			if (name.endsWith(".xml")) {
+				check(Layout.load(name));
+			}
+		}
+		File directory = Files.temporaryDirectory();
+		try {
+			mapped(Layout.load("kan_phonetic.xml"), directory);
+			mapped(Layout.load("hin_inscript.xml"), directory);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Types lines of keys of a layout, with spaces and backspaces.
+	 */
+	static String[] lines(Layout layout, long seed) {
+		StringBuilder keys = new StringBuilder();
+		for (char c = '!'; c < 127; c++) {
+			if (layout.lookup(String.valueOf(c)) != null) {
+				keys.append(c);
+			}
+		}
+		Random random = new Random(seed);
+		String[] lines = new String[LINES];
+		/*
+		 * Every key once, then each key after each of a few others.
+		 */
+		lines[0] = keys.toString();
+		for (int i = 1; i < lines.length; i++) {
+			StringBuilder line = new StringBuilder();
+			int length = 1 + random.nextInt(16);
+			for (int j = 0; j < length; j++) {
+				int kind = random.nextInt(20);
+				if (kind == 0) {
+					line.append(' ');
+				} else if (kind == 1) {
+					line.append('\b');
+				} else if (keys.length() > 0) {
+					line.append(keys.charAt(random.nextInt(keys.length())));
+				}
+			}
+			lines[i] = line.toString();
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns the text of a line typed as the key monitor types it.
+	 */
+	static String typed(Layout layout, String line) {
+		EchoOutput output = new EchoOutput();
+		Session session = new Session(output, false);
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\b') {
+				output.erase(1);
+			} else {
+				output.append(c);
+			}
+			session.process(String.valueOf(c), layout);
+		}
+		return output.take();
+	}
+
+	static void check(Layout layout) {
+		String[] lines = lines(layout, layout.getName().hashCode());
+		StringBuilder text = new StringBuilder();
+		for (String line : lines) {
+			text.append(line).append('\n');
+		}
+		String[] cached = convert(new Transliterator(layout, new WordCache(1 << 20)),
+				text);
+		String[] uncached = convert(new Transliterator(layout, null), text);
+		for (int i = 0; i < lines.length; i++) {
+			String expected = typed(layout, lines[i]);
+			String keys = layout.getName() + " " + Check.describe(lines[i]);
+			Check.equal(keys + " in batch", expected, uncached[i]);
+			Check.equal(keys + " from the word cache", expected, cached[i]);
+		}
+	}
+
+	/**
+	 * Slices of the files converted by the <code>MappedTransliterator</code>
+	 * in <code>mapped()</code>, in bytes.
+	 */
+	static final int SLICE = 1024;
+
+	/**
+	 * A file shorter than a slice and without a newline, an empty one, one
+	 * of many slices with Unicode among the keys, and one with a line
+	 * longer than a slice, come out of the <code>MappedTransliterator</code>
+	 * as out of one <code>Transliterator</code>, with as many chars counted.
+	 */
+	static void mapped(Layout layout, File directory) throws IOException {
+		StringBuilder many = new StringBuilder();
+		String[] lines = lines(layout, 35);
+		for (int i = 0; many.length() < 40 * SLICE; i++) {
+			many.append(lines[i % lines.length]);
+			many.append(i % 7 == 0 ? "\u0C95\u0CA8\u0CCD\u0CA8\u0CA1 " : "");
+			many.append(i % 5 == 0 ? "\r\n" : "\n");
+		}
+		StringBuilder longLine = new StringBuilder("start\n");
+		while (longLine.length() < 3 * SLICE) {
+			longLine.append(lines[longLine.length() % lines.length]);
+		}
+		longLine.append("\nend");
+		String[] texts = { "namaskaara kannada", "", many.toString(),
+				longLine.toString() };
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int i = 0; i < texts.length; i++) {
+				File file = new File(directory, "mapped" + i + ".txt");
+				File target = new File(directory, "mapped" + i + ".out");
+				write(file, texts[i]);
+				Transliterator transliterator = new Transliterator(layout, null);
+				StringBuilder expected = new StringBuilder();
+				transliterator.write(texts[i], expected);
+				transliterator.finish(expected);
+				long[] counts = MappedTransliterator.convert(file, target,
+						layout, pool, SLICE);
+				String what = layout.getName() + " mapped file " + i;
+				Check.equal(what, expected.toString(), read(target));
+				Check.equal(what + " chars in", transliterator.getCharsIn(),
+						counts[0]);
+				Check.equal(what + " chars out", transliterator.getCharsOut(),
+						counts[1]);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static void write(File file, String text) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	static String read(File file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				bytes.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return bytes.toString("UTF-8");
+	}
+
+	private static String[] convert(Transliterator transliterator,
+			CharSequence text) {
+		StringBuilder out = new StringBuilder();
+		try {
+			transliterator.write(text, out);
+			transliterator.finish(out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toString().split("\n", -1);
+	}
+}
@@ -0,0 +1,96 @@
+/** ********************************************************************
+ * File:           Check.java
+ * Description:    Checks made by the tests
+ * Created:        Mon Oct 19 06:36:44 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+/**
+ * The checks of the tests, which count the failures rather than stop at
+ * the first one. A failure is described on the console, with the text
+ * compared written out in hex, since most of it is Indic.
+ */
+final class Check {
+
+	private static int checks;
+	private static int failures;
+
+	private Check() {
+	}
+
+	/**
+	 * Checks that a value is the one expected.
+	 */
+	static void equal(String what, Object expected, Object actual) {
+		checks++;
+		if (expected == null ? actual == null : expected.equals(actual)) {
+			return;
+		}
+		failures++;
+		System.out.println("FAILED " + what);
+		System.out.println("  expected " + describe(expected));
+		System.out.println("  but was  " + describe(actual));
+	}
+
+	/**
+	 * Checks that a condition holds.
+	 */
+	static void isTrue(String what, boolean condition) {
+		checks++;
+		if (!condition) {
+			failures++;
+			System.out.println("FAILED " + what);
+		}
+	}
+
+	/**
+	 * Counts a test which has thrown.
+	 */
+	static void thrown(String test, Throwable t) {
+		checks++;
+		failures++;
+		System.out.println("FAILED " + test + " threw");
+		t.printStackTrace(System.out);
+	}
+
+	static int checks() {
+		return checks;
+	}
+
+	static int failures() {
+		return failures;
+	}
+
+	/**
+	 * Returns a value with the chars of a text in hex.
+	 */
+	static String describe(Object value) {
+		if (!(value instanceof CharSequence)) {
+			return String.valueOf(value);
+		}
+		CharSequence text = (CharSequence) value;
+		StringBuilder hex = new StringBuilder("\"");
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= ' ' && c < 127) {
+				hex.append(c);
+			} else {
+				hex.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return hex.append('"').toString();
+	}
+}
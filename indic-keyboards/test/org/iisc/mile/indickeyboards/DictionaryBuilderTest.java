@@ -0,0 +1,283 @@
+/** ********************************************************************
+ * File:           DictionaryBuilderTest.java
+ * Description:    Checks the dictionaries written by the dictionary builder
+ * Created:        Mon Oct 19 07:58:05 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Builds a <code>WordDictionary</code> of random words with random weights
+ * and checks that it finds the weight of each word, nothing for the words
+ * left out, and the most frequent completions of prefixes, as found by
+ * going through all the words; that words ending alike share their states;
+ * and that the word lists are read and weighed as documented.
+ */
+final class DictionaryBuilderTest {
+
+	/**
+	 * Random words in the dictionary, and prefixes completed.
+	 */
+	static final int WORDS = 3000;
+	static final int PREFIXES = 300;
+
+	/**
+	 * Kannada letters and signs the random words are made of, and a Latin
+	 * letter with a label of one byte.
+	 */
+	static final String CHARS = "\u0C95\u0C97\u0CA8\u0CAE\u0CB0\u0CBE\u0CBF\u0CCD\u0C85a";
+
+	private DictionaryBuilderTest() {
+	}
+
+	static void run() throws IOException {
+		File directory = Files.temporaryDirectory();
+		try {
+			random(directory);
+			shared(directory);
+			order();
+			corrupt(directory);
+			read(directory);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	static WordDictionary write(DictionaryBuilder builder, File file)
+			throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			Check.equal(file.getName() + " bytes written", (long) builder
+					.finish(out), file.length());
+		} finally {
+			out.close();
+		}
+		return WordDictionary.open(file);
+	}
+
+	static TreeMap<String, Integer> randomWords(Random random, int count) {
+		TreeMap<String, Integer> words = new TreeMap<String, Integer>();
+		while (words.size() < count) {
+			StringBuilder word = new StringBuilder();
+			int length = 1 + random.nextInt(8);
+			for (int i = 0; i < length; i++) {
+				word.append(CHARS.charAt(random.nextInt(CHARS.length())));
+			}
+			words.put(word.toString(), Integer.valueOf(1 + random.nextInt(255)));
+		}
+		return words;
+	}
+
+	/**
+	 * Every word is found with its weight, the prefixes and extensions of
+	 * the words which are not words are not, and the completions of a
+	 * prefix are the words beginning with it of the highest weights.
+	 */
+	static void random(File directory) throws IOException {
+		Random random = new Random(45);
+		TreeMap<String, Integer> words = randomWords(random, WORDS);
+		DictionaryBuilder builder = new DictionaryBuilder();
+		for (Map.Entry<String, Integer> entry : words.entrySet()) {
+			builder.add(entry.getKey(), entry.getValue().intValue());
+		}
+		WordDictionary dictionary = write(builder, new File(directory,
+				"random.dict"));
+		Check.equal("words", WORDS, dictionary.size());
+		for (Map.Entry<String, Integer> entry : words.entrySet()) {
+			String word = entry.getKey();
+			Check.equal("weight of " + Check.describe(word), entry.getValue(),
+					Integer.valueOf(dictionary.weight(word)));
+			for (int i = 0; i < word.length(); i++) {
+				String prefix = word.substring(0, i);
+				if (!words.containsKey(prefix)) {
+					Check.isTrue("not a word " + Check.describe(prefix),
+							!dictionary.contains(prefix));
+				}
+			}
+			if (!words.containsKey(word + "x")) {
+				Check.isTrue("not a word " + Check.describe(word + "x"),
+						!dictionary.contains(word + "x"));
+			}
+		}
+		String[] all = words.keySet().toArray(new String[WORDS]);
+		for (int i = 0; i < PREFIXES; i++) {
+			String word = all[random.nextInt(all.length)];
+			String prefix = word.substring(0, random.nextInt(word.length()));
+			int k = 1 + random.nextInt(8);
+			complete(dictionary, words, prefix, k);
+		}
+		Check.equal("no completions", 0, dictionary.complete("x", 5).length);
+	}
+
+	/**
+	 * Checks the completions of a prefix against the weights of all the
+	 * words beginning with it. Words of the same weight may come in any
+	 * order.
+	 */
+	static void complete(WordDictionary dictionary,
+			TreeMap<String, Integer> words, String prefix, int k) {
+		List<Integer> weights = new ArrayList<Integer>();
+		for (Map.Entry<String, Integer> entry : words.tailMap(prefix)
+				.entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			weights.add(entry.getValue());
+		}
+		Integer[] expected = weights.toArray(new Integer[weights.size()]);
+		Arrays.sort(expected, Collections.reverseOrder());
+		String[] found = dictionary.complete(prefix, k);
+		String what = "completions of " + Check.describe(prefix) + " " + k;
+		Check.equal(what, Integer.valueOf(Math.min(k, expected.length)),
+				Integer.valueOf(found.length));
+		for (int i = 0; i < found.length && i < expected.length; i++) {
+			Check.isTrue(what + " " + Check.describe(found[i]), found[i]
+					.startsWith(prefix)
+					&& words.containsKey(found[i])
+					&& Arrays.asList(found).indexOf(found[i]) == i);
+			Check.equal(what + " weight " + i, expected[i], words
+					.get(found[i]));
+		}
+	}
+
+	/**
+	 * Words which end alike share the states of their ending, and are all
+	 * found.
+	 */
+	static void shared(File directory) throws IOException {
+		String[] stems = { "kan", "man", "pan", "ran", "tan" };
+		String[] endings = { "nada", "nadiga", "naduga" };
+		DictionaryBuilder builder = new DictionaryBuilder();
+		for (String stem : stems) {
+			for (String ending : endings) {
+				builder.add(stem + ending, 7);
+			}
+		}
+		WordDictionary dictionary = write(builder, new File(directory,
+				"shared.dict"));
+		/*
+		 * The root, and the states after the first char, which all the
+		 * words share: six down to the ending, one where a word ends, and
+		 * one each for "ga" and "a" after "i" and "u" alike.
+		 */
+		Check.equal("states shared", 10, builder.getStates());
+		for (String stem : stems) {
+			for (String ending : endings) {
+				Check.equal("shared " + stem + ending, 7, dictionary
+						.weight(stem + ending));
+			}
+			Check.equal("shared " + stem + "nad", 0, dictionary.weight(stem
+					+ "nad"));
+		}
+		String[] completions = dictionary.complete("kan", 5);
+		Arrays.sort(completions);
+		Check.equal("completed through shared states",
+				"[kannada, kannadiga, kannaduga]", Arrays.toString(completions));
+	}
+
+	/**
+	 * Words added out of order, or twice, are refused.
+	 */
+	static void order() {
+		DictionaryBuilder builder = new DictionaryBuilder();
+		builder.add("b", 1);
+		for (String word : new String[] { "a", "b" }) {
+			try {
+				builder.add(word, 1);
+				Check.isTrue(word + " after b refused", false);
+			} catch (IllegalArgumentException e) {
+				Check.isTrue(word + " after b refused", true);
+			}
+		}
+	}
+
+	/**
+	 * A file which is not a dictionary, or is cut short, is not opened.
+	 */
+	static void corrupt(File directory) throws IOException {
+		DictionaryBuilder builder = new DictionaryBuilder();
+		builder.add("abc", 1);
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		builder.finish(written);
+		byte[] bytes = written.toByteArray();
+		File file = new File(directory, "corrupt.dict");
+		byte[][] corrupted = { Arrays.copyOf(bytes, bytes.length - 1),
+				Arrays.copyOf(bytes, 8), bytes.clone() };
+		corrupted[2][0] ^= 1;
+		for (int i = 0; i < corrupted.length; i++) {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(corrupted[i]);
+			} finally {
+				out.close();
+			}
+			try {
+				WordDictionary.open(file);
+				Check.isTrue("corrupt dictionary " + i + " refused", false);
+			} catch (IOException e) {
+				Check.isTrue("corrupt dictionary " + i + " refused", true);
+			}
+		}
+	}
+
+	/**
+	 * The counts of a list are added up, its comments and blank lines
+	 * skipped, and a word without a count is counted once.
+	 */
+	static void read(File directory) throws IOException {
+		File file = new File(directory, "words.txt");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try {
+			out.write("\uFEFF\u0C95\u0CA8\u0CCD\u0CA8\u0CA1\t10\n"
+					+ "# comment 5\n\n   \nabc 3\nabc\t4\nxyz\nxyz 0\n");
+		} finally {
+			out.close();
+		}
+		Map<String, long[]> counts = new HashMap<String, long[]>();
+		DictionaryBuilder.read(file, counts);
+		DictionaryBuilder.read(file, counts);
+		Check.equal("words read", 3, counts.size());
+		Check.equal("count after a byte order mark", 20L, counts
+				.get("\u0C95\u0CA8\u0CCD\u0CA8\u0CA1")[0]);
+		Check.equal("counts added up", 14L, counts.get("abc")[0]);
+		Check.equal("counted at least once", 4L, counts.get("xyz")[0]);
+
+		Check.equal("weight of the most frequent", 255, DictionaryBuilder
+				.weight(1000, 1000));
+		Check.equal("weight of a word seen once", 1, DictionaryBuilder.weight(
+				1, 1000));
+		Check.equal("weight halfway", 128, DictionaryBuilder.weight(1000,
+				1000000));
+		Check.equal("weight of a single count", 255, DictionaryBuilder
+				.weight(1, 1));
+	}
+}
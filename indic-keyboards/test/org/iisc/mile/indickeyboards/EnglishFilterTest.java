@@ -0,0 +1,226 @@
+/** ********************************************************************
+ * File:           EnglishFilterTest.java
+ * Description:    Checks the Bloom filter of English words
+ * Created:        Mon Oct 19 08:51:40 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes the <code>EnglishFilter</code> of random words and checks that it
+ * holds every one of them, whatever their case and however their keys
+ * come, and few others; that a token of other keys than letters, or
+ * shorter than MIN_LENGTH, or dropped, is not looked up; and that a
+ * session with the filter loaded puts an English word typed with a
+ * phonetic layout as it was typed.
+ */
+final class EnglishFilterTest {
+
+	/**
+	 * Random words in the filter, words looked up which are not, and the
+	 * error rate the filter is written for.
+	 */
+	static final int WORDS = 20000;
+	static final int OTHERS = 20000;
+	static final double ERROR = 0.01;
+
+	private EnglishFilterTest() {
+	}
+
+	static void run() throws IOException {
+		File directory = Files.temporaryDirectory();
+		try {
+			random(directory);
+			tokens(directory);
+			corrupt(directory);
+			session(directory);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	static String randomWord(Random random) {
+		StringBuilder word = new StringBuilder();
+		int length = EnglishFilter.MIN_LENGTH + random.nextInt(8);
+		for (int i = 0; i < length; i++) {
+			word.append((char) ('a' + random.nextInt(26)));
+		}
+		return word.toString();
+	}
+
+	static EnglishFilter.Token token(String keys) {
+		EnglishFilter.Token token = new EnglishFilter.Token();
+		token.add(keys);
+		return token;
+	}
+
+	static boolean contains(EnglishFilter filter, String keys) {
+		return filter.contains(token(keys));
+	}
+
+	static EnglishFilter write(List<String> words, File file)
+			throws IOException {
+		int written = EnglishFilter.write(words, ERROR, file);
+		int expected = 0;
+		for (String word : words) {
+			expected += word.matches("[a-zA-Z]{" + EnglishFilter.MIN_LENGTH
+					+ ",}") ? 1 : 0;
+		}
+		Check.equal(file.getName() + " words written", expected, written);
+		return EnglishFilter.open(file);
+	}
+
+	/**
+	 * Every word is found, in upper case too, and the words which are not
+	 * in the filter pass for English no more than twice as often as the
+	 * filter is written for.
+	 */
+	static void random(File directory) throws IOException {
+		Random random = new Random(50);
+		Set<String> words = new HashSet<String>();
+		while (words.size() < WORDS) {
+			words.add(randomWord(random));
+		}
+		EnglishFilter filter = write(new ArrayList<String>(words), new File(
+				directory, "random.bloom"));
+		for (String word : words) {
+			Check.isTrue("contains " + word, contains(filter, word));
+		}
+		int upper = 0;
+		for (String word : words) {
+			if (upper++ % 100 == 0) {
+				Check.isTrue("contains " + word.toUpperCase(), contains(
+						filter, word.toUpperCase()));
+			}
+		}
+		int passed = 0;
+		int others = 0;
+		while (others < OTHERS) {
+			String word = randomWord(random);
+			if (!words.contains(word)) {
+				others++;
+				passed += contains(filter, word) ? 1 : 0;
+			}
+		}
+		Check.isTrue("words passed " + passed + " of " + OTHERS,
+				passed < 2 * ERROR * OTHERS);
+	}
+
+	/**
+	 * A word hashes the same whether its keys come one at a time or all at
+	 * once, and after a word has been cleared; a word with other keys than
+	 * letters, one too short, or one dropped is not looked up.
+	 */
+	static void tokens(File directory) throws IOException {
+		EnglishFilter filter = write(Arrays.asList("hello", "world", "a",
+				"don't", "x1"), new File(directory, "words.bloom"));
+		EnglishFilter.Token token = new EnglishFilter.Token();
+		token.add("bye");
+		token.clear();
+		for (char c : "HeLLo".toCharArray()) {
+			token.add(String.valueOf(c));
+		}
+		Check.isTrue("keys one at a time", filter.contains(token));
+		Check.equal("keys as typed", "HeLLo", token.text());
+		token.clear();
+		token.add("wor");
+		token.add("ld");
+		Check.isTrue("keys of patterns", filter.contains(token));
+		token.drop();
+		Check.isTrue("dropped", !token.isWord() && !filter.contains(token));
+		token.clear();
+		token.add("world");
+		Check.isTrue("cleared after a drop", filter.contains(token));
+
+		Check.isTrue("not a word", !contains(filter, "hellos"));
+		Check.isTrue("shorter than MIN_LENGTH", !token("a").isWord()
+				&& !contains(filter, "a"));
+		Check.isTrue("not letters", !token("don't").isWord()
+				&& !contains(filter, "don't"));
+		Check.isTrue("not letters after letters", !contains(filter, "hello1"));
+	}
+
+	/**
+	 * A file which is not a filter, or is cut short, is not opened.
+	 */
+	static void corrupt(File directory) throws IOException {
+		File file = new File(directory, "corrupt.bloom");
+		byte[][] corrupted = { new byte[8],
+				{ 0x49, 0x4b, 0x42, 0x31, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 1, 0 },
+				{ 0x49, 0x4b, 0x42, 0x31, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 64 } };
+		for (int i = 0; i < corrupted.length; i++) {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(corrupted[i]);
+			} finally {
+				out.close();
+			}
+			try {
+				EnglishFilter.open(file);
+				Check.isTrue("corrupt filter " + i + " refused", false);
+			} catch (IOException e) {
+				Check.isTrue("corrupt filter " + i + " refused", true);
+			}
+		}
+	}
+
+	/**
+	 * With the filter of the current directory loaded, an English word
+	 * typed with a phonetic layout is put as typed when it ends; not with
+	 * an Inscript layout, nor after a backspace.
+	 */
+	static void session(File directory) throws IOException {
+		File dictionaries = new File(directory, WordDictionary.DIRECTORY);
+		Check.isTrue("dictionaries made", dictionaries.mkdir());
+		write(Arrays.asList("hello", "Mysore"), new File(dictionaries,
+				EnglishFilter.FILE));
+		String userDir = System.getProperty("user.dir");
+		Layout phonetic = Layout.load("kan_phonetic.xml");
+		Layout inscript = Layout.load("kan_inscript.xml");
+		System.setProperty("user.dir", directory.getPath());
+		try {
+			EnglishFilter.load();
+			Check.isTrue("filter loaded", EnglishFilter.shared() != null);
+			Check.equal("English word", "hello ", SessionTest.type(phonetic,
+					"h", "e", "l", "l", "o", " "));
+			Check.equal("English word in capitals", "Mysore ", SessionTest
+					.type(phonetic, "M", "y", "s", "o", "r", "e", " "));
+			Check.isTrue("not English", SessionTest.type(phonetic, "h", "e",
+					"l", "l", " ").indexOf("hell") < 0);
+			Check.isTrue("not English after a backspace", SessionTest.type(
+					phonetic, "h", "e", "l", "l", "o", "o", "\b", " ")
+					.indexOf("hello") < 0);
+			Check.isTrue("not in Inscript", SessionTest.type(inscript, "h",
+					"e", "l", "l", "o", " ").indexOf("hello") < 0);
+			System.setProperty("user.dir", new File(directory, "none")
+					.getPath());
+			EnglishFilter.load();
+			Check.isTrue("no filter", EnglishFilter.shared() == null);
+		} finally {
+			System.setProperty("user.dir", userDir);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/** ********************************************************************
+ * File:           Files.java
+ * Description:    Temporary files of the tests
+ * Created:        Mon Oct 19 06:41:18 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The temporary files and directories of the tests.
+ */
+final class Files {
+
+	private Files() {
+	}
+
+	/**
+	 * Creates an empty directory, to be deleted with delete().
+	 */
+	static File temporaryDirectory() throws IOException {
+		File file = File.createTempFile("indic-keyboards", "");
+		if (!file.delete() || !file.mkdir()) {
+			throw new IOException("Can not create " + file);
+		}
+		return file;
+	}
+
+	/**
+	 * Deletes a file, or a directory and all that is in it.
+	 */
+	static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,192 @@
+/** ********************************************************************
+ * File:           IndicCharsetsTest.java
+ * Description:    Round trips through the ISCII and typewriter charsets
+ * Created:        Mon Oct 19 06:58:40 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.Random;
+
+/**
+ * Checks that the text of every character of the ISCII charsets, and of
+ * every key of the typewriter codes, comes back the same once encoded and
+ * decoded, and that bytes given a few at a time decode as they do all at
+ * once.
+ */
+final class IndicCharsetsTest {
+
+	/**
+	 * Random texts decoded with each charset.
+	 */
+	static final int TEXTS = 200;
+
+	private IndicCharsetsTest() {
+	}
+
+	static void run() throws IOException {
+		for (String script : IsciiCharset.SCRIPTS) {
+			iscii(IndicCharsets.forName("x-iscii-" + script));
+		}
+		isciiScripts();
+		for (String layout : IndicCharsets.TYPEWRITER_LAYOUTS) {
+			String name = "x-"
+					+ layout.substring(0, layout.indexOf("_inscript"))
+							.replace('_', '-');
+			typewriter(IndicCharsets.forName(name));
+		}
+	}
+
+	static String decode(Charset charset, byte[] bytes)
+			throws CharacterCodingException {
+		return charset.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+	}
+
+	static byte[] encode(Charset charset, String text)
+			throws CharacterCodingException {
+		ByteBuffer bytes = charset.newEncoder().encode(CharBuffer.wrap(text));
+		byte[] array = new byte[bytes.remaining()];
+		bytes.get(array);
+		return array;
+	}
+
+	/**
+	 * Decodes bytes handed to the decoder one at a time, into a buffer of
+	 * the fewest chars a byte may need.
+	 */
+	static String decodeByBytes(Charset charset, byte[] bytes) {
+		CharsetDecoder decoder = charset.newDecoder();
+		StringBuilder text = new StringBuilder();
+		CharBuffer out = CharBuffer.allocate((int) Math.ceil(decoder
+				.maxCharsPerByte()));
+		ByteBuffer in = ByteBuffer.allocate(1);
+		for (int i = 0; i <= bytes.length; i++) {
+			in.clear();
+			if (i < bytes.length) {
+				in.put(bytes[i]);
+			}
+			in.flip();
+			CoderResult result;
+			do {
+				result = decoder.decode(in, out, i == bytes.length);
+				out.flip();
+				text.append(out);
+				out.clear();
+			} while (result.isOverflow());
+		}
+		CoderResult result;
+		do {
+			result = decoder.flush(out);
+			out.flip();
+			text.append(out);
+			out.clear();
+		} while (result.isOverflow());
+		return text.toString();
+	}
+
+	/**
+	 * Each byte from 0xA0 on, on its own and with a nukta after it, and the
+	 * halant with a halant or nukta after it.
+	 */
+	static void iscii(Charset charset) throws CharacterCodingException {
+		StringBuilder text = new StringBuilder();
+		for (int b = 0xA1; b < 0xFB; b++) {
+			if (b == 0xEF || b == 0xF0) {
+				continue;
+			}
+			for (int nukta = 0; nukta < 2; nukta++) {
+				byte[] bytes = nukta == 0 ? new byte[] { (byte) b }
+						: new byte[] { (byte) b, (byte) 0xE9 };
+				String chars;
+				try {
+					chars = decode(charset, bytes);
+				} catch (CharacterCodingException e) {
+					continue;
+				}
+				if (chars.indexOf('\uFFFD') < 0) {
+					text.append(chars).append(' ');
+				}
+			}
+		}
+		text.append("\u094D\u200C \u094D\u200D ");
+		String typed = text.toString();
+		if (!charset.name().endsWith("-de")) {
+			typed = shift(typed, charset);
+		}
+		String name = charset.name();
+		Check.isTrue(name + " decodes letters", typed.length() > 100);
+		byte[] bytes = encode(charset, typed);
+		Check.equal(name + " round trip", typed, decode(charset, bytes));
+		Check.equal(name + " byte by byte", typed, decodeByBytes(charset,
+				bytes));
+	}
+
+	/**
+	 * Moves the Devanagari halant and joiners of the test text to the block
+	 * of a charset, as its decoder gives them.
+	 */
+	private static String shift(String text, Charset charset)
+			throws CharacterCodingException {
+		String halant = decode(charset, new byte[] { (byte) 0xE8, ' ' })
+				.substring(0, 1);
+		return text.replace("\u094D", halant);
+	}
+
+	/**
+	 * Text of several scripts goes through one charset, switching with ATR.
+	 */
+	static void isciiScripts() throws CharacterCodingException {
+		Charset kannada = IndicCharsets.forName("x-iscii-ka");
+		String text = "\u0C95\u0CA8\u0CCD\u0CA8\u0CA1 \u0939\u093F\u0928\u094D"
+				+ "\u0926\u0940 \u0B95\u0BC1 abc \u0C95";
+		byte[] bytes = encode(kannada, text);
+		Check.equal("x-iscii-ka across scripts", text, decode(kannada, bytes));
+		Check.equal("x-iscii-ka across scripts byte by byte", text,
+				decodeByBytes(kannada, bytes));
+	}
+
+	/**
+	 * What each key puts, and random runs of keys, come back as they were
+	 * decoded.
+	 */
+	static void typewriter(Charset charset) throws IOException {
+		String name = charset.name();
+		Random random = new Random(name.hashCode());
+		for (int b = 0; b < 128; b++) {
+			byte[] key = { (byte) b };
+			String chars = decode(charset, key);
+			Check.equal(name + " key " + b, chars, decode(charset, encode(
+					charset, chars)));
+		}
+		for (int i = 0; i < TEXTS; i++) {
+			byte[] bytes = new byte[1 + random.nextInt(24)];
+			for (int j = 0; j < bytes.length; j++) {
+				bytes[j] = (byte) (' ' + random.nextInt(95));
+			}
+			String chars = decode(charset, bytes);
+			Check.equal(name + " " + Check.describe(new String(bytes, "US-ASCII")),
+					chars, decode(charset, encode(charset, chars)));
+			Check.equal(name + " byte by byte", chars, decodeByBytes(charset,
+					bytes));
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/** ********************************************************************
+ * File:           LatticeDecoderTest.java
+ * Description:    Checks the language model and the renderings decoded
+ * Created:        Mon Oct 19 08:24:18 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes the <code>LanguageModel</code> of a few Kannada words as the
+ * <code>DictionaryBuilder</code> does, and checks the cost of each n-gram
+ * against its counts, and the backoff for the n-grams not seen. Then types
+ * words with kan_phonetic.xml, with the keys users type for both NA and
+ * NNA or LA and LLA, and checks that the <code>LatticeDecoder</code>
+ * renders them as the words of the model, and as typed when the model
+ * tells nothing.
+ */
+final class LatticeDecoderTest {
+
+	/**
+	 * The keys of the words of the model, and their counts.
+	 */
+	static final String[] WORDS = { "kaNNu", "haalu", "baaLe", "maNi",
+			"mane", "kaalu", "kaLLa" };
+	static final long[] COUNTS = { 50, 40, 30, 20, 60, 10, 5 };
+	/**
+	 * Keys timed, after as many to warm up, and the most the 99th percentile
+	 * of a key may take, in nanoseconds.
+	 */
+	static final int TIMED = 20000;
+	static final long BUDGET = 1000000;
+
+	private LatticeDecoderTest() {
+	}
+
+	static void run() throws IOException {
+		Layout layout = Layout.load("kan_phonetic.xml");
+		Check.equal("alternatives of n", "[N]", Arrays
+				.toString(LatticeDecoder.alternatives(layout)['n']));
+		Check.equal("alternatives of l", "[L]", Arrays
+				.toString(LatticeDecoder.alternatives(layout)['l']));
+		Check.equal("no alternatives of k", null, LatticeDecoder
+				.alternatives(layout)['k']);
+		String[] words = new String[WORDS.length];
+		for (int i = 0; i < WORDS.length; i++) {
+			words[i] = transliterate(layout, WORDS[i]);
+		}
+		File directory = Files.temporaryDirectory();
+		try {
+			LanguageModel model = write(new File(directory, "words.lm"), words,
+					COUNTS);
+			costs(model, words, COUNTS);
+			decode(layout, model, words);
+			LanguageModel little = write(new File(directory, "little.lm"),
+					new String[] { words[0].substring(0, 1) },
+					new long[] { 1 });
+			Check.equal("typed when the model tells nothing", transliterate(
+					layout, "nala"), type(layout, little, "nala"));
+			tooLong(layout, model);
+			timing(layout, model);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	static String transliterate(Layout layout, String keys)
+			throws IOException {
+		Transliterator transliterator = new Transliterator(layout, null);
+		StringBuilder text = new StringBuilder();
+		transliterator.write(keys, text);
+		transliterator.finish(text);
+		return text.toString();
+	}
+
+	static LanguageModel write(File file, String[] words, long[] counts)
+			throws IOException {
+		String[] sorted = words.clone();
+		long[] sortedCounts = new long[counts.length];
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			sortedCounts[i] = counts[Arrays.asList(words).indexOf(sorted[i])];
+		}
+		int ngrams = DictionaryBuilder.writeModel(sorted, sortedCounts, file);
+		LanguageModel model = LanguageModel.open(file);
+		Check.equal("n-grams", ngrams, model.size());
+		return model;
+	}
+
+	private static void count(Map<String, long[]> counts, String key,
+			long count) {
+		long[] total = counts.get(key);
+		if (total == null) {
+			counts.put(key, new long[] { count });
+		} else {
+			total[0] += count;
+		}
+	}
+
+	/**
+	 * Every n-gram of the words costs what its counts say, and a char after
+	 * chars it never follows costs what it does after fewer, and more.
+	 */
+	static void costs(LanguageModel model, String[] words, long[] counts) {
+		Map<String, long[]> ngrams = new HashMap<String, long[]>();
+		Map<String, long[]> contexts = new HashMap<String, long[]>();
+		for (int i = 0; i < words.length; i++) {
+			String padded = "  " + words[i] + " ";
+			for (int j = 2; j < padded.length(); j++) {
+				for (int order = 1; order <= 3; order++) {
+					count(ngrams, padded.substring(j + 1 - order, j + 1),
+							counts[i]);
+					count(contexts, padded.substring(j + 1 - order, j) + "|",
+							counts[i]);
+				}
+			}
+		}
+		Check.equal("n-grams counted", ngrams.size(), model.size());
+		for (Map.Entry<String, long[]> entry : ngrams.entrySet()) {
+			String ngram = entry.getKey();
+			double probability = (double) entry.getValue()[0]
+					/ contexts.get(ngram.substring(0, ngram.length() - 1)
+							+ "|")[0];
+			String padded = "  " + ngram;
+			int n = padded.length();
+			int cost = LanguageModel.quantise(probability);
+			if (ngram.length() == 3) {
+				Check.equal("cost of " + Check.describe(ngram), cost, model
+						.cost(padded.charAt(n - 3), padded.charAt(n - 2),
+								padded.charAt(n - 1)));
+			} else if (!ngrams.containsKey("\uFFFF" + ngram)) {
+				/*
+				 * U+FFFF never comes before, so the lookup backs off.
+				 */
+				char b = ngram.length() == 2 ? ngram.charAt(0) : '\uFFFF';
+				Check.equal("cost of " + Check.describe(ngram) + " backed off",
+						cost + (3 - ngram.length()) * LanguageModel.BACKOFF,
+						model.cost('\uFFFF', b, ngram.charAt(ngram.length() - 1)));
+			}
+		}
+		Check.equal("cost of a char not seen", LanguageModel.UNSEEN, model
+				.cost('a', 'b', '\uFFFE'));
+	}
+
+	/**
+	 * Types keys into a session as the key monitor does, decoding each, and
+	 * returns the rendering decoded after the last.
+	 */
+	static String type(Layout layout, LanguageModel model, String keys) {
+		TextOutput output = new TextOutput();
+		Session session = new Session(output, false);
+		LatticeDecoder decoder = new LatticeDecoder();
+		decoder.start(session, "", layout, model);
+		String best = null;
+		for (int i = 0; i < keys.length(); i++) {
+			String key = String.valueOf(keys.charAt(i));
+			session.process(key, layout);
+			best = decoder.key(key);
+			Check.isTrue(Check.describe(keys) + " decoded as long as typed "
+					+ i, best != null && best.length() == output.length());
+			if (best == null) {
+				return null;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The words of the model typed with "n" for NNA and "l" for LLA come out
+	 * as the model has them.
+	 */
+	static void decode(Layout layout, LanguageModel model, String[] words) {
+		for (int i = 0; i < WORDS.length; i++) {
+			String keys = WORDS[i].replace('N', 'n').replace('L', 'l');
+			Check.equal("decoded " + keys, words[i], type(layout, model, keys));
+		}
+	}
+
+	/**
+	 * A word longer than MAX_LENGTH stops the decoder.
+	 */
+	static void tooLong(Layout layout, LanguageModel model) {
+		Session session = new Session(new TextOutput(), false);
+		LatticeDecoder decoder = new LatticeDecoder();
+		decoder.start(session, "", layout, model);
+		String best = "";
+		int keys = 0;
+		while (best != null && keys < 4 * LatticeDecoder.MAX_LENGTH) {
+			session.process("k", layout);
+			best = decoder.key("k");
+			keys++;
+		}
+		Check.isTrue("long word not decoded", best == null
+				&& !decoder.isStarted());
+	}
+
+	/**
+	 * A key decoded takes less than BUDGET in 99 cases of 100, in random
+	 * words of the keys which have alternatives, which keep the most
+	 * renderings.
+	 */
+	static void timing(Layout layout, LanguageModel model) {
+		Random random = new Random(48);
+		String keys = "nlNLkaiu";
+		long[] times = new long[TIMED];
+		Session session = new Session(new TextOutput(), false);
+		LatticeDecoder decoder = new LatticeDecoder();
+		int word = 0;
+		for (int i = -TIMED; i < TIMED; i++) {
+			if (word == 0) {
+				session.reset();
+				decoder.start(session, "", layout, model);
+				word = 1 + random.nextInt(LatticeDecoder.MAX_LENGTH / 3);
+			}
+			String key = String.valueOf(keys.charAt(random.nextInt(keys
+					.length())));
+			session.process(key, layout);
+			long start = System.nanoTime();
+			decoder.key(key);
+			if (i >= 0) {
+				times[i] = System.nanoTime() - start;
+			}
+			word--;
+		}
+		Arrays.sort(times);
+		long p99 = times[TIMED * 99 / 100];
+		Check.isTrue("99th percentile of a key " + p99 / 1000 + " us",
+				p99 < BUDGET);
+	}
+}
@@ -0,0 +1,125 @@
+/** ********************************************************************
+ * File:           ReverseTransliteratorTest.java
+ * Description:    Checks that the keys found type the text back
+ * Created:        Mon Oct 19 07:08:12 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Types lines of keys with every layout of <em>kblayouts</em>, finds the
+ * keys of the text with the <code>ReverseTransliterator</code>, by the
+ * longest match and by the fewest keys, and checks that those keys type
+ * the same text. Random keys may leave a vowel sign with no consonant,
+ * which no key puts and which is copied as it is; the words of each
+ * language have keys for all their chars. The Hindi words are typed by
+ * the Remington layout too, which has some consonants only as half
+ * forms.
+ */
+final class ReverseTransliteratorTest {
+
+	/**
+	 * Lines of keys typed with each layout.
+	 */
+	static final int LINES = 100;
+
+	/**
+	 * Words of the language of each layout, by the beginning of its name.
+	 */
+	static final String[][] WORDS = {
+			{ "ben", "\u09AC\u09BE\u0982\u09B2\u09BE \u09AD\u09BE\u09B7\u09BE" },
+			{ "guj", "\u0A97\u0AC1\u0A9C\u0AB0\u0ABE\u0AA4\u0AC0 \u0AAD\u0ABE\u0AB7\u0ABE" },
+			{ "gur", "\u0A2A\u0A70\u0A1C\u0A3E\u0A2C\u0A40 \u0A2D\u0A3E\u0A30\u0A24" },
+			{ "hin", "\u0939\u093F\u0928\u094D\u0926\u0940 \u0915\u093F\u0924\u093E\u092C \u0928\u092E\u0938\u094D\u0924\u0947" },
+			{ "kan", "\u0C95\u0CA8\u0CCD\u0CA8\u0CA1 \u0CA8\u0CBE\u0CA1\u0CC1" },
+			{ "mal", "\u0D2E\u0D32\u0D2F\u0D3E\u0D33\u0D02 \u0D2D\u0D3E\u0D37" },
+			{ "mar", "\u092E\u0930\u093E\u0920\u0940 \u092D\u093E\u0937\u093E" },
+			{ "ori", "\u0B13\u0B21\u0B3F\u0B06 \u0B2D\u0B3E\u0B37\u0B3E" },
+			{ "tam", "\u0BA4\u0BAE\u0BBF\u0BB4\u0BCD \u0BA8\u0BBE\u0B9F\u0BC1" },
+			{ "tel", "\u0C24\u0C46\u0C32\u0C41\u0C17\u0C41 \u0C2D\u0C3E\u0C37" } };
+
+	private ReverseTransliteratorTest() {
+	}
+
+	static void run() throws IOException {
+		String[] names = new File(System.getProperty("user.dir"), "kblayouts")
+				.list();
+		Check.isTrue("kblayouts found", names != null && names.length > 0);
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			if (name.endsWith(".xml")) {
+				check(Layout.load(name));
+			}
+		}
+	}
+
+	static String transliterate(Layout layout, CharSequence keys)
+			throws IOException {
+		Transliterator transliterator = new Transliterator(layout, null);
+		StringBuilder text = new StringBuilder();
+		transliterator.write(keys, text);
+		transliterator.finish(text);
+		return text.toString();
+	}
+
+	/**
+	 * Returns the keys of a text, and checks that they type it.
+	 *
+	 * @param matched
+	 *            If set, checks that every char has been found a key
+	 */
+	static String reverse(Layout layout, String text, boolean fewest,
+			boolean matched) throws IOException {
+		ReverseTransliterator reverse = new ReverseTransliterator(layout,
+				fewest);
+		StringBuilder keys = new StringBuilder();
+		reverse.write(text, keys);
+		reverse.finish(keys);
+		String what = layout.getName() + (fewest ? " fewest " : " ")
+				+ Check.describe(text);
+		if (matched) {
+			Check.equal(what + " chars no key puts", 0L, reverse
+					.getUnmatched());
+		}
+		Check.equal(what + " typed as " + Check.describe(keys), text,
+				transliterate(layout, keys));
+		return keys.toString();
+	}
+
+	static void check(Layout layout) throws IOException {
+		String[] lines = BatchTransliteratorTest.lines(layout, layout
+				.getName().hashCode());
+		for (int i = 0; i < LINES && i < lines.length; i++) {
+			String text = transliterate(layout, lines[i].replace("\b", ""));
+			reverse(layout, text, false, false);
+			reverse(layout, text, true, false);
+		}
+		String name = layout.getName();
+		for (String[] words : WORDS) {
+			if (name.startsWith(words[0])
+					|| (name.startsWith("tamil") && words[0].equals("tam"))) {
+				reverse(layout, words[1], false, true);
+				reverse(layout, words[1], true, true);
+			}
+		}
+	}
+}
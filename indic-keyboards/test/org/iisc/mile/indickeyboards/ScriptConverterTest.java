@@ -0,0 +1,150 @@
+/** ********************************************************************
+ * File:           ScriptConverterTest.java
+ * Description:    Checks the conversions of chars and of UTF-8 agree
+ * Created:        Mon Oct 19 09:34:12 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Converts a random text between every two scripts of the inscript
+ * layouts, as chars and as UTF-8: all at once, a few bytes at a time, and
+ * a file on the threads of a pool. The UTF-8 must decode to the chars.
+ * The text holds every character of the Indic blocks, and characters of
+ * one, two, three and four bytes of UTF-8 outside them, so bytes which look
+ * like the block converted from are left alone.
+ */
+final class ScriptConverterTest {
+
+	/**
+	 * Scripts converted between, named like their inscript layouts.
+	 */
+	static final String[] SCRIPTS = { "ben", "guj", "gur", "hin", "kan",
+			"mal", "mar", "ori", "tam", "tel" };
+	/**
+	 * Code points of the random text, and of the text converted as a file,
+	 * which is longer than the buffer of a thread converting it.
+	 */
+	static final int TEXT = 4000;
+	static final int FILE_TEXT = 40000;
+
+	private ScriptConverterTest() {
+	}
+
+	static void run() throws IOException {
+		Random random = new Random(40);
+		String text = text(random, TEXT);
+		String fileText = text(random, FILE_TEXT);
+		File directory = Files.temporaryDirectory();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (String from : SCRIPTS) {
+				for (String to : SCRIPTS) {
+					ScriptConverter converter = ScriptConverter.get(from, to);
+					Check.isTrue("converter " + from + " to " + to,
+							converter != null);
+					if (converter == null) {
+						continue;
+					}
+					String name = from + " to " + to;
+					paths(name, converter, text, random);
+					file(name, converter, fileText, directory, pool);
+				}
+			}
+		} finally {
+			pool.shutdown();
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Returns a random text of every character of the Indic blocks, spaces
+	 * and danda, and characters of other blocks, some of whose UTF-8 bytes
+	 * are those of the Indic blocks but for the first.
+	 */
+	static String text(Random random, int codePoints) {
+		int[] others = { 'a', ' ', '\n', 0xE9, 0x0964, 0x0800, 0x08FF,
+				0x0D80, 0x0E01, 0x1900, 0x1D00, 0x200D, 0x1F600 };
+		StringBuilder text = new StringBuilder();
+		for (int c = 0x0900; c < 0x0D80; c++) {
+			text.appendCodePoint(c);
+		}
+		for (int i = 0; i < codePoints; i++) {
+			if (random.nextInt(4) == 0) {
+				text.appendCodePoint(others[random.nextInt(others.length)]);
+			} else {
+				text.appendCodePoint(0x0900 + random.nextInt(0x0480));
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * The text converted as chars, as a reader, as UTF-8 all at once and as
+	 * UTF-8 a few bytes at a time is the same.
+	 */
+	static void paths(String name, ScriptConverter converter, String text,
+			Random random) throws IOException {
+		String chars = converter.convert(text);
+		Check.equal(name + " length", text.length(), chars.length());
+
+		StringWriter written = new StringWriter();
+		converter.convert(new StringReader(text), written);
+		Check.equal(name + " by a reader", chars, written.toString());
+
+		byte[] utf8 = text.getBytes("UTF-8");
+		Check.equal(name + " bytes converted", utf8.length, converter.convert(
+				utf8, 0, utf8.length));
+		Check.equal(name + " as UTF-8", chars, new String(utf8, "UTF-8"));
+
+		utf8 = text.getBytes("UTF-8");
+		int done = 0;
+		boolean cut = true;
+		while (done < utf8.length) {
+			int n = Math.min(utf8.length - done, 1 + random.nextInt(8));
+			int converted = converter.convert(utf8, done, n);
+			/*
+			 * Only a character cut off at the end is left out.
+			 */
+			cut &= converted == n || converted >= 0 && n - converted < 3;
+			done += converted;
+		}
+		Check.isTrue(name + " leaves out the characters cut off", cut);
+		Check.equal(name + " as UTF-8 a few bytes at a time", chars,
+				new String(utf8, "UTF-8"));
+	}
+
+	/**
+	 * A file converted on the threads of a pool holds the text converted as
+	 * chars.
+	 */
+	static void file(String name, ScriptConverter converter, String text,
+			File directory, ForkJoinPool pool) throws IOException {
+		File file = new File(directory, "text.txt");
+		File target = new File(directory, "converted.txt");
+		BatchTransliteratorTest.write(file, text);
+		Check.equal(name + " file size", file.length(), converter.convert(
+				file, target, pool));
+		Check.equal(name + " as a file", converter.convert(text),
+				BatchTransliteratorTest.read(target));
+	}
+}
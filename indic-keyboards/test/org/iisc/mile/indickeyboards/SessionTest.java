@@ -0,0 +1,225 @@
+/** ********************************************************************
+ * File:           SessionTest.java
+ * Description:    Checks the word tracking of a session
+ * Created:        Mon Oct 19 06:41:18 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Checks that a session follows the word being typed across the keys
+ * which put nothing, like Shift, that the output it holds is put when the
+ * focus moves to another window, that it keeps the layout selected while
+ * its window had the focus, and that backspaces take it back to the state
+ * before the keys whose output they delete.
+ */
+final class SessionTest {
+
+	private SessionTest() {
+	}
+
+	static void run() throws IOException {
+		modifiersDoNotEndWords();
+		heldOutputFollowsFocus();
+		layoutOfEachWindow();
+		backspaceToConsonant();
+		historyRing();
+	}
+
+	/**
+	 * Types keys the way the server does, putting those which are not
+	 * transliterated as they are, and returns the text.
+	 */
+	static String type(Layout layout, String... keys) {
+		TextOutput output = new TextOutput();
+		Session session = new Session(output, false);
+		for (String key : keys) {
+			if (!session.process(key, layout) && Session.isTyped(key)) {
+				output.append(key.charAt(0));
+			}
+		}
+		return output.take();
+	}
+
+	/**
+	 * An abbreviation typed with Shift pressed and released in between is
+	 * still expanded.
+	 */
+	static void modifiersDoNotEndWords() throws IOException {
+		File directory = Files.temporaryDirectory();
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(new File(
+					directory, Abbreviations.FILE)), "UTF-8");
+			try {
+				out.write("ty\tTEST\n");
+			} finally {
+				out.close();
+			}
+			Abbreviations.load(directory);
+			Layout layout = Layout.load("kan_inscript.xml");
+			Check.equal("abbreviation", "TEST ", type(layout, "t", "y", " "));
+			Check.equal("abbreviation across Shift", "TEST ", type(layout,
+					"t", " Left Shift ", "y", " "));
+			Check.equal("abbreviation across an unknown key", "TEST ", type(
+					layout, "t", "", "y", " "));
+			Check.isTrue("Shift is not typed", !Session.isTyped(" Left Shift "));
+			Check.isTrue("Ctrl as a control char is not typed", !Session
+					.isTyped("\u0011"));
+			Check.isTrue("backspace is typed", Session.isTyped("\b"));
+		} finally {
+			Abbreviations.load(new File(directory, "none"));
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * The output of an ambiguous key held by the session of one window is
+	 * put into that window when the focus moves, or a key goes to the
+	 * session of another, and not into the other window.
+	 */
+	static void heldOutputFollowsFocus() throws IOException {
+		Layout layout = Layout.load("kan_phonetic.xml");
+		String held = type(layout, "k", "a", "s");
+		TextOutput first = new TextOutput();
+		TextOutput second = new TextOutput();
+		Session one = new Session(first, false);
+		Session other = new Session(second, false);
+		one.setDeferral(60000);
+		other.setDeferral(60000);
+		try {
+			Sessions.activate(one, 1);
+			for (String key : new String[] { "k", "a", "s" }) {
+				one.process(key, layout);
+			}
+			Check.isTrue("held", first.length() < held.length());
+			Sessions.focusChanged(1);
+			Check.isTrue("held while the focus stays", first.length() < held
+					.length());
+			Sessions.focusChanged(2);
+			Check.equal("put when the focus moves", held, first.take());
+
+			Sessions.activate(one, 1);
+			one.process("s", layout);
+			Sessions.activate(other, 2);
+			other.process("m", layout);
+			Check.equal("put before a key to another session", type(layout,
+					"s"), first.take());
+			other.flush();
+			Check.equal("only its own keys put into the other window", type(
+					layout, "m"), second.take());
+		} finally {
+			one.setDeferral(0);
+			other.setDeferral(0);
+			Sessions.focusChanged(0);
+		}
+	}
+
+	/**
+	 * A layout selected while a window has the focus is the layout of its
+	 * session only, and the layout in use for the windows not typed into.
+	 */
+	static void layoutOfEachWindow() throws IOException {
+		Layout inscript = Layout.load("kan_inscript.xml");
+		Layout phonetic = Layout.load("kan_phonetic.xml");
+		Layout current = Layout.current();
+		TextOutput first = new TextOutput();
+		TextOutput second = new TextOutput();
+		Session one = new Session(first, false);
+		Session other = new Session(second, false);
+		try {
+			Sessions.activate(one, 1);
+			Sessions.selectLayout(inscript);
+			Sessions.activate(other, 2);
+			Sessions.selectLayout(phonetic);
+			Check.isTrue("layout of the first window", one.getLayout() == inscript);
+			Check.isTrue("layout of the second window",
+					other.getLayout() == phonetic);
+			Check.isTrue("layout in use", Layout.current() == phonetic);
+			for (String key : new String[] { "k", "a" }) {
+				one.process(key);
+				other.process(key);
+			}
+			Check.equal("typed with the first layout", type(inscript, "k", "a"),
+					first.take());
+			Check.equal("typed with the second layout", type(phonetic, "k",
+					"a"), second.take());
+		} finally {
+			Sessions.focusChanged(0);
+			Layout.select(current);
+		}
+	}
+
+	/**
+	 * Types keys, deleting a char of the output for each backspace as the
+	 * active window does, and returns the text.
+	 */
+	static String typeDeleting(Layout layout, String... keys) {
+		TextOutput output = new TextOutput();
+		Session session = new Session(output, false);
+		for (String key : keys) {
+			if (key.equals("\b")) {
+				output.erase(1);
+			}
+			session.process(key, layout);
+		}
+		return output.take();
+	}
+
+	/**
+	 * Two backspaces after a consonant, a vowel sign and a consonant delete
+	 * the consonant and the sign, and the vowel typed next goes with the
+	 * first consonant as a vowel sign again, not as an independent vowel.
+	 */
+	static void backspaceToConsonant() throws IOException {
+		Layout layout = Layout.load("kan_kagapa.xml");
+		String withSign = type(layout, "k", "i");
+		Check.equal("consonant and vowel sign", "\u0C95\u0CBF", withSign);
+		Check.equal("vowel sign after two backspaces", withSign, typeDeleting(
+				layout, "k", "i", "m", "\b", "\b", "i"));
+		Check.equal("independent vowel after three backspaces", type(layout,
+				"i"), typeDeleting(layout, "k", "i", "m", "\b", "\b", "\b",
+				"i"));
+	}
+
+	/**
+	 * A key which erases more than it puts takes the chars off the keys
+	 * before it, across the end of the ring; a backspace then undoes the
+	 * keys left without output and the last key with some, and leaves no
+	 * previous consonant once no key is left. The oldest key is forgotten
+	 * when the ring is full.
+	 */
+	static void historyRing() {
+		Session session = new Session(new TextOutput(), false);
+		CompositionHistory history = new CompositionHistory(4);
+		for (int i = 0; i < 5; i++) {
+			history.push(1, 0, "before " + i, "", 0, 1);
+		}
+		history.push(1, 0, "before 5", "", 0, -2);
+		Check.equal("keys pushed", 6L, history.pushed());
+		history.backspace(session);
+		Check.equal("undone to the oldest kept", "before 2",
+				session.previousChar);
+		session.previousConsonantFlag = 1;
+		history.backspace(session);
+		Check.equal("no key left", "", session.previousChar);
+		Check.equal("no consonant left", 0, session.previousConsonantFlag);
+	}
+}
@@ -0,0 +1,203 @@
+/** ********************************************************************
+ * File:           SpellingCorrectorTest.java
+ * Description:    Checks the corrections of the spelling index
+ * Created:        Mon Oct 19 08:09:52 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Writes the spelling index of random words as the
+ * <code>DictionaryBuilder</code> does and checks that the
+ * <code>SpellingCorrector</code> gives the correction found by working out
+ * the distance to every word: nothing for a word of the dictionary or one
+ * too far from all, and otherwise one of the closest words, of the highest
+ * weight among them.
+ */
+final class SpellingCorrectorTest {
+
+	/**
+	 * Random words indexed, and words typed with random edits.
+	 */
+	static final int WORDS = 2000;
+	static final int TYPED = 1000;
+
+	/**
+	 * Kannada letters and signs the random words are made of.
+	 */
+	static final String CHARS = "\u0C95\u0C97\u0CA8\u0CAE\u0CB0\u0CBE\u0CBF\u0CCD";
+
+	private SpellingCorrectorTest() {
+	}
+
+	static void run() throws IOException {
+		distances();
+		File directory = Files.temporaryDirectory();
+		try {
+			corrections(directory);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Returns the edits between two words, counting a swap of two chars
+	 * side by side as one, the slow way.
+	 */
+	static int distance(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			for (int j = 0; j <= b.length(); j++) {
+				if (i == 0 || j == 0) {
+					d[i][j] = i + j;
+					continue;
+				}
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+						d[i - 1][j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+						&& a.charAt(i - 2) == b.charAt(j - 1)) {
+					d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+
+	static int corrector(String a, String b) {
+		return SpellingCorrector.distance(a.toCharArray(), a.length(), b
+				.toCharArray(), b.length());
+	}
+
+	static void distances() {
+		String[][] pairs = { { "kannada", "kannada" }, { "kannada", "kanada" },
+				{ "kannada", "kannnada" }, { "kannada", "kannoda" },
+				{ "kannada", "kanndaa" }, { "kannada", "aknnada" },
+				{ "kannada", "kanad" }, { "kannada", "knada" },
+				{ "kannada", "kn" }, { "", "ab" }, { "abc", "" },
+				{ "ca", "abc" } };
+		for (String[] pair : pairs) {
+			Check.equal("distance " + pair[0] + " " + pair[1], Math.min(
+					distance(pair[0], pair[1]), SpellingCorrector.MAX_DISTANCE + 1),
+					corrector(pair[0], pair[1]));
+		}
+	}
+
+	static String randomWord(Random random, int length) {
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			word.append(CHARS.charAt(random.nextInt(CHARS.length())));
+		}
+		return word.toString();
+	}
+
+	/**
+	 * Returns a word with a random edit: a char inserted, deleted, changed,
+	 * or swapped with the one after it.
+	 */
+	static String edit(Random random, String word) {
+		StringBuilder edited = new StringBuilder(word);
+		int at = random.nextInt(word.length() + 1);
+		char c = CHARS.charAt(random.nextInt(CHARS.length()));
+		int kind = at == word.length() ? 0 : random.nextInt(4);
+		if (kind == 0) {
+			edited.insert(at, c);
+		} else if (kind == 1) {
+			edited.deleteCharAt(at);
+		} else if (kind == 2) {
+			edited.setCharAt(at, c);
+		} else if (at + 1 < word.length()) {
+			edited.setCharAt(at, word.charAt(at + 1));
+			edited.setCharAt(at + 1, word.charAt(at));
+		}
+		return edited.toString();
+	}
+
+	static void corrections(File directory) throws IOException {
+		Random random = new Random(47);
+		TreeMap<String, Integer> words = new TreeMap<String, Integer>();
+		while (words.size() < WORDS) {
+			words.put(randomWord(random, 3 + random.nextInt(8)), Integer
+					.valueOf(1 + random.nextInt(255)));
+		}
+		String longWord = randomWord(random, SpellingCorrector.MAX_LENGTH + 1);
+		words.put(longWord, Integer.valueOf(255));
+		String[] sorted = words.keySet().toArray(new String[words.size()]);
+		int[] weights = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			weights[i] = words.get(sorted[i]).intValue();
+		}
+		File file = new File(directory, "random.spell");
+		long bytes = DictionaryBuilder.writeSpelling(sorted, weights, file);
+		Check.equal("bytes written", file.length(), bytes);
+		SpellingCorrector corrector = SpellingCorrector.open(file);
+		Check.equal("words indexed", WORDS, corrector.size());
+		Check.equal("long word not indexed", null, corrector.correct(edit(
+				random, longWord)));
+
+		for (int i = 0; i < TYPED; i++) {
+			String typed = sorted[random.nextInt(WORDS)];
+			int edits = random.nextInt(4);
+			for (int e = 0; e < edits && typed.length() > 1; e++) {
+				typed = edit(random, typed);
+			}
+			if (i % 10 == 0) {
+				typed = randomWord(random, 1 + random.nextInt(12));
+			}
+			check(corrector, words, typed);
+		}
+	}
+
+	/**
+	 * Checks the correction of a word against its distance to every word
+	 * indexed.
+	 */
+	static void check(SpellingCorrector corrector,
+			TreeMap<String, Integer> words, String typed) {
+		int least = SpellingCorrector.MAX_DISTANCE + 1;
+		int weight = 0;
+		for (Map.Entry<String, Integer> entry : words.entrySet()) {
+			if (entry.getKey().length() > SpellingCorrector.MAX_LENGTH) {
+				continue;
+			}
+			int d = distance(typed, entry.getKey());
+			int w = entry.getValue().intValue();
+			if (d < least || (d == least && w > weight)) {
+				least = d;
+				weight = w;
+			}
+		}
+		String correction = corrector.correct(typed);
+		String what = "correction of " + Check.describe(typed);
+		if (least == 0 || least > SpellingCorrector.MAX_DISTANCE) {
+			Check.equal(what, null, correction);
+			return;
+		}
+		Check.isTrue(what + " found", correction != null);
+		if (correction != null) {
+			Check.equal(what + " " + Check.describe(correction) + " distance",
+					Integer.valueOf(least), Integer.valueOf(distance(typed,
+							correction)));
+			Check.equal(what + " " + Check.describe(correction) + " weight",
+					Integer.valueOf(weight), words.get(correction));
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/** ********************************************************************
+ * File:           TimerWheelTest.java
+ * Description:    Checks the timeouts of the timer wheel and the held output
+ * Created:        Mon Oct 19 09:03:26 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.util.Random;
+
+/**
+ * Checks that a <code>TimerWheel</code> expires each timeout once, not
+ * before its delay, however many turns of the wheel away; that a timeout
+ * cancelled or moved does not expire; and that the thread of the wheel
+ * waits without ticking once no timeout is left. Then checks that the
+ * output held by a <code>HeldOutput</code> is put in one replacement when
+ * committed, by hand or by the shared wheel.
+ */
+final class TimerWheelTest {
+
+	/**
+	 * Milliseconds waited at most for a timeout or the wheel.
+	 */
+	static final long WAIT = 2000;
+
+	private TimerWheelTest() {
+	}
+
+	static void run() throws InterruptedException {
+		TimerWheel wheel = new TimerWheel(1, 8);
+		Check.isTrue("idle before the first timeout", wheel.isIdle());
+		expire(wheel);
+		cancel(wheel);
+		many(wheel);
+		park(wheel);
+		held();
+	}
+
+	/**
+	 * Counts its expiries and keeps the time of the first.
+	 */
+	static class Counted extends TimerWheel.Timeout {
+		private int expired = 0;
+		private long at = 0;
+
+		protected synchronized void expire() {
+			if (expired++ == 0) {
+				at = System.nanoTime();
+			}
+		}
+
+		synchronized int expired() {
+			return expired;
+		}
+
+		/**
+		 * Returns the milliseconds from start to the first expiry.
+		 */
+		synchronized long after(long start) {
+			return (at - start) / 1000000L;
+		}
+	}
+
+	/**
+	 * Waits until the timeout has expired, or WAIT has passed.
+	 */
+	static void await(Counted timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + WAIT;
+		while (timeout.expired() == 0 && System.currentTimeMillis() < end) {
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * A timeout expires once, after its delay less a tick, whether it is
+	 * due within the first turn of the wheel or several turns on.
+	 */
+	static void expire(TimerWheel wheel) throws InterruptedException {
+		for (long delay : new long[] { 5, 20, 30 }) {
+			Counted timeout = new Counted();
+			long start = System.nanoTime();
+			wheel.schedule(timeout, delay);
+			Check.isTrue("scheduled " + delay, wheel.isScheduled(timeout));
+			await(timeout);
+			Check.equal("expired " + delay, 1, timeout.expired());
+			Check.isTrue("expired after " + delay + " ms, not "
+					+ timeout.after(start), timeout.after(start) >= delay - 1);
+			Check.isTrue("not scheduled after expiring " + delay, !wheel
+					.isScheduled(timeout));
+		}
+	}
+
+	/**
+	 * A timeout cancelled does not expire; one scheduled again expires at
+	 * its new time only.
+	 */
+	static void cancel(TimerWheel wheel) throws InterruptedException {
+		Counted cancelled = new Counted();
+		wheel.schedule(cancelled, 10);
+		wheel.cancel(cancelled);
+		Check.isTrue("not scheduled after cancelling", !wheel
+				.isScheduled(cancelled));
+		wheel.cancel(cancelled);
+		Counted moved = new Counted();
+		long start = System.nanoTime();
+		wheel.schedule(moved, 5);
+		wheel.schedule(moved, 40);
+		Thread.sleep(20);
+		Check.equal("cancelled", 0, cancelled.expired());
+		Check.equal("not expired at its first time", 0, moved.expired());
+		await(moved);
+		Thread.sleep(20);
+		Check.equal("moved expires once", 1, moved.expired());
+		Check.isTrue("moved expires at its new time", moved.after(start) >= 39);
+	}
+
+	/**
+	 * Timeouts scheduled together, some cancelled, each expire once after
+	 * their delay.
+	 */
+	static void many(TimerWheel wheel) throws InterruptedException {
+		Random random = new Random(44);
+		Counted[] timeouts = new Counted[200];
+		long[] delays = new long[timeouts.length];
+		long start = System.nanoTime();
+		for (int i = 0; i < timeouts.length; i++) {
+			timeouts[i] = new Counted();
+			delays[i] = 1 + random.nextInt(50);
+			wheel.schedule(timeouts[i], delays[i]);
+		}
+		for (int i = 0; i < timeouts.length; i += 10) {
+			wheel.cancel(timeouts[i]);
+		}
+		for (int i = 0; i < timeouts.length; i++) {
+			if (i % 10 != 0) {
+				await(timeouts[i]);
+			}
+		}
+		Thread.sleep(10);
+		for (int i = 0; i < timeouts.length; i++) {
+			Check.equal("timeout " + i + " expiries", i % 10 == 0 ? 0 : 1,
+					timeouts[i].expired());
+			if (i % 10 != 0) {
+				Check.isTrue("timeout " + i + " after its delay", timeouts[i]
+						.after(start) >= delays[i] - 1);
+			}
+		}
+	}
+
+	/**
+	 * With no timeout left the thread waits without ticking, and a timeout
+	 * scheduled then wakes it.
+	 */
+	static void park(TimerWheel wheel) throws InterruptedException {
+		long end = System.currentTimeMillis() + WAIT;
+		while (!wheel.isIdle() && System.currentTimeMillis() < end) {
+			Thread.sleep(1);
+		}
+		Check.isTrue("idle without timeouts", wheel.isIdle());
+		Counted timeout = new Counted();
+		wheel.schedule(timeout, 5);
+		Check.isTrue("not idle with a timeout", !wheel.isIdle());
+		await(timeout);
+		Check.equal("expired after waiting", 1, timeout.expired());
+	}
+
+	/**
+	 * What is put, erased and replaced while holding reaches the output
+	 * only when committed, in one replacement; the shared wheel commits it
+	 * when its time has come.
+	 */
+	static void held() throws InterruptedException {
+		TextOutput output = new TextOutput();
+		HeldOutput held = new HeldOutput(output);
+		output.append("ab");
+		held.hold();
+		held.put(Layout.Unicode.of("0C95"));
+		held.erase(2);
+		held.replace(0, "x");
+		Check.equal("nothing put while holding", 2, output.length());
+		Check.isTrue("holding", held.isHolding() && !held.isEmpty());
+		held.commit();
+		Check.isTrue("not holding after a commit", !held.isHolding());
+		Check.equal("committed", "ax", output.take());
+		held.put(Layout.Unicode.of("0C95"));
+		Check.equal("put at once", "\u0C95", output.take());
+
+		output.append("ab");
+		held.hold();
+		held.replace(1, "yz");
+		held.scheduleCommit(20);
+		long end = System.currentTimeMillis() + WAIT;
+		boolean holding = true;
+		while (holding && System.currentTimeMillis() < end) {
+			Thread.sleep(1);
+			synchronized (output) {
+				holding = held.isHolding();
+			}
+		}
+		synchronized (output) {
+			Check.equal("committed by the wheel", "ayz", output.take());
+		}
+
+		held.hold();
+		held.put(Layout.Unicode.of("0C95"));
+		held.scheduleCommit(20);
+		held.commit();
+		Thread.sleep(40);
+		Check.equal("committed once", "\u0C95", output.take());
+	}
+}
@@ -0,0 +1,355 @@
+/** ********************************************************************
+ * File:           TransliterationServerTest.java
+ * Description:    Checks the protocols of the transliteration server
+ * Created:        Mon Oct 19 09:21:48 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts a <code>TransliterationServer</code> on a port of the loopback
+ * interface and talks to it as its clients do: lines of requests sent
+ * together, and frames of the binary protocol of
+ * <code>FramedConnection</code> cut at any byte. Every answer must be the
+ * text a <code>Transliterator</code> puts out; malformed, oversized and
+ * surplus requests and connections must be refused.
+ */
+final class TransliterationServerTest {
+
+	/**
+	 * Milliseconds a client waits for an answer.
+	 */
+	static final int TIMEOUT = 10000;
+
+	private TransliterationServerTest() {
+	}
+
+	static void run() throws IOException {
+		ServerSocket socket = new ServerSocket(0, 50, InetAddress
+				.getLoopbackAddress());
+		TransliterationServer.start(socket);
+		try {
+			int port = socket.getLocalPort();
+			busy(port);
+			lines(port);
+			longLine(port);
+			frames(port);
+			badFrames(port);
+		} finally {
+			socket.close();
+		}
+	}
+
+	static Socket connect(int port) throws IOException {
+		Socket client = new Socket(InetAddress.getLoopbackAddress(), port);
+		client.setSoTimeout(TIMEOUT);
+		return client;
+	}
+
+	/**
+	 * Returns true if the server has closed the connection, without
+	 * sending any more.
+	 */
+	static boolean closed(InputStream in) {
+		try {
+			return in.read() < 0;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Returns what one <code>Transliterator</code> puts out for a text.
+	 */
+	static String transliterate(Layout layout, String text) throws IOException {
+		Transliterator transliterator = new Transliterator(layout);
+		StringBuilder out = new StringBuilder();
+		transliterator.write(text, out);
+		transliterator.finish(out);
+		return out.toString();
+	}
+
+	/**
+	 * Without virtual threads, a connection beyond MAX_CONNECTIONS is
+	 * answered with an error and closed. Run first, while no thread of the
+	 * pool is taken.
+	 */
+	static void busy(int port) throws IOException {
+		try {
+			Thread.class.getMethod("startVirtualThread", Runnable.class);
+			return;
+		} catch (NoSuchMethodException e) {
+			// A thread per connection, from the pool.
+		}
+		Socket[] clients = new Socket[TransliterationServer.MAX_CONNECTIONS + 1];
+		try {
+			for (int i = 0; i < clients.length; i++) {
+				clients[i] = connect(port);
+			}
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					clients[clients.length - 1].getInputStream(), "UTF-8"));
+			Check.equal("connection refused", "ERR too many connections", in
+					.readLine());
+			Check.equal("refused connection closed", null, in.readLine());
+		} finally {
+			for (Socket client : clients) {
+				if (client != null) {
+					client.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Requests sent together, with every layout and random keys, are
+	 * answered in order with the text of a transliterator; a line ending
+	 * with CR LF is taken as one ending with LF; requests without a layout
+	 * or with an unknown one get an error, and the connection goes on.
+	 */
+	static void lines(int port) throws IOException {
+		String[] names = { "kan_phonetic.xml", "hin_inscript.xml",
+				"tamil99.xml", "kan_kagapa.xml" };
+		StringBuilder requests = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (String name : names) {
+			Layout layout = Layouts.get(name);
+			for (String line : BatchTransliteratorTest.lines(layout, 36)) {
+				requests.append(name).append(' ').append(line).append('\n');
+				expected.append("OK ").append(transliterate(layout, line))
+						.append('\n');
+			}
+			requests.append(name).append(" namaskaara\r\n");
+			expected.append("OK ").append(transliterate(layout, "namaskaara"))
+					.append('\n');
+			requests.append(name).append(" \n");
+			expected.append("OK \n");
+		}
+		requests.append("nospace\n");
+		expected.append("ERR expected a layout and the text\n");
+		requests.append("none.xml text\n");
+		expected.append("ERR no layout none.xml\n");
+		requests.append("kan_phonetic.xml ka\n");
+		expected.append("OK ").append(
+				transliterate(Layouts.get("kan_phonetic.xml"), "ka")).append(
+				'\n');
+
+		Socket client = connect(port);
+		try {
+			Writer out = new OutputStreamWriter(client.getOutputStream(),
+					"UTF-8");
+			out.write(requests.toString());
+			out.flush();
+			client.shutdownOutput();
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					client.getInputStream(), "UTF-8"));
+			StringBuilder answers = new StringBuilder();
+			String line;
+			while ((line = in.readLine()) != null) {
+				answers.append(line).append('\n');
+			}
+			String[] got = answers.toString().split("\n", -1);
+			String[] wanted = expected.toString().split("\n", -1);
+			Check.equal("answers", wanted.length, got.length);
+			for (int i = 0; i < wanted.length && i < got.length; i++) {
+				Check.equal("answer " + i, wanted[i], got[i]);
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * A request longer than MAX_REQUEST closes the connection without an
+	 * answer.
+	 */
+	static void longLine(int port) throws IOException {
+		Socket client = connect(port);
+		try {
+			Writer out = new OutputStreamWriter(client.getOutputStream(),
+					"UTF-8");
+			try {
+				out.write("kan_phonetic.xml ");
+				char[] keys = new char[8192];
+				Arrays.fill(keys, 'k');
+				for (int i = 0; i <= TransliterationServer.MAX_REQUEST
+						/ keys.length; i++) {
+					out.write(keys);
+				}
+				out.write('\n');
+				out.flush();
+			} catch (IOException e) {
+				// Closed while sending.
+			}
+			Check.isTrue("request too long", closed(client.getInputStream()));
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Writes a request frame.
+	 */
+	static void frame(DataOutputStream out, int id, byte type, int layout,
+			byte[] payload) throws IOException {
+		out.writeInt(FramedConnection.HEADER + payload.length);
+		out.writeInt(id);
+		out.writeByte(type);
+		out.writeShort(layout);
+		out.write(payload);
+	}
+
+	/**
+	 * Starts the binary protocol, checks the answer to the preface, and
+	 * returns the stream of the answers.
+	 */
+	static DataInputStream preface(Socket client, int version)
+			throws IOException {
+		OutputStream out = client.getOutputStream();
+		out.write(FramedConnection.PREFACE);
+		out.write(version);
+		out.flush();
+		DataInputStream in = new DataInputStream(client.getInputStream());
+		Check.equal("preface answered", FramedConnection.PREFACE, in.read());
+		Check.equal("version answered", FramedConnection.VERSION, in.read());
+		return in;
+	}
+
+	/**
+	 * The requests of the binary protocol, written out a few bytes at a
+	 * time so the frames are cut anywhere, are each answered once, by
+	 * their ID, with the text of a transliterator, in UTF-8 and as code
+	 * points; the layouts are given a number when opened, the same one
+	 * when opened again, and requests in error get an error.
+	 */
+	static void frames(int port) throws IOException {
+		Layout layout = Layouts.get("kan_phonetic.xml");
+		String[] lines = BatchTransliteratorTest.lines(layout, 37);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream requests = new DataOutputStream(bytes);
+		frame(requests, 1, FramedConnection.OPEN, 0, "kan_phonetic.xml"
+				.getBytes("UTF-8"));
+		frame(requests, 2, FramedConnection.OPEN, 0, "none.xml"
+				.getBytes("UTF-8"));
+		frame(requests, 3, FramedConnection.OPEN, 0, "kan_phonetic.xml"
+				.getBytes("UTF-8"));
+		frame(requests, 4, FramedConnection.UTF8, 1, "ka".getBytes("UTF-8"));
+		frame(requests, 5, (byte) 9, 0, new byte[0]);
+		frame(requests, 6, FramedConnection.CODE_POINTS, 0, new byte[3]);
+		frame(requests, 7, FramedConnection.CODE_POINTS, 0, new byte[] {
+				0x7f, 0, 0, 0 });
+		Map<Integer, byte[]> expected = new HashMap<Integer, byte[]>();
+		expected.put(Integer.valueOf(1), new byte[] { 0, 0 });
+		expected.put(Integer.valueOf(3), new byte[] { 0, 0 });
+		for (int i = 0; i < lines.length; i++) {
+			String text = transliterate(layout, lines[i]);
+			int id = 100 + i;
+			if (i % 2 == 0) {
+				frame(requests, id, FramedConnection.UTF8, 0, lines[i]
+						.getBytes("UTF-8"));
+				expected.put(Integer.valueOf(id), text.getBytes("UTF-8"));
+			} else {
+				frame(requests, id, FramedConnection.CODE_POINTS, 0,
+						FramedConnection.encode(lines[i]));
+				expected.put(Integer.valueOf(id), FramedConnection.encode(text));
+			}
+		}
+		int answers = expected.size() + 5;
+
+		Socket client = connect(port);
+		try {
+			DataInputStream in = preface(client, FramedConnection.VERSION);
+			OutputStream out = client.getOutputStream();
+			byte[] all = bytes.toByteArray();
+			int step = 1;
+			for (int at = 0; at < all.length; at += step) {
+				step = step % 7 + 1;
+				out.write(all, at, Math.min(step, all.length - at));
+				out.flush();
+			}
+			client.shutdownOutput();
+			Map<Integer, Integer> seen = new HashMap<Integer, Integer>();
+			for (int i = 0; i < answers; i++) {
+				int length = in.readInt();
+				Integer id = Integer.valueOf(in.readInt());
+				byte status = in.readByte();
+				byte[] payload = new byte[length - 5];
+				in.readFully(payload);
+				Integer times = seen.get(id);
+				seen.put(id, Integer.valueOf(times == null ? 1 : times
+						.intValue() + 1));
+				byte[] wanted = expected.get(id);
+				if (wanted != null) {
+					Check.equal("status of " + id, FramedConnection.OK, status);
+					Check.isTrue("answer to " + id, Arrays.equals(
+							wanted, payload));
+				} else {
+					Check.equal("error of " + id, FramedConnection.ERROR, status);
+				}
+			}
+			Check.equal("answered each once", answers, seen.size());
+			Check.equal("no more answers", -1, in.read());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * A frame shorter than its header or longer than MAX_FRAME closes the
+	 * connection; so does a version of the protocol other than VERSION,
+	 * after the server has told its own.
+	 */
+	static void badFrames(int port) throws IOException {
+		int[] lengths = { FramedConnection.HEADER - 1, -1,
+				FramedConnection.MAX_FRAME + 1 };
+		for (int length : lengths) {
+			Socket client = connect(port);
+			try {
+				DataInputStream in = preface(client, FramedConnection.VERSION);
+				DataOutputStream out = new DataOutputStream(client
+						.getOutputStream());
+				out.writeInt(length);
+				out.flush();
+				Check.isTrue("frame of " + length + " bytes refused",
+						closed(in));
+			} finally {
+				client.close();
+			}
+		}
+		Socket client = connect(port);
+		try {
+			DataInputStream in = preface(client, FramedConnection.VERSION + 1);
+			Check.isTrue("other version refused", closed(in));
+		} finally {
+			client.close();
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/** ********************************************************************
+ * File:           UserDictionaryTest.java
+ * Description:    Checks the log and the tables of the user dictionary
+ * Created:        Mon Oct 19 07:24:36 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Learns words in a directory of its own, and checks that a dictionary
+ * opened again on the directory counts them the same: from the log alone,
+ * from the table written once the log is long enough, and from a table and
+ * the log after it. A log older than the table and a table left half
+ * written are dropped.
+ */
+final class UserDictionaryTest {
+
+	/**
+	 * Longest wait for the thread of a dictionary, in milliseconds.
+	 */
+	static final long WAIT = 20000;
+
+	private UserDictionaryTest() {
+	}
+
+	static void run() throws IOException, InterruptedException {
+		File directory = Files.temporaryDirectory();
+		try {
+			replay(directory);
+			compaction(directory);
+			staleFiles(directory);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Returns a word of letters for a number.
+	 */
+	static String word(int n) {
+		StringBuilder word = new StringBuilder("w");
+		do {
+			word.append((char) ('a' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return word.toString();
+	}
+
+	/**
+	 * Waits until a dictionary counts a word as often as expected, and
+	 * checks that it does.
+	 */
+	static void await(String what, UserDictionary dictionary, String word,
+			int count) throws InterruptedException {
+		long end = System.currentTimeMillis() + WAIT;
+		while (dictionary.count(word) != count
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(5);
+		}
+		Check.equal(what + " " + word, Integer.valueOf(count), Integer
+				.valueOf(dictionary.count(word)));
+	}
+
+	static String[] tables(File directory) {
+		String[] names = directory.list();
+		Arrays.sort(names);
+		StringBuilder tables = new StringBuilder();
+		for (String name : names) {
+			if (name.startsWith(UserDictionary.TABLE)) {
+				tables.append(name).append(' ');
+			}
+		}
+		return tables.toString().trim().split(" ");
+	}
+
+	/**
+	 * Words in the log are counted again by a dictionary opened afterwards.
+	 */
+	static void replay(File directory) throws InterruptedException {
+		UserDictionary dictionary = UserDictionary.open(directory);
+		for (int i = 0; i < 3; i++) {
+			dictionary.learn("ab");
+		}
+		dictionary.learn("abc");
+		dictionary.learn("a1");
+		dictionary.learn(word(7));
+		await("learned", dictionary, word(7), 1);
+		Check.equal("not a word", Integer.valueOf(0), Integer
+				.valueOf(dictionary.count("a1")));
+
+		UserDictionary again = UserDictionary.open(directory);
+		await("replayed", again, "ab", 3);
+		await("replayed", again, "abc", 1);
+		Check.equal("completions from the log", "[ab, abc]", Arrays
+				.toString(again.complete("ab", 5)));
+		again.learn("abc");
+		await("learned after replay", again, "abc", 2);
+	}
+
+	/**
+	 * Once the log holds COMPACT_AFTER words they are written to a table,
+	 * which a dictionary opened afterwards maps, with the log after it.
+	 */
+	static void compaction(File directory) throws InterruptedException {
+		UserDictionary dictionary = UserDictionary.open(directory);
+		await("replayed", dictionary, "abc", 2);
+		int words = UserDictionary.COMPACT_AFTER;
+		for (int i = 0; i < words; i++) {
+			dictionary.learn(word(i % 1000));
+		}
+		await("learned", dictionary, word(999), words / 1000);
+		long end = System.currentTimeMillis() + WAIT;
+		while (!new File(directory, UserDictionary.TABLE + "1.dat").isFile()
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(5);
+		}
+		Check.equal("table written", "[userwords-1.dat]", Arrays
+				.toString(tables(directory)));
+		dictionary.learn("ab");
+		await("learned after the table", dictionary, "ab", 4);
+
+		UserDictionary again = UserDictionary.open(directory);
+		await("table and log", again, "ab", 4);
+		await("table", again, "abc", 2);
+		await("table", again, word(0), words / 1000 + 1);
+		await("table", again, word(999), words / 1000);
+		Check.equal("completions from the table and the log", "[ab, abc]",
+				Arrays.toString(again.complete("ab", 5)));
+	}
+
+	/**
+	 * A log written before the table and a table whose writing did not
+	 * finish are not read.
+	 */
+	static void staleFiles(File directory) throws IOException,
+			InterruptedException {
+		Writer log = new OutputStreamWriter(new FileOutputStream(new File(
+				directory, UserDictionary.LOG)), "UTF-8");
+		try {
+			log.write("# " + UserDictionary.TABLE + "0.dat\nab\nab\n");
+		} finally {
+			log.close();
+		}
+		new FileOutputStream(new File(directory, UserDictionary.TABLE
+				+ "2.tmp")).close();
+		UserDictionary dictionary = UserDictionary.open(directory);
+		dictionary.learn("xy");
+		await("after a stale log", dictionary, "xy", 1);
+		Check.equal("stale log dropped", Integer.valueOf(3), Integer
+				.valueOf(dictionary.count("ab")));
+		Check.equal("unfinished table deleted", "[userwords-1.dat]", Arrays
+				.toString(tables(directory)));
+	}
+}
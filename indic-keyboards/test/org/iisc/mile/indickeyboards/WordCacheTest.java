@@ -0,0 +1,169 @@
+/** ********************************************************************
+ * File:           WordCacheTest.java
+ * Description:    Checks the words kept by the word cache
+ * Created:        Mon Oct 19 07:41:27 IST 2026
+ *
+ * (C) Copyright 2026, MILE Lab, Indian Institute of Science
+ ** Licensed under the Apache License, Version 2.0 (the "License");
+ ** you may not use this file except in compliance with the License.
+ ** You may obtain a copy of the License at
+ ** http://www.apache.org/licenses/LICENSE-2.0
+ ** Unless required by applicable law or agreed to in writing, software
+ ** distributed under the License is distributed on an "AS IS" BASIS,
+ ** WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ ** See the License for the specific language governing permissions and
+ ** limitations under the License.
+ *
+ **********************************************************************/
+
+package org.iisc.mile.indickeyboards;
+
+import java.io.IOException;
+
+/**
+ * Checks that the <code>WordCache</code> finds the words a transliterator
+ * repeats, holds no more than its bytes, keeping the words used lately,
+ * drops the words of a layout read again, and is bypassed by a
+ * transliterator which finds too few words in it. That the text is the
+ * same with the cache is checked by <code>BatchTransliteratorTest</code>.
+ */
+final class WordCacheTest {
+
+	private WordCacheTest() {
+	}
+
+	static void run() throws IOException {
+		Layout kannada = Layout.load("kan_phonetic.xml");
+		Layout hindi = Layout.load("hin_phonetic.xml");
+		repeats(kannada);
+		bounds(kannada);
+		invalidate(kannada, hindi);
+		bypass(kannada);
+	}
+
+	static String convert(Transliterator transliterator, CharSequence text)
+			throws IOException {
+		StringBuilder out = new StringBuilder();
+		transliterator.write(text, out);
+		transliterator.finish(out);
+		return out.toString();
+	}
+
+	/**
+	 * Returns a word of keys for a number.
+	 */
+	static String word(int n) {
+		StringBuilder word = new StringBuilder("k");
+		do {
+			word.append((char) ('a' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return word.toString();
+	}
+
+	static WordCache.Word transliterated(String unicode) {
+		return new WordCache.Word(unicode, new Session(new TextOutput(),
+				false), 0);
+	}
+
+	/**
+	 * A word is typed once and then found, on each line it is on; a word
+	 * longer than MAX_WORD is not kept.
+	 */
+	static void repeats(Layout layout) throws IOException {
+		WordCache cache = new WordCache(1 << 20);
+		StringBuilder text = new StringBuilder();
+		StringBuilder longWord = new StringBuilder();
+		for (int i = 0; i <= WordCache.MAX_WORD; i++) {
+			longWord.append("ka");
+		}
+		for (int i = 0; i < 10; i++) {
+			text.append("namaskara kannada ").append(longWord).append('\n');
+		}
+		String cached = convert(new Transliterator(layout, cache), text);
+		Check.equal("repeated words cached", cached, convert(
+				new Transliterator(layout, null), text));
+		Check.equal("words kept", 2, cache.getWords());
+		Check.equal("words found", 18L, cache.getHits());
+		Check.equal("words missed", 2L, cache.getMisses());
+		Check.equal("hit rate", 0.9, cache.getHitRate());
+
+		cache.setEnabled(false);
+		convert(new Transliterator(layout, cache), text);
+		Check.equal("no lookups when disabled", 20L, cache.getHits()
+				+ cache.getMisses());
+		cache.clear();
+		Check.equal("cleared", 0L, cache.getBytes() + cache.getWords()
+				+ cache.getHits() + cache.getMisses());
+	}
+
+	/**
+	 * A cache with room for a few words in each segment keeps within its
+	 * bytes, and keeps the word looked up after each other word is put. The
+	 * words all have four keys, and seven of them fit in a segment.
+	 */
+	static void bounds(Layout layout) {
+		WordCache cache = new WordCache(16 * 2000);
+		WordCache.Word word = transliterated("x");
+		int words = 2000;
+		cache.put(layout, "keep", word);
+		for (int i = 0; i < words; i++) {
+			cache.put(layout, word(26 * 26 + i), word);
+			Check.isTrue("kept word " + i, cache.get(layout, "keep") == word);
+		}
+		Check.isTrue("bytes held " + cache.getBytes(),
+				cache.getBytes() <= cache.getMaxBytes());
+		Check.isTrue("words held " + cache.getWords(),
+				cache.getWords() <= 16 * 7);
+		Check.equal("words dropped", (long) words + 1 - cache.getWords(),
+				cache.getEvictions());
+		Check.isTrue("last word", cache.get(layout, word(26 * 26 + words - 1))
+				== word);
+
+		WordCache.Word longer = transliterated("xyz");
+		long bytes = cache.getBytes();
+		cache.put(layout, "keep", longer);
+		Check.equal("word replaced", bytes + 4, cache.getBytes());
+		Check.isTrue("replacement found", cache.get(layout, "keep") == longer);
+	}
+
+	/**
+	 * The words of one layout are dropped; those of another are kept.
+	 */
+	static void invalidate(Layout kannada, Layout hindi) {
+		WordCache cache = new WordCache(1 << 20);
+		WordCache.Word word = transliterated("x");
+		for (int i = 0; i < 100; i++) {
+			cache.put(kannada, word(i), word);
+			cache.put(hindi, word(i), word);
+		}
+		long bytes = cache.getBytes();
+		cache.invalidate(kannada);
+		Check.equal("words of the other layout", 100, cache.getWords());
+		Check.equal("bytes of the other layout", bytes / 2, cache.getBytes());
+		Check.isTrue("dropped", cache.get(kannada, word(7)) == null);
+		Check.isTrue("kept", cache.get(hindi, word(7)) == word);
+		cache.invalidate(hindi);
+		Check.equal("all dropped", 0L, cache.getBytes());
+	}
+
+	/**
+	 * Words all different are looked up until JUDGE of them are missed, and
+	 * the words after them are typed without the cache.
+	 */
+	static void bypass(Layout layout) throws IOException {
+		WordCache cache = new WordCache(16 << 20);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < WordCache.JUDGE + 500; i++) {
+			text.append(word(i)).append(i % 10 == 9 ? '\n' : ' ');
+		}
+		String cached = convert(new Transliterator(layout, cache), text);
+		Check.equal("bypassed words", cached, convert(new Transliterator(
+				layout, null), text));
+		Check.equal("words looked up", (long) WordCache.JUDGE, cache
+				.getMisses()
+				+ cache.getHits());
+		Check.equal("words kept before the bypass", WordCache.JUDGE, cache
+				.getWords());
+	}
+}